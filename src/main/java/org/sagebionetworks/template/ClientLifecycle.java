@@ -0,0 +1,24 @@
+package org.sagebionetworks.template;
+
+/**
+ * Tracks the clients shared by all of the builders of a run so their
+ * connection pools and threads can be released when the run ends.
+ *
+ */
+public interface ClientLifecycle {
+
+	/**
+	 * Register a client to be shut down at the end of the run. AWS SDK clients
+	 * are shut down and {@link java.io.Closeable} clients are closed.
+	 * 
+	 * @param client
+	 * @return The passed client.
+	 */
+	<T> T register(T client);
+
+	/**
+	 * Shut down all of the registered clients. Called by each main in a finally
+	 * block once its work is done. Calling this more than once has no effect.
+	 */
+	void shutdown();
+}
@@ -0,0 +1,67 @@
+package org.sagebionetworks.template;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+
+import com.amazonaws.AmazonWebServiceClient;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Shuts the registered clients down in the reverse order of their registration
+ * when {@link #shutdown()} is called. Each main calls it once its builder
+ * returns.
+ *
+ */
+@Singleton
+public class ClientLifecycleImpl implements ClientLifecycle {
+
+	private final Logger logger;
+	private final List<Object> clients = new ArrayList<>();
+	private boolean shutdown = false;
+
+	@Inject
+	public ClientLifecycleImpl(LoggerFactory loggerFactory) {
+		this.logger = loggerFactory.getLogger(ClientLifecycleImpl.class);
+	}
+
+	@Override
+	public synchronized <T> T register(T client) {
+		if (client == null) {
+			throw new IllegalArgumentException("Client cannot be null");
+		}
+		if (shutdown) {
+			throw new IllegalStateException("Cannot register a client after shutdown");
+		}
+		clients.add(client);
+		return client;
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		if (shutdown) {
+			return;
+		}
+		shutdown = true;
+		List<Object> toShutdown = new ArrayList<>(clients);
+		Collections.reverse(toShutdown);
+		clients.clear();
+		for (Object client : toShutdown) {
+			try {
+				if (client instanceof AmazonWebServiceClient) {
+					((AmazonWebServiceClient) client).shutdown();
+				} else if (client instanceof Closeable) {
+					((Closeable) client).close();
+				}
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Failed to shut down client: " + client.getClass().getName() + ": " + e.getMessage());
+			}
+		}
+	}
+
+}
@@ -1,10 +1,16 @@
 package org.sagebionetworks.template;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
 import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackResourceSummary;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.StackSummary;
 
 /**
  * Abstraction for CloudFormation Client operations
@@ -80,10 +86,37 @@ public interface CloudFormationClient {
 	 */
 	public Stream<Stack> streamOverAllStacks();
 
+	/**
+	 * Stream over the summary of all the stacks in one of the given statuses. The
+	 * statuses are filtered by CloudFormation, and the summaries do not include
+	 * the parameters, outputs or tags of the stacks.
+	 * 
+	 * @param statuses
+	 * @return
+	 */
+	public Stream<StackSummary> streamOverStackSummaries(Set<StackStatus> statuses);
+
 	/**
 	 * Delete a stack by name
 	 * @param stackName
 	 */
 	public void deleteStack(String stackName);
 
+	/**
+	 * Delete a stack by name, leaving the given resources in place. Only applies
+	 * to a stack in the DELETE_FAILED state.
+	 * 
+	 * @param stackName
+	 * @param retainResources The logical ids of the resources to retain.
+	 */
+	public void deleteStack(String stackName, Collection<String> retainResources);
+
+	/**
+	 * List the summary of all the resources of a stack.
+	 * 
+	 * @param stackName
+	 * @return
+	 */
+	public List<StackResourceSummary> listStackResources(String stackName);
+
 }
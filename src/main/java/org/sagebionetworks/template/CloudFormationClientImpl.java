@@ -1,20 +1,27 @@
 package org.sagebionetworks.template;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
-import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.logging.log4j.Logger;
-import org.sagebionetworks.template.config.Configuration;
-import org.sagebionetworks.template.repo.beanstalk.SourceBundle;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
 import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
@@ -24,14 +31,21 @@ import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
 import com.amazonaws.services.cloudformation.model.DeleteStackResult;
 import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.GetTemplateRequest;
+import com.amazonaws.services.cloudformation.model.ListStackResourcesRequest;
+import com.amazonaws.services.cloudformation.model.ListStackResourcesResult;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
 import com.amazonaws.services.cloudformation.model.Output;
+import com.amazonaws.services.cloudformation.model.Parameter;
 import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackResourceSummary;
 import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import com.amazonaws.services.cloudformation.model.Tag;
+import com.amazonaws.services.cloudformation.model.TemplateStage;
 import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
 import com.amazonaws.services.cloudformation.model.UpdateStackResult;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.google.inject.Inject;
 
 /**
@@ -40,27 +54,25 @@ import com.google.inject.Inject;
  */
 public class CloudFormationClientImpl implements CloudFormationClient {
 
-	public static final String S3_URL_TEMPLATE = "https://s3.amazonaws.com/%s/%s";
-
-	public static final long TIMEOUT_MS = 60 * 60 * 1000; // one hour.
-
-	public static final int SLEEP_TIME = 10 * 1000;
 	public static final String NO_UPDATES_ARE_TO_BE_PERFORMED = "No updates are to be performed";
+	/**
+	 * An unchanged stack in one of these states can skip the update.
+	 */
+	public static final Set<StackStatus> STABLE_STATUSES = EnumSet.of(StackStatus.CREATE_COMPLETE,
+			StackStatus.UPDATE_COMPLETE, StackStatus.UPDATE_ROLLBACK_COMPLETE);
 	AmazonCloudFormation cloudFormationClient;
-	AmazonS3 s3Client;
-	Configuration configuration;
+	TemplateStore templateStore;
 	Logger logger;
-	ThreadProvider threadProvider;
+	StackWaiter stackWaiter;
 
 	@Inject
-	public CloudFormationClientImpl(AmazonCloudFormation cloudFormationClient, AmazonS3 s3Client,
-			Configuration configuration, LoggerFactory loggerFactory, ThreadProvider threadProvider) {
+	public CloudFormationClientImpl(AmazonCloudFormation cloudFormationClient, TemplateStore templateStore,
+			LoggerFactory loggerFactory, StackWaiter stackWaiter) {
 		super();
 		this.cloudFormationClient = cloudFormationClient;
-		this.s3Client = s3Client;
-		this.configuration = configuration;
+		this.templateStore = templateStore;
 		this.logger = loggerFactory.getLogger(CloudFormationClientImpl.class);
-		this.threadProvider = threadProvider;
+		this.stackWaiter = stackWaiter;
 	}
 
 	@Override
@@ -70,7 +82,7 @@ public class CloudFormationClientImpl implements CloudFormationClient {
 
 	@Override
 	public void updateStack(final CreateOrUpdateStackRequest requestInput) {
-		// Temporarily upload the template to S3.
+		// Store the template in S3 if needed.
 		executeWithS3Template(requestInput, new Function<String, String>() {
 
 			@Override
@@ -95,7 +107,7 @@ public class CloudFormationClientImpl implements CloudFormationClient {
 
 	@Override
 	public void createStack(final CreateOrUpdateStackRequest requestInput) {
-		// Temporarily upload the template to S3.
+		// Store the template in S3 if needed.
 		executeWithS3Template(requestInput, new Function<String, String>() {
 
 			@Override
@@ -122,37 +134,33 @@ public class CloudFormationClientImpl implements CloudFormationClient {
 	}
 
 	/**
-	 * Execute a create or update using a template that is temporarily uploaded to
-	 * S3.
+	 * Execute a create or update using a template from the {@link TemplateStore}.
 	 * 
 	 * @param function
 	 * @return
 	 */
 	void executeWithS3Template(final CreateOrUpdateStackRequest requestInput, Function<String, String> function) {
-		// save the template file to S3
-		SourceBundle bundle = saveTempalteToS3(requestInput.getStackName(), requestInput.getTemplateBody());
+		String templateUrl = templateStore.saveTemplate(requestInput.getTemplateBody());
+		// the function executes the create or update.
 		try {
-			// provide an pre-signed URL to the template in S3
-			String templateUrl = createS3Url(bundle);
-			// the function executes the create or update.
-			try {
-				function.apply(templateUrl);
-			} catch (AmazonCloudFormationException e) {
-				if (e.getMessage().contains(NO_UPDATES_ARE_TO_BE_PERFORMED)) {
-					logger.info("There were no updates for stack: " + requestInput.getStackName());
-				} else {
-					throw new RuntimeException(e);
-				}
+			function.apply(templateUrl);
+		} catch (AmazonCloudFormationException e) {
+			if (e.getMessage().contains(NO_UPDATES_ARE_TO_BE_PERFORMED)) {
+				logger.info("There were no updates for stack: " + requestInput.getStackName());
+			} else {
+				throw new RuntimeException(e);
 			}
-		} finally {
-			// Delete the template from S3
-			deleteTemplate(bundle);
 		}
 	}
 
 	@Override
 	public void createOrUpdateStack(CreateOrUpdateStackRequest request) {
-		if (doesStackNameExist(request.getStackName())) {
+		Optional<Stack> existing = describeStack(request.getStackName());
+		if (existing.isPresent()) {
+			if (isUnchanged(existing.get(), request)) {
+				logger.info("Stack: " + request.getStackName() + " is unchanged, skipping the update");
+				return;
+			}
 			updateStack(request);
 		} else {
 			createStack(request);
@@ -160,106 +168,121 @@ public class CloudFormationClientImpl implements CloudFormationClient {
 	}
 
 	/**
-	 * Describe the stack with the given name
+	 * Is the given stack already deployed with the template, parameters and tags
+	 * of the request? The deployed template is fetched with GetTemplate so the
+	 * comparison does not require the template to be uploaded to S3. Any stack
+	 * that is not in a stable state is treated as changed. DescribeStacks masks
+	 * the values of NoEcho parameters, so a template that declares any is always
+	 * treated as changed.
+	 * 
+	 * @param stack
+	 * @param request
+	 * @return
 	 */
-	@Override
-	public Optional<Stack> describeStack(String stackName) throws AmazonCloudFormationException {
-		DescribeStacksRequest request = new DescribeStacksRequest().withStackName(stackName);
+	boolean isUnchanged(Stack stack, CreateOrUpdateStackRequest request) {
+		if (stack.getStackStatus() == null || !STABLE_STATUSES.contains(StackStatus.fromValue(stack.getStackStatus()))) {
+			return false;
+		}
+		if (!noEchoParameterNames(request.getTemplateBody()).isEmpty()) {
+			return false;
+		}
+		String deployedTemplate;
 		try {
-			// throws an exception if it does not exist
-			DescribeStacksResult results = cloudFormationClient.describeStacks(request);
-			if (results.getStacks().size() > 1) {
-				throw new IllegalStateException("More than one stack found for name: " + stackName);
-			}
-			return Optional.of(results.getStacks().get(0));
+			deployedTemplate = cloudFormationClient.getTemplate(new GetTemplateRequest()
+					.withStackName(request.getStackName()).withTemplateStage(TemplateStage.Original)).getTemplateBody();
 		} catch (AmazonCloudFormationException e) {
-			return Optional.empty();
+			logger.warn("Could not get the template of stack: " + request.getStackName() + ": " + e.getMessage());
+			return false;
+		}
+		if (deployedTemplate == null) {
+			return false;
 		}
+		List<Parameter> requestParameters = request.getParameters() == null ? Collections.emptyList()
+				: Arrays.asList(request.getParameters());
+		String requested = fingerprint(request.getTemplateBody(), requestParameters, request.getTags());
+		String deployed = fingerprint(deployedTemplate, stack.getParameters(), stack.getTags());
+		return requested.equals(deployed);
 	}
 
 	/**
-	 * Save the given template to to S3.
+	 * The names of the parameters of a template that are declared as NoEcho.
 	 * 
-	 * @param tempalte
-	 * @return
+	 * @param templateBody
+	 * @return Empty if there are none or the template is not JSON.
 	 */
-	SourceBundle saveTempalteToS3(String stackName, String tempalte) {
+	static Set<String> noEchoParameterNames(String templateBody) {
+		Set<String> names = new HashSet<>();
 		try {
-			String bucket = configuration.getConfigurationBucket();
-			String key = "templates/" + stackName + "-" + UUID.randomUUID() + ".json";
-			byte[] bytes = tempalte.getBytes("UTF-8");
-			ByteArrayInputStream input = new ByteArrayInputStream(bytes);
-			ObjectMetadata metadata = new ObjectMetadata();
-			metadata.setContentLength(bytes.length);
-			s3Client.putObject(new PutObjectRequest(bucket, key, input, metadata));
-			return new SourceBundle(bucket, key);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+			JSONObject parameters = new JSONObject(templateBody).optJSONObject("Parameters");
+			if (parameters != null) {
+				for (String name : parameters.keySet()) {
+					JSONObject parameter = parameters.optJSONObject(name);
+					if (parameter != null && parameter.optBoolean("NoEcho")) {
+						names.add(name);
+					}
+				}
+			}
+		} catch (JSONException e) {
+			// not a JSON template.
 		}
+		return names;
 	}
 
 	/**
-	 * Create a pre-signed URL for the given file.
+	 * SHA-256 fingerprint of a template body with its parameters and tags. The
+	 * parameters and tags are sorted by key so their order does not matter.
 	 * 
-	 * @param bundle
+	 * @param templateBody
+	 * @param parameters
+	 * @param tags
 	 * @return
 	 */
-	String createS3Url(SourceBundle bundle) {
-		return String.format(S3_URL_TEMPLATE, bundle.getBucket(), bundle.getKey());
+	static String fingerprint(String templateBody, Collection<Parameter> parameters, Collection<Tag> tags) {
+		StringBuilder builder = new StringBuilder(templateBody);
+		builder.append('\0');
+		if (parameters != null) {
+			parameters.stream().sorted(Comparator.comparing(Parameter::getParameterKey))
+					.forEach(p -> builder.append(p.getParameterKey()).append('=').append(p.getParameterValue()).append('\0'));
+		}
+		builder.append('\0');
+		if (tags != null) {
+			tags.stream().sorted(Comparator.comparing(Tag::getKey))
+					.forEach(t -> builder.append(t.getKey()).append('=').append(t.getValue()).append('\0'));
+		}
+		return DigestUtils.sha256Hex(builder.toString());
 	}
 
 	/**
-	 * Delete the template file for the given bundle.
-	 * 
-	 * @param bundle
+	 * Describe the stack with the given name
 	 */
-	void deleteTemplate(SourceBundle bundle) {
-		s3Client.deleteObject(bundle.getBucket(), bundle.getKey());
-	}
-
-	public boolean isStartedInUpdateRollbackComplete(String stackName) {
-		return describeStack(stackName)
-				.map(s -> StackStatus.UPDATE_ROLLBACK_COMPLETE.equals(StackStatus.fromValue(s.getStackStatus())))
-				.orElse(false);
+	@Override
+	public Optional<Stack> describeStack(String stackName) throws AmazonCloudFormationException {
+		DescribeStacksRequest request = new DescribeStacksRequest().withStackName(stackName);
+		try {
+			// throws an exception if it does not exist
+			DescribeStacksResult results = cloudFormationClient.describeStacks(request);
+			if (results.getStacks().size() > 1) {
+				throw new IllegalStateException("More than one stack found for name: " + stackName);
+			}
+			return Optional.of(results.getStacks().get(0));
+		} catch (AmazonCloudFormationException e) {
+			return Optional.empty();
+		}
 	}
 
+	/**
+	 * Blocks on the shared {@link StackWaiter}, which tails the stack events
+	 * rather than polling the stack status.
+	 */
 	@Override
 	public Optional<Stack> waitForStackToComplete(String stackName) throws InterruptedException {
-		boolean startedInUpdateRollbackComplete = isStartedInUpdateRollbackComplete(stackName); // Initial state
-		long start = threadProvider.currentTimeMillis();
-		while (true) {
-			long elapse = threadProvider.currentTimeMillis() - start;
-			if (elapse > TIMEOUT_MS) {
-				throw new RuntimeException("Timed out waiting for stack: '" + stackName + "' status to complete");
-			}
-			Optional<Stack> optional = describeStack(stackName);
-			if (optional.isEmpty()) {
-				return Optional.empty();
-			}
-			Stack stack = optional.get();
-			StackStatus status = StackStatus.fromValue(stack.getStackStatus());
-			switch (status) {
-			case CREATE_COMPLETE:
-			case UPDATE_COMPLETE:
-			case DELETE_COMPLETE:
-				// done
-				return optional;
-			case CREATE_IN_PROGRESS:
-			case UPDATE_IN_PROGRESS:
-			case DELETE_IN_PROGRESS:
-			case UPDATE_COMPLETE_CLEANUP_IN_PROGRESS:
-				logger.info("Waiting for stack: '" + stackName + "' to complete.  Current status: " + status.name()
-						+ "...");
-				threadProvider.sleep(SLEEP_TIME);
-				break;
-			case UPDATE_ROLLBACK_COMPLETE:
-				if (startedInUpdateRollbackComplete) { // There was nothing to do, state unchanged
-					return optional;
-				}
-			default:
-				throw new RuntimeException("Stack '" + stackName + "' did not complete.  Status: " + status.name()
-						+ " with reason: " + stack.getStackStatusReason());
+		try {
+			return stackWaiter.waitForCompletion(stackName).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
+			throw new RuntimeException(e.getCause());
 		}
 	}
 
@@ -310,9 +333,66 @@ public class CloudFormationClientImpl implements CloudFormationClient {
 		}
 	}
 
+	@Override
+	public Stream<StackSummary> streamOverStackSummaries(Set<StackStatus> statuses) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+				new PageIterator<>(new StackSummaryPageProvider(statuses)), Spliterator.ORDERED), false);
+	}
+
+	/**
+	 * Stateful StackSummary PageProvider for listing the stacks using pagination.
+	 *
+	 */
+	private class StackSummaryPageProvider implements PageIterator.PageProvider<StackSummary> {
+
+		private final List<String> statusFilters;
+		private boolean isDone = false;
+		private String nextPageToken;
+
+		StackSummaryPageProvider(Set<StackStatus> statuses) {
+			this.statusFilters = statuses.stream().map(StackStatus::toString).sorted().collect(Collectors.toList());
+		}
+
+		public List<StackSummary> nextPage() {
+			if(isDone) {
+				return Collections.emptyList();
+			}
+			// a filtered page can be empty while more pages follow.
+			List<StackSummary> page;
+			do {
+				ListStacksResult r = cloudFormationClient.listStacks(
+						new ListStacksRequest().withStackStatusFilters(statusFilters).withNextToken(nextPageToken));
+				page = r.getStackSummaries();
+				nextPageToken = r.getNextToken();
+			} while (page.isEmpty() && nextPageToken != null);
+			if(nextPageToken == null) {
+				isDone = true;
+			}
+			return page;
+		}
+	}
+
 	@Override
 	public void deleteStack(String stackName) {
 		cloudFormationClient.deleteStack(new DeleteStackRequest().withStackName(stackName));
 	}
 
+	@Override
+	public void deleteStack(String stackName, Collection<String> retainResources) {
+		cloudFormationClient.deleteStack(new DeleteStackRequest().withStackName(stackName).withRetainResources(retainResources));
+	}
+
+	@Override
+	public List<StackResourceSummary> listStackResources(String stackName) {
+		List<StackResourceSummary> summaries = new ArrayList<>();
+		String nextToken = null;
+		do {
+			ListStackResourcesResult result = cloudFormationClient.listStackResources(
+					new ListStackResourcesRequest().withStackName(stackName).withNextToken(nextToken));
+			summaries.addAll(result.getStackResourceSummaries());
+			nextToken = result.getNextToken();
+		} while (nextToken != null);
+		return summaries;
+	}
+
 }
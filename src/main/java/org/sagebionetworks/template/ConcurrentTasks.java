@@ -0,0 +1,67 @@
+package org.sagebionetworks.template;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent tasks on a bounded pool. A failed task does not stop the
+ * others, all of the failures are reported together once every task is done.
+ * Tasks that depend on each other are deployed with the
+ * {@link org.sagebionetworks.template.deployment.DeploymentOrchestrator}
+ * instead.
+ *
+ */
+public final class ConcurrentTasks {
+
+	private ConcurrentTasks() {
+	}
+
+	/**
+	 * Run all of the given tasks with at most maxConcurrency running at the same
+	 * time.
+	 *
+	 * @param threadProvider
+	 * @param maxConcurrency
+	 * @param tasks          The tasks by key, in the order they are submitted.
+	 * @param description    What the tasks do, for the failure message.
+	 * @return The result of each task by key, in the order of the tasks.
+	 * @throws IllegalStateException If any of the tasks failed, with the failure
+	 *                               of each task added as suppressed.
+	 */
+	public static <K, V> Map<K, V> runAll(ThreadProvider threadProvider, int maxConcurrency, Map<K, Callable<V>> tasks,
+			String description) {
+		Map<K, V> results = new LinkedHashMap<>();
+		if (tasks.isEmpty()) {
+			return results;
+		}
+		ExecutorService executor = threadProvider.newFixedThreadPool(Math.min(Math.max(1, maxConcurrency), tasks.size()));
+		Map<K, Throwable> failed = new LinkedHashMap<>();
+		try {
+			Map<K, Future<V>> futures = new LinkedHashMap<>();
+			tasks.forEach((key, task) -> futures.put(key, executor.submit(task)));
+			for (Map.Entry<K, Future<V>> future : futures.entrySet()) {
+				try {
+					results.put(future.getKey(), future.getValue().get());
+				} catch (ExecutionException e) {
+					failed.put(future.getKey(), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+		if (!failed.isEmpty()) {
+			IllegalStateException exception = new IllegalStateException("Failed to " + description + ": " + failed.keySet());
+			failed.values().forEach(exception::addSuppressed);
+			throw exception;
+		}
+		return results;
+	}
+
+}
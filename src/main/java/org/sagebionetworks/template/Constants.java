@@ -100,6 +100,7 @@ public class Constants {
 	public static final String PROPERTY_KEY_BEANSTALK_VERSION = "org.sagebionetworks.beanstalk.version.";
 	public static final String PROPERTY_KEY_BEANSTALK_NUMBER = "org.sagebionetworks.beanstalk.number.";
 	public static final String PROPERTY_KEY_BEANSTALK_SSL_ARN = "org.sagebionetworks.beanstalk.ssl.arn.";
+	public static final String PROPERTY_KEY_BEANSTALK_CONCURRENT_DEPLOYMENT = "org.sagebionetworks.beanstalk.concurrent.deployment";
 	public static final String PROPERTY_KEY_ROUTE_53_HOSTED_ZONE = "org.sagebionetworks.route.53.hosted.zone.";
 	public static final String PROPERTY_KEY_SECRET_KEYS_CSV = "org.sagebionetworks.secret.keys.csv";
 	public static final String PROPERTY_KEY_REPOSITORY_DATABASE_PASSWORD = "org.sagebionetworks.repository.database.password";
@@ -265,9 +266,60 @@ public class Constants {
 	
 	// docs deployment
 	public static final String DOCS_STACK_INSTANCE_JSON_FILE = "instance.json";
+	public static final String DOCS_STACK_MANIFEST_FILE = "docs-manifest.json.gz";
 	public static final String PROPERTY_KEY_DOCS_DEPLOYMENT_FLAG = "org.sagebionetworks.docs.deploy";
 	public static final String PROPERTY_KEY_DOCS_SOURCE_BUCKET = "org.sagebionetworks.docs.source";
 	public static final String PROPERTY_KEY_DOCS_DESTINATION_BUCKET = "org.sagebionetworks.docs.destination";
+	public static final String PROPERTY_KEY_DOCS_SYNC_MAX_CONCURRENCY = "org.sagebionetworks.docs.sync.max.concurrency";
+	public static final int DEFAULT_DOCS_SYNC_MAX_CONCURRENCY = 32;
+
+	// stack deployment orchestration
+	public static final String PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY = "org.sagebionetworks.deployment.max.concurrency";
+	public static final int DEFAULT_DEPLOYMENT_MAX_CONCURRENCY = 4;
+	public static final String PROPERTY_KEY_VPC_PRIVATE_SUBNETS_FAIL_FAST = "org.sagebionetworks.vpc.private.subnets.fail.fast";
+	public static final boolean DEFAULT_VPC_PRIVATE_SUBNETS_FAIL_FAST = true;
+
+	// local artifact cache
+	public static final String PROPERTY_KEY_ARTIFACT_CACHE_DIRECTORY = "org.sagebionetworks.artifact.cache.directory";
+	public static final String PROPERTY_KEY_ARTIFACT_CACHE_MAX_SIZE_MB = "org.sagebionetworks.artifact.cache.max.size.mb";
+	public static final int DEFAULT_ARTIFACT_CACHE_MAX_SIZE_MB = 4096;
+
+	// S3 uploads
+	public static final String PROPERTY_KEY_S3_UPLOAD_PART_SIZE_MB = "org.sagebionetworks.s3.upload.part.size.mb";
+	public static final int DEFAULT_S3_UPLOAD_PART_SIZE_MB = 16;
+	public static final String PROPERTY_KEY_S3_UPLOAD_MAX_CONCURRENCY = "org.sagebionetworks.s3.upload.max.concurrency";
+	public static final int DEFAULT_S3_UPLOAD_MAX_CONCURRENCY = 8;
+
+	// S3 bucket configuration
+	public static final String PROPERTY_KEY_S3_BUCKET_MAX_CONCURRENCY = "org.sagebionetworks.s3.bucket.max.concurrency";
+	public static final int DEFAULT_S3_BUCKET_MAX_CONCURRENCY = 4;
+	public static final String PROPERTY_KEY_S3_BUCKET_DRY_RUN = "org.sagebionetworks.s3.bucket.dry.run";
+
+	// Route53 changes
+	public static final String PROPERTY_KEY_ROUTE53_MAX_CONCURRENCY = "org.sagebionetworks.route53.max.concurrency";
+	public static final int DEFAULT_ROUTE53_MAX_CONCURRENCY = 2;
+
+	// repo secrets
+	public static final String PROPERTY_KEY_SECRETS_MAX_CONCURRENCY = "org.sagebionetworks.secrets.max.concurrency";
+	public static final int DEFAULT_SECRETS_MAX_CONCURRENCY = 8;
+	public static final String PROPERTY_KEY_SECRETS_ENVELOPE_ENCRYPTION = "org.sagebionetworks.secrets.envelope.encryption";
+
+	// beanstalk certificates
+	public static final String PROPERTY_KEY_CERTIFICATE_POOL_SIZE = "org.sagebionetworks.certificate.pool.size";
+	public static final int DEFAULT_CERTIFICATE_POOL_SIZE = 2;
+	public static final String PROPERTY_KEY_CERTIFICATE_EC_KEYS = "org.sagebionetworks.certificate.ec.keys";
+
+	// expired stack teardown
+	public static final String PROPERTY_KEY_TEARDOWN_MAX_CONCURRENCY = "org.sagebionetworks.teardown.max.concurrency";
+	public static final int DEFAULT_TEARDOWN_MAX_CONCURRENCY = 10;
+	public static final String PROPERTY_KEY_TEARDOWN_DELETES_PER_SECOND = "org.sagebionetworks.teardown.deletes.per.second";
+	public static final int DEFAULT_TEARDOWN_DELETES_PER_SECOND = 2;
+
+	// shared AWS clients
+	public static final String PROPERTY_KEY_AWS_MAX_CONNECTIONS = "org.sagebionetworks.aws.max.connections";
+	public static final int DEFAULT_AWS_MAX_CONNECTIONS = 100;
+	public static final String PROPERTY_KEY_AWS_MAX_ERROR_RETRY = "org.sagebionetworks.aws.max.error.retry";
+	public static final int DEFAULT_AWS_MAX_ERROR_RETRY = 10;
 
 	/**
 	 * Create a camel case name from dash-separated-name. Given 'foo-bar' will
@@ -0,0 +1,36 @@
+package org.sagebionetworks.template;
+
+import java.util.function.Function;
+
+/**
+ * Memoizes the results of remote lookups for the duration of a run, so that
+ * the same lookup made while building several stacks is only sent once.
+ *
+ */
+public interface LookupCache {
+
+	/**
+	 * Get the cached result of the lookup for the given key, or load it with the
+	 * provided loader. Concurrent requests for the same key wait for a single
+	 * load. A failed load is not cached.
+	 * 
+	 * @param namespace Identifies the type of lookup.
+	 * @param key       Identifies the lookup within its namespace. Must implement
+	 *                  equals and hashCode.
+	 * @param loader    Called with the key when the result is not cached.
+	 * @return
+	 */
+	<K, V> V get(String namespace, K key, Function<K, V> loader);
+
+	/**
+	 * Remove all of the cached results of the given namespace.
+	 * 
+	 * @param namespace
+	 */
+	void invalidate(String namespace);
+
+	/**
+	 * Remove all of the cached results.
+	 */
+	void invalidateAll();
+}
@@ -0,0 +1,96 @@
+package org.sagebionetworks.template;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import com.google.inject.Singleton;
+
+/**
+ * LookupCache that holds each result as a future, so the first request for a
+ * key loads it while any concurrent request for the same key waits for that
+ * load.
+ *
+ */
+@Singleton
+public class LookupCacheImpl implements LookupCache {
+
+	private final ConcurrentMap<CacheKey, CompletableFuture<Object>> entries = new ConcurrentHashMap<>();
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K, V> V get(String namespace, K key, Function<K, V> loader) {
+		if (namespace == null) {
+			throw new IllegalArgumentException("Namespace cannot be null");
+		}
+		if (loader == null) {
+			throw new IllegalArgumentException("Loader cannot be null");
+		}
+		CacheKey cacheKey = new CacheKey(namespace, key);
+		CompletableFuture<Object> newEntry = new CompletableFuture<>();
+		CompletableFuture<Object> entry = entries.putIfAbsent(cacheKey, newEntry);
+		if (entry == null) {
+			entry = newEntry;
+			try {
+				newEntry.complete(loader.apply(key));
+			} catch (RuntimeException | Error e) {
+				// failures are not cached so the next request tries again.
+				entries.remove(cacheKey, newEntry);
+				newEntry.completeExceptionally(e);
+				throw e;
+			}
+		}
+		try {
+			return (V) entry.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void invalidate(String namespace) {
+		entries.keySet().removeIf(k -> k.namespace.equals(namespace));
+	}
+
+	@Override
+	public void invalidateAll() {
+		entries.clear();
+	}
+
+	private static final class CacheKey {
+
+		private final String namespace;
+		private final Object key;
+
+		CacheKey(String namespace, Object key) {
+			this.namespace = namespace;
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(key, namespace);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return Objects.equals(key, other.key) && Objects.equals(namespace, other.namespace);
+		}
+	}
+}
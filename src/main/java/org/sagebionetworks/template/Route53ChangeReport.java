@@ -0,0 +1,49 @@
+package org.sagebionetworks.template;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.amazonaws.services.route53.model.ChangeInfo;
+
+/**
+ * The outcome of applying a list of record sets to a hosted zone: the
+ * {@link ChangeInfo} of each submitted batch, in submission order, once all of
+ * them are INSYNC.
+ */
+public class Route53ChangeReport {
+
+	private final String hostedZoneId;
+	private final int numberOfChanges;
+	private final List<ChangeInfo> batches;
+	private final long elapsedMS;
+
+	public Route53ChangeReport(String hostedZoneId, int numberOfChanges, List<ChangeInfo> batches, long elapsedMS) {
+		this.hostedZoneId = hostedZoneId;
+		this.numberOfChanges = numberOfChanges;
+		this.batches = Collections.unmodifiableList(batches);
+		this.elapsedMS = elapsedMS;
+	}
+
+	public String getHostedZoneId() {
+		return hostedZoneId;
+	}
+
+	public int getNumberOfChanges() {
+		return numberOfChanges;
+	}
+
+	public List<ChangeInfo> getBatches() {
+		return batches;
+	}
+
+	public long getElapsedMS() {
+		return elapsedMS;
+	}
+
+	@Override
+	public String toString() {
+		return "Applied " + numberOfChanges + " changes to hosted zone " + hostedZoneId + " in " + batches.size()
+				+ " batches, all INSYNC after " + elapsedMS + " ms";
+	}
+
+}
@@ -1,15 +1,37 @@
 package org.sagebionetworks.template;
 
-import com.amazonaws.services.route53.model.ChangeResourceRecordSetsRequest;
-import com.amazonaws.services.route53.model.ChangeResourceRecordSetsResult;
 import com.amazonaws.services.route53.model.ResourceRecordSet;
 import org.sagebionetworks.template.dns.RecordSetDescriptor;
 
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface Route53Client {
 
-	List<ResourceRecordSet> listResourceRecordSets(String hostedZoneId);
-	void changeResourceRecordSets(String hostedZoneId, List<RecordSetDescriptor> recordSetDescriptors, int batchSize);
+	/**
+	 * Lazily page through the record sets of the hosted zone. The next page is
+	 * only fetched once the previous one is consumed.
+	 *
+	 * @param hostedZoneId
+	 * @param types        Only the record sets of these types are returned, all of
+	 *                     them if empty.
+	 * @return
+	 */
+	Stream<ResourceRecordSet> listResourceRecordSets(String hostedZoneId, Set<String> types);
+
+	/**
+	 * Upsert the given record sets in batches of at most batchSize changes, smaller
+	 * when needed to stay within the size limits of a request. Batches are
+	 * submitted concurrently and this call returns once all of them are INSYNC.
+	 *
+	 * @param hostedZoneId
+	 * @param recordSetDescriptors
+	 * @param batchSize            The maximum number of changes in a batch.
+	 * @return The report of the applied batches.
+	 * @throws IllegalStateException If any batch failed, with the failures
+	 *                               suppressed.
+	 */
+	Route53ChangeReport changeResourceRecordSets(String hostedZoneId, List<RecordSetDescriptor> recordSetDescriptors, int batchSize);
 
 }
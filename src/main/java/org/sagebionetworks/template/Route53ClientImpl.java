@@ -1,52 +1,118 @@
 package org.sagebionetworks.template;
 
 import com.amazonaws.services.route53.AmazonRoute53;
-import com.amazonaws.services.route53.model.AliasTarget;
+import com.amazonaws.services.route53.model.AmazonRoute53Exception;
 import com.amazonaws.services.route53.model.Change;
 import com.amazonaws.services.route53.model.ChangeAction;
 import com.amazonaws.services.route53.model.ChangeBatch;
+import com.amazonaws.services.route53.model.ChangeInfo;
 import com.amazonaws.services.route53.model.ChangeResourceRecordSetsRequest;
 import com.amazonaws.services.route53.model.ChangeResourceRecordSetsResult;
+import com.amazonaws.services.route53.model.ChangeStatus;
+import com.amazonaws.services.route53.model.GetChangeRequest;
 import com.amazonaws.services.route53.model.ListResourceRecordSetsRequest;
 import com.amazonaws.services.route53.model.ListResourceRecordSetsResult;
+import com.amazonaws.services.route53.model.PriorRequestNotCompleteException;
 import com.amazonaws.services.route53.model.ResourceRecord;
 import com.amazonaws.services.route53.model.ResourceRecordSet;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import org.apache.logging.log4j.Logger;
 import org.sagebionetworks.template.config.Configuration;
-import org.sagebionetworks.template.dns.AliasTargetDescriptor;
 import org.sagebionetworks.template.dns.RecordSetDescriptor;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.sagebionetworks.template.Constants.DEFAULT_ROUTE53_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_ROUTE53_MAX_CONCURRENCY;
 
 public class Route53ClientImpl implements Route53Client {
 
+	/**
+	 * Limits of a single ChangeResourceRecordSets request. An UPSERT counts twice
+	 * towards both limits.
+	 */
+	public static final int MAX_RECORDS_PER_REQUEST = 1000;
+	public static final int MAX_CHARACTERS_PER_REQUEST = 32000;
+	public static final int UPSERT_WEIGHT = 2;
+
+	/**
+	 * The largest page of record sets Route53 returns.
+	 */
+	public static final String MAX_ITEMS_PER_PAGE = "300";
+
+	public static final String THROTTLING_ERROR_CODE = "Throttling";
+	public static final int MAX_SUBMIT_ATTEMPTS = 8;
+	public static final long INITIAL_DELAY_MS = 1000;
+	public static final long MAX_DELAY_MS = 20 * 1000;
+	/**
+	 * Changes usually propagate to all the Route53 servers within a minute.
+	 */
+	public static final long MAX_WAIT_FOR_INSYNC_MS = 10 * 60 * 1000;
+
 	AmazonRoute53 r53Client;
 	Configuration config;
+	ThreadProvider threadProvider;
 	Logger logger;
 
 	@Inject
-	Route53ClientImpl(AmazonRoute53 r53Client, Configuration configuration, LoggerFactory loggerFactory) {
+	Route53ClientImpl(AmazonRoute53 r53Client, Configuration configuration, ThreadProvider threadProvider, LoggerFactory loggerFactory) {
 		this.r53Client = r53Client;
 		this.config = configuration;
+		this.threadProvider = threadProvider;
 		this.logger = loggerFactory.getLogger(Route53ClientImpl.class);
 	}
 
 	@Override
-	public List<ResourceRecordSet> listResourceRecordSets(String hostedZoneId) {
-		ListResourceRecordSetsRequest req = new ListResourceRecordSetsRequest().withHostedZoneId(hostedZoneId).withMaxItems("200");
-		ListResourceRecordSetsResult res = r53Client.listResourceRecordSets(req);
-		return res.getResourceRecordSets();
+	public Stream<ResourceRecordSet> listResourceRecordSets(String hostedZoneId, Set<String> types) {
+		ListResourceRecordSetsRequest req = new ListResourceRecordSetsRequest().withHostedZoneId(hostedZoneId).withMaxItems(MAX_ITEMS_PER_PAGE);
+		// Route53 cannot filter by type, so the filter is applied to each page as it arrives.
+		return Stream.iterate(r53Client.listResourceRecordSets(req), page -> page != null, page -> nextPage(hostedZoneId, page))
+				.flatMap(page -> page.getResourceRecordSets().stream())
+				.filter(rrs -> types.isEmpty() || types.contains(rrs.getType()));
+	}
+
+	/**
+	 * @return The page following the given page, null if it was the last page.
+	 */
+	ListResourceRecordSetsResult nextPage(String hostedZoneId, ListResourceRecordSetsResult page) {
+		if (!Boolean.TRUE.equals(page.getIsTruncated())) {
+			return null;
+		}
+		ListResourceRecordSetsRequest req = new ListResourceRecordSetsRequest().withHostedZoneId(hostedZoneId).withMaxItems(MAX_ITEMS_PER_PAGE)
+				.withStartRecordName(page.getNextRecordName())
+				.withStartRecordType(page.getNextRecordType())
+				.withStartRecordIdentifier(page.getNextRecordIdentifier());
+		return r53Client.listResourceRecordSets(req);
 	}
 
 	@Override
-	public void changeResourceRecordSets(String hostedZoneId, List<RecordSetDescriptor> recordSetDescriptors, int batchSize) {
-		List<List<RecordSetDescriptor>> batchedDescriptors = Lists.partition(recordSetDescriptors, batchSize);
-		batchedDescriptors.stream().map(l -> buildChangesList(l)).forEach(cl -> submitBatch(hostedZoneId, cl));
+	public Route53ChangeReport changeResourceRecordSets(String hostedZoneId, List<RecordSetDescriptor> recordSetDescriptors, int batchSize) {
+		long start = threadProvider.currentTimeMillis();
+		List<List<Change>> batches = buildBatches(buildChangesList(recordSetDescriptors), batchSize);
+		List<ChangeInfo> changeInfos = new ArrayList<>(batches.size());
+		if (!batches.isEmpty()) {
+			logger.info("Submitting " + recordSetDescriptors.size() + " changes to hosted zone " + hostedZoneId + " in " + batches.size() + " batches");
+			int maxConcurrency = config.getIntegerProperty(PROPERTY_KEY_ROUTE53_MAX_CONCURRENCY, DEFAULT_ROUTE53_MAX_CONCURRENCY);
+			Map<Integer, Callable<ChangeInfo>> tasks = new LinkedHashMap<>();
+			for (int i = 0; i < batches.size(); i++) {
+				List<Change> batch = batches.get(i);
+				tasks.put(i, () -> waitForInSync(submitBatch(hostedZoneId, batch)));
+			}
+			changeInfos.addAll(ConcurrentTasks.runAll(threadProvider, maxConcurrency, tasks,
+					"apply batches to hosted zone " + hostedZoneId).values());
+		}
+		Route53ChangeReport report = new Route53ChangeReport(hostedZoneId, recordSetDescriptors.size(), changeInfos,
+				threadProvider.currentTimeMillis() - start);
+		logger.info(report.toString());
+		return report;
 	}
 
 	List<Change> buildChangesList(List<RecordSetDescriptor> l) {
@@ -56,12 +122,112 @@ public class Route53ClientImpl implements Route53Client {
 		return changes;
 	}
 
-	void submitBatch(String hostedZoneId, List<Change> changes) {
+	/**
+	 * Split the changes in batches of at most batchSize changes that stay within
+	 * the limits of a request.
+	 */
+	static List<List<Change>> buildBatches(List<Change> changes, int batchSize) {
+		List<List<Change>> batches = new ArrayList<>();
+		List<Change> batch = new ArrayList<>();
+		int records = 0;
+		int characters = 0;
+		for (Change change : changes) {
+			int changeRecords = UPSERT_WEIGHT * countRecords(change.getResourceRecordSet());
+			int changeCharacters = UPSERT_WEIGHT * countCharacters(change.getResourceRecordSet());
+			if (!batch.isEmpty() && (batch.size() >= batchSize || records + changeRecords > MAX_RECORDS_PER_REQUEST
+					|| characters + changeCharacters > MAX_CHARACTERS_PER_REQUEST)) {
+				batches.add(batch);
+				batch = new ArrayList<>();
+				records = 0;
+				characters = 0;
+			}
+			batch.add(change);
+			records += changeRecords;
+			characters += changeCharacters;
+		}
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+	/**
+	 * An alias record set has no records but is counted as one.
+	 */
+	static int countRecords(ResourceRecordSet rrs) {
+		List<ResourceRecord> records = rrs.getResourceRecords();
+		return records == null || records.isEmpty() ? 1 : records.size();
+	}
+
+	static int countCharacters(ResourceRecordSet rrs) {
+		List<ResourceRecord> records = rrs.getResourceRecords();
+		if (records == null) {
+			return 0;
+		}
+		return records.stream().mapToInt(r -> r.getValue() == null ? 0 : r.getValue().length()).sum();
+	}
+
+	/**
+	 * Submit the batch, retrying while the request is throttled or a prior request
+	 * for the hosted zone is still being processed.
+	 */
+	ChangeInfo submitBatch(String hostedZoneId, List<Change> changes) throws InterruptedException {
 		ChangeBatch batch = new ChangeBatch(changes);
 		ChangeResourceRecordSetsRequest request = new ChangeResourceRecordSetsRequest();
 		request.setChangeBatch(batch);
 		request.setHostedZoneId(hostedZoneId);
-		ChangeResourceRecordSetsResult result = r53Client.changeResourceRecordSets(request);
+		for (int attempt = 1;; attempt++) {
+			try {
+				ChangeResourceRecordSetsResult result = r53Client.changeResourceRecordSets(request);
+				logger.info("Submitted " + changes.size() + " changes to hosted zone " + hostedZoneId + " as " + result.getChangeInfo().getId());
+				return result.getChangeInfo();
+			} catch (AmazonRoute53Exception e) {
+				if (!isRetryable(e) || attempt >= MAX_SUBMIT_ATTEMPTS) {
+					throw e;
+				}
+				long delayMS = backoffDelayMS(attempt);
+				logger.warn("Change to hosted zone " + hostedZoneId + " was rejected (" + e.getErrorCode() + "), retrying in " + delayMS + " ms");
+				threadProvider.sleep(delayMS);
+			}
+		}
+	}
+
+	/**
+	 * Poll the change until it is INSYNC.
+	 */
+	ChangeInfo waitForInSync(ChangeInfo changeInfo) throws InterruptedException {
+		long start = threadProvider.currentTimeMillis();
+		long delayMS = INITIAL_DELAY_MS;
+		while (!ChangeStatus.INSYNC.toString().equals(changeInfo.getStatus())) {
+			if (threadProvider.currentTimeMillis() - start > MAX_WAIT_FOR_INSYNC_MS) {
+				throw new IllegalStateException("Timed out waiting for change " + changeInfo.getId() + " to be INSYNC");
+			}
+			threadProvider.sleep(delayMS);
+			delayMS = Math.min(MAX_DELAY_MS, delayMS * 2);
+			try {
+				changeInfo = r53Client.getChange(new GetChangeRequest(changeInfo.getId())).getChangeInfo();
+			} catch (AmazonRoute53Exception e) {
+				if (!isRetryable(e)) {
+					throw e;
+				}
+				logger.warn("Get change " + changeInfo.getId() + " was throttled, backing off");
+			}
+		}
+		logger.info("Change " + changeInfo.getId() + " is INSYNC");
+		return changeInfo;
+	}
+
+	static boolean isRetryable(AmazonRoute53Exception e) {
+		return e instanceof PriorRequestNotCompleteException || THROTTLING_ERROR_CODE.equals(e.getErrorCode());
+	}
+
+	/**
+	 * Exponential backoff with full jitter, so concurrent batches do not retry in
+	 * lock step.
+	 */
+	static long backoffDelayMS(int attempt) {
+		long cap = Math.min(MAX_DELAY_MS, INITIAL_DELAY_MS << Math.min(attempt - 1, 16));
+		return 1 + ThreadLocalRandom.current().nextLong(cap);
 	}
 
 }
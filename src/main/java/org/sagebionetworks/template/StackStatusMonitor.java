@@ -0,0 +1,26 @@
+package org.sagebionetworks.template;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import com.amazonaws.services.cloudformation.model.Stack;
+
+/**
+ * Shared monitor that refreshes the status of every tracked stack in a single
+ * sweep, so the number of describe calls does not grow with the number of
+ * stacks being deployed concurrently.
+ *
+ */
+public interface StackStatusMonitor {
+
+	/**
+	 * Request the state of the given stack from the next sweep.
+	 *
+	 * @param stackName
+	 * @return A future that is completed with the stack, or with
+	 *         {@link Optional#empty()} if the stack does not exist, once the next
+	 *         sweep completes.
+	 */
+	CompletableFuture<Optional<Stack>> nextStatus(String stackName);
+
+}
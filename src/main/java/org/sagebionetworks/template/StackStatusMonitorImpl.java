@@ -0,0 +1,244 @@
+package org.sagebionetworks.template;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.logging.log4j.Logger;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * StackStatusMonitor that runs all sweeps on a single scheduler thread. When
+ * enough stacks are tracked a sweep lists the stacks that are in progress and
+ * only describes the tracked stacks whose status changed. The interval between
+ * sweeps starts short and backs off while none of the tracked stacks change
+ * status.
+ *
+ */
+@Singleton
+public class StackStatusMonitorImpl implements StackStatusMonitor {
+
+	public static final long INITIAL_DELAY_MS = 2 * 1000;
+	public static final long MAX_DELAY_MS = 30 * 1000;
+	public static final double BACKOFF_MULTIPLIER = 1.5;
+	/**
+	 * List the stacks in progress once at least this many of the tracked stacks
+	 * were already described by a previous sweep.
+	 */
+	public static final int BATCH_THRESHOLD = 3;
+	/**
+	 * The statuses of a stack that is still changing.
+	 */
+	public static final List<String> IN_PROGRESS_STATUSES = EnumSet.allOf(StackStatus.class).stream()
+			.map(StackStatus::toString).filter(status -> status.endsWith("_IN_PROGRESS")).collect(Collectors.toList());
+
+	public static final String THROTTLING_ERROR_CODE = "Throttling";
+	public static final String DOES_NOT_EXIST = "does not exist";
+
+	private final AmazonCloudFormation cloudFormationClient;
+	private final ThreadProvider threadProvider;
+	private final Logger logger;
+
+	private final Map<String, List<CompletableFuture<Optional<Stack>>>> pending = new LinkedHashMap<>();
+	private final Map<String, String> lastStatus = new HashMap<>();
+	private final Map<String, Stack> lastStack = new HashMap<>();
+	private ScheduledExecutorService scheduler;
+	private ScheduledFuture<?> nextSweep;
+	private boolean sweeping = false;
+	private long delayMS = INITIAL_DELAY_MS;
+
+	@Inject
+	public StackStatusMonitorImpl(AmazonCloudFormation cloudFormationClient, ThreadProvider threadProvider,
+			LoggerFactory loggerFactory) {
+		this.cloudFormationClient = cloudFormationClient;
+		this.threadProvider = threadProvider;
+		this.logger = loggerFactory.getLogger(StackStatusMonitorImpl.class);
+	}
+
+	@Override
+	public synchronized CompletableFuture<Optional<Stack>> nextStatus(String stackName) {
+		if (stackName == null) {
+			throw new IllegalArgumentException("Stack name cannot be null");
+		}
+		CompletableFuture<Optional<Stack>> future = new CompletableFuture<>();
+		pending.computeIfAbsent(stackName, k -> new LinkedList<>()).add(future);
+		if (!sweeping) {
+			// A stack that is not yet tracked should not wait for a backed off sweep.
+			boolean isNew = !lastStatus.containsKey(stackName);
+			if (nextSweep == null) {
+				scheduleSweep(isNew ? 0L : delayMS);
+			} else if (isNew && nextSweep.getDelay(TimeUnit.MILLISECONDS) > INITIAL_DELAY_MS
+					&& nextSweep.cancel(false)) {
+				scheduleSweep(0L);
+			}
+		}
+		return future;
+	}
+
+	synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			scheduler = threadProvider.newSingleThreadScheduledExecutor();
+		}
+		return scheduler;
+	}
+
+	synchronized void scheduleSweep(long delay) {
+		nextSweep = getScheduler().schedule(this::sweep, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Refresh all of the stacks with pending requests and complete their futures.
+	 */
+	void sweep() {
+		Map<String, List<CompletableFuture<Optional<Stack>>>> batch;
+		synchronized (this) {
+			nextSweep = null;
+			sweeping = true;
+			batch = new LinkedHashMap<>(pending);
+			pending.clear();
+		}
+		try {
+			Map<String, Optional<Stack>> results;
+			try {
+				results = describeStacks(batch.keySet());
+			} catch (AmazonCloudFormationException e) {
+				if (!THROTTLING_ERROR_CODE.equals(e.getErrorCode())) {
+					throw e;
+				}
+				logger.warn("Describe stacks was throttled, backing off");
+				synchronized (this) {
+					batch.forEach((name, futures) -> pending.merge(name, futures, (a, b) -> {
+						a.addAll(b);
+						return a;
+					}));
+					delayMS = MAX_DELAY_MS;
+				}
+				return;
+			}
+			synchronized (this) {
+				boolean changed = false;
+				for (Map.Entry<String, Optional<Stack>> entry : results.entrySet()) {
+					String status = entry.getValue().map(Stack::getStackStatus).orElse(null);
+					boolean known = lastStatus.containsKey(entry.getKey());
+					String previous = lastStatus.put(entry.getKey(), status);
+					if (entry.getValue().isPresent()) {
+						lastStack.put(entry.getKey(), entry.getValue().get());
+					} else {
+						lastStack.remove(entry.getKey());
+					}
+					if (!known || !Objects.equals(previous, status)) {
+						changed = true;
+					}
+				}
+				delayMS = nextDelay(delayMS, changed);
+			}
+			// Waiters typically request the next status from these callbacks.
+			batch.forEach((name, futures) -> futures.forEach(f -> f.complete(results.get(name))));
+		} catch (Throwable e) {
+			batch.values().forEach(futures -> futures.forEach(f -> f.completeExceptionally(e)));
+		} finally {
+			synchronized (this) {
+				sweeping = false;
+				// Forget any stack that is no longer tracked.
+				lastStatus.keySet().retainAll(pending.keySet());
+				lastStack.keySet().retainAll(pending.keySet());
+				if (!pending.isEmpty() && nextSweep == null) {
+					scheduleSweep(delayMS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Describe all of the given stacks. If enough are known the stacks in
+	 * progress are listed first, and a tracked stack that is listed with the same
+	 * status as the last sweep is not described again. Any other stack is
+	 * described on its own, so a stack that completed or was deleted is described
+	 * once.
+	 *
+	 * @param stackNames
+	 * @return
+	 */
+	Map<String, Optional<Stack>> describeStacks(Set<String> stackNames) {
+		Map<String, Optional<Stack>> results = new LinkedHashMap<>();
+		Map<String, Stack> previous;
+		synchronized (this) {
+			previous = new HashMap<>(lastStack);
+		}
+		previous.keySet().retainAll(stackNames);
+		if (previous.size() >= BATCH_THRESHOLD) {
+			Set<String> unlisted = new HashSet<>(stackNames);
+			String nextToken = null;
+			do {
+				ListStacksResult page = cloudFormationClient.listStacks(
+						new ListStacksRequest().withStackStatusFilters(IN_PROGRESS_STATUSES).withNextToken(nextToken));
+				for (StackSummary summary : page.getStackSummaries()) {
+					Stack stack = previous.get(summary.getStackName());
+					if (unlisted.remove(summary.getStackName()) && stack != null
+							&& summary.getStackStatus().equals(stack.getStackStatus())) {
+						results.put(summary.getStackName(), Optional.of(stack));
+					}
+				}
+				nextToken = page.getNextToken();
+			} while (nextToken != null && !unlisted.isEmpty());
+		}
+		Set<String> missing = new LinkedHashSet<>(stackNames);
+		missing.removeAll(results.keySet());
+		for (String stackName : missing) {
+			results.put(stackName, describeStack(stackName));
+		}
+		return results;
+	}
+
+	Optional<Stack> describeStack(String stackName) {
+		try {
+			DescribeStacksResult result = cloudFormationClient
+					.describeStacks(new DescribeStacksRequest().withStackName(stackName));
+			return result.getStacks().stream().findFirst();
+		} catch (AmazonCloudFormationException e) {
+			if (e.getMessage() != null && e.getMessage().contains(DOES_NOT_EXIST)) {
+				return Optional.empty();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Sweep faster while stacks are changing status and back off while they are
+	 * quiet.
+	 */
+	static long nextDelay(long currentDelayMS, boolean changed) {
+		if (changed) {
+			return Math.max(INITIAL_DELAY_MS, currentDelayMS / 2);
+		}
+		return Math.min(MAX_DELAY_MS, (long) (currentDelayMS * BACKOFF_MULTIPLIER));
+	}
+
+	synchronized long getDelayMS() {
+		return delayMS;
+	}
+}
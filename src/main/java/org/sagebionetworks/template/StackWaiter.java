@@ -0,0 +1,44 @@
+package org.sagebionetworks.template;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import com.amazonaws.services.cloudformation.model.Stack;
+
+/**
+ * Waits for CloudFormation stacks to reach a terminal state. All waits share a
+ * single scheduler thread so many stacks can be awaited at the same time.
+ *
+ */
+public interface StackWaiter {
+
+	/**
+	 * Start waiting for the given stack to complete. Concurrent calls for the same
+	 * stack share the same future.
+	 *
+	 * @param stackName
+	 * @return A future that is completed with the stack once it reaches a
+	 *         completed state, or with {@link Optional#empty()} if the stack does
+	 *         not exist. The future is completed exceptionally if the stack fails,
+	 *         rolls back or does not complete in time.
+	 */
+	CompletableFuture<Optional<Stack>> waitForCompletion(String stackName);
+
+	/**
+	 * Start waiting for the delete of the given stack to end. A status from
+	 * before the delete is not taken as its outcome: the delete is only seen as
+	 * started once the stack is DELETE_IN_PROGRESS, or its status or deletion
+	 * time differs from the given stack. Concurrent calls for the same stack
+	 * share the same future.
+	 *
+	 * @param beforeDelete The stack as it was described before the delete was
+	 *                     requested.
+	 * @return A future that is completed with {@link Optional#empty()} once the
+	 *         stack no longer exists, or with the stack once it is DELETE_COMPLETE
+	 *         or the delete ended in any other status, such as DELETE_FAILED. The
+	 *         future is completed exceptionally if the delete does not end in
+	 *         time.
+	 */
+	CompletableFuture<Optional<Stack>> waitForDeletion(Stack beforeDelete);
+
+}
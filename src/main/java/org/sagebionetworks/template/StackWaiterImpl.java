@@ -0,0 +1,267 @@
+package org.sagebionetworks.template;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.Logger;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * StackWaiter driven by the shared {@link StackStatusMonitor}, so the status
+ * of all in-flight stacks is refreshed by a single batched sweep. The stack
+ * events are only read when the status of a stack changes, starting from the
+ * last event seen, to log the progress of the stack.
+ *
+ */
+@Singleton
+public class StackWaiterImpl implements StackWaiter {
+
+	public static final long TIMEOUT_MS = 60 * 60 * 1000; // one hour.
+
+	private final AmazonCloudFormation cloudFormationClient;
+	private final StackStatusMonitor statusMonitor;
+	private final ThreadProvider threadProvider;
+	private final Logger logger;
+	private final Map<String, StackWait> inFlight = new ConcurrentHashMap<>();
+	private final Map<String, StackWait> inFlightDeletes = new ConcurrentHashMap<>();
+
+	@Inject
+	public StackWaiterImpl(AmazonCloudFormation cloudFormationClient, StackStatusMonitor statusMonitor,
+			ThreadProvider threadProvider, LoggerFactory loggerFactory) {
+		this.cloudFormationClient = cloudFormationClient;
+		this.statusMonitor = statusMonitor;
+		this.threadProvider = threadProvider;
+		this.logger = loggerFactory.getLogger(StackWaiterImpl.class);
+	}
+
+	@Override
+	public CompletableFuture<Optional<Stack>> waitForCompletion(String stackName) {
+		if (stackName == null) {
+			throw new IllegalArgumentException("Stack name cannot be null");
+		}
+		StackWait newWait = new StackWait(stackName, threadProvider.currentTimeMillis(), null);
+		StackWait existing = inFlight.putIfAbsent(stackName, newWait);
+		if (existing != null) {
+			return existing.future;
+		}
+		requestNextStatus(newWait);
+		return newWait.future;
+	}
+
+	@Override
+	public CompletableFuture<Optional<Stack>> waitForDeletion(Stack beforeDelete) {
+		if (beforeDelete == null || beforeDelete.getStackName() == null) {
+			throw new IllegalArgumentException("Stack and stack name cannot be null");
+		}
+		StackWait newWait = new StackWait(beforeDelete.getStackName(), threadProvider.currentTimeMillis(), beforeDelete);
+		StackWait existing = inFlightDeletes.putIfAbsent(newWait.stackName, newWait);
+		if (existing != null) {
+			return existing.future;
+		}
+		requestNextStatus(newWait);
+		return newWait.future;
+	}
+
+	void requestNextStatus(StackWait wait) {
+		statusMonitor.nextStatus(wait.stackName).whenComplete((stack, error) -> {
+			if (error != null) {
+				fail(wait, error);
+			} else {
+				onStatus(wait, stack);
+			}
+		});
+	}
+
+	/**
+	 * Called with each refreshed state of the stack to either complete the wait
+	 * or request the next status.
+	 *
+	 * @param wait
+	 * @param optional
+	 */
+	void onStatus(StackWait wait, Optional<Stack> optional) {
+		try {
+			if (threadProvider.currentTimeMillis() - wait.startMS > TIMEOUT_MS) {
+				throw new RuntimeException("Timed out waiting for stack: '" + wait.stackName + "' status to complete");
+			}
+			if (optional.isEmpty()) {
+				complete(wait, optional);
+				return;
+			}
+			Stack stack = optional.get();
+			boolean firstStatus = wait.lastStatus == null;
+			if (wait.beforeDelete == null ? isComplete(stack, firstStatus) : isDeleteComplete(wait, stack)) {
+				complete(wait, optional);
+				return;
+			}
+			if (!stack.getStackStatus().equals(wait.lastStatus)) {
+				logNewEvents(wait, !firstStatus);
+				wait.lastStatus = stack.getStackStatus();
+			}
+			requestNextStatus(wait);
+		} catch (Throwable e) {
+			fail(wait, e);
+		}
+	}
+
+	/**
+	 * Log the events of the stack published since the last call. Failing to read
+	 * the events does not fail the wait.
+	 *
+	 * @param wait
+	 * @param log  When false only the cursor is moved to the most recent event.
+	 */
+	void logNewEvents(StackWait wait, boolean log) {
+		try {
+			for (StackEvent event : fetchNewEvents(wait)) {
+				if (log) {
+					logger.info("Stack: '" + wait.stackName + "' " + event.getResourceType() + " '"
+							+ event.getLogicalResourceId() + "' " + event.getResourceStatus()
+							+ (event.getResourceStatusReason() == null ? "" : " " + event.getResourceStatusReason()));
+				}
+			}
+		} catch (AmazonCloudFormationException e) {
+			logger.warn("Failed to read the events of stack: '" + wait.stackName + "': " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Fetch the events published since the last call in chronological order. The
+	 * first call only reads the most recent page of events.
+	 *
+	 * @param wait
+	 * @return
+	 */
+	List<StackEvent> fetchNewEvents(StackWait wait) {
+		LinkedList<StackEvent> newEvents = new LinkedList<>();
+		String nextToken = null;
+		boolean caughtUp = false;
+		do {
+			DescribeStackEventsResult result = cloudFormationClient.describeStackEvents(
+					new DescribeStackEventsRequest().withStackName(wait.stackName).withNextToken(nextToken));
+			for (StackEvent event : result.getStackEvents()) {
+				if (event.getEventId().equals(wait.lastEventId)) {
+					caughtUp = true;
+					break;
+				}
+				// events are returned newest first.
+				newEvents.addFirst(event);
+			}
+			nextToken = result.getNextToken();
+		} while (!caughtUp && wait.lastEventId != null && nextToken != null);
+		if (!newEvents.isEmpty()) {
+			wait.lastEventId = newEvents.getLast().getEventId();
+		}
+		return newEvents;
+	}
+
+	/**
+	 * Is the given stack in a terminal status?
+	 *
+	 * @param stack
+	 * @param firstStatus True if this status was current when the wait started.
+	 * @return
+	 * @throws RuntimeException If the stack failed or rolled back.
+	 */
+	boolean isComplete(Stack stack, boolean firstStatus) {
+		StackStatus status = StackStatus.fromValue(stack.getStackStatus());
+		switch (status) {
+		case CREATE_COMPLETE:
+		case UPDATE_COMPLETE:
+		case DELETE_COMPLETE:
+			return true;
+		case CREATE_IN_PROGRESS:
+		case UPDATE_IN_PROGRESS:
+		case DELETE_IN_PROGRESS:
+		case UPDATE_COMPLETE_CLEANUP_IN_PROGRESS:
+			return false;
+		case UPDATE_ROLLBACK_COMPLETE:
+			if (firstStatus) { // There was nothing to do, state unchanged
+				return true;
+			}
+		default:
+			throw new RuntimeException("Stack '" + stack.getStackName() + "' did not complete.  Status: "
+					+ status.name() + " with reason: " + stack.getStackStatusReason());
+		}
+	}
+
+	/**
+	 * Has the delete of the given stack ended? Until the delete is seen as
+	 * started the status is the one from before the delete, so it is not an
+	 * outcome of the delete even when it is DELETE_FAILED.
+	 *
+	 * @param wait
+	 * @param stack
+	 * @return
+	 */
+	boolean isDeleteComplete(StackWait wait, Stack stack) {
+		StackStatus status = StackStatus.fromValue(stack.getStackStatus());
+		if (status == StackStatus.DELETE_COMPLETE) {
+			return true;
+		}
+		if (status == StackStatus.DELETE_IN_PROGRESS) {
+			wait.deleteStarted = true;
+			return false;
+		}
+		if (!wait.deleteStarted) {
+			wait.deleteStarted = !stack.getStackStatus().equals(wait.beforeDelete.getStackStatus())
+					|| !Objects.equals(stack.getDeletionTime(), wait.beforeDelete.getDeletionTime());
+		}
+		return wait.deleteStarted;
+	}
+
+	void complete(StackWait wait, Optional<Stack> stack) {
+		waits(wait).remove(wait.stackName, wait);
+		wait.future.complete(stack);
+	}
+
+	void fail(StackWait wait, Throwable error) {
+		waits(wait).remove(wait.stackName, wait);
+		wait.future.completeExceptionally(error);
+	}
+
+	private Map<String, StackWait> waits(StackWait wait) {
+		return wait.beforeDelete == null ? inFlight : inFlightDeletes;
+	}
+
+	/**
+	 * The state of a single stack wait. Only accessed from the monitor thread.
+	 */
+	static class StackWait {
+
+		private final String stackName;
+		private final long startMS;
+		/**
+		 * Set when waiting for a delete, the stack as it was before the delete.
+		 */
+		private final Stack beforeDelete;
+		private final CompletableFuture<Optional<Stack>> future = new CompletableFuture<>();
+		private String lastStatus;
+		private String lastEventId;
+		private boolean deleteStarted;
+
+		StackWait(String stackName, long startMS, Stack beforeDelete) {
+			this.stackName = stackName;
+			this.startMS = startMS;
+			this.beforeDelete = beforeDelete;
+		}
+
+		CompletableFuture<Optional<Stack>> getFuture() {
+			return future;
+		}
+	}
+}
@@ -1,6 +1,10 @@
 package org.sagebionetworks.template;
 
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.retry.PredefinedRetryPolicies;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.athena.AmazonAthena;
 import com.amazonaws.services.athena.AmazonAthenaClientBuilder;
@@ -29,6 +33,7 @@ import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClientBuilder
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailService;
 import com.amazonaws.services.simpleemail.AmazonSimpleEmailServiceClientBuilder;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import com.google.inject.multibindings.Multibinder;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -55,6 +60,10 @@ import org.sagebionetworks.template.datawarehouse.DataWarehouseConfig;
 import org.sagebionetworks.template.datawarehouse.DataWarehouseConfigValidator;
 import org.sagebionetworks.template.datawarehouse.backfill.BackfillDataWarehouseBuilder;
 import org.sagebionetworks.template.datawarehouse.backfill.BackfillDataWarehouseBuilderImpl;
+import org.sagebionetworks.template.deployment.DeploymentOrchestrator;
+import org.sagebionetworks.template.deployment.DeploymentOrchestratorImpl;
+import org.sagebionetworks.template.deployment.DeploymentPlanBuilder;
+import org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl;
 import org.sagebionetworks.template.dns.DnsBuilder;
 import org.sagebionetworks.template.dns.DnsBuilderImpl;
 import org.sagebionetworks.template.docs.SynapseDocsBuilder;
@@ -88,9 +97,9 @@ import org.sagebionetworks.template.repo.beanstalk.LoadBalancerAlarmsConfigValid
 import org.sagebionetworks.template.repo.beanstalk.SecretBuilder;
 import org.sagebionetworks.template.repo.beanstalk.SecretBuilderImpl;
 import org.sagebionetworks.template.repo.beanstalk.ssl.CertificateBuilder;
-import org.sagebionetworks.template.repo.beanstalk.ssl.CertificateBuilderImpl;
 import org.sagebionetworks.template.repo.beanstalk.ssl.ElasticBeanstalkExtentionBuilder;
 import org.sagebionetworks.template.repo.beanstalk.ssl.ElasticBeanstalkExtentionBuilderImpl;
+import org.sagebionetworks.template.repo.beanstalk.ssl.PooledCertificateBuilderImpl;
 import org.sagebionetworks.template.repo.cloudwatchlogs.CloudwatchLogsConfig;
 import org.sagebionetworks.template.repo.cloudwatchlogs.CloudwatchLogsConfigValidator;
 import org.sagebionetworks.template.repo.cloudwatchlogs.CloudwatchLogsVelocityContextProvider;
@@ -103,9 +112,13 @@ import org.sagebionetworks.template.repo.queues.SnsAndSqsVelocityContextProvider
 import org.sagebionetworks.template.s3.S3BucketBuilder;
 import org.sagebionetworks.template.s3.S3BucketBuilderImpl;
 import org.sagebionetworks.template.s3.S3Config;
+import org.sagebionetworks.template.s3.S3FileUploader;
+import org.sagebionetworks.template.s3.S3FileUploaderImpl;
 import org.sagebionetworks.template.s3.S3ConfigValidator;
 import org.sagebionetworks.template.s3.S3TransferManagerFactory;
 import org.sagebionetworks.template.s3.S3TransferManagerFactoryImpl;
+import org.sagebionetworks.template.utils.ArtifactCache;
+import org.sagebionetworks.template.utils.ArtifactCacheImpl;
 import org.sagebionetworks.template.utils.ArtifactDownload;
 import org.sagebionetworks.template.utils.ArtifactDownloadImpl;
 import org.sagebionetworks.template.vpc.SubnetTemplateBuilder;
@@ -118,12 +131,17 @@ import org.sagebionetworks.war.WarAppender;
 import org.sagebionetworks.war.WarAppenderImpl;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import static org.sagebionetworks.template.Constants.ATHENA_QUERIES_CONFIG_FILE;
 import static org.sagebionetworks.template.Constants.CLOUDWATCH_LOGS_CONFIG_FILE;
 import static org.sagebionetworks.template.Constants.DATAWAREHOUSE_CONFIG_FILE;
+import static org.sagebionetworks.template.Constants.DEFAULT_AWS_MAX_CONNECTIONS;
+import static org.sagebionetworks.template.Constants.DEFAULT_AWS_MAX_ERROR_RETRY;
 import static org.sagebionetworks.template.Constants.KINESIS_CONFIG_FILE;
 import static org.sagebionetworks.template.Constants.LOAD_BALANCER_ALARM_CONFIG_FILE;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_AWS_MAX_CONNECTIONS;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_AWS_MAX_ERROR_RETRY;
 import static org.sagebionetworks.template.Constants.S3_CONFIG_FILE;
 import static org.sagebionetworks.template.Constants.SNS_AND_SQS_CONFIG_FILE;
 import static org.sagebionetworks.template.TemplateUtils.loadFromJsonFile;
@@ -134,10 +152,21 @@ public class TemplateGuiceModule extends com.google.inject.AbstractModule {
 	private static final String CLASSPATH_AND_FILE = "classpath,file";
 	private static final String CLASSPATH_RESOURCE_LOADER_CLASS = "classpath.resource.loader.class";
 	private static final String FILE_RESOURCE_LOADER_CLASS = "file.resource.loader.class";
+	/**
+	 * Pooled connections are replaced periodically so DNS changes are picked up.
+	 */
+	static final long CONNECTION_TTL_MS = 5 * 60 * 1000;
+	static final long CONNECTION_MAX_IDLE_MS = 60 * 1000;
 
 	@Override
 	protected void configure() {
 		bind(CloudFormationClient.class).to(CloudFormationClientImpl.class);
+		bind(StackWaiter.class).to(StackWaiterImpl.class);
+		bind(StackStatusMonitor.class).to(StackStatusMonitorImpl.class);
+		bind(TemplateStore.class).to(TemplateStoreImpl.class);
+		bind(LookupCache.class).to(LookupCacheImpl.class);
+		bind(TemplateRenderer.class).to(TemplateRendererImpl.class);
+		bind(ClientLifecycle.class).to(ClientLifecycleImpl.class);
 		bind(VpcTemplateBuilder.class).to(VpcTemplateBuilderImpl.class);
 		bind(SubnetTemplateBuilder.class).to(SubnetTemplateBuilderImpl.class);
 		bind(Configuration.class).to(ConfigurationImpl.class);
@@ -145,17 +174,19 @@ public class TemplateGuiceModule extends com.google.inject.AbstractModule {
 		bind(LoggerFactory.class).to(LoggerFactoryImpl.class);
 		bind(RepositoryTemplateBuilder.class).to(RepositoryTemplateBuilderImpl.class);
 		bind(ArtifactDownload.class).to(ArtifactDownloadImpl.class);
+		bind(ArtifactCache.class).to(ArtifactCacheImpl.class);
 		bind(ArtifactCopy.class).to(ArtifactCopyImpl.class);
 		bind(FileProvider.class).to(FileProviderImpl.class);
 		bind(ThreadProvider.class).to(ThreadProviderImp.class);
 		bind(IdGeneratorBuilder.class).to(IdGeneratorBuilderImpl.class);
 		bind(SecretBuilder.class).to(SecretBuilderImpl.class);
-		bind(CertificateBuilder.class).to(CertificateBuilderImpl.class);
+		bind(CertificateBuilder.class).to(PooledCertificateBuilderImpl.class);
 		bind(ElasticBeanstalkExtentionBuilder.class).to(ElasticBeanstalkExtentionBuilderImpl.class);
 		bind(WarAppender.class).to(WarAppenderImpl.class);
 		bind(ElasticBeanstalkSolutionStackNameProvider.class).to(ElasticBeanstalkSolutionStackNameProviderImpl.class);
 		bind(StackTagsProvider.class).to(StackTagsProviderImpl.class);
 		bind(S3BucketBuilder.class).to(S3BucketBuilderImpl.class);
+		bind(S3FileUploader.class).to(S3FileUploaderImpl.class);
 		bind(SesClient.class).to(SesClientImpl.class);
 		bind(GlobalResourcesBuilder.class).to(GlobalResourcesBuilderImpl.class);
 		bind(CloudwatchLogsVelocityContextProvider.class).to(CloudwatchLogsVelocityContextProviderImpl.class);
@@ -175,6 +206,8 @@ public class TemplateGuiceModule extends com.google.inject.AbstractModule {
 		bind(ExpiredStackTeardown.class).to(ExpiredStackTeardownImpl.class);
 		bind(DataWarehouseBuilder.class).to(DataWarehouseBuilderImpl.class);
 		bind(BackfillDataWarehouseBuilder.class).to(BackfillDataWarehouseBuilderImpl.class);
+		bind(DeploymentOrchestrator.class).to(DeploymentOrchestratorImpl.class);
+		bind(DeploymentPlanBuilder.class).to(DeploymentPlanBuilderImpl.class);
 
 		Multibinder<VelocityContextProvider> velocityContextProviderMultibinder = Multibinder.newSetBinder(binder(), VelocityContextProvider.class);
 		
@@ -184,120 +217,160 @@ public class TemplateGuiceModule extends com.google.inject.AbstractModule {
 	}
 	
 	/**
-	 * Create a AmazonCloudFormation client that uses the  {@link DefaultAWSCredentialsProviderChain}.
+	 * A single credentials provider is shared by all clients so the credentials
+	 * are resolved once per run.
+	 * 
 	 * @return
 	 */
 	@Provides
-	public AmazonCloudFormation provideAmazonCloudFormationClient() {
-		AmazonCloudFormationClientBuilder builder = AmazonCloudFormationClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AWSCredentialsProvider provideAWSCredentialsProvider() {
+		return DefaultAWSCredentialsProviderChain.getInstance();
 	}
-	
+
+	/**
+	 * The connection pool, keep-alive and retry settings shared by all AWS
+	 * clients.
+	 * 
+	 * @param config
+	 * @return
+	 */
 	@Provides
-	public AmazonS3 provideAmazonS3Client() {
-		AmazonS3ClientBuilder builder = AmazonS3ClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
+	@Singleton
+	public ClientConfiguration provideClientConfiguration(Configuration config) {
+		int maxConnections = config.getIntegerProperty(PROPERTY_KEY_AWS_MAX_CONNECTIONS, DEFAULT_AWS_MAX_CONNECTIONS);
+		int maxErrorRetry = config.getIntegerProperty(PROPERTY_KEY_AWS_MAX_ERROR_RETRY, DEFAULT_AWS_MAX_ERROR_RETRY);
+		return new ClientConfiguration()
+				.withMaxConnections(maxConnections)
+				.withTcpKeepAlive(true)
+				.withConnectionTTL(CONNECTION_TTL_MS)
+				.withConnectionMaxIdleMillis(CONNECTION_MAX_IDLE_MS)
+				.withRetryPolicy(PredefinedRetryPolicies.getDefaultRetryPolicyWithCustomMaxRetries(maxErrorRetry));
+	}
+
+	/**
+	 * Build a client in US_EAST_1 with the shared credentials and client
+	 * configuration. The client is shut down at the end of the run.
+	 */
+	static <B extends AwsClientBuilder<B, T>, T> T buildClient(B builder, AWSCredentialsProvider credentials,
+			ClientConfiguration clientConfig, ClientLifecycle lifecycle) {
+		builder.withCredentials(credentials);
 		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+		builder.withClientConfiguration(clientConfig);
+		return lifecycle.register(builder.build());
 	}
-	
+
 	@Provides
-	public AWSLambda provideAWSLambdaClient() {
-		AWSLambdaClientBuilder builder = AWSLambdaClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AmazonCloudFormation provideAmazonCloudFormationClient(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AmazonCloudFormationClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
 
 	@Provides
-	public AWSGlue provideAmazonAWSGlueClient() {
-		AWSGlueClientBuilder builder = AWSGlueClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AmazonS3 provideAmazonS3Client(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AmazonS3ClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
 
 	@Provides
-	public AmazonAthena provideAmazonAmazonAthenaClient() {
-		AmazonAthenaClientBuilder builder = AmazonAthenaClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AWSLambda provideAWSLambdaClient(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AWSLambdaClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
 
 	@Provides
-	public AmazonSimpleEmailService provideAmazonSimpleEmalService() {
-		AmazonSimpleEmailServiceClientBuilder builder = AmazonSimpleEmailServiceClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AWSGlue provideAmazonAWSGlueClient(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AWSGlueClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
 
- 	@Provides
-	public HttpClient provideHttpClient() {
+	@Provides
+	@Singleton
+	public AmazonAthena provideAmazonAmazonAthenaClient(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AmazonAthenaClientBuilder.standard(), credentials, clientConfig, lifecycle);
+	}
+
+	@Provides
+	@Singleton
+	public AmazonSimpleEmailService provideAmazonSimpleEmalService(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AmazonSimpleEmailServiceClientBuilder.standard(), credentials, clientConfig, lifecycle);
+	}
+
+	@Provides
+	@Singleton
+	public HttpClient provideHttpClient(Configuration config, ClientLifecycle lifecycle) {
 		HttpClientBuilder builder = HttpClientBuilder.create();
-		return builder.build();
+		int maxConnections = config.getIntegerProperty(PROPERTY_KEY_AWS_MAX_CONNECTIONS, DEFAULT_AWS_MAX_CONNECTIONS);
+		builder.setMaxConnTotal(maxConnections);
+		// artifacts come from a single host, shared by concurrent downloads, their ranged parts and cache checks.
+		builder.setMaxConnPerRoute(maxConnections);
+		builder.setConnectionTimeToLive(CONNECTION_TTL_MS, TimeUnit.MILLISECONDS);
+		builder.evictIdleConnections(CONNECTION_MAX_IDLE_MS, TimeUnit.MILLISECONDS);
+		return lifecycle.register(builder.build());
 	}
-	
+
 	@Provides
-	public AWSSecretsManager provideAWSSecretsManager() {
-	    AWSSecretsManagerClientBuilder builder = AWSSecretsManagerClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-	    return builder.build();
+	@Singleton
+	public AWSSecretsManager provideAWSSecretsManager(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AWSSecretsManagerClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
-	
+
 	@Provides
-	public AWSKMS provideAWSKMSClient() {
-		AWSKMSAsyncClientBuilder builder = AWSKMSAsyncClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AWSKMS provideAWSKMSClient(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AWSKMSAsyncClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
-	
+
 	@Provides
-	public AmazonElasticLoadBalancing provideAmazonElasticLoadBalancing() {
-		AmazonElasticLoadBalancingClientBuilder builder = AmazonElasticLoadBalancingClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AmazonElasticLoadBalancing provideAmazonElasticLoadBalancing(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AmazonElasticLoadBalancingClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
 
 	@Provides
-	public AmazonEC2 provideAmazonEc2(){
-		AmazonEC2ClientBuilder builder = AmazonEC2ClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AmazonEC2 provideAmazonEc2(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AmazonEC2ClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
 
 	@Provides
-	public AWSElasticBeanstalk provideAmazonElasticBeanstalk(){
-		AWSElasticBeanstalkClientBuilder builder = AWSElasticBeanstalkClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AWSElasticBeanstalk provideAmazonElasticBeanstalk(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AWSElasticBeanstalkClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
-	
+
 	@Provides
-	public AWSSecurityTokenService provideAmazonSts() {
-		AWSSecurityTokenServiceClientBuilder builder = AWSSecurityTokenServiceClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AWSSecurityTokenService provideAmazonSts(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AWSSecurityTokenServiceClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
 
 	@Provides
-	public AmazonRoute53 provideAmazonRoute53() {
-		AmazonRoute53ClientBuilder builder = AmazonRoute53ClientBuilder.standard();
-		builder.withCredentials(new DefaultAWSCredentialsProviderChain());
-		builder.withRegion(Regions.US_EAST_1);
-		return builder.build();
+	@Singleton
+	public AmazonRoute53 provideAmazonRoute53(AWSCredentialsProvider credentials, ClientConfiguration clientConfig,
+			ClientLifecycle lifecycle) {
+		return buildClient(AmazonRoute53ClientBuilder.standard(), credentials, clientConfig, lifecycle);
 	}
-	
+
+	/**
+	 * A single engine is shared so that its template cache is shared.
+	 * 
+	 * @return
+	 */
 	@Provides
+	@Singleton
 	public VelocityEngine velocityEngineProvider() {
 		VelocityEngine engine = new VelocityEngine();
 		engine.setProperty(RuntimeConstants.RESOURCE_LOADER, CLASSPATH_AND_FILE); 
@@ -0,0 +1,31 @@
+package org.sagebionetworks.template;
+
+import org.apache.velocity.VelocityContext;
+
+/**
+ * Renders Velocity templates for all of the builders. Parsed templates are
+ * cached for the duration of the run.
+ *
+ */
+public interface TemplateRenderer {
+
+	/**
+	 * Merge the context with the template at the given path.
+	 * 
+	 * @param templatePath
+	 * @param context
+	 * @return
+	 */
+	String render(String templatePath, VelocityContext context);
+
+	/**
+	 * Merge the context with the template at the given path, validate that the
+	 * result is a JSON object and format it.
+	 * 
+	 * @param templatePath
+	 * @param context
+	 * @return The formatted JSON.
+	 * @throws org.json.JSONException If the result is not a valid JSON object.
+	 */
+	String renderJson(String templatePath, VelocityContext context);
+}
@@ -0,0 +1,192 @@
+package org.sagebionetworks.template;
+
+import static org.sagebionetworks.template.Constants.JSON_INDENT;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.input.CharSequenceReader;
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * TemplateRenderer that keeps each parsed template so it is only loaded once
+ * per run. Each thread merges into its own reusable buffer and the JSON result
+ * is validated and formatted in a single pass with the Jackson streaming API.
+ *
+ */
+@Singleton
+public class TemplateRendererImpl implements TemplateRenderer {
+
+	/**
+	 * Buffers that grew larger than this are not kept between renders.
+	 */
+	static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * Accepts the trailing commas that org.json also accepts.
+	 */
+	private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+			.enable(JsonReadFeature.ALLOW_TRAILING_COMMA).build();
+
+	private final VelocityEngine velocityEngine;
+	private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<>();
+	private final ThreadLocal<StringWriter> buffers = ThreadLocal.withInitial(StringWriter::new);
+
+	@Inject
+	public TemplateRendererImpl(VelocityEngine velocityEngine) {
+		this.velocityEngine = velocityEngine;
+	}
+
+	@Override
+	public String render(String templatePath, VelocityContext context) {
+		StringWriter buffer = merge(templatePath, context);
+		try {
+			return buffer.toString();
+		} finally {
+			release(buffer);
+		}
+	}
+
+	@Override
+	public String renderJson(String templatePath, VelocityContext context) {
+		StringWriter buffer = merge(templatePath, context);
+		try {
+			return formatJson(buffer.getBuffer());
+		} finally {
+			release(buffer);
+		}
+	}
+
+	/**
+	 * Validate and format the given JSON object.
+	 * 
+	 * @param json
+	 * @return
+	 */
+	static String formatJson(CharSequence json) {
+		try {
+			return formatStrictJson(json);
+		} catch (IOException e) {
+			// org.json accepts more than strict JSON and reports the errors.
+			return new JSONObject(json.toString()).toString(JSON_INDENT);
+		}
+	}
+
+	/**
+	 * Copy each token of the given JSON object to a pretty printing generator,
+	 * without building a tree.
+	 * 
+	 * @param json
+	 * @return
+	 * @throws IOException If the input is not a strict JSON object.
+	 */
+	static String formatStrictJson(CharSequence json) throws IOException {
+		StringWriter writer = new StringWriter(json.length() + json.length() / 2);
+		try (JsonParser parser = JSON_FACTORY.createParser(new CharSequenceReader(json));
+				JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+			parser.enable(JsonParser.Feature.STRICT_DUPLICATE_DETECTION);
+			generator.setPrettyPrinter(new IndentPrettyPrinter(JSON_INDENT));
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("A JSON object must begin with '{'");
+			}
+			generator.copyCurrentEvent(parser);
+			while (!parser.getParsingContext().inRoot()) {
+				parser.nextToken();
+				generator.copyCurrentEvent(parser);
+			}
+			if (parser.nextToken() != null) {
+				throw new IOException("Unexpected content after the JSON object");
+			}
+		}
+		return writer.toString();
+	}
+
+	Template getTemplate(String templatePath) {
+		if (templatePath == null) {
+			throw new IllegalArgumentException("Template path cannot be null");
+		}
+		return templates.computeIfAbsent(templatePath, velocityEngine::getTemplate);
+	}
+
+	StringWriter merge(String templatePath, VelocityContext context) {
+		Template template = getTemplate(templatePath);
+		StringWriter buffer = buffers.get();
+		buffer.getBuffer().setLength(0);
+		template.merge(context, buffer);
+		return buffer;
+	}
+
+	void release(StringWriter buffer) {
+		if (buffer.getBuffer().capacity() > MAX_RETAINED_BUFFER_SIZE) {
+			buffers.remove();
+		} else {
+			buffer.getBuffer().setLength(0);
+		}
+	}
+
+	/**
+	 * Pretty printer matching the layout of org.json: each value on its own line,
+	 * "key": value pairs and empty containers written as {} and [].
+	 */
+	static class IndentPrettyPrinter extends DefaultPrettyPrinter {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int indent;
+
+		IndentPrettyPrinter(int indent) {
+			this.indent = indent;
+			DefaultIndenter indenter = new DefaultIndenter(new String(new char[indent]).replace('\0', ' '), "\n");
+			indentObjectsWith(indenter);
+			indentArraysWith(indenter);
+		}
+
+		@Override
+		public DefaultPrettyPrinter createInstance() {
+			return new IndentPrettyPrinter(indent);
+		}
+
+		@Override
+		public void writeObjectFieldValueSeparator(JsonGenerator g) throws IOException {
+			g.writeRaw(": ");
+		}
+
+		@Override
+		public void writeEndObject(JsonGenerator g, int nrOfEntries) throws IOException {
+			if (!_objectIndenter.isInline()) {
+				--_nesting;
+			}
+			if (nrOfEntries > 0) {
+				_objectIndenter.writeIndentation(g, _nesting);
+			}
+			g.writeRaw('}');
+		}
+
+		@Override
+		public void writeEndArray(JsonGenerator g, int nrOfValues) throws IOException {
+			if (!_arrayIndenter.isInline()) {
+				--_nesting;
+			}
+			if (nrOfValues > 0) {
+				_arrayIndenter.writeIndentation(g, _nesting);
+			}
+			g.writeRaw(']');
+		}
+	}
+
+}
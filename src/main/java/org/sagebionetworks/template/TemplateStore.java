@@ -0,0 +1,20 @@
+package org.sagebionetworks.template;
+
+/**
+ * Content addressed store for the templates passed to CloudFormation. A
+ * template is only uploaded when a template with the same content has not
+ * already been stored.
+ *
+ */
+public interface TemplateStore {
+
+	/**
+	 * Store the given template body if needed.
+	 * 
+	 * @param templateBody
+	 * @return The URL of the stored template that can be passed to
+	 *         CloudFormation.
+	 */
+	String saveTemplate(String templateBody);
+
+}
@@ -0,0 +1,145 @@
+package org.sagebionetworks.template;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.template.config.Configuration;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Rule;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.lifecycle.LifecycleFilter;
+import com.amazonaws.services.s3.model.lifecycle.LifecyclePrefixPredicate;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * TemplateStore that keys each template by the SHA-256 of its body in the
+ * configuration bucket. Templates are never deleted after a deploy, instead
+ * an expiration rule on the templates prefix removes old entries. Since the
+ * expiration counts from the creation of the object, an existing template that
+ * is close to expiring is written again so it outlives the deploy using it.
+ *
+ */
+@Singleton
+public class TemplateStoreImpl implements TemplateStore {
+
+	public static final String S3_URL_TEMPLATE = "https://s3.amazonaws.com/%s/%s";
+	public static final String TEMPLATE_PREFIX = "templates/content/";
+	public static final String RULE_ID_TEMPLATE_EXPIRATION = "templateContentExpiration";
+	public static final int TEMPLATE_EXPIRATION_DAYS = 30;
+	/**
+	 * An existing template older than this is written again before it is used.
+	 * The margin to the expiration is far longer than any deploy.
+	 */
+	public static final int TEMPLATE_REFRESH_DAYS = TEMPLATE_EXPIRATION_DAYS - 7;
+
+	private final AmazonS3 s3Client;
+	private final Configuration configuration;
+	private final ThreadProvider threadProvider;
+	private final Logger logger;
+	/**
+	 * The keys known to exist in this run.
+	 */
+	private final Set<String> storedKeys = ConcurrentHashMap.newKeySet();
+	private final Set<String> configuredBuckets = ConcurrentHashMap.newKeySet();
+
+	@Inject
+	public TemplateStoreImpl(AmazonS3 s3Client, Configuration configuration, ThreadProvider threadProvider,
+			LoggerFactory loggerFactory) {
+		this.s3Client = s3Client;
+		this.configuration = configuration;
+		this.threadProvider = threadProvider;
+		this.logger = loggerFactory.getLogger(TemplateStoreImpl.class);
+	}
+
+	@Override
+	public String saveTemplate(String templateBody) {
+		if (templateBody == null) {
+			throw new IllegalArgumentException("Template body cannot be null");
+		}
+		String bucket = configuration.getConfigurationBucket();
+		if (configuredBuckets.add(bucket)) {
+			configureExpiration(bucket);
+		}
+		byte[] bytes = templateBody.getBytes(StandardCharsets.UTF_8);
+		String key = TEMPLATE_PREFIX + DigestUtils.sha256Hex(bytes) + ".json";
+		String url = String.format(S3_URL_TEMPLATE, bucket, key);
+		if (storedKeys.contains(bucket + "/" + key)) {
+			return url;
+		}
+		Date lastModified = getLastModified(bucket, key);
+		if (lastModified == null) {
+			putTemplate(bucket, key, bytes);
+		} else if (threadProvider.currentTimeMillis() - lastModified.getTime() > TimeUnit.DAYS
+				.toMillis(TEMPLATE_REFRESH_DAYS)) {
+			logger.info("Template: " + key + " is close to expiring and will be written again");
+			putTemplate(bucket, key, bytes);
+		} else {
+			logger.info("Template: " + key + " already exists");
+		}
+		storedKeys.add(bucket + "/" + key);
+		return url;
+	}
+
+	/**
+	 * @param bucket
+	 * @param key
+	 * @return The last modified date of the given object or null if it does not
+	 *         exist.
+	 */
+	Date getLastModified(String bucket, String key) {
+		try {
+			return s3Client.getObjectMetadata(bucket, key).getLastModified();
+		} catch (AmazonS3Exception e) {
+			if (e.getStatusCode() == 404) {
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	void putTemplate(String bucket, String key, byte[] bytes) {
+		ObjectMetadata metadata = new ObjectMetadata();
+		metadata.setContentLength(bytes.length);
+		s3Client.putObject(new PutObjectRequest(bucket, key, new ByteArrayInputStream(bytes), metadata));
+	}
+
+	/**
+	 * Add the expiration rule for the templates prefix to the given bucket if it
+	 * is missing. A failure to do so is logged and does not fail the deploy.
+	 * 
+	 * @param bucket
+	 */
+	void configureExpiration(String bucket) {
+		try {
+			BucketLifecycleConfiguration config = s3Client.getBucketLifecycleConfiguration(bucket);
+			if (config == null) {
+				config = new BucketLifecycleConfiguration();
+			}
+			List<Rule> rules = config.getRules() == null ? new ArrayList<>() : new ArrayList<>(config.getRules());
+			if (rules.stream().anyMatch(r -> RULE_ID_TEMPLATE_EXPIRATION.equals(r.getId()))) {
+				return;
+			}
+			rules.add(new Rule().withId(RULE_ID_TEMPLATE_EXPIRATION)
+					.withFilter(new LifecycleFilter(new LifecyclePrefixPredicate(TEMPLATE_PREFIX)))
+					.withExpirationInDays(TEMPLATE_EXPIRATION_DAYS).withStatus(BucketLifecycleConfiguration.ENABLED));
+			logger.info("Adding the " + RULE_ID_TEMPLATE_EXPIRATION + " rule to bucket: " + bucket);
+			s3Client.setBucketLifecycleConfiguration(bucket, config.withRules(rules));
+		} catch (AmazonServiceException e) {
+			logger.warn("Could not configure the expiration of templates in bucket: " + bucket + ": " + e.getMessage());
+		}
+	}
+}
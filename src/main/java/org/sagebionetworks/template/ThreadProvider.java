@@ -1,5 +1,8 @@
 package org.sagebionetworks.template;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Abstraction for static thread operations.
  *
@@ -22,4 +25,21 @@ public interface ThreadProvider {
 	 */
 	public long currentTimeMillis();
 
+	/**
+	 * Create a new thread pool with a fixed number of threads. The caller is
+	 * responsible for shutting down the returned executor.
+	 * 
+	 * @param numberOfThreads
+	 * @return
+	 */
+	public ExecutorService newFixedThreadPool(int numberOfThreads);
+
+	/**
+	 * Create a new scheduler backed by a single daemon thread, so an idle
+	 * scheduler will not keep the JVM alive.
+	 * 
+	 * @return
+	 */
+	public ScheduledExecutorService newSingleThreadScheduledExecutor();
+
 }
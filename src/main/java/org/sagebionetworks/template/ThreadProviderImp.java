@@ -1,5 +1,9 @@
 package org.sagebionetworks.template;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Simple implementation of a thread provider.
  *
@@ -16,4 +20,18 @@ public class ThreadProviderImp implements ThreadProvider {
 		return System.currentTimeMillis();
 	}
 
+	@Override
+	public ExecutorService newFixedThreadPool(int numberOfThreads) {
+		return Executors.newFixedThreadPool(numberOfThreads);
+	}
+
+	@Override
+	public ScheduledExecutorService newSingleThreadScheduledExecutor() {
+		return Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "stack-builder-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
 }
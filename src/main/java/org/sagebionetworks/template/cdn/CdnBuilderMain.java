@@ -2,6 +2,7 @@ package org.sagebionetworks.template.cdn;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 public class CdnBuilderMain {
@@ -9,8 +10,11 @@ public class CdnBuilderMain {
 	public static void main(String[] args) {
 
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		CdnBuilder builder = injector.getInstance(CdnBuilder.class);
-		builder.buildCdn(CdnBuilder.Type.PORTAL);
-
+		try {
+			CdnBuilder builder = injector.getInstance(CdnBuilder.class);
+			builder.buildCdn(CdnBuilder.Type.PORTAL);
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 }
@@ -34,6 +34,16 @@ public interface Configuration {
 	 */
 	int getIntegerProperty(String key);
 
+	/**
+	 * Get a value as an integer, falling back to the provided default when the
+	 * property is not defined.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	int getIntegerProperty(String key, int defaultValue);
+
 	/**
 	 * Get a value as a boolean.
 	 * 
@@ -42,6 +52,16 @@ public interface Configuration {
 	 */
 	boolean getBooleanProperty(String key);
 
+	/**
+	 * Get a value as a boolean, falling back to the provided default when the
+	 * property is not defined.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	boolean getBooleanProperty(String key, boolean defaultValue);
+
 	/**
 	 * Get the S3 bucket used for configuration.
 	 * 
@@ -77,11 +77,29 @@ public class ConfigurationImpl implements Configuration {
 		return Integer.parseInt(getProperty(key));
 	}
 
+	@Override
+	public int getIntegerProperty(String key, int defaultValue) {
+		try {
+			return getIntegerProperty(key);
+		} catch (ConfigurationPropertyNotFound e) {
+			return defaultValue;
+		}
+	}
+
 	@Override
 	public boolean getBooleanProperty(String key) {
 		return Boolean.parseBoolean(getProperty(key));
 	}
 
+	@Override
+	public boolean getBooleanProperty(String key, boolean defaultValue) {
+		try {
+			return getBooleanProperty(key);
+		} catch (ConfigurationPropertyNotFound e) {
+			return defaultValue;
+		}
+	}
+
 	@Override
 	public String getConfigurationBucket() {
 		String stack = getProperty(PROPERTY_KEY_STACK);
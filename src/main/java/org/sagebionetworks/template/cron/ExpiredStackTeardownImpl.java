@@ -1,30 +1,71 @@
 package org.sagebionetworks.template.cron;
 
+import static org.sagebionetworks.template.Constants.DEFAULT_TEARDOWN_DELETES_PER_SECOND;
+import static org.sagebionetworks.template.Constants.DEFAULT_TEARDOWN_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_TEARDOWN_DELETES_PER_SECOND;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_TEARDOWN_MAX_CONCURRENCY;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Logger;
 import org.sagebionetworks.template.CloudFormationClient;
+import org.sagebionetworks.template.ConcurrentTasks;
 import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.StackWaiter;
+import org.sagebionetworks.template.ThreadProvider;
+import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.config.TimeToLive;
 
+import com.amazonaws.services.cloudformation.model.ResourceStatus;
 import com.amazonaws.services.cloudformation.model.Stack;
 import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.StackSummary;
 import com.google.inject.Inject;
 
+/**
+ * Deletes the expired stacks concurrently. The deletes are started at a
+ * limited rate, with a bounded number of deletions in flight, and each
+ * deletion is tracked until it ends through the shared {@link StackWaiter}. A
+ * stack that ends in DELETE_FAILED is deleted again, retaining the resources
+ * that could not be deleted.
+ *
+ */
 public class ExpiredStackTeardownImpl implements ExpiredStackTeardown {
 
+	/**
+	 * A stack in one of these states can be deleted.
+	 */
+	public static final Set<StackStatus> DELETABLE_STATUSES = EnumSet.of(StackStatus.CREATE_COMPLETE,
+			StackStatus.UPDATE_COMPLETE, StackStatus.UPDATE_ROLLBACK_COMPLETE, StackStatus.DELETE_FAILED);
+
 	private final CloudFormationClient cloudFormationClient;
+	private final StackWaiter stackWaiter;
 	private final TimeToLive timeToLive;
+	private final Configuration config;
+	private final ThreadProvider threadProvider;
 	private final Logger logger;
 
 	@Inject
-	public ExpiredStackTeardownImpl(CloudFormationClient cloudFormationClient, TimeToLive timeToLive,
-			LoggerFactory loggerFactory) {
+	public ExpiredStackTeardownImpl(CloudFormationClient cloudFormationClient, StackWaiter stackWaiter,
+			TimeToLive timeToLive, Configuration config, ThreadProvider threadProvider, LoggerFactory loggerFactory) {
 		super();
 		this.cloudFormationClient = cloudFormationClient;
+		this.stackWaiter = stackWaiter;
 		this.timeToLive = timeToLive;
+		this.config = config;
+		this.threadProvider = threadProvider;
 		this.logger = loggerFactory.getLogger(getClass());
 	}
 
@@ -32,28 +73,211 @@ public class ExpiredStackTeardownImpl implements ExpiredStackTeardown {
 	public void findAndDeleteExpiredStacks() {
 
 		try {
-			Set<StackStatus> deletableStatus = Set.of(StackStatus.CREATE_COMPLETE, StackStatus.UPDATE_COMPLETE,
-					StackStatus.UPDATE_ROLLBACK_COMPLETE, StackStatus.DELETE_FAILED);
-
-			// find any stack that is expired and can be deleted.
-			List<Stack> toDelete = cloudFormationClient.streamOverAllStacks()
-					.filter(s -> deletableStatus.contains(StackStatus.valueOf(s.getStackStatus())))
+			// only the stacks in a deletable status are described to read their time to live.
+			List<String> candidates = cloudFormationClient.streamOverStackSummaries(DELETABLE_STATUSES)
+					.map(StackSummary::getStackName).collect(Collectors.toList());
+			List<Stack> toDelete = describeStacks(candidates).stream()
 					.filter(s -> timeToLive.isTimeToLiveExpired(s.getParameters()))
 					.filter(s -> s.getEnableTerminationProtection() == null
 							|| Boolean.FALSE.equals(s.getEnableTerminationProtection()))
 					.collect(Collectors.toList());
+			if (toDelete.isEmpty()) {
+				return;
+			}
+			long start = threadProvider.currentTimeMillis();
+			Teardown teardown = new Teardown(toDelete);
+			Map<String, List<String>> firstAttempt = new LinkedHashMap<>();
+			toDelete.forEach(s -> firstAttempt.put(s.getStackName(), Collections.emptyList()));
+			Map<String, Deletion> deletions = teardown.deleteAll(firstAttempt);
 
-			toDelete.forEach(s -> {
-				logger.info(String.format("Deleting stack: '%s'...", s.getStackName()));
+			// a stack that failed to delete is deleted again without the resources that could not be deleted.
+			Map<String, List<String>> retained = new LinkedHashMap<>();
+			deletions.forEach((stackName, deletion) -> {
+				if (deletion == Deletion.FAILED) {
+					List<String> retain = findDeleteFailedResources(stackName);
+					if (!retain.isEmpty()) {
+						retained.put(stackName, retain);
+					}
+				}
+			});
+			if (!retained.isEmpty()) {
+				deletions.putAll(teardown.deleteAll(retained));
+			}
+
+			List<String> deleted = deletions.entrySet().stream().filter(e -> e.getValue() == Deletion.DELETED)
+					.map(Map.Entry::getKey).collect(Collectors.toList());
+			List<String> failed = deletions.entrySet().stream().filter(e -> e.getValue() != Deletion.DELETED)
+					.map(Map.Entry::getKey).collect(Collectors.toList());
+			retained.keySet().retainAll(deleted);
+			logger.info(String.format("Deleted %d of %d expired stacks in %d ms. Retained resources: %s. Failed: %s",
+					deleted.size(), deletions.size(), threadProvider.currentTimeMillis() - start, retained, failed));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error("Failed: ", e);
+		} catch (Exception e) {
+			logger.error("Failed: ", e);
+		}
+	}
 
+	/**
+	 * Describe the given stacks in parallel.
+	 *
+	 * @param stackNames
+	 * @return The stacks that still exist, in the given order. A stack that
+	 *         cannot be described is logged and left out.
+	 */
+	List<Stack> describeStacks(List<String> stackNames) {
+		Map<String, Callable<Optional<Stack>>> tasks = new LinkedHashMap<>();
+		for (String stackName : stackNames) {
+			tasks.put(stackName, () -> {
 				try {
-					cloudFormationClient.deleteStack(s.getStackName());
+					return cloudFormationClient.describeStack(stackName);
 				} catch (Exception e) {
-					logger.error(String.format("Failed to delete stack: '%s'", s.getStackName()), e);
+					// the other stacks can still be deleted.
+					logger.error(String.format("Failed to describe stack: '%s'", stackName), e);
+					return Optional.empty();
 				}
 			});
+		}
+		return ConcurrentTasks.runAll(threadProvider, getMaxConcurrency(), tasks, "describe stacks").values().stream()
+				.flatMap(Optional::stream).collect(Collectors.toList());
+	}
+
+	int getMaxConcurrency() {
+		return Math.max(1, config.getIntegerProperty(PROPERTY_KEY_TEARDOWN_MAX_CONCURRENCY, DEFAULT_TEARDOWN_MAX_CONCURRENCY));
+	}
+
+	/**
+	 * @param stackName
+	 * @return The logical ids of the resources of the stack that failed to delete.
+	 */
+	List<String> findDeleteFailedResources(String stackName) {
+		try {
+			return cloudFormationClient.listStackResources(stackName).stream()
+					.filter(r -> ResourceStatus.DELETE_FAILED.toString().equals(r.getResourceStatus()))
+					.map(r -> r.getLogicalResourceId()).collect(Collectors.toList());
 		} catch (Exception e) {
-			logger.error("Failed: ", e);
+			logger.error(String.format("Failed to list the resources of stack: '%s'", stackName), e);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * The outcome of the delete of a single stack.
+	 */
+	enum Deletion {
+		/**
+		 * The stack no longer exists.
+		 */
+		DELETED,
+		/**
+		 * The delete was started but the stack was not deleted.
+		 */
+		FAILED,
+		/**
+		 * The delete could not be started.
+		 */
+		NOT_STARTED
+	}
+
+	/**
+	 * The state of a single run, shared by all of its deletes.
+	 */
+	private class Teardown {
+
+		private final Semaphore inFlight;
+		private final long intervalMS;
+		private long nextDeleteMS = 0;
+		/**
+		 * The last known state of each stack, so the wait for a delete can tell the
+		 * status from before the delete apart from its outcome.
+		 */
+		private final Map<String, Stack> lastKnown = new ConcurrentHashMap<>();
+
+		Teardown(List<Stack> stacks) {
+			stacks.forEach(s -> lastKnown.put(s.getStackName(), s));
+			this.inFlight = new Semaphore(getMaxConcurrency());
+			this.intervalMS = 1000 / Math.max(1,
+					config.getIntegerProperty(PROPERTY_KEY_TEARDOWN_DELETES_PER_SECOND, DEFAULT_TEARDOWN_DELETES_PER_SECOND));
+		}
+
+		/**
+		 * Delete each of the given stacks and wait for all of them to complete.
+		 *
+		 * @param stacks The name of each stack mapped to the resources to retain.
+		 * @return The outcome of each delete.
+		 * @throws InterruptedException
+		 */
+		Map<String, Deletion> deleteAll(Map<String, List<String>> stacks) throws InterruptedException {
+			Map<String, CompletableFuture<Deletion>> futures = new LinkedHashMap<>();
+			for (Map.Entry<String, List<String>> entry : stacks.entrySet()) {
+				futures.put(entry.getKey(), startDelete(entry.getKey(), entry.getValue()));
+			}
+			Map<String, Deletion> results = new LinkedHashMap<>();
+			for (Map.Entry<String, CompletableFuture<Deletion>> entry : futures.entrySet()) {
+				try {
+					results.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException e) {
+					// not expected as the outcome is always handled.
+					logger.error(String.format("Failed to delete stack: '%s'", entry.getKey()), e.getCause());
+					results.put(entry.getKey(), Deletion.FAILED);
+				}
+			}
+			return results;
+		}
+
+		/**
+		 * Start the delete of a stack once a slot is available.
+		 *
+		 * @return A future completed with the outcome once the delete is complete.
+		 * @throws InterruptedException
+		 */
+		CompletableFuture<Deletion> startDelete(String stackName, List<String> retain) throws InterruptedException {
+			inFlight.acquire();
+			CompletableFuture<Deletion> deletion;
+			try {
+				throttle();
+				if (retain.isEmpty()) {
+					logger.info(String.format("Deleting stack: '%s'...", stackName));
+					cloudFormationClient.deleteStack(stackName);
+				} else {
+					logger.info(String.format("Deleting stack: '%s' retaining resources: %s...", stackName, retain));
+					cloudFormationClient.deleteStack(stackName, retain);
+				}
+				deletion = stackWaiter.waitForDeletion(lastKnown.get(stackName))
+						.handle((stack, error) -> toDeletion(stackName, stack, error));
+			} catch (Exception e) {
+				logger.error(String.format("Failed to delete stack: '%s'", stackName), e);
+				deletion = CompletableFuture.completedFuture(Deletion.NOT_STARTED);
+			}
+			deletion.whenComplete((result, error) -> inFlight.release());
+			return deletion;
+		}
+
+		/**
+		 * Wait until the next delete is allowed by the rate limit. Deletes are only
+		 * started from the calling thread.
+		 */
+		void throttle() throws InterruptedException {
+			long now = threadProvider.currentTimeMillis();
+			if (now < nextDeleteMS) {
+				threadProvider.sleep(nextDeleteMS - now);
+				now = nextDeleteMS;
+			}
+			nextDeleteMS = now + intervalMS;
+		}
+
+		Deletion toDeletion(String stackName, Optional<Stack> stack, Throwable error) {
+			if (error != null) {
+				logger.error(String.format("Failed to delete stack: '%s'", stackName), error);
+				return Deletion.FAILED;
+			}
+			if (stack.isEmpty() || StackStatus.DELETE_COMPLETE.toString().equals(stack.get().getStackStatus())) {
+				return Deletion.DELETED;
+			}
+			lastKnown.put(stackName, stack.get());
+			logger.error(String.format("Failed to delete stack: '%s' status: %s", stackName, stack.get().getStackStatus()));
+			return Deletion.FAILED;
 		}
 	}
 
@@ -1,5 +1,6 @@
 package org.sagebionetworks.template.cron;
 
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 import com.google.inject.Guice;
@@ -9,8 +10,12 @@ public class TimeToLiveCronJob {
 
 	public static void main(String[] args) {
         Injector injector = Guice.createInjector(new TemplateGuiceModule());
-        ExpiredStackTeardown runner = injector.getInstance(ExpiredStackTeardown.class);
-        runner.findAndDeleteExpiredStacks();
+        try {
+            ExpiredStackTeardown runner = injector.getInstance(ExpiredStackTeardown.class);
+            runner.findAndDeleteExpiredStacks();
+        } finally {
+            injector.getInstance(ClientLifecycle.class).shutdown();
+        }
 	}
 
 }
@@ -4,23 +4,20 @@ import com.amazonaws.internal.ReleasableInputStream;
 import com.amazonaws.services.s3.AmazonS3;
 import com.google.inject.Inject;
 import org.apache.logging.log4j.Logger;
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
-import org.json.JSONObject;
 import org.sagebionetworks.template.CloudFormationClient;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
+import org.sagebionetworks.template.TemplateRenderer;
 import org.sagebionetworks.template.TemplateUtils;
 import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.repo.VelocityExceptionThrower;
-import org.sagebionetworks.template.utils.ArtifactDownload;
+import org.sagebionetworks.template.utils.ArtifactCache;
 import org.sagebionetworks.util.ValidateArgument;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.nio.file.Files;
 import java.util.List;
 import java.util.StringJoiner;
@@ -32,7 +29,6 @@ import static org.sagebionetworks.template.Constants.CAPABILITY_NAMED_IAM;
 import static org.sagebionetworks.template.Constants.ETL_DESCRIPTORS;
 import static org.sagebionetworks.template.Constants.EXCEPTION_THROWER;
 import static org.sagebionetworks.template.Constants.GLUE_DATABASE_NAME;
-import static org.sagebionetworks.template.Constants.JSON_INDENT;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DATAWAREHOUSE_GLUE_DATABASE_NAME;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_STACK;
 import static org.sagebionetworks.template.Constants.STACK;
@@ -48,25 +44,25 @@ public class DataWarehouseBuilderImpl implements DataWarehouseBuilder {
     private static final String GS_COMMON_SCRIPT = "s3://aws-glue-studio-transforms-510798373988-prod-us-east-1/gs_common.py";
 	
     private CloudFormationClient cloudFormationClient;
-    private VelocityEngine velocityEngine;
+    private TemplateRenderer templateRenderer;
     private Configuration config;
     private Logger logger;
     private StackTagsProvider tagsProvider;
     private DataWarehouseConfig dataWarehouseConfig;
-    private ArtifactDownload downloader;
+    private ArtifactCache artifactCache;
     private AmazonS3 s3Client;
 
     @Inject
-    public DataWarehouseBuilderImpl(CloudFormationClient cloudFormationClient, VelocityEngine velocityEngine,
+    public DataWarehouseBuilderImpl(CloudFormationClient cloudFormationClient, TemplateRenderer templateRenderer,
                                     Configuration config, LoggerFactory loggerFactory,
-                                    StackTagsProvider tagsProvider, DataWarehouseConfig dataWarehouseConfig, ArtifactDownload downloader, AmazonS3 s3Client) {
+                                    StackTagsProvider tagsProvider, DataWarehouseConfig dataWarehouseConfig, ArtifactCache artifactCache, AmazonS3 s3Client) {
         this.cloudFormationClient = cloudFormationClient;
-        this.velocityEngine = velocityEngine;
+        this.templateRenderer = templateRenderer;
         this.config = config;
         this.logger = loggerFactory.getLogger(DataWarehouseBuilderImpl.class);
         this.tagsProvider = tagsProvider;
         this.dataWarehouseConfig = dataWarehouseConfig;
-        this.downloader = downloader;
+        this.artifactCache = artifactCache;
         this.s3Client = s3Client;
     }
 
@@ -106,17 +102,8 @@ public class DataWarehouseBuilderImpl implements DataWarehouseBuilder {
 
         String stackName = new StringJoiner("-").add(stack).add(databaseName).add("etl-jobs").toString();
 
-        // Merge the context with the template
-        Template template = this.velocityEngine.getTemplate(TEMPLATE_DATAWAREHOUSE);
-        
-        StringWriter stringWriter = new StringWriter();
-        template.merge(context, stringWriter);
-        // Parse the resulting template
-        String resultJSON = stringWriter.toString();
-        JSONObject templateJson = new JSONObject(resultJSON);
-
-        // Format the JSON
-        resultJSON = templateJson.toString(JSON_INDENT);
+        // Merge the context with the template and format the JSON
+        String resultJSON = templateRenderer.renderJson(TEMPLATE_DATAWAREHOUSE, context);
         this.logger.info(resultJSON);
         // create or update the template
         this.cloudFormationClient.createOrUpdateStack(new CreateOrUpdateStackRequest().withStackName(stackName)
@@ -133,7 +120,7 @@ public class DataWarehouseBuilderImpl implements DataWarehouseBuilder {
         
         logger.info("Github download url: " + githubUrl);
         
-        File zipFile = downloader.downloadFile(githubUrl);
+        File zipFile = artifactCache.get(githubUrl);
                 
         try (ZipInputStream zipInputStream = new ZipInputStream(Files.newInputStream(zipFile.toPath()))) {
 			ZipEntry entry = null;
@@ -148,8 +135,6 @@ public class DataWarehouseBuilderImpl implements DataWarehouseBuilder {
 			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
-		} finally {
-			zipFile.delete();
 		}
         
         return s3ScriptsPath;
@@ -2,15 +2,19 @@ package org.sagebionetworks.template.datawarehouse;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 public class DataWarehouseBuilderMain {
 	
     public static void main(String[] args) throws InterruptedException {
         Injector injector = Guice.createInjector(new TemplateGuiceModule());
-    
-        DataWarehouseBuilder builder = injector.getInstance(DataWarehouseBuilder.class);
+        try {
+            DataWarehouseBuilder builder = injector.getInstance(DataWarehouseBuilder.class);
         
-        builder.buildAndDeploy();
+            builder.buildAndDeploy();
+        } finally {
+            injector.getInstance(ClientLifecycle.class).shutdown();
+        }
     }
 }
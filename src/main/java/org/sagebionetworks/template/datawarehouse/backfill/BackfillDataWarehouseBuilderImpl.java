@@ -26,23 +26,20 @@ import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import org.apache.logging.log4j.Logger;
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
-import org.json.JSONObject;
 import org.sagebionetworks.template.CloudFormationClient;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
+import org.sagebionetworks.template.TemplateRenderer;
 import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.datawarehouse.DataWarehouseBuilderImpl;
 import org.sagebionetworks.template.repo.VelocityExceptionThrower;
-import org.sagebionetworks.template.utils.ArtifactDownload;
+import org.sagebionetworks.template.utils.ArtifactCache;
 import org.sagebionetworks.util.ValidateArgument;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
@@ -55,7 +52,6 @@ import static java.util.Map.entry;
 import static org.sagebionetworks.template.Constants.CAPABILITY_NAMED_IAM;
 import static org.sagebionetworks.template.Constants.EXCEPTION_THROWER;
 import static org.sagebionetworks.template.Constants.GLUE_DATABASE_NAME;
-import static org.sagebionetworks.template.Constants.JSON_INDENT;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DATAWAREHOUSE_GLUE_DATABASE_NAME;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_STACK;
 import static org.sagebionetworks.template.Constants.STACK;
@@ -83,10 +79,10 @@ public class BackfillDataWarehouseBuilderImpl implements BackfillDataWarehouseBu
     private static final Map<String, String> tableToMidMap = ImmutableMap.ofEntries(
             entry(BULK_FILE_DOWNLOAD_FOLDER_NAME, BULK_FILE_DOWNLOAD_TABLE_NAME),
             entry(FILE_DOWNLOAD_FOLDER_NAME, FILE_DOWNLOAD_TABLE_NAME));
-    private ArtifactDownload downloader;
+    private ArtifactCache artifactCache;
     private Configuration config;
     private Logger logger;
-    private VelocityEngine velocityEngine;
+    private TemplateRenderer templateRenderer;
     private AmazonS3 s3Client;
     private CloudFormationClient cloudFormationClient;
     private StackTagsProvider tagsProvider;
@@ -94,16 +90,16 @@ public class BackfillDataWarehouseBuilderImpl implements BackfillDataWarehouseBu
     private AmazonAthena athena;
 
     @Inject
-    public BackfillDataWarehouseBuilderImpl(CloudFormationClient cloudFormationClient, VelocityEngine velocityEngine,
+    public BackfillDataWarehouseBuilderImpl(CloudFormationClient cloudFormationClient, TemplateRenderer templateRenderer,
                                             Configuration config, LoggerFactory loggerFactory,
-                                            StackTagsProvider tagsProvider, ArtifactDownload downloader,
+                                            StackTagsProvider tagsProvider, ArtifactCache artifactCache,
                                             AmazonS3 s3Client, AWSGlue awsGlue, AmazonAthena athena) {
         this.cloudFormationClient = cloudFormationClient;
-        this.velocityEngine = velocityEngine;
+        this.templateRenderer = templateRenderer;
         this.config = config;
         this.logger = loggerFactory.getLogger(DataWarehouseBuilderImpl.class);
         this.tagsProvider = tagsProvider;
-        this.downloader = downloader;
+        this.artifactCache = artifactCache;
         this.s3Client = s3Client;
         this.awsGlue = awsGlue;
         this.athena = athena;
@@ -136,16 +132,7 @@ public class BackfillDataWarehouseBuilderImpl implements BackfillDataWarehouseBu
         extraScripts.add(GS_EXPLODE_SCRIPT);
         extraScripts.add(GS_COMMON_SCRIPT);
         context.put("extraScripts", String.join(",", extraScripts));
-        Template template = this.velocityEngine.getTemplate(TEMPLATE_ETL_GLUE_JOB_RESOURCES);
-
-        StringWriter stringWriter = new StringWriter();
-        template.merge(context, stringWriter);
-        // Parse the resulting template
-        String resultJSON = stringWriter.toString();
-        JSONObject templateJson = new JSONObject(resultJSON);
-
-        // Format the JSON
-        resultJSON = templateJson.toString(JSON_INDENT);
+        String resultJSON = templateRenderer.renderJson(TEMPLATE_ETL_GLUE_JOB_RESOURCES, context);
         this.logger.info(resultJSON);
         // create or update the stack
         String stackName = new StringJoiner("-").add(stack).add(databaseName).add("backfill-etl-jobs").toString();
@@ -186,7 +173,7 @@ public class BackfillDataWarehouseBuilderImpl implements BackfillDataWarehouseBu
         String scriptPath = String.format(SCRIPT_PATH_TPL, githubRepo, version);
         String s3ScriptsPath = S3_BACKFILL_KEY_PATH_TPL;
 
-        File zipFile = downloader.downloadFile(githubUrl);
+        File zipFile = artifactCache.get(githubUrl);
 
         try (ZipInputStream zipInputStream = new ZipInputStream(Files.newInputStream(zipFile.toPath()))) {
             ZipEntry entry = null;
@@ -201,8 +188,6 @@ public class BackfillDataWarehouseBuilderImpl implements BackfillDataWarehouseBu
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
-        } finally {
-            zipFile.delete();
         }
         return s3ScriptsPath;
     }
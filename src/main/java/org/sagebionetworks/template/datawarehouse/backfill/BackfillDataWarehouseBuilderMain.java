@@ -2,14 +2,18 @@ package org.sagebionetworks.template.datawarehouse.backfill;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 public class BackfillDataWarehouseBuilderMain {
     public static void main(String[] args) throws InterruptedException {
         Injector injector = Guice.createInjector(new TemplateGuiceModule());
+        try {
+            BackfillDataWarehouseBuilderImpl builder = injector.getInstance(BackfillDataWarehouseBuilderImpl.class);
 
-        BackfillDataWarehouseBuilderImpl builder = injector.getInstance(BackfillDataWarehouseBuilderImpl.class);
-
-        builder.buildAndDeploy();
+            builder.buildAndDeploy();
+        } finally {
+            injector.getInstance(ClientLifecycle.class).shutdown();
+        }
     }
 }
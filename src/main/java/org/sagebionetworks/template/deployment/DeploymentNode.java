@@ -0,0 +1,107 @@
+package org.sagebionetworks.template.deployment;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A node in the stack deployment graph. A node will only be deployed once all
+ * of the nodes it depends on have been deployed successfully.
+ *
+ */
+public class DeploymentNode {
+
+	private String name;
+	private Set<String> dependencies = new LinkedHashSet<>();
+	private DeploymentStep step;
+
+	/**
+	 * The unique name of this node.
+	 *
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The unique name of this node.
+	 *
+	 * @param name
+	 * @return
+	 */
+	public DeploymentNode withName(String name) {
+		this.name = name;
+		return this;
+	}
+
+	/**
+	 * The names of the nodes that must complete before this node can start.
+	 *
+	 * @return
+	 */
+	public Set<String> getDependencies() {
+		return Collections.unmodifiableSet(dependencies);
+	}
+
+	/**
+	 * The names of the nodes that must complete before this node can start.
+	 *
+	 * @param dependencies
+	 * @return
+	 */
+	public DeploymentNode withDependsOn(String... dependencies) {
+		for (String dependency : dependencies) {
+			this.dependencies.add(dependency);
+		}
+		return this;
+	}
+
+	/**
+	 * The step that deploys this node.
+	 *
+	 * @return
+	 */
+	public DeploymentStep getStep() {
+		return step;
+	}
+
+	/**
+	 * The step that deploys this node.
+	 *
+	 * @param step
+	 * @return
+	 */
+	public DeploymentNode withStep(DeploymentStep step) {
+		this.step = step;
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(dependencies, name, step);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		DeploymentNode other = (DeploymentNode) obj;
+		return Objects.equals(dependencies, other.dependencies) && Objects.equals(name, other.name)
+				&& Objects.equals(step, other.step);
+	}
+
+	@Override
+	public String toString() {
+		return "DeploymentNode [name=" + name + ", dependencies=" + dependencies + "]";
+	}
+
+}
@@ -0,0 +1,39 @@
+package org.sagebionetworks.template.deployment;
+
+import java.util.List;
+
+/**
+ * Deploys a graph of stacks, running every node whose dependencies are
+ * satisfied concurrently on a bounded pool of threads.
+ *
+ */
+public interface DeploymentOrchestrator {
+
+	/**
+	 * Deploy all of the provided nodes. Nodes that depend on a failed node are
+	 * skipped, while independent nodes are allowed to run to completion.
+	 *
+	 * @param nodes
+	 * @throws InterruptedException
+	 * @throws IllegalArgumentException If the graph is not valid (duplicate names,
+	 *                                  unknown dependencies or cycles).
+	 * @throws IllegalStateException    If any of the nodes failed.
+	 */
+	void deploy(List<DeploymentNode> nodes) throws InterruptedException;
+
+	/**
+	 * Deploy all of the provided nodes. With fail fast, no node is started after
+	 * the first failure: the nodes already running are allowed to complete, as
+	 * a started CloudFormation update cannot be cancelled, and all of the nodes
+	 * that did not start are skipped.
+	 *
+	 * @param nodes
+	 * @param failFast
+	 * @throws InterruptedException
+	 * @throws IllegalArgumentException If the graph is not valid (duplicate names,
+	 *                                  unknown dependencies or cycles).
+	 * @throws IllegalStateException    If any of the nodes failed.
+	 */
+	void deploy(List<DeploymentNode> nodes, boolean failFast) throws InterruptedException;
+
+}
@@ -0,0 +1,244 @@
+package org.sagebionetworks.template.deployment;
+
+import static org.sagebionetworks.template.Constants.DEFAULT_DEPLOYMENT_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.ThreadProvider;
+import org.sagebionetworks.template.config.Configuration;
+
+import com.google.inject.Inject;
+
+/**
+ * Deploys the nodes of a {@link DeploymentNode} graph in topological order. All
+ * nodes with satisfied dependencies are submitted at the same time to a fixed
+ * size pool so independent stacks are created or updated concurrently.
+ *
+ */
+public class DeploymentOrchestratorImpl implements DeploymentOrchestrator {
+
+	private final ThreadProvider threadProvider;
+	private final Configuration config;
+	private final Logger logger;
+
+	@Inject
+	public DeploymentOrchestratorImpl(ThreadProvider threadProvider, Configuration config,
+			LoggerFactory loggerFactory) {
+		this.threadProvider = threadProvider;
+		this.config = config;
+		this.logger = loggerFactory.getLogger(DeploymentOrchestratorImpl.class);
+	}
+
+	@Override
+	public void deploy(List<DeploymentNode> nodes) throws InterruptedException {
+		deploy(nodes, false);
+	}
+
+	@Override
+	public void deploy(List<DeploymentNode> nodes, boolean failFast) throws InterruptedException {
+		Map<String, DeploymentNode> nodesByName = validateGraph(nodes);
+		if (nodesByName.isEmpty()) {
+			return;
+		}
+		// For each node track the number of dependencies that have not yet completed.
+		Map<String, Integer> pendingDependencies = new HashMap<>();
+		Map<String, List<String>> dependents = new HashMap<>();
+		for (DeploymentNode node : nodes) {
+			pendingDependencies.put(node.getName(), node.getDependencies().size());
+			for (String dependency : node.getDependencies()) {
+				dependents.computeIfAbsent(dependency, k -> new LinkedList<>()).add(node.getName());
+			}
+		}
+
+		List<String> completed = new LinkedList<>();
+		Map<String, Throwable> failed = new LinkedHashMap<>();
+		Set<String> skipped = new LinkedHashSet<>();
+		// Set by the first failure in fail fast mode, so queued nodes do not start.
+		AtomicBoolean stopped = failFast ? new AtomicBoolean(false) : null;
+
+		int maxConcurrency = Math.max(1,
+				config.getIntegerProperty(PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY, DEFAULT_DEPLOYMENT_MAX_CONCURRENCY));
+		ExecutorService executor = threadProvider.newFixedThreadPool(Math.min(maxConcurrency, nodes.size()));
+		try {
+			CompletionService<NodeResult> completionService = new ExecutorCompletionService<>(executor);
+			int inFlight = 0;
+			for (DeploymentNode node : nodes) {
+				if (node.getDependencies().isEmpty()) {
+					submit(completionService, node, stopped);
+					inFlight++;
+				}
+			}
+			while (inFlight > 0) {
+				NodeResult result = takeResult(completionService);
+				inFlight--;
+				if (result.notStarted) {
+					skipped.add(result.name);
+				} else if (result.error == null) {
+					completed.add(result.name);
+					logger.info("Deployment of: '" + result.name + "' completed");
+					for (String dependent : dependents.getOrDefault(result.name, new LinkedList<>())) {
+						int remaining = pendingDependencies.merge(dependent, -1, Integer::sum);
+						if (remaining == 0 && !isStopped(stopped)) {
+							submit(completionService, nodesByName.get(dependent), stopped);
+							inFlight++;
+						}
+					}
+				} else {
+					failed.put(result.name, result.error);
+					logger.error("Deployment of: '" + result.name + "' failed", result.error);
+					skipDependents(result.name, dependents, skipped);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		if (isStopped(stopped)) {
+			for (String name : nodesByName.keySet()) {
+				if (!completed.contains(name) && !failed.containsKey(name) && skipped.add(name)) {
+					logger.warn("Skipping deployment of: '" + name + "' since a node failed");
+				}
+			}
+		}
+
+		logger.info("Deployment summary. Completed: " + completed + " Failed: " + failed.keySet() + " Skipped: " + skipped);
+		if (!failed.isEmpty()) {
+			IllegalStateException exception = new IllegalStateException(
+					"Failed to deploy: " + failed.keySet() + " skipped: " + skipped);
+			failed.values().forEach(exception::addSuppressed);
+			throw exception;
+		}
+	}
+
+	/**
+	 * Validate that node names are unique, all dependencies are defined and the
+	 * graph does not contain any cycles.
+	 *
+	 * @param nodes
+	 * @return Map of the nodes by name, in the provided order.
+	 */
+	Map<String, DeploymentNode> validateGraph(List<DeploymentNode> nodes) {
+		if (nodes == null) {
+			throw new IllegalArgumentException("Nodes cannot be null");
+		}
+		Map<String, DeploymentNode> nodesByName = new LinkedHashMap<>();
+		for (DeploymentNode node : nodes) {
+			if (node.getName() == null) {
+				throw new IllegalArgumentException("Node name cannot be null");
+			}
+			if (node.getStep() == null) {
+				throw new IllegalArgumentException("Node: '" + node.getName() + "' does not have a step");
+			}
+			if (nodesByName.put(node.getName(), node) != null) {
+				throw new IllegalArgumentException("Duplicate node name: '" + node.getName() + "'");
+			}
+		}
+		for (DeploymentNode node : nodes) {
+			for (String dependency : node.getDependencies()) {
+				if (!nodesByName.containsKey(dependency)) {
+					throw new IllegalArgumentException(
+							"Node: '" + node.getName() + "' depends on an unknown node: '" + dependency + "'");
+				}
+			}
+		}
+		// Kahn's algorithm: a valid graph can be fully consumed by removing nodes without dependencies.
+		Map<String, Set<String>> remaining = new LinkedHashMap<>();
+		nodes.forEach(n -> remaining.put(n.getName(), new LinkedHashSet<>(n.getDependencies())));
+		boolean progress = true;
+		while (!remaining.isEmpty() && progress) {
+			List<String> ready = new ArrayList<>();
+			remaining.forEach((name, dependencies) -> {
+				if (dependencies.isEmpty()) {
+					ready.add(name);
+				}
+			});
+			ready.forEach(remaining::remove);
+			remaining.values().forEach(dependencies -> dependencies.removeAll(ready));
+			progress = !ready.isEmpty();
+		}
+		if (!remaining.isEmpty()) {
+			throw new IllegalArgumentException("The deployment graph contains a cycle between: " + remaining.keySet());
+		}
+		return nodesByName;
+	}
+
+	/**
+	 * @param stopped Null unless the deployment should stop on the first failure.
+	 */
+	void submit(CompletionService<NodeResult> completionService, DeploymentNode node, AtomicBoolean stopped) {
+		completionService.submit(() -> {
+			if (isStopped(stopped)) {
+				return new NodeResult(node.getName(), null, true);
+			}
+			logger.info("Starting deployment of: '" + node.getName() + "'");
+			try {
+				node.getStep().deploy();
+				return new NodeResult(node.getName(), null, false);
+			} catch (Throwable e) {
+				if (stopped != null) {
+					// set before the worker can pick up the next queued node
+					stopped.set(true);
+				}
+				return new NodeResult(node.getName(), e, false);
+			}
+		});
+	}
+
+	static boolean isStopped(AtomicBoolean stopped) {
+		return stopped != null && stopped.get();
+	}
+
+	NodeResult takeResult(CompletionService<NodeResult> completionService) throws InterruptedException {
+		try {
+			return completionService.take().get();
+		} catch (ExecutionException e) {
+			// The submitted callable captures all errors so this should not occur.
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Transitively mark all of the dependents of a failed node as skipped.
+	 */
+	void skipDependents(String failedNode, Map<String, List<String>> dependents, Set<String> skipped) {
+		for (String dependent : dependents.getOrDefault(failedNode, new LinkedList<>())) {
+			if (skipped.add(dependent)) {
+				logger.warn("Skipping deployment of: '" + dependent + "' since '" + failedNode + "' failed");
+				skipDependents(dependent, dependents, skipped);
+			}
+		}
+	}
+
+	/**
+	 * The outcome of a single node.
+	 */
+	static class NodeResult {
+
+		private final String name;
+		private final Throwable error;
+		/**
+		 * True if the node was queued but not started as the deployment stopped.
+		 */
+		private final boolean notStarted;
+
+		NodeResult(String name, Throwable error, boolean notStarted) {
+			this.name = name;
+			this.error = error;
+			this.notStarted = notStarted;
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package org.sagebionetworks.template.deployment;
+
+import java.util.List;
+
+/**
+ * Builds the graph of stacks that make up a full environment.
+ *
+ */
+public interface DeploymentPlanBuilder {
+
+	/**
+	 * Build the nodes for every stack of a full environment, with the
+	 * dependencies between them. This covers the stacks of VpcBuilderMain,
+	 * GlobalResourcesBuilderMain, S3BuilderMain, DataWarehouseBuilderMain,
+	 * RepositoryBuilderMain, IdGeneratorMain, IpAddressPoolMain,
+	 * NetworkLoadBalancerMain, CdnBuilderMain and DataCdnBuilderMain.
+	 * <p>
+	 * BindNetworkLoadBalancersMain is not part of the plan: binding the records
+	 * to a stack is the release cutover and stays a separate step. The DNS, user
+	 * docs redirector, data warehouse backfill and admin job mains are not part
+	 * of an environment build either.
+	 * 
+	 * @return
+	 */
+	List<DeploymentNode> buildFullStackPlan();
+
+}
@@ -0,0 +1,102 @@
+package org.sagebionetworks.template.deployment;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.sagebionetworks.template.cdn.CdnBuilder;
+import org.sagebionetworks.template.datawarehouse.DataWarehouseBuilder;
+import org.sagebionetworks.template.docs.SynapseDocsBuilder;
+import org.sagebionetworks.template.global.GlobalResourcesBuilder;
+import org.sagebionetworks.template.ip.address.IpAddressPoolBuilder;
+import org.sagebionetworks.template.nlb.NetworkLoadBalancerBuilder;
+import org.sagebionetworks.template.repo.IdGeneratorBuilder;
+import org.sagebionetworks.template.repo.RepositoryTemplateBuilder;
+import org.sagebionetworks.template.s3.S3BucketBuilder;
+import org.sagebionetworks.template.vpc.SubnetTemplateBuilder;
+import org.sagebionetworks.template.vpc.VpcTemplateBuilder;
+
+import com.google.inject.Inject;
+
+/**
+ * Wires each of the existing builders into a node of the deployment graph.
+ * The dependencies mirror the cross stack imports of the templates: the
+ * repository and ID generator stacks import the VPC, subnet and global resource
+ * exports, the network load balancers use the IP address pool and the public
+ * subnets, while the data warehouse and the data CDN rely on the S3 buckets.
+ *
+ */
+public class DeploymentPlanBuilderImpl implements DeploymentPlanBuilder {
+
+	public static final String NODE_VPC = "vpc";
+	public static final String NODE_PUBLIC_SUBNETS = "vpc-public-subnets";
+	public static final String NODE_PRIVATE_SUBNETS = "vpc-private-subnets";
+	public static final String NODE_GLOBAL_RESOURCES = "global-resources";
+	public static final String NODE_S3_BUCKETS = "s3-buckets";
+	public static final String NODE_DATA_WAREHOUSE = "data-warehouse";
+	public static final String NODE_DOCS = "synapse-docs";
+	public static final String NODE_REPOSITORY = "repository";
+	public static final String NODE_PORTAL_CDN = "portal-cdn";
+	public static final String NODE_DATA_CDN = "data-cdn";
+	public static final String NODE_ID_GENERATOR = "id-generator";
+	public static final String NODE_IP_ADDRESS_POOL = "ip-address-pool";
+	public static final String NODE_NETWORK_LOAD_BALANCERS = "network-load-balancers";
+
+	private final VpcTemplateBuilder vpcBuilder;
+	private final SubnetTemplateBuilder subnetBuilder;
+	private final GlobalResourcesBuilder globalResourcesBuilder;
+	private final S3BucketBuilder s3BucketBuilder;
+	private final DataWarehouseBuilder dataWarehouseBuilder;
+	private final SynapseDocsBuilder docsBuilder;
+	private final RepositoryTemplateBuilder repositoryBuilder;
+	private final CdnBuilder cdnBuilder;
+	private final IdGeneratorBuilder idGeneratorBuilder;
+	private final IpAddressPoolBuilder ipAddressPoolBuilder;
+	private final NetworkLoadBalancerBuilder networkLoadBalancerBuilder;
+
+	@Inject
+	public DeploymentPlanBuilderImpl(VpcTemplateBuilder vpcBuilder, SubnetTemplateBuilder subnetBuilder,
+			GlobalResourcesBuilder globalResourcesBuilder, S3BucketBuilder s3BucketBuilder,
+			DataWarehouseBuilder dataWarehouseBuilder, SynapseDocsBuilder docsBuilder,
+			RepositoryTemplateBuilder repositoryBuilder, CdnBuilder cdnBuilder, IdGeneratorBuilder idGeneratorBuilder,
+			IpAddressPoolBuilder ipAddressPoolBuilder, NetworkLoadBalancerBuilder networkLoadBalancerBuilder) {
+		this.vpcBuilder = vpcBuilder;
+		this.subnetBuilder = subnetBuilder;
+		this.globalResourcesBuilder = globalResourcesBuilder;
+		this.s3BucketBuilder = s3BucketBuilder;
+		this.dataWarehouseBuilder = dataWarehouseBuilder;
+		this.docsBuilder = docsBuilder;
+		this.repositoryBuilder = repositoryBuilder;
+		this.cdnBuilder = cdnBuilder;
+		this.idGeneratorBuilder = idGeneratorBuilder;
+		this.ipAddressPoolBuilder = ipAddressPoolBuilder;
+		this.networkLoadBalancerBuilder = networkLoadBalancerBuilder;
+	}
+
+	@Override
+	public List<DeploymentNode> buildFullStackPlan() {
+		return Arrays.asList(
+				new DeploymentNode().withName(NODE_VPC).withStep(vpcBuilder::buildAndDeploy),
+				new DeploymentNode().withName(NODE_PUBLIC_SUBNETS).withDependsOn(NODE_VPC)
+						.withStep(subnetBuilder::buildAndDeployPublicSubnets),
+				new DeploymentNode().withName(NODE_PRIVATE_SUBNETS).withDependsOn(NODE_PUBLIC_SUBNETS)
+						.withStep(subnetBuilder::buildAndDeployPrivateSubnets),
+				new DeploymentNode().withName(NODE_GLOBAL_RESOURCES).withStep(globalResourcesBuilder::buildGlobalResources),
+				new DeploymentNode().withName(NODE_S3_BUCKETS).withStep(s3BucketBuilder::buildAllBuckets),
+				new DeploymentNode().withName(NODE_DATA_WAREHOUSE).withDependsOn(NODE_S3_BUCKETS)
+						.withStep(dataWarehouseBuilder::buildAndDeploy),
+				new DeploymentNode().withName(NODE_DOCS).withStep(docsBuilder::deployDocs),
+				new DeploymentNode().withName(NODE_REPOSITORY)
+						.withDependsOn(NODE_PRIVATE_SUBNETS, NODE_GLOBAL_RESOURCES, NODE_S3_BUCKETS)
+						.withStep(repositoryBuilder::buildAndDeploy),
+				new DeploymentNode().withName(NODE_PORTAL_CDN).withStep(() -> cdnBuilder.buildCdn(CdnBuilder.Type.PORTAL)),
+				new DeploymentNode().withName(NODE_DATA_CDN).withDependsOn(NODE_S3_BUCKETS)
+						.withStep(() -> cdnBuilder.buildCdn(CdnBuilder.Type.DATA)),
+				new DeploymentNode().withName(NODE_ID_GENERATOR).withDependsOn(NODE_PRIVATE_SUBNETS, NODE_GLOBAL_RESOURCES)
+						.withStep(idGeneratorBuilder::buildAndDeploy),
+				new DeploymentNode().withName(NODE_IP_ADDRESS_POOL).withStep(ipAddressPoolBuilder::buildAndDeploy),
+				new DeploymentNode().withName(NODE_NETWORK_LOAD_BALANCERS)
+						.withDependsOn(NODE_IP_ADDRESS_POOL, NODE_PUBLIC_SUBNETS)
+						.withStep(networkLoadBalancerBuilder::buildAndDeploy));
+	}
+
+}
@@ -0,0 +1,18 @@
+package org.sagebionetworks.template.deployment;
+
+/**
+ * The unit of work executed for a single {@link DeploymentNode}.
+ *
+ */
+@FunctionalInterface
+public interface DeploymentStep {
+
+	/**
+	 * Deploy the stack(s) of the node. The call should block until the
+	 * deployment is complete so that any dependent nodes can safely start.
+	 *
+	 * @throws Exception
+	 */
+	void deploy() throws Exception;
+
+}
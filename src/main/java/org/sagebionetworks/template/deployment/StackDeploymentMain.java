@@ -0,0 +1,29 @@
+package org.sagebionetworks.template.deployment;
+
+import org.sagebionetworks.template.ClientLifecycle;
+import org.sagebionetworks.template.TemplateGuiceModule;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+/**
+ * Main to build every stack of an environment, deploying independent stacks
+ * concurrently. All of the builders read the same system properties, so this
+ * main needs the union of the properties passed to each of the mains it
+ * replaces (see {@link DeploymentPlanBuilder#buildFullStackPlan()}).
+ *
+ */
+public class StackDeploymentMain {
+
+	public static void main(String[] args) throws InterruptedException {
+		Injector injector = Guice.createInjector(new TemplateGuiceModule());
+		try {
+			DeploymentPlanBuilder planBuilder = injector.getInstance(DeploymentPlanBuilder.class);
+			DeploymentOrchestrator orchestrator = injector.getInstance(DeploymentOrchestrator.class);
+			orchestrator.deploy(planBuilder.buildFullStackPlan());
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
+	}
+
+}
@@ -1,10 +1,21 @@
 package org.sagebionetworks.template.dns;
 
 import java.io.IOException;
+import java.io.Writer;
 
 public interface DnsBuilder {
 
 	void buildDns(DnsConfig dnsConfig);
 	void listDns(String hostedZoneId) throws IOException;
 
+	/**
+	 * Write the A and CNAME record sets of the hosted zone to the writer as a
+	 * {@link DnsConfig}, one record set at a time as the pages are fetched.
+	 *
+	 * @param hostedZoneId
+	 * @param writer       Not closed by this call.
+	 * @throws IOException
+	 */
+	void listDns(String hostedZoneId, Writer writer) throws IOException;
+
 }
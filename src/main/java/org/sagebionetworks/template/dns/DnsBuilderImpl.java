@@ -1,18 +1,30 @@
 package org.sagebionetworks.template.dns;
 
 import com.amazonaws.services.route53.model.ResourceRecordSet;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import org.sagebionetworks.template.Route53Client;
-import org.sagebionetworks.template.TemplateUtils;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public class DnsBuilderImpl implements DnsBuilder {
 
-	public static final int BATCH_SIZE = 10;
+	/**
+	 * An UPSERT counts twice towards the limit of 1000 records in a request.
+	 */
+	public static final int BATCH_SIZE = 500;
+
+	public static final Set<String> LISTED_TYPES = ImmutableSet.of("A", "CNAME");
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
 	@Inject
 	Route53Client route53Client;
@@ -25,17 +37,31 @@ public class DnsBuilderImpl implements DnsBuilder {
 
 	@Override
 	public void listDns(String hostedZoneId) throws IOException {
-		List<RecordSetDescriptor> recordSetDescriptors = new ArrayList<>();
-		List<ResourceRecordSet> resourceRecordSets = route53Client.listResourceRecordSets(hostedZoneId);
-		for (ResourceRecordSet rrs: resourceRecordSets) {
-			if (! Arrays.asList("A", "CNAME").contains(rrs.getType())) {
-				continue;
+		Writer writer = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+		listDns(hostedZoneId, writer);
+		writer.write(System.lineSeparator());
+		writer.flush();
+	}
+
+	@Override
+	public void listDns(String hostedZoneId, Writer writer) throws IOException {
+		try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(writer)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.useDefaultPrettyPrinter();
+			// same layout as a serialized DnsConfig
+			generator.writeStartObject();
+			generator.writeStringField("hostedZoneId", hostedZoneId);
+			generator.writeArrayFieldStart("recordSetDescriptorList");
+			try (Stream<ResourceRecordSet> resourceRecordSets = route53Client.listResourceRecordSets(hostedZoneId, LISTED_TYPES)) {
+				Iterator<ResourceRecordSet> iterator = resourceRecordSets.iterator();
+				while (iterator.hasNext()) {
+					// flushed after each record set
+					OBJECT_MAPPER.writeValue(generator, new RecordSetDescriptor(iterator.next()));
+				}
 			}
-			RecordSetDescriptor descriptor = new RecordSetDescriptor(rrs);
-			recordSetDescriptors.add(descriptor);
+			generator.writeEndArray();
+			generator.writeEndObject();
 		}
-		DnsConfig dnsConfig = new DnsConfig(hostedZoneId, recordSetDescriptors);
-		System.out.println(TemplateUtils.prettyPrint(dnsConfig));
 	}
 
 }
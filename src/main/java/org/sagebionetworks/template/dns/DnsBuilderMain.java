@@ -2,6 +2,7 @@ package org.sagebionetworks.template.dns;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 import java.util.Arrays;
@@ -20,11 +21,15 @@ public class DnsBuilderMain {
 		String dnsConfigFileResourcePath = String.format(TEMPLATE_RESOURCE_PATH, prefix);
 		DnsBuilderMain.validateResourcePath(dnsConfigFileResourcePath);
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		// loads row config
-		DnsConfigBuilder dnsConfigBuilder = loadFromJsonFile(dnsConfigFileResourcePath, DnsConfigBuilder.class);
-		DnsConfig dnsConfig = dnsConfigBuilder.build(); // validates and creates actual config
-		DnsBuilder builder = injector.getInstance(DnsBuilder.class);
-		builder.buildDns(dnsConfig);
+		try {
+			// loads row config
+			DnsConfigBuilder dnsConfigBuilder = loadFromJsonFile(dnsConfigFileResourcePath, DnsConfigBuilder.class);
+			DnsConfig dnsConfig = dnsConfigBuilder.build(); // validates and creates actual config
+			DnsBuilder builder = injector.getInstance(DnsBuilder.class);
+			builder.buildDns(dnsConfig);
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 
 	public static void validateResourcePath(String resourcePath) {
@@ -2,6 +2,7 @@ package org.sagebionetworks.template.dns;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 public class DnsListerMain {
@@ -9,8 +10,12 @@ public class DnsListerMain {
 
 		String hostedZoneId = args[0];
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		DnsBuilder builder = injector.getInstance(DnsBuilder.class);
-		builder.listDns(hostedZoneId);
+		try {
+			DnsBuilder builder = injector.getInstance(DnsBuilder.class);
+			builder.listDns(hostedZoneId);
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 
 }
@@ -1,27 +1,52 @@
 package org.sagebionetworks.template.docs;
 
+import static org.sagebionetworks.template.Constants.DEFAULT_DOCS_SYNC_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.DOCS_STACK_MANIFEST_FILE;
+import static org.sagebionetworks.template.Constants.DEFAULT_S3_UPLOAD_PART_SIZE_MB;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DOCS_SYNC_MAX_CONCURRENCY;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_INSTANCE;
 import static org.sagebionetworks.template.Constants.DOCS_STACK_INSTANCE_JSON_FILE;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DOCS_SOURCE_BUCKET;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DOCS_DESTINATION_BUCKET;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DOCS_DEPLOYMENT_FLAG;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.sagebionetworks.template.config.RepoConfiguration;
 import org.sagebionetworks.template.s3.S3TransferManager;
 import org.sagebionetworks.template.s3.S3TransferManagerFactory;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.ListObjectsRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.Copy;
 import com.google.inject.Inject;
@@ -30,6 +55,14 @@ public class SynapseDocsBuilderImpl implements SynapseDocsBuilder {
 
 	private static final Logger LOG = LogManager.getLogger(SynapseDocsBuilderImpl.class);
 	
+	/**
+	 * The maximum number of keys S3 accepts in a single DeleteObjects request.
+	 */
+	static final int MAX_KEYS_PER_DELETE = 1000;
+	
+	static final String MANIFEST_OBJECTS = "objects";
+	static final String MANIFEST_CONTENT_TYPE = "application/gzip";
+	
 	private final S3TransferManagerFactory transferManagerFactory;
 	private final AmazonS3 s3Client;
 	private final RepoConfiguration config;
@@ -67,36 +100,50 @@ public class SynapseDocsBuilderImpl implements SynapseDocsBuilder {
 	void sync(String sourceBucket, String destinationBucket) {
 		// deployment is a sync
 		String prefix = "";
-		Map<String, String> destinationKeyToETag = new HashMap<>();
-		// build a map of destination object keys to their etags
-		getAllS3Objects(createListObjectsRequest(destinationBucket, prefix))
-			.forEach(obj -> destinationKeyToETag.put(obj.getKey(), obj.getETag()));
-		// do the sync
-		List<S3ObjectSummary> sourceObjects = getAllS3Objects(createListObjectsRequest(sourceBucket, prefix));
-		try (S3TransferManager s3TransferManager = transferManagerFactory.createNewS3TransferManager()) {
-			for (S3ObjectSummary sourceObject : sourceObjects) {
+		// the map of destination object keys to their etags, from the manifest of the last sync when there is one
+		Map<String, String> destinationKeyToETag = readManifest(destinationBucket).orElseGet(() -> {
+			Map<String, String> listed = new HashMap<>();
+			forEachS3Object(destinationBucket, prefix, obj -> listed.put(obj.getKey(), obj.getETag()));
+			return listed;
+		});
+		// the files written by the sync itself are not part of the docs
+		destinationKeyToETag.remove(DOCS_STACK_INSTANCE_JSON_FILE);
+		destinationKeyToETag.remove(DOCS_STACK_MANIFEST_FILE);
+		// the manifest is removed before the destination changes, so that a failed sync lists the destination next time
+		s3Client.deleteObject(destinationBucket, DOCS_STACK_MANIFEST_FILE);
+		Map<String, String> manifest = new HashMap<>();
+		int maxConcurrency = Math.max(1, config.getIntegerProperty(PROPERTY_KEY_DOCS_SYNC_MAX_CONCURRENCY, DEFAULT_DOCS_SYNC_MAX_CONCURRENCY));
+		// the part size only applies to uploads, the sync only copies
+		try (S3TransferManager s3TransferManager = transferManagerFactory.createNewS3TransferManager(
+				(long) DEFAULT_S3_UPLOAD_PART_SIZE_MB * 1024 * 1024, maxConcurrency)) {
+			// the copies run in the transfer manager while the next pages of the source are listed
+			Deque<Copy> inFlight = new ArrayDeque<>();
+			forEachS3Object(sourceBucket, prefix, sourceObject -> {
+				manifest.put(sourceObject.getKey(), sourceObject.getETag());
 				// make the destination map contain all objects to be removed (not updated) in the sync
 				String destinationETag = destinationKeyToETag.remove(sourceObject.getKey());
 				if (destinationETag != null && sourceObject.getETag().equals(destinationETag)) {
-					continue;
+					return;
 				}
-				Copy cpy = s3TransferManager.copy(sourceBucket, sourceObject.getKey(), 
-						destinationBucket, sourceObject.getKey());
-				try {
-					LOG.info("Waiting to copy " + sourceObject.getKey() + "...");
-					cpy.waitForCompletion();
-				} catch (Exception e) {
-					throw new RuntimeException(e);
+				if (inFlight.size() >= maxConcurrency) {
+					waitForCopy(inFlight.poll());
 				}
+				LOG.info("Copying " + sourceObject.getKey() + "...");
+				inFlight.add(s3TransferManager.copy(sourceBucket, sourceObject.getKey(), 
+						destinationBucket, sourceObject.getKey()));
+			});
+			while (!inFlight.isEmpty()) {
+				waitForCopy(inFlight.poll());
 			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 
 		// remove objects in the sync
-		for (String destinationObjectKey : destinationKeyToETag.keySet()) {
-			s3Client.deleteObject(destinationBucket, destinationObjectKey);
-		}
+		deleteObjects(destinationBucket, destinationKeyToETag.keySet());
+		
+		// a copy keeps the etag of its source, so the source etags describe the destination
+		writeManifest(destinationBucket, manifest);
 		
 		// Write the instance to the bucket
 		JSONObject obj = new JSONObject();
@@ -106,19 +153,111 @@ public class SynapseDocsBuilderImpl implements SynapseDocsBuilder {
 		LOG.info("Done with sync");
 	}
 	
-	List<S3ObjectSummary> getAllS3Objects(ListObjectsRequest listRequest) {
-		List<S3ObjectSummary> objects = new LinkedList<>();
-		ObjectListing listing;
+	/**
+	 * Read the manifest written by the last sync to the given bucket.
+	 * 
+	 * @param bucket
+	 * @return The map of object keys to their etags, empty if the manifest does
+	 *         not exist or cannot be read.
+	 */
+	Optional<Map<String, String>> readManifest(String bucket) {
+		try (S3Object object = s3Client.getObject(bucket, DOCS_STACK_MANIFEST_FILE);
+				InputStream in = new GZIPInputStream(object.getObjectContent())) {
+			JSONObject objects = new JSONObject(IOUtils.toString(in, StandardCharsets.UTF_8)).getJSONObject(MANIFEST_OBJECTS);
+			Map<String, String> keyToETag = new HashMap<>();
+			for (String key : objects.keySet()) {
+				keyToETag.put(key, objects.getString(key));
+			}
+			LOG.info("Read the manifest of " + keyToETag.size() + " objects from " + bucket);
+			return Optional.of(keyToETag);
+		} catch (AmazonS3Exception e) {
+			if (e.getStatusCode() != 404) {
+				throw e;
+			}
+			LOG.info("No manifest found in " + bucket + ", will list the bucket.");
+		} catch (IOException | JSONException e) {
+			LOG.warn("Could not read the manifest from " + bucket + ", will list the bucket: " + e.getMessage());
+		}
+		return Optional.empty();
+	}
+	
+	/**
+	 * Write the manifest of the given object keys to their etags to the bucket, as
+	 * gzipped JSON.
+	 * 
+	 * @param bucket
+	 * @param keyToETag
+	 */
+	void writeManifest(String bucket, Map<String, String> keyToETag) {
+		JSONObject manifest = new JSONObject();
+		manifest.put(MANIFEST_OBJECTS, new JSONObject(keyToETag));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+			manifest.write(writer);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		ObjectMetadata metadata = new ObjectMetadata();
+		metadata.setContentLength(bytes.size());
+		metadata.setContentType(MANIFEST_CONTENT_TYPE);
+		s3Client.putObject(new PutObjectRequest(bucket, DOCS_STACK_MANIFEST_FILE,
+				new ByteArrayInputStream(bytes.toByteArray()), metadata));
+	}
+	
+	void waitForCopy(Copy copy) {
+		try {
+			copy.waitForCompletion();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Pass each object of the bucket with the given prefix to the consumer, one
+	 * page at a time.
+	 * 
+	 * @param bucket
+	 * @param prefix
+	 * @param consumer
+	 */
+	void forEachS3Object(String bucket, String prefix, Consumer<S3ObjectSummary> consumer) {
+		ListObjectsV2Request listRequest = new ListObjectsV2Request().withBucketName(bucket).withPrefix(prefix);
+		ListObjectsV2Result listing;
 		do {
-			listing = s3Client.listObjects(listRequest);
-			objects.addAll(listing.getObjectSummaries());
-			listRequest.setMarker(listing.getNextMarker());
+			listing = s3Client.listObjectsV2(listRequest);
+			listing.getObjectSummaries().forEach(consumer);
+			listRequest.setContinuationToken(listing.getNextContinuationToken());
 		} while (listing.isTruncated());
-		return objects;
 	}
 	
-	ListObjectsRequest createListObjectsRequest(String bucket, String prefix) {
-		return new ListObjectsRequest().withBucketName(bucket).withPrefix(prefix);
+	/**
+	 * Delete the given keys from the bucket, up to {@link #MAX_KEYS_PER_DELETE}
+	 * keys per request.
+	 * 
+	 * @param bucket
+	 * @param keys
+	 */
+	void deleteObjects(String bucket, Collection<String> keys) {
+		List<KeyVersion> batch = new ArrayList<>();
+		for (String key : keys) {
+			batch.add(new KeyVersion(key));
+			if (batch.size() == MAX_KEYS_PER_DELETE) {
+				deleteBatch(bucket, batch);
+				batch = new ArrayList<>();
+			}
+		}
+		if (!batch.isEmpty()) {
+			deleteBatch(bucket, batch);
+		}
+	}
+	
+	private void deleteBatch(String bucket, List<KeyVersion> batch) {
+		LOG.info("Deleting " + batch.size() + " objects...");
+		// a failure to delete any of the keys throws a MultiObjectDeleteException
+		s3Client.deleteObjects(new DeleteObjectsRequest(bucket).withKeys(batch).withQuiet(true));
 	}
 	
 	@Override
@@ -1,5 +1,6 @@
 package org.sagebionetworks.template.ip.address;
 
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 import com.google.inject.Guice;
@@ -9,8 +10,12 @@ public class IpAddressPoolMain {
 
 	public static void main(String[] args) {
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		IpAddressPoolBuilder builder = injector.getInstance(IpAddressPoolBuilder.class);
-		builder.buildAndDeploy();
+		try {
+			IpAddressPoolBuilder builder = injector.getInstance(IpAddressPoolBuilder.class);
+			builder.buildAndDeploy();
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 
 }
@@ -2,6 +2,7 @@ package org.sagebionetworks.template.jobs;
 
 import org.sagebionetworks.repo.model.asynch.AsynchronousAdminRequestBody;
 import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 import com.google.inject.Guice;
@@ -17,12 +18,15 @@ public class AsyncAdminJobExecutorMain {
 		String stringRequest = args[0];
 		
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
+		try {
+			AsynchAdminJobExecutor jobExecutor = injector.getInstance(AsynchAdminJobExecutor.class);
 		
-		AsynchAdminJobExecutor jobExecutor = injector.getInstance(AsynchAdminJobExecutor.class);
+			AsynchronousAdminRequestBody requestBody = EntityFactory.createEntityFromJSONString(stringRequest, AsynchronousAdminRequestBody.class);
 		
-		AsynchronousAdminRequestBody requestBody = EntityFactory.createEntityFromJSONString(stringRequest, AsynchronousAdminRequestBody.class);
-		
-		jobExecutor.executeJob(requestBody);
+			jobExecutor.executeJob(requestBody);
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 
 }
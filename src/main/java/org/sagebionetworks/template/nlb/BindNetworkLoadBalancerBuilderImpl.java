@@ -1,10 +1,8 @@
 package org.sagebionetworks.template.nlb;
 
-import static org.sagebionetworks.template.Constants.JSON_INDENT;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BIND_RECORD_TO_STACK;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_STACK;
 
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -12,14 +10,12 @@ import java.util.StringJoiner;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Logger;
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
-import org.json.JSONObject;
 import org.sagebionetworks.template.CloudFormationClient;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
+import org.sagebionetworks.template.TemplateRenderer;
 import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.ip.address.IpAddressPoolBuilderImpl;
 
@@ -31,17 +27,17 @@ public class BindNetworkLoadBalancerBuilderImpl implements BindNetworkLoadBalanc
 	public static final String MAPPINGS_CSV = "mappingsCSV";
 	
 	private CloudFormationClient cloudFormationClient;
-	private VelocityEngine velocityEngine;
+	private TemplateRenderer templateRenderer;
 	private Configuration config;
 	private Logger logger;
 	private StackTagsProvider tagsProvider;
 
 	@Inject
-	public BindNetworkLoadBalancerBuilderImpl(CloudFormationClient cloudFormationClient, VelocityEngine velocityEngine,
+	public BindNetworkLoadBalancerBuilderImpl(CloudFormationClient cloudFormationClient, TemplateRenderer templateRenderer,
 			Configuration config, LoggerFactory loggerFactory, StackTagsProvider tagsProvider) {
 		super();
 		this.cloudFormationClient = cloudFormationClient;
-		this.velocityEngine = velocityEngine;
+		this.templateRenderer = templateRenderer;
 		this.config = config;
 		this.logger = loggerFactory.getLogger(IpAddressPoolBuilderImpl.class);
 		this.tagsProvider = tagsProvider;
@@ -72,15 +68,8 @@ public class BindNetworkLoadBalancerBuilderImpl implements BindNetworkLoadBalanc
 		context.put("stack", stack);
 		Parameter parameter = new Parameter();
 
-		// Merge the context with the template
-		Template template = this.velocityEngine.getTemplate("templates/global/dns-record-to-stack-mapping.json.vpt");
-		StringWriter stringWriter = new StringWriter();
-		template.merge(context, stringWriter);
-		// Parse the resulting template
-		String resultJSON = stringWriter.toString();
-		JSONObject templateJson = new JSONObject(resultJSON);
-		// Format the JSON
-		resultJSON = templateJson.toString(JSON_INDENT);
+		// Merge the context with the template and format the JSON
+		String resultJSON = templateRenderer.renderJson("templates/global/dns-record-to-stack-mapping.json.vpt", context);
 
 		this.logger.info("Template for stack: " + stackName);
 		this.logger.info(resultJSON);
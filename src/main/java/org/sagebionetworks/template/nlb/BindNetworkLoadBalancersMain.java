@@ -1,5 +1,6 @@
 package org.sagebionetworks.template.nlb;
 
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 import com.google.inject.Guice;
@@ -15,8 +16,12 @@ public class BindNetworkLoadBalancersMain {
 
 	public static void main(String[] args) {
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		BindNetworkLoadBalancerBuilder builder = injector.getInstance(BindNetworkLoadBalancerBuilder.class);
-		builder.buildAndDeploy();
+		try {
+			BindNetworkLoadBalancerBuilder builder = injector.getInstance(BindNetworkLoadBalancerBuilder.class);
+			builder.buildAndDeploy();
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 
 }
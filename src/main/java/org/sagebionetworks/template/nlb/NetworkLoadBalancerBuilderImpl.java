@@ -1,25 +1,21 @@
 package org.sagebionetworks.template.nlb;
 
-import static org.sagebionetworks.template.Constants.JSON_INDENT;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_IP_ADDRESS_POOL_NUMBER_AZ_PER_NLB;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_NLB_RECORDS_CSV;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_STACK;
 
-import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.StringJoiner;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Logger;
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
-import org.json.JSONObject;
 import org.sagebionetworks.template.CloudFormationClient;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
+import org.sagebionetworks.template.TemplateRenderer;
 import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.ip.address.IpAddressPoolBuilderImpl;
 
@@ -29,17 +25,17 @@ import com.google.inject.Inject;
 public class NetworkLoadBalancerBuilderImpl implements NetworkLoadBalancerBuilder {
 
 	private CloudFormationClient cloudFormationClient;
-	private VelocityEngine velocityEngine;
+	private TemplateRenderer templateRenderer;
 	private Configuration config;
 	private Logger logger;
 	private StackTagsProvider tagsProvider;
 
 	@Inject
-	public NetworkLoadBalancerBuilderImpl(CloudFormationClient cloudFormationClient, VelocityEngine velocityEngine,
+	public NetworkLoadBalancerBuilderImpl(CloudFormationClient cloudFormationClient, TemplateRenderer templateRenderer,
 			Configuration config, LoggerFactory loggerFactory, StackTagsProvider tagsProvider) {
 		super();
 		this.cloudFormationClient = cloudFormationClient;
-		this.velocityEngine = velocityEngine;
+		this.templateRenderer = templateRenderer;
 		this.config = config;
 		this.logger = loggerFactory.getLogger(IpAddressPoolBuilderImpl.class);
 		this.tagsProvider = tagsProvider;
@@ -60,15 +56,8 @@ public class NetworkLoadBalancerBuilderImpl implements NetworkLoadBalancerBuilde
 
 		Parameter parameter = new Parameter();
 
-		// Merge the context with the template
-		Template template = this.velocityEngine.getTemplate("templates/global/domain-network-load-balancer.json.vpt");
-		StringWriter stringWriter = new StringWriter();
-		template.merge(context, stringWriter);
-		// Parse the resulting template
-		String resultJSON = stringWriter.toString();
-		JSONObject templateJson = new JSONObject(resultJSON);
-		// Format the JSON
-		resultJSON = templateJson.toString(JSON_INDENT);
+		// Merge the context with the template and format the JSON
+		String resultJSON = templateRenderer.renderJson("templates/global/domain-network-load-balancer.json.vpt", context);
 		String stackName = new StringJoiner("-").add(stack).add("nlbs").toString();
 		this.logger.info("Template for stack: " + stackName);
 		this.logger.info(resultJSON);
@@ -76,6 +65,11 @@ public class NetworkLoadBalancerBuilderImpl implements NetworkLoadBalancerBuilde
 		this.cloudFormationClient.createOrUpdateStack(new CreateOrUpdateStackRequest().withStackName(stackName)
 				.withTemplateBody(resultJSON).withParameters(parameter).withTags(tagsProvider.getStackTags()));
 
+		try {
+			this.cloudFormationClient.waitForStackToComplete(stackName);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 }
@@ -4,6 +4,7 @@ package org.sagebionetworks.template.nlb;
 /**
  * Main to build all of the static, domain specific, network load balancers for a stack.
  */
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 import com.google.inject.Guice;
@@ -13,7 +14,11 @@ public class NetworkLoadBalancerMain {
 
 	public static void main(String[] args) {
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		NetworkLoadBalancerBuilder builder = injector.getInstance(NetworkLoadBalancerBuilder.class);
-		builder.buildAndDeploy();
+		try {
+			NetworkLoadBalancerBuilder builder = injector.getInstance(NetworkLoadBalancerBuilder.class);
+			builder.buildAndDeploy();
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 }
@@ -1,5 +1,6 @@
 package org.sagebionetworks.template.repo;
 
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 import com.google.inject.Guice;
@@ -9,8 +10,12 @@ public class IdGeneratorMain {
 
 	public static void main(String[] args) {
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		IdGeneratorBuilder builder = injector.getInstance(IdGeneratorBuilder.class);
-		builder.buildAndDeploy();
+		try {
+			IdGeneratorBuilder builder = injector.getInstance(IdGeneratorBuilder.class);
+			builder.buildAndDeploy();
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 
 }
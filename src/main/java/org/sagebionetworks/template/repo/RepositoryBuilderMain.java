@@ -1,5 +1,6 @@
 package org.sagebionetworks.template.repo;
 
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 import org.sagebionetworks.template.docs.SynapseDocsBuilder;
 
@@ -14,9 +15,13 @@ public class RepositoryBuilderMain {
 
 	public static void main(String[] args) throws InterruptedException {
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		SynapseDocsBuilder docsBuilder = injector.getInstance(SynapseDocsBuilder.class);
-		RepositoryTemplateBuilder builder = injector.getInstance(RepositoryTemplateBuilder.class);
-		docsBuilder.deployDocs();
-		builder.buildAndDeploy();
+		try {
+			SynapseDocsBuilder docsBuilder = injector.getInstance(SynapseDocsBuilder.class);
+			RepositoryTemplateBuilder builder = injector.getInstance(RepositoryTemplateBuilder.class);
+			docsBuilder.deployDocs();
+			builder.buildAndDeploy();
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 }
@@ -1,7 +1,6 @@
 package org.sagebionetworks.template.repo;
 
 
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
@@ -11,25 +10,27 @@ import java.util.StringJoiner;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Logger;
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
-import org.json.JSONObject;
 import org.sagebionetworks.template.CloudFormationClient;
 import org.sagebionetworks.template.ConfigurationPropertyNotFound;
 import org.sagebionetworks.template.Constants;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.Ec2Client;
 import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.LookupCache;
 import org.sagebionetworks.template.StackTagsProvider;
+import org.sagebionetworks.template.TemplateRenderer;
 import org.sagebionetworks.template.config.RepoConfiguration;
 import org.sagebionetworks.template.config.TimeToLive;
+import org.sagebionetworks.template.deployment.DeploymentNode;
+import org.sagebionetworks.template.deployment.DeploymentOrchestrator;
 import org.sagebionetworks.template.repo.beanstalk.ArtifactCopy;
 import org.sagebionetworks.template.repo.beanstalk.BeanstalkUtils;
 import org.sagebionetworks.template.repo.beanstalk.ElasticBeanstalkSolutionStackNameProvider;
 import org.sagebionetworks.template.repo.beanstalk.EnvironmentDescriptor;
 import org.sagebionetworks.template.repo.beanstalk.EnvironmentType;
 import org.sagebionetworks.template.repo.beanstalk.SecretBuilder;
+import org.sagebionetworks.template.repo.beanstalk.SecretBuilderImpl;
 import org.sagebionetworks.template.repo.beanstalk.SourceBundle;
 import org.sagebionetworks.template.repo.cloudwatchlogs.CloudwatchLogsVelocityContextProvider;
 
@@ -59,11 +60,11 @@ import static org.sagebionetworks.template.Constants.ENVIRONMENT;
 import static org.sagebionetworks.template.Constants.EXCEPTION_THROWER;
 import static org.sagebionetworks.template.Constants.GLOBAL_RESOURCES_EXPORT_PREFIX;
 import static org.sagebionetworks.template.Constants.INSTANCE;
-import static org.sagebionetworks.template.Constants.JSON_INDENT;
 import static org.sagebionetworks.template.Constants.NOSNAPSHOT;
 import static org.sagebionetworks.template.Constants.OAUTH_ENDPOINT;
 import static org.sagebionetworks.template.Constants.OUTPUT_NAME_SUFFIX_REPOSITORY_DB_ENDPOINT;
 import static org.sagebionetworks.template.Constants.PARAMETER_MYSQL_PASSWORD;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BEANSTALK_CONCURRENT_DEPLOYMENT;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BEANSTALK_HEALTH_CHECK_URL;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BEANSTALK_MAX_INSTANCES;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BEANSTALK_MIN_INSTANCES;
@@ -108,10 +109,15 @@ import static org.sagebionetworks.template.Constants.VPC_SUBNET_COLOR;
 
 public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder {
 
+	// namespaces of the lookups shared by all of the environments.
+	static final String LOOKUP_PLATFORM_VERSION = "beanstalk.platform.version";
+	static final String LOOKUP_SOLUTION_STACK_NAME = "beanstalk.solution.stack.name";
+	static final String LOOKUP_PRIVATE_SUBNETS = "vpc.private.subnets";
+	static final String LOOKUP_INSTANCE_TYPE_SUBNETS = "ec2.instance.type.subnets";
 
 	private final CloudFormationClient cloudFormationClient;
 	private final Ec2Client ec2Client;
-	private final VelocityEngine velocityEngine;
+	private final TemplateRenderer templateRenderer;
 	private final RepoConfiguration config;
 	private final Logger logger;
 	private final ArtifactCopy artifactCopy;
@@ -122,18 +128,21 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 	private final CloudwatchLogsVelocityContextProvider cwlContextProvider;
 	private final AWSElasticBeanstalk beanstalkClient;
 	private final TimeToLive timeToLive;
+	private final DeploymentOrchestrator deploymentOrchestrator;
+	private final LookupCache lookupCache;
 
 	@Inject
-	public RepositoryTemplateBuilderImpl(CloudFormationClient cloudFormationClient, VelocityEngine velocityEngine,
+	public RepositoryTemplateBuilderImpl(CloudFormationClient cloudFormationClient, TemplateRenderer templateRenderer,
 										 RepoConfiguration configuration, LoggerFactory loggerFactory, ArtifactCopy artifactCopy,
 										 SecretBuilder secretBuilder, Set<VelocityContextProvider> contextProviders,
 										 ElasticBeanstalkSolutionStackNameProvider elasticBeanstalkDefaultAMIEncrypter,
 										 StackTagsProvider stackTagsProvider, CloudwatchLogsVelocityContextProvider cloudwatchLogsVelocityContextProvider,
-										 Ec2Client ec2Client, AWSElasticBeanstalk beanstalkClient, TimeToLive ttl) {
+										 Ec2Client ec2Client, AWSElasticBeanstalk beanstalkClient, TimeToLive ttl,
+										 DeploymentOrchestrator deploymentOrchestrator, LookupCache lookupCache) {
 		super();
 		this.cloudFormationClient = cloudFormationClient;
 		this.ec2Client = ec2Client;
-		this.velocityEngine = velocityEngine;
+		this.templateRenderer = templateRenderer;
 		this.config = configuration;
 		this.logger = loggerFactory.getLogger(RepositoryTemplateBuilderImpl.class);
 		this.artifactCopy = artifactCopy;
@@ -144,14 +153,21 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 		this.cwlContextProvider = cloudwatchLogsVelocityContextProvider;
 		this.beanstalkClient = beanstalkClient;
 		this.timeToLive = ttl;
+		this.deploymentOrchestrator = deploymentOrchestrator;
+		this.lookupCache = lookupCache;
 	}
 
 	public String getActualBeanstalkAmazonLinuxPlatform() {
-		final String LATEST = "latest";	// default is to request latest version
-		// Check AWS Beanstalk current platform vs what we have in config
 		String javaVersion = config.getProperty(PROPERTY_KEY_ELASTICBEANSTALK_IMAGE_VERSION_JAVA);
 		String tomcatVersion = config.getProperty(PROPERTY_KEY_ELASTICBEANSTALK_IMAGE_VERSION_TOMCAT);
 		String requestedPlatformVersion = config.getProperty(PROPERTY_KEY_ELASTICBEANSTALK_IMAGE_VERSION_AMAZONLINUX);
+		return lookupCache.get(LOOKUP_PLATFORM_VERSION, Arrays.asList(javaVersion, tomcatVersion, requestedPlatformVersion),
+				k -> lookupActualBeanstalkAmazonLinuxPlatform(javaVersion, tomcatVersion, requestedPlatformVersion));
+	}
+
+	String lookupActualBeanstalkAmazonLinuxPlatform(String javaVersion, String tomcatVersion, String requestedPlatformVersion) {
+		final String LATEST = "latest";	// default is to request latest version
+		// Check AWS Beanstalk current platform vs what we have in config
 		ListPlatformVersionsRequest lpvReq = BeanstalkUtils.buildListPlatformVersionsRequest(javaVersion, tomcatVersion, null);
 		ListPlatformVersionsResult lpvRes = this.beanstalkClient.listPlatformVersions(lpvReq);
 		List<PlatformSummary> summaries = lpvRes.getPlatformSummaryList();
@@ -169,6 +185,8 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 
 	@Override
 	public void buildAndDeploy() throws InterruptedException {
+		// the secret values are read once for this build.
+		lookupCache.invalidate(SecretBuilderImpl.LOOKUP_SECRET_VALUE);
 
 		// Create the context from the input
 		VelocityContext context = createSharedContext();
@@ -190,11 +208,22 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 	 * @param sharedStackResults
 	 */
 	public List<String> buildEnvironments(Stack sharedStackResults) {
+		// the lookups are scoped to a single build of the environments.
+		lookupCache.invalidate(LOOKUP_PLATFORM_VERSION);
+		lookupCache.invalidate(LOOKUP_SOLUTION_STACK_NAME);
+		lookupCache.invalidate(LOOKUP_PRIVATE_SUBNETS);
+		lookupCache.invalidate(LOOKUP_INSTANCE_TYPE_SUBNETS);
 		// Create the repo/worker secrets
 		SourceBundle secretsSouce = secretBuilder.createSecrets();
+		// the plaintext values are not needed once the bundle is uploaded.
+		lookupCache.invalidate(SecretBuilderImpl.LOOKUP_SECRET_VALUE);
 		
 		Parameter ttl = timeToLive.createTimeToLiveParameter().orElse(null);
 
+		if (isConcurrentDeployment()) {
+			return buildEnvironmentsConcurrently(sharedStackResults, createEnvironments(secretsSouce), ttl);
+		}
+
 		List<String> environmentNames = new LinkedList<String>();
 		// each environment is treated as its own stack.
 		for (EnvironmentDescriptor environment : createEnvironments(secretsSouce)) {
@@ -205,6 +234,50 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 		}
 		return environmentNames;
 	}
+
+	/**
+	 * Deploy all of the environment stacks at the same time and wait for all of
+	 * them to complete. Each environment is reported individually and a failure of
+	 * one environment does not stop the others.
+	 * 
+	 * @param sharedStackResults
+	 * @param environments
+	 * @param ttl
+	 * @return
+	 */
+	List<String> buildEnvironmentsConcurrently(Stack sharedStackResults, List<EnvironmentDescriptor> environments, Parameter ttl) {
+		List<String> environmentNames = new LinkedList<String>();
+		List<DeploymentNode> nodes = new LinkedList<>();
+		for (EnvironmentDescriptor environment : environments) {
+			environmentNames.add(environment.getName());
+			nodes.add(new DeploymentNode().withName(environment.getName()).withStep(() -> {
+				VelocityContext context = createEnvironmentContext(sharedStackResults, environment);
+				buildAndDeployStack(context, environment.getName(), TEMPALTE_BEAN_STALK_ENVIRONMENT, ttl);
+				cloudFormationClient.waitForStackToComplete(environment.getName());
+			}));
+		}
+		runConcurrently(nodes);
+		return environmentNames;
+	}
+
+	/**
+	 * When true the environment artifacts are copied and the environment stacks
+	 * are deployed concurrently.
+	 * 
+	 * @return
+	 */
+	boolean isConcurrentDeployment() {
+		return config.getBooleanProperty(PROPERTY_KEY_BEANSTALK_CONCURRENT_DEPLOYMENT, false);
+	}
+
+	void runConcurrently(List<DeploymentNode> nodes) {
+		try {
+			deploymentOrchestrator.deploy(nodes);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
 	
 
 	/**
@@ -233,7 +306,8 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 		String javaVersion = config.getProperty(PROPERTY_KEY_ELASTICBEANSTALK_IMAGE_VERSION_JAVA);
 		String tomcatVersion = config.getProperty(PROPERTY_KEY_ELASTICBEANSTALK_IMAGE_VERSION_TOMCAT);
 		String linuxVersion = getActualBeanstalkAmazonLinuxPlatform();
-		String solutionStackName = elasticBeanstalkSolutionStackNameProvider.getSolutionStackName(tomcatVersion, javaVersion, linuxVersion);
+		String solutionStackName = lookupCache.get(LOOKUP_SOLUTION_STACK_NAME, Arrays.asList(tomcatVersion, javaVersion, linuxVersion),
+				k -> elasticBeanstalkSolutionStackNameProvider.getSolutionStackName(tomcatVersion, javaVersion, linuxVersion));
 		context.put(SOLUTION_STACK_NAME, solutionStackName);
 
 		// oauth
@@ -248,7 +322,8 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 		
 		// Determine Beanstalk subnets for instances
 		List<String> vpcSubnets = getPrivateSubnets(config.getProperty(PROPERTY_KEY_VPC_SUBNET_COLOR));
-		List<String> beanstalkSubnets = ec2Client.getAvailableSubnetsForInstanceType(ec2InstanceType, vpcSubnets);
+		List<String> beanstalkSubnets = lookupCache.get(LOOKUP_INSTANCE_TYPE_SUBNETS, Arrays.asList(ec2InstanceType, vpcSubnets),
+				k -> ec2Client.getAvailableSubnetsForInstanceType(ec2InstanceType, vpcSubnets));
 		String beanstalkSubnetsAsString = String.join(",", beanstalkSubnets);
 		context.put(BEANSTALK_INSTANCES_SUBNETS, beanstalkSubnetsAsString);
 
@@ -272,15 +347,8 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 		boolean enableTerminationProtection = ("prod".equals(stack)); // enable on prod stack
 		List<Tag> stackTags = stackTagsProvider.getStackTags();
 
-		// Merge the context with the template
-		Template template = this.velocityEngine.getTemplate(templatePath);
-		StringWriter stringWriter = new StringWriter();
-		template.merge(context, stringWriter);
-		// Parse the resulting template
-		String resultJSON = stringWriter.toString();
-		JSONObject templateJson = new JSONObject(resultJSON);
-		// Format the JSON
-		resultJSON = templateJson.toString(JSON_INDENT);
+		// Merge the context with the template and format the JSON
+		String resultJSON = templateRenderer.renderJson(templatePath, context);
 		this.logger.info("Template for stack: " + stackName);
 		this.logger.info(resultJSON);
 		// create or update the template
@@ -415,10 +483,8 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 				// Environment secrets
 				SourceBundle environmentSecrets = type.shouldIncludeSecrets() ? secrets : null;
 
-				// Copy the version from artifactory to S3.
-				SourceBundle bundle = artifactCopy.copyArtifactIfNeeded(type, version, number);
 				environmentDescriptors.add(new EnvironmentDescriptor().withName(name).withRefName(refName).withNumber(number)
-						.withHealthCheckUrl(healthCheckUrl).withSourceBundle(bundle).withType(type)
+						.withHealthCheckUrl(healthCheckUrl).withType(type)
 						.withMinInstances(minInstances).withMaxInstances(maxInstances)
 						.withVersionLabel(version)
 						.withSslCertificateARN(sslCertificateARN)
@@ -430,9 +496,36 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 				logger.warn("The Environment " + type + " was not created because " + e.getMissingKey() + " was not found");
 			}
 		}
+		copyArtifacts(environmentDescriptors);
 		return environmentDescriptors;
 	}
 
+	/**
+	 * Copy the version of each environment from artifactory to S3, concurrently
+	 * if enabled.
+	 * 
+	 * @param environmentDescriptors
+	 */
+	void copyArtifacts(List<EnvironmentDescriptor> environmentDescriptors) {
+		if (!isConcurrentDeployment()) {
+			for (EnvironmentDescriptor environment : environmentDescriptors) {
+				copyArtifact(environment);
+			}
+			return;
+		}
+		List<DeploymentNode> nodes = new LinkedList<>();
+		for (EnvironmentDescriptor environment : environmentDescriptors) {
+			nodes.add(new DeploymentNode().withName("artifact-" + environment.getName()).withStep(() -> copyArtifact(environment)));
+		}
+		runConcurrently(nodes);
+	}
+
+	void copyArtifact(EnvironmentDescriptor environment) {
+		EnvironmentType type = EnvironmentType.valueOfPrefix(environment.getType());
+		SourceBundle bundle = artifactCopy.copyArtifactIfNeeded(type, environment.getVersionLabel(), environment.getNumber());
+		environment.withSourceBundle(bundle);
+	}
+
 	/**
 	 * Create the parameters to be passed to the template at runtime.
 	 * 
@@ -501,6 +594,10 @@ public class RepositoryTemplateBuilderImpl implements RepositoryTemplateBuilder
 	 */
 	List<String> getPrivateSubnets(String color) {
 		String stack = config.getProperty(PROPERTY_KEY_STACK);
+		return lookupCache.get(LOOKUP_PRIVATE_SUBNETS, Arrays.asList(stack, color), k -> lookupPrivateSubnets(stack, color));
+	}
+
+	List<String> lookupPrivateSubnets(String stack, String color) {
 		String privateSubnets = cloudFormationClient.getOutput(
 				Constants.createVpcPrivateSubnetsStackName(stack, color),
 				Constants.VPC_PRIVATE_SUBNETS_STACK_PRIVATE_SUBNETS_OUPUT_KEY);
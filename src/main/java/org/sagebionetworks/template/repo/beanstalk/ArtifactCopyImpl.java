@@ -6,7 +6,8 @@ import org.apache.logging.log4j.Logger;
 import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.repo.beanstalk.ssl.ElasticBeanstalkExtentionBuilder;
-import org.sagebionetworks.template.utils.ArtifactDownload;
+import org.sagebionetworks.template.s3.S3FileUploader;
+import org.sagebionetworks.template.utils.ArtifactCache;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.google.inject.Inject;
@@ -15,20 +16,23 @@ public class ArtifactCopyImpl implements ArtifactCopy {
 
 	private AmazonS3 s3Client;
 	private Configuration configuration;
-	private ArtifactDownload downloader;
+	private ArtifactCache artifactCache;
 	private ElasticBeanstalkExtentionBuilder ebBuilder;
+	private S3FileUploader uploader;
 	
 	private Logger logger;
 
 	@Inject
 	public ArtifactCopyImpl(AmazonS3 s3Client, Configuration propertyProvider,
-			ArtifactDownload downloader, LoggerFactory loggerFactory, ElasticBeanstalkExtentionBuilder ebBuilder) {
+			ArtifactCache artifactCache, LoggerFactory loggerFactory, ElasticBeanstalkExtentionBuilder ebBuilder,
+			S3FileUploader uploader) {
 		super();
 		this.s3Client = s3Client;
 		this.configuration = propertyProvider;
-		this.downloader = downloader;
+		this.artifactCache = artifactCache;
 		this.logger = loggerFactory.getLogger(ArtifactCopyImpl.class);
 		this.ebBuilder = ebBuilder;
+		this.uploader = uploader;
 	}
 
 	@Override
@@ -44,17 +48,16 @@ public class ArtifactCopyImpl implements ArtifactCopy {
 			 */
 			String artifactoryUrl = environment.createArtifactoryUrl(version);
 			logger.info("Downloading artifact: "+artifactoryUrl);
-			File download = downloader.downloadFile(artifactoryUrl);
+			File download = artifactCache.get(artifactoryUrl);
 			File warWithExtentions = null;
 			try {
 				logger.info("Adding .ebextentions to war: "+s3Key);
 				// add the .eb extensions to the given war file.
 				warWithExtentions = ebBuilder.copyWarWithExtensions(download, environment);
 				logger.info("Uploading artifact to S3: "+s3Key);
-				s3Client.putObject(bucket, s3Key, warWithExtentions);
+				uploader.uploadFile(bucket, s3Key, warWithExtentions);
 			} finally {
-				// cleanup the temp file
-				download.delete();
+				// cleanup the temp file, the download belongs to the cache.
 				if(warWithExtentions != null) {
 					warWithExtentions.delete();
 				}
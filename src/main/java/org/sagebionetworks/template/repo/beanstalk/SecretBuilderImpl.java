@@ -1,8 +1,11 @@
 package org.sagebionetworks.template.repo.beanstalk;
 
+import static org.sagebionetworks.template.Constants.DEFAULT_SECRETS_MAX_CONCURRENCY;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_ID_GENERATOR_DATABASE_PASSWORD;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_INSTANCE;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_REPOSITORY_DATABASE_PASSWORD;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_SECRETS_ENVELOPE_ENCRYPTION;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_SECRETS_MAX_CONCURRENCY;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_SECRET_KEYS_CSV;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_STACK;
 
@@ -10,15 +13,40 @@ import java.io.ByteArrayInputStream;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.sagebionetworks.template.ConcurrentTasks;
+import org.sagebionetworks.template.LookupCache;
+import org.sagebionetworks.template.ThreadProvider;
 import org.sagebionetworks.template.config.Configuration;
 
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
 import com.amazonaws.services.kms.AWSKMS;
+import com.amazonaws.services.kms.model.DataKeySpec;
 import com.amazonaws.services.kms.model.EncryptRequest;
 import com.amazonaws.services.kms.model.EncryptResult;
+import com.amazonaws.services.kms.model.GenerateDataKeyRequest;
+import com.amazonaws.services.kms.model.GenerateDataKeyResult;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
@@ -35,30 +63,77 @@ public class SecretBuilderImpl implements SecretBuilder {
 	private static final String SAGEBIONETWORKS = "sagebionetworks";
 	private static final String ORG = "org";
 	public static final String UTF_8 = "UTF-8";
+	/**
+	 * The plaintext secret values, keyed by their master secret key. The caller
+	 * scopes them to a build by invalidating this namespace.
+	 */
+	public static final String LOOKUP_SECRET_VALUE = "secrets.value";
+	/**
+	 * Throttled calls are retried by the client first, these attempts apply once
+	 * its retries are exhausted.
+	 */
+	public static final int MAX_THROTTLED_ATTEMPTS = 3;
+	public static final long THROTTLED_DELAY_MS = 1000;
+	/**
+	 * With envelope encryption the bundle holds the data key, wrapped by the
+	 * stack's CMK, and the cipher used to encrypt each secret with it.
+	 */
+	public static final String ENVELOPE_DATA_KEY = "org.sagebionetworks.secrets.envelope.data.key";
+	public static final String ENVELOPE_CIPHER = "org.sagebionetworks.secrets.envelope.cipher";
+	public static final String AES = "AES";
+	public static final String AES_GCM = "AES/GCM/NoPadding";
+	public static final int GCM_IV_BYTES = 12;
+	public static final int GCM_TAG_BITS = 128;
+	private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 	
 	Configuration config;
 	AWSSecretsManager secretManager;
 	AWSKMS keyManager;
 	AmazonS3 s3Client;
+	ThreadProvider threadProvider;
+	LookupCache lookupCache;
 	
 	@Inject
-	public SecretBuilderImpl(RepoConfiguration config, AWSSecretsManager secretManager, AWSKMS keyManager, AmazonS3 s3Client) {
+	public SecretBuilderImpl(RepoConfiguration config, AWSSecretsManager secretManager, AWSKMS keyManager, AmazonS3 s3Client,
+			ThreadProvider threadProvider, LookupCache lookupCache) {
 		super();
 		this.config = config;
 		this.secretManager = secretManager;
 		this.keyManager = keyManager;
 		this.s3Client = s3Client;
+		this.threadProvider = threadProvider;
+		this.lookupCache = lookupCache;
 	}
 
 	@Override
 	public SourceBundle createSecrets() {
 		// Load the secret names
-		String[] secretNames = config.getComaSeparatedProperty(PROPERTY_KEY_SECRET_KEYS_CSV);
+		Set<String> secretNames = new LinkedHashSet<>(Arrays.asList(config.getComaSeparatedProperty(PROPERTY_KEY_SECRET_KEYS_CSV)));
 		Properties secrets = new Properties();
-		for (int i = 0; i < secretNames.length; i++) {
-			String secretKey = secretNames[i];
-			String secretCipher = createSecret(secretKey);
-			secrets.put(secretKey, secretCipher);
+		if (!secretNames.isEmpty()) {
+			Function<String, String> encryptor = this::createSecret;
+			if (config.getBooleanProperty(PROPERTY_KEY_SECRETS_ENVELOPE_ENCRYPTION, false)) {
+				// A single data key encrypts all of the secrets, only its wrapped copy is stored.
+				GenerateDataKeyResult dataKeyResult = retryThrottled(() -> keyManager.generateDataKey(new GenerateDataKeyRequest()
+						.withKeyId(getCMKAlias()).withKeySpec(DataKeySpec.AES_256)));
+				ByteBuffer plaintextKey = dataKeyResult.getPlaintext();
+				byte[] keyBytes = toBytes(plaintextKey.duplicate());
+				SecretKey dataKey = new SecretKeySpec(keyBytes, AES);
+				// Only the key spec keeps the plaintext key.
+				Arrays.fill(keyBytes, (byte) 0);
+				zero(plaintextKey);
+				secrets.put(ENVELOPE_DATA_KEY, base64Encode(dataKeyResult.getCiphertextBlob()));
+				secrets.put(ENVELOPE_CIPHER, AES_GCM);
+				encryptor = secretKey -> encryptWithDataKey(dataKey, secretKey, getSecretValue(secretKey));
+			}
+			// Each secret is fetched and encrypted on its own thread.
+			int maxConcurrency = config.getIntegerProperty(PROPERTY_KEY_SECRETS_MAX_CONCURRENCY, DEFAULT_SECRETS_MAX_CONCURRENCY);
+			Map<String, Callable<String>> tasks = new LinkedHashMap<>();
+			for (String secretKey : secretNames) {
+				Function<String, String> encrypt = encryptor;
+				tasks.put(secretKey, () -> encrypt.apply(secretKey));
+			}
+			secrets.putAll(ConcurrentTasks.runAll(threadProvider, maxConcurrency, tasks, "create secrets"));
 		}
 		return uploadSecretsToS3(secrets);
 	}
@@ -115,22 +190,68 @@ public class SecretBuilderImpl implements SecretBuilder {
 	String createSecret(String key) {
 		String plaintextValue = getSecretValue(key);
 		// Encrypt the value using the stack's key
-		EncryptResult encryptResult = keyManager.encrypt(new EncryptRequest()
-				.withPlaintext(stringToByteBuffer(plaintextValue)).withKeyId(getCMKAlias()));
+		EncryptResult encryptResult = retryThrottled(() -> keyManager.encrypt(new EncryptRequest()
+				.withPlaintext(stringToByteBuffer(plaintextValue)).withKeyId(getCMKAlias())));
 		String encryptedValue = base64Encode(encryptResult.getCiphertextBlob());
 		return encryptedValue;
 	}
 
 	/**
-	 * Get plaintext value for the given secret.
+	 * Encrypt the value of a secret locally with the data key using AES-GCM. The
+	 * secret key is authenticated with the value so a value cannot be moved to
+	 * another key of the bundle.
+	 * 
+	 * @param dataKey
+	 * @param key       The key of the secret.
+	 * @param plaintext
+	 * @return Base 64 of the random IV followed by the ciphertext and tag.
+	 */
+	static String encryptWithDataKey(SecretKey dataKey, String key, String plaintext) {
+		try {
+			byte[] iv = new byte[GCM_IV_BYTES];
+			SECURE_RANDOM.nextBytes(iv);
+			Cipher cipher = Cipher.getInstance(AES_GCM);
+			cipher.init(Cipher.ENCRYPT_MODE, dataKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+			cipher.updateAAD(key.getBytes(StandardCharsets.UTF_8));
+			byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+			return base64Encode(ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).flip());
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Read the remaining bytes of the buffer.
+	 */
+	static byte[] toBytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Overwrite the content of the buffer, up to its limit, with zeros.
+	 */
+	static void zero(ByteBuffer buffer) {
+		for (int i = 0; i < buffer.limit(); i++) {
+			buffer.put(i, (byte) 0);
+		}
+	}
+
+	/**
+	 * Get plaintext value for the given secret, fetched at most once until the
+	 * {@link #LOOKUP_SECRET_VALUE} namespace is invalidated.
 	 * 
 	 * @param key
 	 * @return
 	 */
 	String getSecretValue(String key) {
-		String masterKey = getMasterSecretKey(key);
+		return lookupCache.get(LOOKUP_SECRET_VALUE, getMasterSecretKey(key), this::fetchSecretValue);
+	}
+
+	String fetchSecretValue(String masterKey) {
 		// Fetch the master plaintext value for this keys
-		GetSecretValueResult secretResult = secretManager.getSecretValue(new GetSecretValueRequest().withSecretId(masterKey));
+		GetSecretValueResult secretResult = retryThrottled(() -> secretManager.getSecretValue(new GetSecretValueRequest().withSecretId(masterKey)));
 		String plaintextValue = secretResult.getSecretString();
 		if(plaintextValue == null) {
 			throw new IllegalArgumentException("Secret string is null for: "+masterKey);
@@ -138,6 +259,31 @@ public class SecretBuilderImpl implements SecretBuilder {
 		return plaintextValue;
 	}
 
+	/**
+	 * Make the given call, retrying with a jittered backoff while it is throttled.
+	 * 
+	 * @param call
+	 * @return
+	 */
+	<T> T retryThrottled(Supplier<T> call) {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return call.get();
+			} catch (AmazonServiceException e) {
+				if (!RetryUtils.isThrottlingException(e) || attempt >= MAX_THROTTLED_ATTEMPTS) {
+					throw e;
+				}
+				long delayMS = THROTTLED_DELAY_MS * attempt + ThreadLocalRandom.current().nextLong(THROTTLED_DELAY_MS);
+				try {
+					threadProvider.sleep(delayMS);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(ie);
+				}
+			}
+		}
+	}
+
 	/**
 	 * The master secret key is '<stack>.key'
 	 * 
@@ -191,11 +337,8 @@ public class SecretBuilderImpl implements SecretBuilder {
 	 * @return
 	 */
 	public static String base64Encode(ByteBuffer buffer) {
-		// read the remaining bytes from the buffer
-		byte[] bytes = new byte[buffer.remaining()];
-		buffer.get(bytes);
 		try {
-			return new String(Base64.getEncoder().encode(bytes), UTF_8);
+			return new String(Base64.getEncoder().encode(toBytes(buffer)), UTF_8);
 		} catch (UnsupportedEncodingException e) {
 			throw new RuntimeException(e);
 		}
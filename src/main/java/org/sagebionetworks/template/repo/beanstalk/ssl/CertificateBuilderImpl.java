@@ -3,36 +3,29 @@ package org.sagebionetworks.template.repo.beanstalk.ssl;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.math.BigInteger;
+import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
 import java.security.Security;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.util.Calendar;
 import java.util.Date;
 
 import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cert.X509v3CertificateBuilder;
 import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
-import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
-import org.bouncycastle.crypto.util.PrivateKeyFactory;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.ContentSigner;
-import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
-import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
 import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.bc.BcRSAContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.util.io.pem.PemObject;
 import org.bouncycastle.util.io.pem.PemWriter;
 
@@ -46,21 +39,49 @@ public class CertificateBuilderImpl implements CertificateBuilder {
 
 	public static final String CERTIFICATE = "CERTIFICATE";
 	public static final String RSA_PRIVATE_KEY = "RSA PRIVATE KEY";
+	public static final String PRIVATE_KEY = "PRIVATE KEY";
 	public static final String CERTIFICATE_DISTINGUISHED_NAME = "CN=SageBionetworks,O=SageBionetworks,L=Seattle,ST=Washington,C=US";
 	/**
 	 * See https://en.wikipedia.org/wiki/Key_size
 	 */
 	public static final int RSA_KEY_SIZE_BITS = 2048;
+	/**
+	 * NIST P-256, as strong as a 3072 bit RSA key and much faster to generate.
+	 */
+	public static final String EC_CURVE = "secp256r1";
+
+	static {
+		// Use the bouncy castle
+		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+			Security.addProvider(new BouncyCastleProvider());
+		}
+		// Ensure we can create a key with a sufficient size.
+		Security.setProperty("crypto.policy", "unlimited");
+	}
+
+	private final KeyAlgorithm keyAlgorithm;
+
+	/**
+	 * Builds certificates with RSA keys.
+	 */
+	public CertificateBuilderImpl() {
+		this(KeyAlgorithm.RSA);
+	}
+
+	public CertificateBuilderImpl(KeyAlgorithm keyAlgorithm) {
+		this.keyAlgorithm = keyAlgorithm;
+	}
 
 	@Override
 	public CertificatePair buildNewX509CertificatePair() {
 		try {
 			// Create the key pair
-			KeyPair keyPair = CertificateBuilderImpl.createNewKeyPair();
+			KeyPair keyPair = CertificateBuilderImpl.createNewKeyPair(keyAlgorithm);
 			// Create the X.509 public key certificate signed with the private key
 			X509Certificate x509Certificate = CertificateBuilderImpl.generateX509Certificate(keyPair);
 			// convert both to PEM.
-			String privateKeyPEM = createPemString(RSA_PRIVATE_KEY, keyPair.getPrivate().getEncoded());
+			String privateKeyType = keyAlgorithm == KeyAlgorithm.RSA ? RSA_PRIVATE_KEY : PRIVATE_KEY;
+			String privateKeyPEM = createPemString(privateKeyType, keyPair.getPrivate().getEncoded());
 			String certificatePEM = createPemString(CERTIFICATE, x509Certificate.getEncoded());
 			return new CertificatePair(certificatePEM, privateKeyPEM);
 		} catch (Exception e) {
@@ -86,36 +107,48 @@ public class CertificateBuilderImpl implements CertificateBuilder {
 	}
 
 	/**
-	 * Create a new RAS KeyPair with key size of 2048 bits using
-	 * {@link SecureRandom#getInstanceStrong()} as the entropy source. Uses bouncy
-	 * castle.
+	 * Create a new RAS KeyPair with key size of 2048 bits.
 	 * 
 	 * @return
 	 * @throws NoSuchAlgorithmException
-	 * @throws NoSuchProviderException
 	 */
 	public static KeyPair createNewKeyPair() throws NoSuchAlgorithmException {
-		// Use the bouncy castle
-		Security.addProvider(new BouncyCastleProvider());
-		// Ensure we can create a key with a sufficient size.
-		Security.setProperty("crypto.policy", "unlimited");
-		String algorithm = "RSA";
-		int maxKeySize = javax.crypto.Cipher.getMaxAllowedKeyLength(algorithm);
-		if (maxKeySize < RSA_KEY_SIZE_BITS) {
-			throw new IllegalStateException(
-					"Cannot create a key with a sufficient number of bits. Max key size: " + maxKeySize);
+		return createNewKeyPair(KeyAlgorithm.RSA);
+	}
+
+	/**
+	 * Create a new KeyPair, either RSA with a key size of 2048 bits or EC on the
+	 * P-256 curve.
+	 * 
+	 * @param keyAlgorithm
+	 * @return
+	 * @throws NoSuchAlgorithmException
+	 */
+	public static KeyPair createNewKeyPair(KeyAlgorithm keyAlgorithm) throws NoSuchAlgorithmException {
+		KeyPairGenerator keyGen = KeyPairGenerator.getInstance(keyAlgorithm.name());
+		if (keyAlgorithm == KeyAlgorithm.EC) {
+			try {
+				keyGen.initialize(new ECGenParameterSpec(EC_CURVE), new SecureRandom());
+			} catch (InvalidAlgorithmParameterException e) {
+				throw new IllegalStateException(e);
+			}
+		} else {
+			int maxKeySize = javax.crypto.Cipher.getMaxAllowedKeyLength(keyAlgorithm.name());
+			if (maxKeySize < RSA_KEY_SIZE_BITS) {
+				throw new IllegalStateException(
+						"Cannot create a key with a sufficient number of bits. Max key size: " + maxKeySize);
+			}
+			keyGen.initialize(RSA_KEY_SIZE_BITS, new SecureRandom());
 		}
-		KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-		keyGen.initialize(RSA_KEY_SIZE_BITS, new SecureRandom());
 		return keyGen.generateKeyPair();
 	}
 
 	/**
-	 * Generate a X.509 Certificate using the provided RSA key. The resulting
-	 * certificate will be self-signed using "SHA256withRSA" and will expire in one
-	 * year. Uses bouncy castle.
+	 * Generate a X.509 Certificate using the provided RSA or EC key. The resulting
+	 * certificate will be self-signed using "SHA256withRSA" or "SHA256withECDSA"
+	 * and will expire in one year. Uses bouncy castle.
 	 * 
-	 * @param keyPair RSA public/private key pair.
+	 * @param keyPair RSA or EC public/private key pair.
 	 * @return
 	 * @throws IOException
 	 * @throws OperatorCreationException
@@ -123,8 +156,6 @@ public class CertificateBuilderImpl implements CertificateBuilder {
 	 */
 	public static X509Certificate generateX509Certificate(KeyPair keyPair)
 			throws IOException, OperatorCreationException, CertificateException {
-		// Use the bouncy castle
-		Security.addProvider(new BouncyCastleProvider());
 		// Valid between now and one year from now
 		ZonedDateTime now = ZonedDateTime.ofInstant(Instant.now(), ZoneId.of("UTC"));
 		ZonedDateTime end = now.plusYears(1);
@@ -139,14 +170,12 @@ public class CertificateBuilderImpl implements CertificateBuilder {
 		X509v3CertificateBuilder v3CertGen = new X509v3CertificateBuilder(distinguishedName, serialNumber, startDate,
 				endDate, distinguishedName, subPubKeyInfo);
 		// sign with the private key.
-		String signingAlgorithm = "SHA256withRSA";
-		AlgorithmIdentifier sigAlgId = new DefaultSignatureAlgorithmIdentifierFinder().find(signingAlgorithm);
-		AlgorithmIdentifier digAlgId = new DefaultDigestAlgorithmIdentifierFinder().find(sigAlgId);
-		AsymmetricKeyParameter privateKeyAsymKeyParam = PrivateKeyFactory.createKey(keyPair.getPrivate().getEncoded());
-		ContentSigner sigGen = new BcRSAContentSignerBuilder(sigAlgId, digAlgId).build(privateKeyAsymKeyParam);
+		String signingAlgorithm = "RSA".equals(keyPair.getPrivate().getAlgorithm()) ? "SHA256withRSA" : "SHA256withECDSA";
+		ContentSigner sigGen = new JcaContentSignerBuilder(signingAlgorithm).setProvider(BouncyCastleProvider.PROVIDER_NAME)
+				.build(keyPair.getPrivate());
 		// build the certificate
 		X509CertificateHolder certificateHolder = v3CertGen.build(sigGen);
-		return new JcaX509CertificateConverter().setProvider("BC").getCertificate(certificateHolder);
+		return new JcaX509CertificateConverter().setProvider(BouncyCastleProvider.PROVIDER_NAME).getCertificate(certificateHolder);
 	}
 
 }
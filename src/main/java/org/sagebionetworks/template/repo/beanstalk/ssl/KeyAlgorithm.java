@@ -0,0 +1,17 @@
+package org.sagebionetworks.template.repo.beanstalk.ssl;
+
+/**
+ * The algorithm of the key pair of a certificate.
+ */
+public enum KeyAlgorithm {
+
+	/**
+	 * 2048 bit RSA keys.
+	 */
+	RSA,
+	/**
+	 * P-256 elliptic curve keys, much faster to generate than RSA keys.
+	 */
+	EC;
+
+}
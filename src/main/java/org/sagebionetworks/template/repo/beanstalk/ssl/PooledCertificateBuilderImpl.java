@@ -0,0 +1,94 @@
+package org.sagebionetworks.template.repo.beanstalk.ssl;
+
+import static org.sagebionetworks.template.Constants.DEFAULT_CERTIFICATE_POOL_SIZE;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_CERTIFICATE_EC_KEYS;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_CERTIFICATE_POOL_SIZE;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.ThreadProvider;
+import org.sagebionetworks.template.config.Configuration;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * A CertificateBuilder that keeps a small pool of certificate pairs generated
+ * on a background thread, starting as soon as it is created, so the key
+ * generation does not happen while the extensions are added to a war. Each
+ * pair is handed out once. When the pool is empty a pair is built on the
+ * calling thread rather than waiting for the background thread.
+ *
+ */
+@Singleton
+public class PooledCertificateBuilderImpl implements CertificateBuilder {
+
+	private final CertificateBuilder generator;
+	private final BlockingQueue<CertificatePair> pool;
+	private final Executor executor;
+	private final AtomicBoolean filling = new AtomicBoolean(false);
+	private final Logger logger;
+
+	@Inject
+	public PooledCertificateBuilderImpl(Configuration config, ThreadProvider threadProvider, LoggerFactory loggerFactory) {
+		this(new CertificateBuilderImpl(config.getBooleanProperty(PROPERTY_KEY_CERTIFICATE_EC_KEYS, false) ? KeyAlgorithm.EC : KeyAlgorithm.RSA),
+				config.getIntegerProperty(PROPERTY_KEY_CERTIFICATE_POOL_SIZE, DEFAULT_CERTIFICATE_POOL_SIZE),
+				// daemon thread, so an unused pool does not keep the JVM alive.
+				threadProvider.newSingleThreadScheduledExecutor(), loggerFactory);
+	}
+
+	PooledCertificateBuilderImpl(CertificateBuilder generator, int poolSize, Executor executor, LoggerFactory loggerFactory) {
+		this.generator = generator;
+		this.pool = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+		this.executor = executor;
+		this.logger = loggerFactory.getLogger(PooledCertificateBuilderImpl.class);
+		refill();
+	}
+
+	@Override
+	public CertificatePair buildNewX509CertificatePair() {
+		CertificatePair pair = pool.poll();
+		refill();
+		if (pair == null) {
+			logger.info("No pre-generated certificate pair available, generating one");
+			pair = generator.buildNewX509CertificatePair();
+		}
+		return pair;
+	}
+
+	/**
+	 * @return The number of pairs currently in the pool.
+	 */
+	int getPoolSize() {
+		return pool.size();
+	}
+
+	/**
+	 * Start filling the pool on the background thread, unless it is already
+	 * being filled.
+	 */
+	void refill() {
+		if (filling.compareAndSet(false, true)) {
+			executor.execute(this::fill);
+		}
+	}
+
+	private void fill() {
+		try {
+			while (pool.remainingCapacity() > 0) {
+				pool.offer(generator.buildNewX509CertificatePair());
+			}
+		} catch (RuntimeException e) {
+			// the next request will build its own pair.
+			logger.warn("Failed to pre-generate a certificate pair: " + e.getMessage());
+		} finally {
+			filling.set(false);
+		}
+	}
+
+}
@@ -1,44 +1,51 @@
 package org.sagebionetworks.template.s3;
 
 import static org.sagebionetworks.template.Constants.CAPABILITY_NAMED_IAM;
+import static org.sagebionetworks.template.Constants.DEFAULT_S3_BUCKET_MAX_CONCURRENCY;
 import static org.sagebionetworks.template.Constants.GLOBAL_RESOURCES_STACK_NAME_FORMAT;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_LAMBDA_VIRUS_SCANNER_ARTIFACT_URL;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_S3_BUCKET_DRY_RUN;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_S3_BUCKET_MAX_CONCURRENCY;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_STACK;
 
 import java.io.File;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
-import org.json.JSONObject;
 import org.sagebionetworks.template.CloudFormationClient;
+import org.sagebionetworks.template.ConcurrentTasks;
 import org.sagebionetworks.template.Constants;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.StackTagsProvider;
+import org.sagebionetworks.template.TemplateRenderer;
 import org.sagebionetworks.template.TemplateUtils;
+import org.sagebionetworks.template.ThreadProvider;
 import org.sagebionetworks.template.config.RepoConfiguration;
-import org.sagebionetworks.template.utils.ArtifactDownload;
+import org.sagebionetworks.template.utils.ArtifactCache;
 
-import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.cloudformation.model.Stack;
 import com.amazonaws.services.lambda.AWSLambda;
 import com.amazonaws.services.lambda.model.InvocationType;
 import com.amazonaws.services.lambda.model.InvokeRequest;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.AbortIncompleteMultipartUpload;
-import com.amazonaws.services.s3.model.AmazonS3Exception;
 import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
 import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Rule;
 import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Transition;
@@ -113,22 +120,26 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 	private AWSLambda lambdaClient;
 	private RepoConfiguration config;
 	private S3Config s3Config;
-	private VelocityEngine velocity;
+	private TemplateRenderer templateRenderer;
 	private CloudFormationClient cloudFormationClient;
 	private StackTagsProvider tagsProvider;
-	private ArtifactDownload downloader;
+	private ArtifactCache artifactCache;
+	private S3FileUploader uploader;
+	private ThreadProvider threadProvider;
 	
 	@Inject
-	public S3BucketBuilderImpl(AmazonS3 s3Client, AWSSecurityTokenService stsClient, AWSLambda lambdaClient, RepoConfiguration config, S3Config s3Config, VelocityEngine velocity, CloudFormationClient cloudFormationClient, StackTagsProvider tagsProvider, ArtifactDownload downloader) {
+	public S3BucketBuilderImpl(AmazonS3 s3Client, AWSSecurityTokenService stsClient, AWSLambda lambdaClient, RepoConfiguration config, S3Config s3Config, TemplateRenderer templateRenderer, CloudFormationClient cloudFormationClient, StackTagsProvider tagsProvider, ArtifactCache artifactCache, S3FileUploader uploader, ThreadProvider threadProvider) {
 		this.s3Client = s3Client;
 		this.stsClient = stsClient;
 		this.lambdaClient = lambdaClient;
 		this.config = config;
 		this.s3Config = s3Config;
-		this.velocity = velocity;
+		this.templateRenderer = templateRenderer;
 		this.cloudFormationClient = cloudFormationClient;
 		this.tagsProvider = tagsProvider;
-		this.downloader = downloader;
+		this.artifactCache = artifactCache;
+		this.uploader = uploader;
+		this.threadProvider = threadProvider;
 	}
 
 	@Override
@@ -137,10 +148,8 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		
 		String accountId = stsClient.getCallerIdentity(new GetCallerIdentityRequest()).getAccount();
 		
-		List<String> virusScanEnabledBuckets = new ArrayList<>();
-		List<String> virusScanDisabledBuckets = new ArrayList<>();
+		List<S3BucketDescriptor> buckets = new ArrayList<>();
 		
-		// Configure all buckets first
 		for (S3BucketDescriptor bucket : s3Config.getBuckets()) {
 			
 			bucket.setName(TemplateUtils.replaceStackVariable(bucket.getName(), stack));
@@ -150,22 +159,41 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 				continue;
 			}
 			
-			createBucket(bucket.getName());
-			configureEncryption(bucket.getName());	
-			configureInventory(stack, bucket.getName(), accountId, s3Config.getInventoryConfig(), bucket.isInventoryEnabled());
-			configureBucketLifeCycle(bucket);
-			configureIntelligentTieringArchive(bucket);
-			configureBucketNotifications(bucket, stack);
-			
-			if (bucket.isVirusScanEnabled()) {
-				virusScanEnabledBuckets.add(bucket.getName());
-			} else {
-				virusScanDisabledBuckets.add(bucket.getName());
-			}
-			
+			buckets.add(bucket);
+		}
+		
+		boolean dryRun = config.getBooleanProperty(PROPERTY_KEY_S3_BUCKET_DRY_RUN, false);
+		
+		if (dryRun) {
+			LOG.info("Dry run, the bucket changes will be planned but not applied.");
 		}
+		
+		// The state read from S3 is shared by all the steps for a bucket within this run
+		Map<String, S3BucketState> states = new LinkedHashMap<>();
+		
+		buckets.forEach(bucket -> states.put(bucket.getName(), new S3BucketState(s3Client, bucket.getName(), dryRun)));
+		
+		List<String> virusScanEnabledBuckets = buckets.stream()
+				.filter(S3BucketDescriptor::isVirusScanEnabled)
+				.map(S3BucketDescriptor::getName)
+				.collect(Collectors.toList());
+		
+		// Configure all buckets first
+		forEachBucket(buckets, bucket -> {
+			S3BucketState state = states.get(bucket.getName());
+			
+			createBucket(state);
+			configureEncryption(state);
+			configureInventory(stack, state, accountId, s3Config.getInventoryConfig(), bucket.isInventoryEnabled());
+			configureBucketLifeCycle(bucket, state);
+			configureIntelligentTieringArchive(bucket, state);
+			configureBucketNotifications(bucket, state, stack);
+		});
 
-		buildVirusScannerStack(stack, s3Config.getVirusScannerConfig(), virusScanEnabledBuckets).ifPresent( virusScannerStack -> {
+		// In dry run mode the notifications are planned against the current virus scanner stack, if any
+		Optional<Stack> virusScanner = dryRun ? describeVirusScannerStack(stack, s3Config.getVirusScannerConfig()) : buildVirusScannerStack(stack, s3Config.getVirusScannerConfig(), virusScanEnabledBuckets);
+		
+		virusScanner.ifPresent( virusScannerStack -> {
 			// Once the virus scanner stack is built we need to setup for each bucket a notification configuration to
 			// send upload events to the topic the lambda is triggered by, this cannot be done in the cloud formation
 			// template due to a known circular dependency (See https://github.com/aws-cloudformation/cloudformation-coverage-roadmap/issues/79).
@@ -174,15 +202,21 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 			// this on multiple buckets using the API is a much simpler solution.
 			String virusScannerTopicArn = getStackOutput(virusScannerStack, CF_OUTPUT_VIRUS_TRIGGER_TOPIC);
 			
-			virusScanEnabledBuckets.forEach( bucket -> {
-				configureBucketNotification(bucket, VIRUS_SCANNER_NOTIFICATION_CONFIG_NAME, virusScannerTopicArn, Collections.singleton(S3Event.ObjectCreatedByCompleteMultipartUpload.toString()));
-			});
-
-			// Makes sure to remove the existing bucket configurations
-			virusScanDisabledBuckets.forEach( bucket -> {
-				removeBucketNotification(bucket, VIRUS_SCANNER_NOTIFICATION_CONFIG_NAME);
+			forEachBucket(buckets, bucket -> {
+				S3BucketState state = states.get(bucket.getName());
+				
+				if (bucket.isVirusScanEnabled()) {
+					configureBucketNotification(state, VIRUS_SCANNER_NOTIFICATION_CONFIG_NAME, virusScannerTopicArn, Collections.singleton(S3Event.ObjectCreatedByCompleteMultipartUpload.toString()));
+				} else {
+					// Makes sure to remove the existing bucket configurations
+					removeBucketNotification(state, VIRUS_SCANNER_NOTIFICATION_CONFIG_NAME);
+				}
 			});
 			
+			if (dryRun) {
+				return;
+			}
+			
 			// We also need to trigger the lambda that updates the clamav definitions to setup them up so that the scanner can download them
 			String virusScannerUpdatedLambda = getStackOutput(virusScannerStack, CF_OUTPUT_VIRUS_UPDATER_LAMBDA);
 			
@@ -191,28 +225,59 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 				.withInvocationType(InvocationType.Event)
 			);
 		});
+		
+		states.values().forEach( state -> {
+			if (state.getChanges().isEmpty()) {
+				LOG.info("The bucket {} was up to date.", state.getBucketName());
+			} else if (dryRun) {
+				LOG.info("The bucket {} would be updated: {}", state.getBucketName(), state.getChanges());
+			} else {
+				LOG.info("The bucket {} was updated: {}", state.getBucketName(), state.getChanges());
+			}
+		});
+		
+		if (dryRun) {
+			LOG.info("Dry run, the virus scanner and bucket policy stacks were not updated.");
+			return;
+		}
 
 		buildS3BucketPolicyStack(stack);
 	}
+	
+	/**
+	 * Runs the given step for each of the buckets, configuring up to the max
+	 * concurrency buckets at the same time. A failure does not stop the other
+	 * buckets, the failures are reported once all the buckets are done.
+	 * 
+	 * @param buckets
+	 * @param step
+	 * @throws IllegalStateException If the step failed for any of the buckets, each failure is added as suppressed
+	 */
+	void forEachBucket(List<S3BucketDescriptor> buckets, Consumer<S3BucketDescriptor> step) {
+		int maxConcurrency = config.getIntegerProperty(PROPERTY_KEY_S3_BUCKET_MAX_CONCURRENCY, DEFAULT_S3_BUCKET_MAX_CONCURRENCY);
+		
+		Map<String, Callable<Void>> tasks = new LinkedHashMap<>();
+		
+		for (S3BucketDescriptor bucket : buckets) {
+			tasks.put(bucket.getName(), () -> {
+				step.accept(bucket);
+				return null;
+			});
+		}
+		
+		ConcurrentTasks.runAll(threadProvider, maxConcurrency, tasks, "configure buckets");
+	}
 
 	private Optional<Stack> buildS3BucketPolicyStack(String stack) {
 		VelocityContext context = new VelocityContext();
 
 		context.put(Constants.STACK, stack);
 
-		// Merge the context with the template
-		Template template = velocity.getTemplate(Constants.TEMPLATE_S3_BUCKET_POLICY);
-
-		StringWriter stringWriter = new StringWriter();
-
-		template.merge(context, stringWriter);
-
-		String resultJSON = stringWriter.toString();
+		// Merge the context with the template and format the JSON
+		String resultJSON = templateRenderer.renderJson(Constants.TEMPLATE_S3_BUCKET_POLICY, context);
 
 		LOG.info(resultJSON);
 
-		resultJSON = new JSONObject(resultJSON).toString(5);
-
 		String stackName = TemplateUtils.replaceStackVariable(BUCKET_POLICY_STACK_NAME, stack);
 
 		cloudFormationClient.createOrUpdateStack(new CreateOrUpdateStackRequest()
@@ -229,6 +294,14 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		return Optional.of(cloudFormationClient.describeStack(stackName).orElseThrow(()->new IllegalStateException("Stack does not exist: "+stackName)));
 	}
 	
+	private Optional<Stack> describeVirusScannerStack(String stack, S3VirusScannerConfig config) {
+		if (config == null) {
+			return Optional.empty();
+		}
+		
+		return cloudFormationClient.describeStack(TemplateUtils.replaceStackVariable(VIRUS_SCANNER_STACK_NAME, stack));
+	}
+	
 	private Optional<Stack>buildVirusScannerStack(String stack, S3VirusScannerConfig config, List<String> buckets) {
 		
 		if (config == null) {
@@ -239,13 +312,9 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		String lambdaArtifactBucket = TemplateUtils.replaceStackVariable(config.getLambdaArtifactBucket(), stack);
 		String lambdaArtifactKey = String.format(VIRUS_SCANNER_KEY_TEMPLATE, FilenameUtils.getName(lambdaSourceArtifactUrl));
 		
-		File artifact = downloader.downloadFile(lambdaSourceArtifactUrl);
+		File artifact = artifactCache.get(lambdaSourceArtifactUrl);
 		
-		try {
-			s3Client.putObject(lambdaArtifactBucket, lambdaArtifactKey, artifact);
-		} finally {
-			artifact.delete();
-		}
+		uploader.uploadFile(lambdaArtifactBucket, lambdaArtifactKey, artifact);
 		
 		VelocityContext context = new VelocityContext();
 		
@@ -255,19 +324,11 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		context.put(CF_PROPERTY_LAMBDA_BUCKET, lambdaArtifactBucket);
 		context.put(CF_PROPERTY_LAMBDA_KEY, lambdaArtifactKey);
 		
-		// Merge the context with the template
-		Template template = velocity.getTemplate(Constants.TEMPLATE_S3_VIRUS_SCANNER);
-		
-		StringWriter stringWriter = new StringWriter();
-		
-		template.merge(context, stringWriter);
-		
-		String resultJSON = stringWriter.toString();
-		
+		// Merge the context with the template and format the JSON
+		String resultJSON = templateRenderer.renderJson(Constants.TEMPLATE_S3_VIRUS_SCANNER, context);
+
 		LOG.info(resultJSON);
 		
-		resultJSON = new JSONObject(resultJSON).toString(5);
-		
 		String stackName = TemplateUtils.replaceStackVariable(VIRUS_SCANNER_STACK_NAME, stack);
 		
 		cloudFormationClient.createOrUpdateStack(new CreateOrUpdateStackRequest()
@@ -285,51 +346,45 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		return Optional.of(cloudFormationClient.describeStack(stackName).orElseThrow(()->new IllegalStateException("Stack does not exist: "+stackName)));
 	}
 		
-	private void createBucket(String bucketName) {
+	private void createBucket(S3BucketState state) {
+		if (state.exists()) {
+			return;
+		}
+		
+		String bucketName = state.getBucketName();
+		
 		LOG.info("Creating bucket: {}.", bucketName);
 		
-		// This is idempotent
-		s3Client.createBucket(bucketName);
+		state.apply("create", () -> s3Client.createBucket(bucketName));
+		state.setCreated();
 	}
 	
-	private void configureEncryption(String bucketName) {
-		try {
-			// If server side encryption is not currently set this call with throw a 404
-			s3Client.getBucketEncryption(bucketName);
-		} catch (AmazonServiceException e) {
-			if(e.getStatusCode() == 404) {
-				// The bucket is not currently encrypted so configure it for encryption.
-				LOG.info("Setting server side encryption for bucket: {}.", bucketName);
-				
-				s3Client.setBucketEncryption(new SetBucketEncryptionRequest().withBucketName(bucketName)
-						.withServerSideEncryptionConfiguration(new ServerSideEncryptionConfiguration()
-								.withRules(new ServerSideEncryptionRule().withApplyServerSideEncryptionByDefault(
-										new ServerSideEncryptionByDefault().withSSEAlgorithm(SSEAlgorithm.AES256)))));
-			} else {
-				throw e;
-			}
-		} 
+	private void configureEncryption(S3BucketState state) {
+		if (state.isEncrypted()) {
+			return;
+		}
+		
+		// The bucket is not currently encrypted so configure it for encryption.
+		LOG.info("Setting server side encryption for bucket: {}.", state.getBucketName());
+		
+		state.apply("encryption", () -> s3Client.setBucketEncryption(new SetBucketEncryptionRequest().withBucketName(state.getBucketName())
+				.withServerSideEncryptionConfiguration(new ServerSideEncryptionConfiguration()
+						.withRules(new ServerSideEncryptionRule().withApplyServerSideEncryptionByDefault(
+								new ServerSideEncryptionByDefault().withSSEAlgorithm(SSEAlgorithm.AES256))))));
+		
+		state.setEncrypted(true);
 	}
 	
-	private void configureInventory(String stack, String bucketName, String accountId, S3InventoryConfig inventoryConfig, boolean enabled) {
+	private void configureInventory(String stack, S3BucketState state, String accountId, S3InventoryConfig inventoryConfig, boolean enabled) {
 		if (inventoryConfig == null) {
 			return;
 		}
 		
-		boolean configurationExists = true;
+		String bucketName = state.getBucketName();
 		
-		try {
-			s3Client.getBucketInventoryConfiguration(bucketName, INVENTORY_ID);
-		} catch (AmazonServiceException e) {
-			if (e.getStatusCode() == 404) {
-				configurationExists = false;
-			} else {
-				throw e;
-			}
-		}
+		InventoryConfiguration existingConfig = state.getInventoryConfiguration();
 		
 		if (enabled) {
-			LOG.info("Configuring inventory configuration for bucket {}.", bucketName);
 			InventoryConfiguration config = new InventoryConfiguration()
 					.withId(INVENTORY_ID)
 					.withDestination(
@@ -347,18 +402,47 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 					.withEnabled(true)
 					.withIncludedObjectVersions(InventoryIncludedObjectVersions.All);
 			
-			s3Client.setBucketInventoryConfiguration(bucketName, config);			
-		} else if (configurationExists) {
+			if (isInventoryUpToDate(existingConfig, config)) {
+				LOG.info("The inventory configuration for bucket {} was up to date.", bucketName);
+				return;
+			}
+			
+			LOG.info("Configuring inventory configuration for bucket {}.", bucketName);
+			
+			state.apply("inventory", () -> s3Client.setBucketInventoryConfiguration(bucketName, config));
+			state.setInventoryConfiguration(config);
+		} else if (existingConfig != null) {
 			LOG.info("Removing inventory configuration for bucket {}.", bucketName);
-			s3Client.deleteBucketInventoryConfiguration(bucketName, INVENTORY_ID);
+			
+			state.apply("inventory removed", () -> s3Client.deleteBucketInventoryConfiguration(bucketName, INVENTORY_ID));
+			state.setInventoryConfiguration(null);
+		}
+		
+	}
+	
+	static boolean isInventoryUpToDate(InventoryConfiguration existing, InventoryConfiguration desired) {
+		if (existing == null || existing.getDestination() == null || existing.getDestination().getS3BucketDestination() == null || existing.getSchedule() == null) {
+			return false;
 		}
 		
+		InventoryS3BucketDestination existingDestination = existing.getDestination().getS3BucketDestination();
+		InventoryS3BucketDestination desiredDestination = desired.getDestination().getS3BucketDestination();
+		
+		return Objects.equals(existing.isEnabled(), desired.isEnabled())
+				&& Objects.equals(existing.getIncludedObjectVersions(), desired.getIncludedObjectVersions())
+				&& Objects.equals(existing.getSchedule().getFrequency(), desired.getSchedule().getFrequency())
+				&& existing.getOptionalFields() != null
+				&& new HashSet<>(existing.getOptionalFields()).equals(new HashSet<>(desired.getOptionalFields()))
+				&& Objects.equals(existingDestination.getBucketArn(), desiredDestination.getBucketArn())
+				&& Objects.equals(existingDestination.getAccountId(), desiredDestination.getAccountId())
+				&& Objects.equals(existingDestination.getPrefix(), desiredDestination.getPrefix())
+				&& Objects.equals(existingDestination.getFormat(), desiredDestination.getFormat());
 	}
 	
-	private void configureBucketLifeCycle(S3BucketDescriptor bucket) {
+	private void configureBucketLifeCycle(S3BucketDescriptor bucket, S3BucketState state) {
 		
-		// Returns null if no life cycle configuration was found
-		BucketLifecycleConfiguration config = s3Client.getBucketLifecycleConfiguration(bucket.getName());
+		// Null if no life cycle configuration was found
+		BucketLifecycleConfiguration config = state.getLifecycleConfiguration();
 		
 		if (config == null) {
 			config = new BucketLifecycleConfiguration();
@@ -398,40 +482,33 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 				LOG.info("	{}", rule.getId());
 			}
 			
-			s3Client.setBucketLifecycleConfiguration(bucket.getName(), config);
+			BucketLifecycleConfiguration lifecycleConfig = config;
+			
+			state.apply("lifecycle", () -> s3Client.setBucketLifecycleConfiguration(bucket.getName(), lifecycleConfig));
+			state.setLifecycleConfiguration(lifecycleConfig);
 		}
 		
 	}
 	
-	void configureIntelligentTieringArchive(S3BucketDescriptor bucket) {
+	void configureIntelligentTieringArchive(S3BucketDescriptor bucket, S3BucketState state) {
 		
 		if (bucket.getIntArchiveConfiguration() == null) {
 			return;
 		}
 				
-		IntelligentTieringConfiguration intConfig;
-		
-		try {
-			intConfig = s3Client.getBucketIntelligentTieringConfiguration(bucket.getName(), INT_ARCHIVE_ID).getIntelligentTieringConfiguration();
-		} catch (AmazonS3Exception e) {
-			if (404 == e.getStatusCode() && "NoSuchConfiguration".equals(e.getErrorCode())) {
-				intConfig = null;
-			} else {
-				throw e;
-			}
-		}
+		IntelligentTieringConfiguration intConfig = state.getIntArchiveConfiguration();
 		
 		if (intConfig != null) {
 			LOG.warn("The {} intelligent tiering configuration already exists for bucket {}, will not update.", INT_ARCHIVE_ID, bucket.getName());
 			return;
 		}
 		
-		intConfig = createIntArchiveConfiguration(bucket.getIntArchiveConfiguration());
+		IntelligentTieringConfiguration newConfig = createIntArchiveConfiguration(bucket.getIntArchiveConfiguration());
 		
 		LOG.info("Setting {} intelligent tiering configuration on bucket {}.", INT_ARCHIVE_ID, bucket.getName());
 		
-		s3Client.setBucketIntelligentTieringConfiguration(bucket.getName(), intConfig);
-		
+		state.apply("intelligent tiering", () -> s3Client.setBucketIntelligentTieringConfiguration(bucket.getName(), newConfig));
+		state.setIntArchiveConfiguration(newConfig);
 	}
 	
 	private IntelligentTieringConfiguration createIntArchiveConfiguration(S3IntArchiveConfiguration config) {
@@ -529,6 +606,11 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 			
 			updateLifecycle = ruleUpdate.apply(existingRule, definition);
 			
+			if (!BucketLifecycleConfiguration.ENABLED.equals(existingRule.getStatus())) {
+				existingRule.setStatus(BucketLifecycleConfiguration.ENABLED);
+				updateLifecycle = true;
+			}
+			
 			LOG.info("The {} rule was found on bucket {} and was {}", ruleName, bucket, updateLifecycle ? "outdated, will update." : "up to date.");
 		} else {
 			Rule newRule = ruleCreator.apply(definition).withId(ruleName).withStatus(BucketLifecycleConfiguration.ENABLED).withPrefix(null);
@@ -548,7 +630,7 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		return rules.stream().filter(rule -> rule.getId().equals(ruleName)).findFirst();
 	}
 	
-	private void configureBucketNotifications(S3BucketDescriptor bucket, String stack) {
+	private void configureBucketNotifications(S3BucketDescriptor bucket, S3BucketState state, String stack) {
 		if (bucket.getNotificationsConfiguration() == null) {
 			return;
 		}
@@ -561,13 +643,15 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		
 		String configName = config.getTopic() + "Configuration";
 		
-		configureBucketNotification(bucket.getName(), configName, topicArn, config.getEvents());
+		configureBucketNotification(state, configName, topicArn, config.getEvents());
 		
 	}
 	
-	private void configureBucketNotification(String bucketName, String configName, String topicArn, Set<String> events) {
+	private void configureBucketNotification(S3BucketState state, String configName, String topicArn, Set<String> events) {
 		
-		BucketNotificationConfiguration bucketConfig = s3Client.getBucketNotificationConfiguration(bucketName);
+		String bucketName = state.getBucketName();
+		
+		BucketNotificationConfiguration bucketConfig = state.getNotificationConfiguration();
 		
 		boolean update = false;
 		
@@ -602,14 +686,18 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		
 		if (update) {
 			LOG.info("Updating {} bucket notification configuration {} (Topic ARN: {}).", bucketName, configName, topicArn);
-			s3Client.setBucketNotificationConfiguration(bucketName, bucketConfig);
+			BucketNotificationConfiguration newConfig = bucketConfig;
+			state.apply(configName, () -> s3Client.setBucketNotificationConfiguration(bucketName, newConfig));
+			state.setNotificationConfiguration(newConfig);
 		} else {
 			LOG.info("The {} bucket notification configuration {} was up to date (Topic ARN: {}).", bucketName, configName, topicArn);
 		}
 	}
 
-	private void removeBucketNotification(String bucketName, String configName) {
-		BucketNotificationConfiguration bucketConfig = s3Client.getBucketNotificationConfiguration(bucketName);
+	private void removeBucketNotification(S3BucketState state, String configName) {
+		String bucketName = state.getBucketName();
+		
+		BucketNotificationConfiguration bucketConfig = state.getNotificationConfiguration();
 		
 		if (bucketConfig == null || bucketConfig.getConfigurations() == null || bucketConfig.getConfigurations().isEmpty()) {
 			return;
@@ -625,6 +713,7 @@ public class S3BucketBuilderImpl implements S3BucketBuilder {
 		
 		LOG.info("Removing {} bucket notification configuration {}.", bucketName, configName);
 		
-		s3Client.setBucketNotificationConfiguration(bucketName, bucketConfig);		
+		state.apply(configName + " removed", () -> s3Client.setBucketNotificationConfiguration(bucketName, bucketConfig));
+		state.setNotificationConfiguration(bucketConfig);
 	}
 }
@@ -0,0 +1,244 @@
+package org.sagebionetworks.template.s3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
+import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
+import com.amazonaws.services.s3.model.GetBucketInventoryConfigurationResult;
+import com.amazonaws.services.s3.model.HeadBucketRequest;
+import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringConfiguration;
+import com.amazonaws.services.s3.model.inventory.InventoryConfiguration;
+
+/**
+ * The configuration of a single bucket as read from S3 while building the
+ * buckets. Each configuration is read at most once and the writes made by the
+ * builder are applied to the cached values, so later steps for the same bucket
+ * do not read it again.
+ * <p>
+ * The builder compares the desired configuration with this state and only
+ * applies the changes that differ through {@link #apply(String, Runnable)},
+ * which records them in the plan of the bucket. In dry run mode the changes are
+ * planned but not written.
+ * <p>
+ * An instance is used by one thread at a time.
+ */
+class S3BucketState {
+
+	private final AmazonS3 s3Client;
+	private final String bucketName;
+	private final boolean dryRun;
+	private final List<String> changes = new ArrayList<>();
+
+	private final Read<Boolean> exists;
+	private final Read<Boolean> encrypted;
+	private final Read<InventoryConfiguration> inventoryConfiguration;
+	private final Read<BucketLifecycleConfiguration> lifecycleConfiguration;
+	private final Read<IntelligentTieringConfiguration> intArchiveConfiguration;
+	private final Read<BucketNotificationConfiguration> notificationConfiguration;
+
+	S3BucketState(AmazonS3 s3Client, String bucketName, boolean dryRun) {
+		this.s3Client = s3Client;
+		this.bucketName = bucketName;
+		this.dryRun = dryRun;
+		this.exists = new Read<>(this::readExists);
+		this.encrypted = new Read<>(this::readEncrypted);
+		this.inventoryConfiguration = new Read<>(this::readInventoryConfiguration);
+		this.lifecycleConfiguration = new Read<>(() -> s3Client.getBucketLifecycleConfiguration(bucketName));
+		this.intArchiveConfiguration = new Read<>(this::readIntArchiveConfiguration);
+		this.notificationConfiguration = new Read<>(() -> s3Client.getBucketNotificationConfiguration(bucketName));
+	}
+
+	String getBucketName() {
+		return bucketName;
+	}
+
+	/**
+	 * @return True if the bucket exists.
+	 * @throws IllegalStateException If the bucket exists but is owned by another
+	 *                               account.
+	 */
+	boolean exists() {
+		return exists.get();
+	}
+
+	/**
+	 * Marks the bucket as created. In dry run mode the bucket cannot be read, so
+	 * its configuration is the one of a new bucket.
+	 */
+	void setCreated() {
+		exists.set(true);
+		if (dryRun) {
+			// S3 encrypts new buckets by default
+			encrypted.set(true);
+			inventoryConfiguration.set(null);
+			lifecycleConfiguration.set(null);
+			intArchiveConfiguration.set(null);
+			notificationConfiguration.set(null);
+		}
+	}
+
+	/**
+	 * @return True if server side encryption is configured on the bucket.
+	 */
+	boolean isEncrypted() {
+		return encrypted.get();
+	}
+
+	void setEncrypted(boolean value) {
+		encrypted.set(value);
+	}
+
+	/**
+	 * @return The {@link S3BucketBuilderImpl#INVENTORY_ID} inventory configuration
+	 *         of the bucket, null if it does not exist.
+	 */
+	InventoryConfiguration getInventoryConfiguration() {
+		return inventoryConfiguration.get();
+	}
+
+	void setInventoryConfiguration(InventoryConfiguration value) {
+		inventoryConfiguration.set(value);
+	}
+
+	/**
+	 * @return The lifecycle configuration of the bucket, null if it does not
+	 *         exist.
+	 */
+	BucketLifecycleConfiguration getLifecycleConfiguration() {
+		return lifecycleConfiguration.get();
+	}
+
+	void setLifecycleConfiguration(BucketLifecycleConfiguration value) {
+		lifecycleConfiguration.set(value);
+	}
+
+	/**
+	 * @return The {@link S3BucketBuilderImpl#INT_ARCHIVE_ID} intelligent tiering
+	 *         configuration of the bucket, null if it does not exist.
+	 */
+	IntelligentTieringConfiguration getIntArchiveConfiguration() {
+		return intArchiveConfiguration.get();
+	}
+
+	void setIntArchiveConfiguration(IntelligentTieringConfiguration value) {
+		intArchiveConfiguration.set(value);
+	}
+
+	/**
+	 * @return The notification configuration of the bucket, may be null.
+	 */
+	BucketNotificationConfiguration getNotificationConfiguration() {
+		return notificationConfiguration.get();
+	}
+
+	void setNotificationConfiguration(BucketNotificationConfiguration value) {
+		notificationConfiguration.set(value);
+	}
+
+	/**
+	 * Add the given change to the plan of the bucket and write it, unless in dry
+	 * run mode.
+	 *
+	 * @param change Describes the change.
+	 * @param write  Sends the change to S3.
+	 */
+	void apply(String change, Runnable write) {
+		changes.add(change);
+		if (!dryRun) {
+			write.run();
+		}
+	}
+
+	/**
+	 * @return The plan of the bucket, the changes applied in order.
+	 */
+	List<String> getChanges() {
+		return Collections.unmodifiableList(changes);
+	}
+
+	private Boolean readExists() {
+		try {
+			s3Client.headBucket(new HeadBucketRequest(bucketName));
+			return true;
+		} catch (AmazonServiceException e) {
+			if (e.getStatusCode() == 404) {
+				return false;
+			}
+			if (e.getStatusCode() == 403) {
+				// The name is taken by a bucket that we cannot access
+				throw new IllegalStateException("The bucket " + bucketName + " already exists and is not owned by this account", e);
+			}
+			throw e;
+		}
+	}
+
+	private Boolean readEncrypted() {
+		try {
+			// If server side encryption is not currently set this call with throw a 404
+			s3Client.getBucketEncryption(bucketName);
+			return true;
+		} catch (AmazonServiceException e) {
+			if (e.getStatusCode() == 404) {
+				return false;
+			}
+			throw e;
+		}
+	}
+
+	private InventoryConfiguration readInventoryConfiguration() {
+		try {
+			GetBucketInventoryConfigurationResult result = s3Client.getBucketInventoryConfiguration(bucketName, S3BucketBuilderImpl.INVENTORY_ID);
+			return result == null ? null : result.getInventoryConfiguration();
+		} catch (AmazonServiceException e) {
+			if (e.getStatusCode() == 404) {
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	private IntelligentTieringConfiguration readIntArchiveConfiguration() {
+		try {
+			return s3Client.getBucketIntelligentTieringConfiguration(bucketName, S3BucketBuilderImpl.INT_ARCHIVE_ID).getIntelligentTieringConfiguration();
+		} catch (AmazonS3Exception e) {
+			if (404 == e.getStatusCode() && "NoSuchConfiguration".equals(e.getErrorCode())) {
+				return null;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * A value that is loaded on first use. A failed load is not cached.
+	 */
+	private static class Read<T> {
+
+		private final Supplier<T> loader;
+		private boolean loaded = false;
+		private T value;
+
+		Read(Supplier<T> loader) {
+			this.loader = loader;
+		}
+
+		T get() {
+			if (!loaded) {
+				value = loader.get();
+				loaded = true;
+			}
+			return value;
+		}
+
+		void set(T value) {
+			this.value = value;
+			this.loaded = true;
+		}
+	}
+
+}
@@ -0,0 +1,20 @@
+package org.sagebionetworks.template.s3;
+
+import java.io.File;
+
+/**
+ * Abstraction for uploading large files to S3.
+ */
+public interface S3FileUploader {
+
+	/**
+	 * Upload the given file to S3 and wait for the upload to complete. Large
+	 * files are uploaded as parallel multipart uploads.
+	 * 
+	 * @param bucket
+	 * @param key
+	 * @param file
+	 */
+	void uploadFile(String bucket, String key, File file);
+
+}
@@ -0,0 +1,123 @@
+package org.sagebionetworks.template.s3;
+
+import static org.sagebionetworks.template.Constants.DEFAULT_S3_UPLOAD_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.DEFAULT_S3_UPLOAD_PART_SIZE_MB;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_S3_UPLOAD_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_S3_UPLOAD_PART_SIZE_MB;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.config.Configuration;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.Upload;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Uploads files with a transfer manager from the {@link S3TransferManagerFactory}
+ * so that files larger than a part are uploaded as parallel multipart uploads.
+ * A failed upload is aborted so that its parts do not linger in the bucket.
+ */
+@Singleton
+public class S3FileUploaderImpl implements S3FileUploader {
+
+	/**
+	 * Progress is logged each time another quarter of the file is transferred.
+	 */
+	public static final int PROGRESS_STEPS = 4;
+
+	private final S3TransferManagerFactory transferManagerFactory;
+	private final long partSizeBytes;
+	private final int maxConcurrency;
+	private final Logger logger;
+
+	@Inject
+	public S3FileUploaderImpl(S3TransferManagerFactory transferManagerFactory, Configuration config,
+			LoggerFactory loggerFactory) {
+		this.transferManagerFactory = transferManagerFactory;
+		this.partSizeBytes = (long) config.getIntegerProperty(PROPERTY_KEY_S3_UPLOAD_PART_SIZE_MB,
+				DEFAULT_S3_UPLOAD_PART_SIZE_MB) * 1024 * 1024;
+		this.maxConcurrency = config.getIntegerProperty(PROPERTY_KEY_S3_UPLOAD_MAX_CONCURRENCY,
+				DEFAULT_S3_UPLOAD_MAX_CONCURRENCY);
+		this.logger = loggerFactory.getLogger(S3FileUploaderImpl.class);
+	}
+
+	@Override
+	public void uploadFile(String bucket, String key, File file) {
+		PutObjectRequest request = new PutObjectRequest(bucket, key, file)
+				.withGeneralProgressListener(new ProgressLogger(logger, key, file.length()));
+		try (S3TransferManager transferManager = transferManagerFactory.createNewS3TransferManager(partSizeBytes,
+				maxConcurrency)) {
+			Upload upload = transferManager.upload(request);
+			try {
+				upload.waitForUploadResult();
+			} catch (InterruptedException e) {
+				abort(upload, key);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (AmazonClientException e) {
+				abort(upload, key);
+				throw e;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Abort the upload to remove any parts already uploaded.
+	 */
+	void abort(Upload upload, String key) {
+		try {
+			upload.abort();
+		} catch (AmazonClientException e) {
+			logger.warn("Failed to abort the upload of: " + key + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Logs the progress of an upload. Parts are transferred concurrently so the
+	 * events arrive from several threads.
+	 */
+	static class ProgressLogger implements ProgressListener {
+
+		private final Logger logger;
+		private final String key;
+		private final long totalBytes;
+		private final AtomicLong transferredBytes = new AtomicLong(0);
+
+		ProgressLogger(Logger logger, String key, long totalBytes) {
+			this.logger = logger;
+			this.key = key;
+			this.totalBytes = totalBytes;
+		}
+
+		@Override
+		public void progressChanged(ProgressEvent event) {
+			if (event.getEventType() == ProgressEventType.TRANSFER_STARTED_EVENT) {
+				logger.info("Uploading: " + key + " (" + totalBytes + " bytes)...");
+			} else if (event.getEventType() == ProgressEventType.REQUEST_BYTE_TRANSFER_EVENT && totalBytes > 0) {
+				long before = transferredBytes.getAndAdd(event.getBytesTransferred());
+				long after = before + event.getBytesTransferred();
+				long step = after * PROGRESS_STEPS / totalBytes;
+				if (step > before * PROGRESS_STEPS / totalBytes && step < PROGRESS_STEPS) {
+					logger.info("Uploaded " + (step * 100 / PROGRESS_STEPS) + "% of: " + key);
+				}
+			} else if (event.getEventType() == ProgressEventType.TRANSFER_COMPLETED_EVENT) {
+				logger.info("Finished uploading: " + key);
+			} else if (event.getEventType() == ProgressEventType.TRANSFER_FAILED_EVENT) {
+				logger.warn("Failed to upload: " + key);
+			}
+		}
+	}
+
+}
@@ -2,7 +2,9 @@ package org.sagebionetworks.template.s3;
 
 import java.io.Closeable;
 
+import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.transfer.Copy;
+import com.amazonaws.services.s3.transfer.Upload;
 
 public interface S3TransferManager extends Closeable {
 	/**
@@ -14,4 +16,13 @@ public interface S3TransferManager extends Closeable {
 	 * @return
 	 */
 	Copy copy(String sourceBucket, String sourceKey, String destinationBucket, String destinationKey);
+
+	/**
+	 * Schedules a new transfer to upload data to Amazon S3. Large files are
+	 * uploaded as parallel multipart uploads.
+	 * 
+	 * @param request
+	 * @return
+	 */
+	Upload upload(PutObjectRequest request);
 }
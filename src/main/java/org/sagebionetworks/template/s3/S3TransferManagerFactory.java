@@ -6,4 +6,14 @@ public interface S3TransferManagerFactory {
 	 * @return
 	 */
 	S3TransferManager createNewS3TransferManager();
+
+	/**
+	 * Creates an S3TransferManager that splits uploads into parts of the given
+	 * size and transfers up to the given number of parts at a time.
+	 * 
+	 * @param partSizeBytes
+	 * @param maxConcurrency
+	 * @return
+	 */
+	S3TransferManager createNewS3TransferManager(long partSizeBytes, int maxConcurrency);
 }
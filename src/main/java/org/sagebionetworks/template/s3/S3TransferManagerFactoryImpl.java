@@ -1,5 +1,7 @@
 package org.sagebionetworks.template.s3;
 
+import java.util.concurrent.Executors;
+
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
 
@@ -18,4 +20,11 @@ public class S3TransferManagerFactoryImpl implements S3TransferManagerFactory {
 				TransferManagerBuilder.standard().withS3Client(s3Client).build());
 	}
 
+	@Override
+	public S3TransferManager createNewS3TransferManager(long partSizeBytes, int maxConcurrency) {
+		return new S3TransferManagerImpl(TransferManagerBuilder.standard().withS3Client(s3Client)
+				.withMinimumUploadPartSize(partSizeBytes).withMultipartUploadThreshold(partSizeBytes)
+				.withExecutorFactory(() -> Executors.newFixedThreadPool(maxConcurrency)).build());
+	}
+
 }
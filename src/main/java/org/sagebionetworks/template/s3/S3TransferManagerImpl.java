@@ -2,8 +2,10 @@ package org.sagebionetworks.template.s3;
 
 import java.io.IOException;
 
+import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.transfer.Copy;
 import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.Upload;
 
 public class S3TransferManagerImpl implements S3TransferManager {
 	
@@ -16,7 +18,8 @@ public class S3TransferManagerImpl implements S3TransferManager {
 
 	@Override
 	public void close() throws IOException {
-		transferManager.shutdownNow();		
+		// the S3 client outlives the transfer manager.
+		transferManager.shutdownNow(false);
 	}
 
 	@Override
@@ -24,4 +27,9 @@ public class S3TransferManagerImpl implements S3TransferManager {
 			String destinationBucket, String destinationKey) {
 		return transferManager.copy(sourceBucket, sourceKey, destinationBucket, destinationKey);
 	}
+
+	@Override
+	public Upload upload(PutObjectRequest request) {
+		return transferManager.upload(request);
+	}
 }
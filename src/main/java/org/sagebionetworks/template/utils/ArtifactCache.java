@@ -0,0 +1,20 @@
+package org.sagebionetworks.template.utils;
+
+import java.io.File;
+
+/**
+ * Abstraction for a local, persistent cache of downloaded artifacts.
+ */
+public interface ArtifactCache {
+
+    /**
+     * Get a local copy of the artifact at the given URL. The artifact is only
+     * downloaded when it is not cached or the cached copy is stale. The returned
+     * file belongs to the cache and must not be modified or deleted.
+     *
+     * @param url
+     * @return
+     */
+    File get(String url);
+
+}
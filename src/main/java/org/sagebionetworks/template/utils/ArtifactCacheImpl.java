@@ -0,0 +1,312 @@
+package org.sagebionetworks.template.utils;
+
+import static org.sagebionetworks.template.Constants.DEFAULT_ARTIFACT_CACHE_MAX_SIZE_MB;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_ARTIFACT_CACHE_DIRECTORY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_ARTIFACT_CACHE_MAX_SIZE_MB;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.logging.log4j.Logger;
+import org.sagebionetworks.template.ConfigurationPropertyNotFound;
+import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.ThreadProvider;
+import org.sagebionetworks.template.config.Configuration;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Keeps downloaded artifacts in a local directory keyed by the hash of their
+ * URL (which includes the version). A cached artifact is revalidated with a
+ * conditional HEAD request using its ETag and Last-Modified headers, so an
+ * unchanged artifact is never downloaded twice. Each entry is guarded by a
+ * file lock so that several processes on the same build agent can share the
+ * directory, and the least recently used entries are evicted once the
+ * directory exceeds its maximum size.
+ */
+@Singleton
+public class ArtifactCacheImpl implements ArtifactCache {
+
+    public static final String DEFAULT_DIRECTORY_NAME = "synapse-stack-builder-artifacts";
+    /**
+     * Entries used this recently are never evicted since another process may
+     * still be reading them.
+     */
+    public static final long EVICTION_GRACE_MS = 10 * 60 * 1000;
+
+    public static final String DATA_SUFFIX = ".data";
+    public static final String METADATA_SUFFIX = ".properties";
+    public static final String LOCK_SUFFIX = ".lock";
+    public static final String PART_SUFFIX = ".part";
+
+    public static final String HEADER_ETAG = "ETag";
+    public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    static final String KEY_URL = "url";
+    static final String KEY_ETAG = "etag";
+    static final String KEY_LAST_MODIFIED = "lastModified";
+
+    private final HttpClient httpClient;
+    private final ArtifactDownload downloader;
+    private final ThreadProvider threadProvider;
+    private final Logger logger;
+    private final File directory;
+    private final long maxSizeBytes;
+    /**
+     * File locks are held by the whole JVM so threads of this process also
+     * synchronize on a monitor per entry.
+     */
+    private final Map<String, Object> entryMonitors = new ConcurrentHashMap<>();
+
+    @Inject
+    public ArtifactCacheImpl(HttpClient httpClient, ArtifactDownload downloader, Configuration config,
+            ThreadProvider threadProvider, LoggerFactory loggerFactory) {
+        this.httpClient = httpClient;
+        this.downloader = downloader;
+        this.threadProvider = threadProvider;
+        this.logger = loggerFactory.getLogger(ArtifactCacheImpl.class);
+        this.directory = getDirectory(config);
+        this.maxSizeBytes = (long) config.getIntegerProperty(PROPERTY_KEY_ARTIFACT_CACHE_MAX_SIZE_MB,
+                DEFAULT_ARTIFACT_CACHE_MAX_SIZE_MB) * 1024 * 1024;
+    }
+
+    static File getDirectory(Configuration config) {
+        try {
+            return new File(config.getProperty(PROPERTY_KEY_ARTIFACT_CACHE_DIRECTORY));
+        } catch (ConfigurationPropertyNotFound e) {
+            return new File(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY_NAME);
+        }
+    }
+
+    @Override
+    public File get(String url) {
+        if (url == null) {
+            throw new IllegalArgumentException("URL cannot be null");
+        }
+        String key = DigestUtils.sha256Hex(url);
+        File data = new File(directory, key + DATA_SUFFIX);
+        try {
+            Files.createDirectories(directory.toPath());
+            synchronized (entryMonitors.computeIfAbsent(key, k -> new Object())) {
+                try (FileChannel lockChannel = FileChannel.open(new File(directory, key + LOCK_SUFFIX).toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock lock = lockChannel.lock()) {
+                    refresh(url, key, data);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        evict();
+        return data;
+    }
+
+    /**
+     * Make sure the cached copy of the artifact is current. Must be called while
+     * holding the lock of the entry.
+     */
+    void refresh(String url, String key, File data) throws IOException {
+        Properties metadata = readMetadata(key, data);
+        Validators remote = null;
+        try {
+            remote = head(url, metadata);
+        } catch (IOException e) {
+            if (metadata == null) {
+                // the download will report the problem.
+                remote = new Validators();
+            } else {
+                logger.warn("Could not revalidate cached artifact: " + url + " using the cached copy: " + e.getMessage());
+                data.setLastModified(threadProvider.currentTimeMillis());
+                return;
+            }
+        }
+        if (metadata != null && remote.matches(metadata)) {
+            logger.info("Using cached artifact: " + url);
+            data.setLastModified(threadProvider.currentTimeMillis());
+            return;
+        }
+        logger.info("Downloading artifact to cache: " + url);
+        File download = downloader.downloadFile(url);
+        try {
+            moveIntoCache(download.toPath(), data.toPath());
+        } finally {
+            Files.deleteIfExists(download.toPath());
+        }
+        Properties newMetadata = new Properties();
+        newMetadata.setProperty(KEY_URL, url);
+        if (remote.etag != null) {
+            newMetadata.setProperty(KEY_ETAG, remote.etag);
+        }
+        if (remote.lastModified != null) {
+            newMetadata.setProperty(KEY_LAST_MODIFIED, remote.lastModified);
+        }
+        writeMetadata(key, newMetadata);
+        data.setLastModified(threadProvider.currentTimeMillis());
+    }
+
+    /**
+     * Read the validators of the artifact with a HEAD request. When the artifact
+     * is cached the request is conditional.
+     *
+     * @param url
+     * @param metadata The metadata of the cached copy or null.
+     * @return
+     * @throws IOException
+     */
+    Validators head(String url, Properties metadata) throws IOException {
+        HttpHead head = new HttpHead(url);
+        if (metadata != null) {
+            if (metadata.getProperty(KEY_ETAG) != null) {
+                head.setHeader(HEADER_IF_NONE_MATCH, metadata.getProperty(KEY_ETAG));
+            }
+            if (metadata.getProperty(KEY_LAST_MODIFIED) != null) {
+                head.setHeader(HEADER_IF_MODIFIED_SINCE, metadata.getProperty(KEY_LAST_MODIFIED));
+            }
+        }
+        try {
+            HttpResponse response = httpClient.execute(head);
+            Validators validators = new Validators();
+            int statusCode = response.getStatusLine().getStatusCode();
+            validators.notModified = statusCode == HttpStatus.SC_NOT_MODIFIED;
+            if (statusCode == HttpStatus.SC_OK) {
+                Header etag = response.getFirstHeader(HEADER_ETAG);
+                Header lastModified = response.getFirstHeader(HEADER_LAST_MODIFIED);
+                validators.etag = etag == null ? null : etag.getValue();
+                validators.lastModified = lastModified == null ? null : lastModified.getValue();
+            }
+            return validators;
+        } finally {
+            head.releaseConnection();
+        }
+    }
+
+    /**
+     * Move the downloaded file into the cache directory such that readers never
+     * see a partial file.
+     */
+    void moveIntoCache(Path download, Path data) throws IOException {
+        try {
+            Files.move(download, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // the temp directory is on another file system.
+            Path part = data.resolveSibling(data.getFileName() + PART_SUFFIX);
+            Files.copy(download, part, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(part, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    Properties readMetadata(String key, File data) throws IOException {
+        File file = new File(directory, key + METADATA_SUFFIX);
+        if (!data.exists() || !file.exists()) {
+            return null;
+        }
+        Properties metadata = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            metadata.load(in);
+        }
+        return metadata;
+    }
+
+    void writeMetadata(String key, Properties metadata) throws IOException {
+        Path file = new File(directory, key + METADATA_SUFFIX).toPath();
+        Path part = file.resolveSibling(file.getFileName() + PART_SUFFIX);
+        try (OutputStream out = Files.newOutputStream(part)) {
+            metadata.store(out, null);
+        }
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Remove the least recently used entries until the cache fits within its
+     * maximum size. Entries that are locked or were used within the grace period
+     * are skipped.
+     */
+    void evict() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(DATA_SUFFIX));
+        if (entries == null) {
+            return;
+        }
+        long totalSize = Arrays.stream(entries).mapToLong(File::length).sum();
+        if (totalSize <= maxSizeBytes) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        long now = threadProvider.currentTimeMillis();
+        for (File data : entries) {
+            if (totalSize <= maxSizeBytes) {
+                return;
+            }
+            if (now - data.lastModified() < EVICTION_GRACE_MS) {
+                continue;
+            }
+            String key = data.getName().substring(0, data.getName().length() - DATA_SUFFIX.length());
+            long size = data.length();
+            try (FileChannel lockChannel = FileChannel.open(new File(directory, key + LOCK_SUFFIX).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = lockChannel.tryLock();
+                if (lock == null) {
+                    continue;
+                }
+                try {
+                    Files.deleteIfExists(new File(directory, key + METADATA_SUFFIX).toPath());
+                    Files.deleteIfExists(data.toPath());
+                    totalSize -= size;
+                    logger.info("Evicted cached artifact: " + key);
+                } finally {
+                    lock.release();
+                }
+            } catch (OverlappingFileLockException e) {
+                // in use by another thread of this process.
+            } catch (IOException e) {
+                logger.warn("Failed to evict cached artifact: " + key + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The validators of the remote artifact.
+     */
+    static class Validators {
+        boolean notModified = false;
+        String etag;
+        String lastModified;
+
+        /**
+         * Does the cached copy with the given metadata match the remote artifact?
+         */
+        boolean matches(Properties metadata) {
+            if (notModified) {
+                return true;
+            }
+            // some servers ignore the conditional headers of a HEAD request.
+            if (etag != null) {
+                return etag.equals(metadata.getProperty(KEY_ETAG));
+            }
+            return lastModified != null && lastModified.equals(metadata.getProperty(KEY_LAST_MODIFIED));
+        }
+    }
+
+}
@@ -1,52 +1,245 @@
 package org.sagebionetworks.template.utils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.sagebionetworks.template.ThreadProvider;
 
 import com.google.inject.Inject;
 
+/**
+ * Downloads an artifact with large buffered writes. When the server accepts
+ * byte ranges, large files are downloaded as concurrent ranged GETs and any
+ * range that fails part way is resumed from the last byte written. If the
+ * server publishes a checksum header the downloaded file is verified.
+ */
 public class ArtifactDownloadImpl implements ArtifactDownload {
+
+    public static final int BUFFER_SIZE = 1024 * 1024;
+    public static final long DEFAULT_PART_SIZE = 16 * 1024 * 1024;
+    public static final int MAX_PARALLEL_PARTS = 4;
+    public static final int MAX_ATTEMPTS = 3;
+
+    public static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+    public static final String HEADER_CONTENT_LENGTH = "Content-Length";
+    public static final String HEADER_RANGE = "Range";
+    public static final String HEADER_SHA256 = "X-Checksum-Sha256";
+    public static final String HEADER_SHA1 = "X-Checksum-Sha1";
+
     private HttpClient httpClient;
+    private ThreadProvider threadProvider;
+    private long partSize = DEFAULT_PART_SIZE;
 
     @Inject
-    public ArtifactDownloadImpl(HttpClient httpClient) {
+    public ArtifactDownloadImpl(HttpClient httpClient, ThreadProvider threadProvider) {
         this.httpClient = httpClient;
+        this.threadProvider = threadProvider;
+    }
+
+    /**
+     * Override the size of each ranged part.
+     *
+     * @param partSize
+     */
+    void setPartSize(long partSize) {
+        this.partSize = partSize;
     }
 
     @Override
     public File downloadFile(String url) {
-        HttpGet httpget = new HttpGet(url);
-        HttpResponse response;
         try {
-            response = httpClient.execute(httpget);
-            StatusLine statusLine = response.getStatusLine();
-            if (statusLine.getStatusCode() != HttpStatus.SC_OK) {
-                throw new RuntimeException("Failed to download file: " + url + " Status code:"
-                        + statusLine.getStatusCode() + " reason: " + statusLine.getReasonPhrase());
-            }
+            RemoteFile remote = describe(url);
             // download to a temp file.
             File temp = File.createTempFile("artifact", ".tmp");
-            try (BufferedInputStream bis = new BufferedInputStream(response.getEntity().getContent());
-                 BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(temp))) {
-                int inByte;
-                while ((inByte = bis.read()) != -1) {
-                    bos.write(inByte);
+            try {
+                try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+                    FileChannel channel = file.getChannel();
+                    if (remote.acceptsRanges && remote.length >= 2 * partSize) {
+                        file.setLength(remote.length);
+                        downloadInParts(url, remote.length, channel);
+                    } else {
+                        long end = remote.length < 0 ? -1 : remote.length - 1;
+                        downloadRange(url, channel, 0, end, false, remote.acceptsRanges);
+                    }
                 }
-                bos.flush();
+                verifyChecksum(url, remote, temp);
                 return temp;
+            } catch (IOException | RuntimeException e) {
+                temp.delete();
+                throw e;
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Get the length, range support and checksum of the file with a HEAD request.
+     * If the HEAD request is not supported the file is treated as unknown.
+     *
+     * @param url
+     * @return
+     * @throws IOException
+     */
+    RemoteFile describe(String url) throws IOException {
+        RemoteFile remote = new RemoteFile();
+        HttpHead head = new HttpHead(url);
+        try {
+            HttpResponse response = httpClient.execute(head);
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                return remote;
+            }
+            Header length = response.getFirstHeader(HEADER_CONTENT_LENGTH);
+            if (length != null) {
+                remote.length = Long.parseLong(length.getValue());
+            }
+            Header ranges = response.getFirstHeader(HEADER_ACCEPT_RANGES);
+            remote.acceptsRanges = remote.length >= 0 && ranges != null && "bytes".equalsIgnoreCase(ranges.getValue());
+            Header sha256 = response.getFirstHeader(HEADER_SHA256);
+            Header sha1 = response.getFirstHeader(HEADER_SHA1);
+            if (sha256 != null) {
+                remote.sha256 = sha256.getValue();
+            } else if (sha1 != null) {
+                remote.sha1 = sha1.getValue();
+            }
+            return remote;
+        } finally {
+            head.releaseConnection();
+        }
+    }
+
+    /**
+     * Download the file as concurrent ranged GETs, each written to its own region
+     * of the file.
+     */
+    void downloadInParts(String url, long length, FileChannel channel) throws IOException {
+        int partCount = (int) ((length + partSize - 1) / partSize);
+        ExecutorService executor = threadProvider.newFixedThreadPool(Math.min(MAX_PARALLEL_PARTS, partCount));
+        try {
+            List<Future<Void>> parts = new ArrayList<>(partCount);
+            for (int i = 0; i < partCount; i++) {
+                long start = i * partSize;
+                long end = Math.min(length, start + partSize) - 1;
+                parts.add(executor.submit(() -> {
+                    downloadRange(url, channel, start, end, true, true);
+                    return null;
+                }));
+            }
+            for (Future<Void> part : parts) {
+                part.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Download the given range of bytes to the same position in the channel. A
+     * failed transfer is resumed from the last byte written when the server
+     * accepts ranges.
+     *
+     * @param url
+     * @param channel
+     * @param start     First byte of the range.
+     * @param end       Last byte of the range (inclusive) or -1 when the length is
+     *                  unknown.
+     * @param isPart    True if the range is only part of the file.
+     * @param resumable True if the server accepts ranges.
+     * @throws IOException
+     */
+    void downloadRange(String url, FileChannel channel, long start, long end, boolean isPart, boolean resumable)
+            throws IOException {
+        long position = start;
+        for (int attempt = 1;; attempt++) {
+            HttpGet get = new HttpGet(url);
+            boolean ranged = isPart || position > start;
+            if (ranged) {
+                get.setHeader(HEADER_RANGE, "bytes=" + position + "-" + (end < 0 ? "" : end));
+            }
+            try {
+                HttpResponse response = httpClient.execute(get);
+                StatusLine statusLine = response.getStatusLine();
+                int expectedStatus = ranged ? HttpStatus.SC_PARTIAL_CONTENT : HttpStatus.SC_OK;
+                if (statusLine.getStatusCode() != expectedStatus) {
+                    throw new RuntimeException("Failed to download file: " + url + " Status code:"
+                            + statusLine.getStatusCode() + " reason: " + statusLine.getReasonPhrase());
+                }
+                // track the position per buffer so a failed transfer can resume from it.
+                try (InputStream in = response.getEntity().getContent()) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                        while (byteBuffer.hasRemaining()) {
+                            position += channel.write(byteBuffer, position);
+                        }
+                    }
+                }
+                if (end >= 0 && position != end + 1) {
+                    throw new IOException("Download of: " + url + " ended at byte: " + position + " expected: " + (end + 1));
+                }
+                return;
+            } catch (IOException e) {
+                if (!resumable || attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+            } finally {
+                get.releaseConnection();
+            }
+        }
+    }
+
+    void verifyChecksum(String url, RemoteFile remote, File file) throws IOException {
+        if (remote.sha256 == null && remote.sha1 == null) {
+            return;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            String expected = remote.sha256 != null ? remote.sha256 : remote.sha1;
+            String actual = remote.sha256 != null ? DigestUtils.sha256Hex(in) : DigestUtils.sha1Hex(in);
+            if (!expected.equalsIgnoreCase(actual)) {
+                throw new RuntimeException(
+                        "Checksum of: " + url + " does not match. Expected: " + expected + " actual: " + actual);
+            }
+        }
+    }
+
+    /**
+     * What is known about the file from the HEAD request.
+     */
+    static class RemoteFile {
+        long length = -1;
+        boolean acceptsRanges = false;
+        String sha256;
+        String sha1;
+    }
+
 }
@@ -3,17 +3,20 @@ package org.sagebionetworks.template.vpc;
 import com.amazonaws.services.cloudformation.model.Parameter;
 import com.google.inject.Inject;
 import org.apache.logging.log4j.Logger;
-import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.VelocityEngine;
-import org.json.JSONObject;
 import org.sagebionetworks.template.CloudFormationClient;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
+import org.sagebionetworks.template.TemplateRenderer;
 import org.sagebionetworks.template.config.Configuration;
+import org.sagebionetworks.template.deployment.DeploymentNode;
+import org.sagebionetworks.template.deployment.DeploymentOrchestrator;
 
-import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.sagebionetworks.template.Constants.*;
 import static org.sagebionetworks.template.Constants.VPC_CIDR;
@@ -21,19 +24,22 @@ import static org.sagebionetworks.template.Constants.VPC_CIDR;
 public class SubnetTemplateBuilderImpl implements SubnetTemplateBuilder {
 
     CloudFormationClient cloudFormationClient;
-    VelocityEngine velocityEngine;
+    TemplateRenderer templateRenderer;
     Configuration config;
     Logger logger;
     StackTagsProvider stackTagsProvider;
+    DeploymentOrchestrator deploymentOrchestrator;
 
     @Inject
-    public SubnetTemplateBuilderImpl(CloudFormationClient cloudFormationClient, VelocityEngine velocityEngine,
-                                  Configuration configuration, LoggerFactory loggerFactory, StackTagsProvider stackTagsProvider) {
+    public SubnetTemplateBuilderImpl(CloudFormationClient cloudFormationClient, TemplateRenderer templateRenderer,
+                                  Configuration configuration, LoggerFactory loggerFactory, StackTagsProvider stackTagsProvider,
+                                  DeploymentOrchestrator deploymentOrchestrator) {
         this.cloudFormationClient = cloudFormationClient;
-        this.velocityEngine = velocityEngine;
+        this.templateRenderer = templateRenderer;
         this.config = configuration;
         this.logger = loggerFactory.getLogger(VpcTemplateBuilderImpl.class);
         this.stackTagsProvider = stackTagsProvider;
+        this.deploymentOrchestrator = deploymentOrchestrator;
     }
 
     @Override
@@ -41,12 +47,7 @@ public class SubnetTemplateBuilderImpl implements SubnetTemplateBuilder {
         String stackName = createPublicSubnetsStackName();
         // Create the context from the input
         VelocityContext context = createContext();
-        Template publicSubnetsTemplate = this.velocityEngine.getTemplate(TEMPLATES_VPC_PUBLIC_SUBNETS_JSON_VTP);
-        StringWriter stringWriter = new StringWriter();
-        publicSubnetsTemplate.merge(context, stringWriter);
-        String resultJSON = stringWriter.toString();
-        JSONObject templateJson = new JSONObject(resultJSON);
-        resultJSON = templateJson.toString(JSON_INDENT);
+        String resultJSON = templateRenderer.renderJson(TEMPLATES_VPC_PUBLIC_SUBNETS_JSON_VTP, context);
 
         this.cloudFormationClient.createOrUpdateStack(
             new CreateOrUpdateStackRequest()
@@ -58,33 +59,43 @@ public class SubnetTemplateBuilderImpl implements SubnetTemplateBuilder {
         this.cloudFormationClient.waitForStackToComplete(stackName);
     }
 
+    /**
+     * The private subnets of each color only depend on the VPC and the public
+     * subnets, so the stack of each color is an independent node of the
+     * {@link DeploymentOrchestrator}. The templates of all colors are rendered
+     * before any stack is changed. Unless disabled, no other color is started
+     * after the first failure; the colors already started run to completion.
+     */
     @Override
     public void buildAndDeployPrivateSubnets() throws InterruptedException {
 
         VelocityContext context = createContext();
 
         Subnets subnets = (Subnets)context.get(SUBNETS);
+        Map<String, String> templates = new LinkedHashMap<>();
         for (int i=0; i<subnets.getPrivateSubnetGroups().length; i++) {
             SubnetGroup sg = subnets.getPrivateSubnetGroups()[i];
             String stackName = createPrivateSubnetStackName(sg.getColor().toString());
 
             context.put(PRIVATE_SUBNET_IDX, i);
-            Template privateSubnetsTemplate = this.velocityEngine.getTemplate(TEMPLATES_VPC_PRIVATE_SUBNET_JSON_VTP);
-            StringWriter stringWriter = new StringWriter();
-            privateSubnetsTemplate.merge(context, stringWriter);
-            String resultJSON = stringWriter.toString();
-            JSONObject templateJson = new JSONObject(resultJSON);
-            resultJSON = templateJson.toString(JSON_INDENT);
+            templates.put(stackName, templateRenderer.renderJson(TEMPLATES_VPC_PRIVATE_SUBNET_JSON_VTP, context));
+        }
+        if (templates.isEmpty()) {
+            return;
+        }
 
+        List<DeploymentNode> nodes = new ArrayList<>(templates.size());
+        templates.forEach((stackName, resultJSON) -> nodes.add(new DeploymentNode().withName(stackName).withStep(() -> {
             this.cloudFormationClient.createOrUpdateStack(
                     new CreateOrUpdateStackRequest()
                             .withStackName(stackName)
                             .withTemplateBody(resultJSON)
                             .withTags(stackTagsProvider.getStackTags())
             );
-
             this.cloudFormationClient.waitForStackToComplete(stackName);
-        }
+        })));
+        deploymentOrchestrator.deploy(nodes,
+                config.getBooleanProperty(PROPERTY_KEY_VPC_PRIVATE_SUBNETS_FAIL_FAST, DEFAULT_VPC_PRIVATE_SUBNETS_FAIL_FAST));
     }
 
     VelocityContext createContext() {
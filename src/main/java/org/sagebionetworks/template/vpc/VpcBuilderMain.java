@@ -1,5 +1,6 @@
 package org.sagebionetworks.template.vpc;
 
+import org.sagebionetworks.template.ClientLifecycle;
 import org.sagebionetworks.template.TemplateGuiceModule;
 
 import com.google.inject.Guice;
@@ -13,11 +14,15 @@ public class VpcBuilderMain {
 
 	public static void main(String[] args) throws InterruptedException {
 		Injector injector = Guice.createInjector(new TemplateGuiceModule());
-		VpcTemplateBuilder builder = injector.getInstance(VpcTemplateBuilder.class);
-		builder.buildAndDeploy();
-		SubnetTemplateBuilder subnetBuilder = injector.getInstance(SubnetTemplateBuilder.class);
-		subnetBuilder.buildAndDeployPublicSubnets();
-		subnetBuilder.buildAndDeployPrivateSubnets();
+		try {
+			VpcTemplateBuilder builder = injector.getInstance(VpcTemplateBuilder.class);
+			builder.buildAndDeploy();
+			SubnetTemplateBuilder subnetBuilder = injector.getInstance(SubnetTemplateBuilder.class);
+			subnetBuilder.buildAndDeployPublicSubnets();
+			subnetBuilder.buildAndDeployPrivateSubnets();
+		} finally {
+			injector.getInstance(ClientLifecycle.class).shutdown();
+		}
 	}
 
 }
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.function.Consumer;
+import java.util.zip.ZipException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.Logger;
@@ -11,6 +12,11 @@ import org.sagebionetworks.template.LoggerFactory;
 
 import com.google.inject.Inject;
 
+/**
+ * Appends files to a copy of a war without extracting it. The callback writes
+ * only the files to append to a temp directory, and the entries of the
+ * original war are copied to the new war as raw compressed bytes.
+ */
 public class WarAppenderImpl implements WarAppender {
 	
 	Logger logger;
@@ -24,16 +30,18 @@ public class WarAppenderImpl implements WarAppender {
 	public File appendFilesCopyOfWar(File originalWar, Consumer<File> callback) {
 		File tempDir = null;
 		try {
-			tempDir = Files.createTempDirectory("warCopy").toFile();
-			logger.info("Unzipping war: "+originalWar.getName()+"...");
-			// Unzip the war to the temp dir
-			WarUtilities.unzipWarToDirectory(originalWar, tempDir);
-			// create the ebextensions directory
+			tempDir = Files.createTempDirectory("warAppend").toFile();
+			// the callback only writes the files to append.
 			callback.accept(tempDir);
-			// Zip the war into a new file
 			File warCopy = File.createTempFile("WarCopy", ".war");
 			logger.info("Creating new war with .ebextensions: "+originalWar.getName()+"...");
-			WarUtilities.zipDirectoryToWar(tempDir, warCopy);
+			try {
+				WarUtilities.appendDirectoryToWar(originalWar, tempDir, warCopy);
+			} catch (ZipException e) {
+				logger.info("Cannot copy the entries of war: "+originalWar.getName()+" ("+e.getMessage()+") repackaging it instead...");
+				repackageWar(originalWar, tempDir, warCopy);
+			}
+			logger.info("Finished new war with .ebextensions: "+originalWar.getName());
 			return warCopy;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
@@ -48,4 +56,18 @@ public class WarAppenderImpl implements WarAppender {
 		}
 	}
 
+	/**
+	 * Unzip the war, add the appended files and zip it again.
+	 */
+	void repackageWar(File originalWar, File appendDirectory, File warCopy) throws IOException {
+		File unzipDir = Files.createTempDirectory("warCopy").toFile();
+		try {
+			WarUtilities.unzipWarToDirectory(originalWar, unzipDir);
+			FileUtils.copyDirectory(appendDirectory, unzipDir);
+			WarUtilities.zipDirectoryToWar(unzipDir, warCopy);
+		} finally {
+			FileUtils.deleteDirectory(unzipDir);
+		}
+	}
+
 }
@@ -2,16 +2,37 @@ package org.sagebionetworks.war;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -21,6 +42,20 @@ import org.apache.commons.io.filefilter.TrueFileFilter;
 
 public class WarUtilities {
 
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+	static final int ZIP64_END_LOCATOR_SIGNATURE = 0x07064b50;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int CENTRAL_HEADER_SIZE = 46;
+	static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	static final int ZIP64_END_LOCATOR_SIZE = 20;
+	static final int MAX_COMMENT_SIZE = 0xFFFF;
+	static final int VERSION = 20;
+	static final int UTF8_FLAG = 0x0800;
+	static final int DIRECTORY_ATTRIBUTE = 0x10;
+	static final long MAX_32_BIT = 0xFFFFFFFFL;
+
 	/**
 	 * Unzip the given WAR file to the provided destination. This is from
 	 * 
@@ -84,4 +119,260 @@ public class WarUtilities {
 			}
 		}
 	}
+
+	/**
+	 * Write a copy of the given WAR file with the files of the provided directory
+	 * appended. The entries of the original WAR are copied as raw compressed bytes
+	 * so they are never inflated or deflated, and only the appended files are
+	 * compressed. An appended file replaces an entry of the original WAR with the
+	 * same name.
+	 * 
+	 * @param sourceWar
+	 * @param appendDirectory
+	 * @param destinationWar
+	 * @throws ZipException If the source WAR uses a format that cannot be copied
+	 *                      raw, such as ZIP64.
+	 * @throws IOException
+	 */
+	public static void appendDirectoryToWar(File sourceWar, File appendDirectory, File destinationWar)
+			throws IOException {
+		List<Path> appendPaths = listAppendPaths(appendDirectory);
+		Set<String> appendNames = new HashSet<>();
+		for (Path path : appendPaths) {
+			appendNames.add(entryName(appendDirectory.toPath(), path));
+		}
+		try (FileChannel in = FileChannel.open(sourceWar.toPath(), StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(destinationWar.toPath(), StandardOpenOption.CREATE,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			List<RawEntry> entries = readCentralDirectory(sourceWar, in);
+			Set<String> sourceNames = new HashSet<>();
+			ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+			int entryCount = 0;
+			for (RawEntry entry : entries) {
+				sourceNames.add(entry.name);
+				if (appendNames.contains(entry.name) && !entry.name.endsWith("/")) {
+					// replaced by an appended file.
+					continue;
+				}
+				long position = checkOffset(out.position());
+				long transferred = 0;
+				while (transferred < entry.length) {
+					transferred += in.transferTo(entry.offset + transferred, entry.length - transferred, out);
+				}
+				entry.centralHeader.putInt(42, (int) position);
+				centralDirectory.write(entry.centralHeader.array());
+				entryCount++;
+			}
+			for (Path path : appendPaths) {
+				String name = entryName(appendDirectory.toPath(), path);
+				if (name.endsWith("/") && sourceNames.contains(name)) {
+					continue;
+				}
+				centralDirectory.write(appendEntry(out, path, name));
+				entryCount++;
+			}
+			if (entryCount > 0xFFFF) {
+				throw new ZipException("Too many entries for a raw copy of: " + sourceWar.getName());
+			}
+			long centralDirectoryOffset = checkOffset(out.position());
+			writeFully(out, ByteBuffer.wrap(centralDirectory.toByteArray()));
+			ByteBuffer end = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+			end.putShort((short) 0).putShort((short) 0);
+			end.putShort((short) entryCount).putShort((short) entryCount);
+			end.putInt(centralDirectory.size()).putInt((int) centralDirectoryOffset);
+			end.putShort((short) 0);
+			end.flip();
+			writeFully(out, end);
+		}
+	}
+
+	/**
+	 * The files and directories to append, parents before children.
+	 */
+	static List<Path> listAppendPaths(File appendDirectory) throws IOException {
+		try (Stream<Path> stream = Files.walk(appendDirectory.toPath())) {
+			return stream.filter(p -> !p.equals(appendDirectory.toPath())).sorted(Comparator.comparing(Path::toString))
+					.collect(Collectors.toList());
+		}
+	}
+
+	static String entryName(Path root, Path path) {
+		StringBuilder nameBuilder = new StringBuilder();
+		for (Path part : root.relativize(path)) {
+			if (nameBuilder.length() > 0) {
+				nameBuilder.append("/");
+			}
+			nameBuilder.append(part.toString());
+		}
+		if (Files.isDirectory(path)) {
+			nameBuilder.append("/");
+		}
+		return nameBuilder.toString();
+	}
+
+	/**
+	 * Read the central directory of the given WAR. Each entry spans from its
+	 * local header to the start of the next entry, which includes its data
+	 * descriptor if any.
+	 */
+	static List<RawEntry> readCentralDirectory(File war, FileChannel in) throws IOException {
+		long size = in.size();
+		int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+		ByteBuffer tail = readFully(in, size - tailSize, tailSize);
+		int endPosition = -1;
+		for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+				endPosition = i;
+				break;
+			}
+		}
+		if (endPosition < 0) {
+			throw new ZipException("Not a zip file: " + war.getName());
+		}
+		int entryCount = tail.getShort(endPosition + 10) & 0xFFFF;
+		long centralDirectorySize = tail.getInt(endPosition + 12) & MAX_32_BIT;
+		long centralDirectoryOffset = tail.getInt(endPosition + 16) & MAX_32_BIT;
+		boolean zip64Locator = endPosition >= ZIP64_END_LOCATOR_SIZE
+				&& tail.getInt(endPosition - ZIP64_END_LOCATOR_SIZE) == ZIP64_END_LOCATOR_SIGNATURE;
+		if (zip64Locator || entryCount == 0xFFFF || centralDirectoryOffset == MAX_32_BIT) {
+			throw new ZipException("ZIP64 is not supported for a raw copy of: " + war.getName());
+		}
+		ByteBuffer central = readFully(in, centralDirectoryOffset, (int) centralDirectorySize);
+		List<RawEntry> entries = new ArrayList<>(entryCount);
+		int position = 0;
+		for (int i = 0; i < entryCount; i++) {
+			if (central.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+				throw new ZipException("Invalid central directory in: " + war.getName());
+			}
+			int nameLength = central.getShort(position + 28) & 0xFFFF;
+			int extraLength = central.getShort(position + 30) & 0xFFFF;
+			int commentLength = central.getShort(position + 32) & 0xFFFF;
+			int headerLength = CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+			RawEntry entry = new RawEntry();
+			entry.offset = central.getInt(position + 42) & MAX_32_BIT;
+			// any of these at the sentinel means the real value is in a ZIP64 extra field
+			if (entry.offset == MAX_32_BIT || (central.getInt(position + 20) & MAX_32_BIT) == MAX_32_BIT
+					|| (central.getInt(position + 24) & MAX_32_BIT) == MAX_32_BIT) {
+				throw new ZipException("ZIP64 is not supported for a raw copy of: " + war.getName());
+			}
+			byte[] header = new byte[headerLength];
+			central.position(position);
+			central.get(header);
+			entry.centralHeader = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+			entry.name = new String(header, CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+			entries.add(entry);
+			position += headerLength;
+		}
+		entries.sort(Comparator.comparingLong(e -> e.offset));
+		for (int i = 0; i < entries.size(); i++) {
+			long next = i + 1 < entries.size() ? entries.get(i + 1).offset : centralDirectoryOffset;
+			entries.get(i).length = next - entries.get(i).offset;
+		}
+		for (RawEntry entry : entries) {
+			if (readFully(in, entry.offset, 4).getInt(0) != LOCAL_HEADER_SIGNATURE) {
+				throw new ZipException("Invalid local header for: " + entry.name + " in: " + war.getName());
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Write the local header and data of an appended file or directory.
+	 * 
+	 * @return The central directory header of the new entry.
+	 */
+	static byte[] appendEntry(FileChannel out, Path path, String name) throws IOException {
+		boolean directory = name.endsWith("/");
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		byte[] data = new byte[0];
+		long crc = 0;
+		long size = 0;
+		if (!directory) {
+			byte[] content = Files.readAllBytes(path);
+			CRC32 crc32 = new CRC32();
+			crc32.update(content);
+			crc = crc32.getValue();
+			size = content.length;
+			ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			try (DeflaterOutputStream deflaterOut = new DeflaterOutputStream(deflated, deflater)) {
+				deflaterOut.write(content);
+			} finally {
+				deflater.end();
+			}
+			data = deflated.toByteArray();
+		}
+		int method = directory ? ZipEntry.STORED : ZipEntry.DEFLATED;
+		int dosTime = toDosTime(Files.getLastModifiedTime(path).toMillis());
+		long offset = checkOffset(out.position());
+
+		ByteBuffer local = ByteBuffer.allocate(LOCAL_HEADER_SIZE + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		local.putInt(LOCAL_HEADER_SIGNATURE);
+		local.putShort((short) VERSION).putShort((short) UTF8_FLAG).putShort((short) method);
+		local.putInt(dosTime).putInt((int) crc).putInt(data.length).putInt((int) size);
+		local.putShort((short) nameBytes.length).putShort((short) 0);
+		local.put(nameBytes);
+		local.flip();
+		writeFully(out, local);
+		writeFully(out, ByteBuffer.wrap(data));
+
+		ByteBuffer central = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		central.putInt(CENTRAL_HEADER_SIGNATURE);
+		central.putShort((short) VERSION).putShort((short) VERSION).putShort((short) UTF8_FLAG)
+				.putShort((short) method);
+		central.putInt(dosTime).putInt((int) crc).putInt(data.length).putInt((int) size);
+		central.putShort((short) nameBytes.length).putShort((short) 0).putShort((short) 0);
+		central.putShort((short) 0).putShort((short) 0);
+		central.putInt(directory ? DIRECTORY_ATTRIBUTE : 0).putInt((int) offset);
+		central.put(nameBytes);
+		return central.array();
+	}
+
+	/**
+	 * Convert the given time to the MS-DOS date and time used by zip headers.
+	 */
+	static int toDosTime(long millis) {
+		LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+		if (time.getYear() < 1980) {
+			time = LocalDateTime.of(1980, 1, 1, 0, 0);
+		}
+		int date = ((time.getYear() - 1980) << 9) | (time.getMonthValue() << 5) | time.getDayOfMonth();
+		int dosTime = (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() / 2);
+		return (date << 16) | dosTime;
+	}
+
+	static long checkOffset(long offset) throws ZipException {
+		if (offset >= MAX_32_BIT) {
+			throw new ZipException("ZIP64 is not supported for a raw copy");
+		}
+		return offset;
+	}
+
+	static ByteBuffer readFully(FileChannel in, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	/**
+	 * An entry of the source WAR copied as raw bytes.
+	 */
+	static class RawEntry {
+		String name;
+		long offset;
+		long length;
+		ByteBuffer centralHeader;
+	}
 }
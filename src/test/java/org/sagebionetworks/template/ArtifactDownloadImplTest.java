@@ -7,6 +7,7 @@ import java.io.File;
 
 import org.apache.http.client.HttpClient;
 import org.junit.Test;
+import org.sagebionetworks.template.config.ConfigurationImpl;
 import org.sagebionetworks.template.utils.ArtifactDownload;
 import org.sagebionetworks.template.utils.ArtifactDownloadImpl;
 
@@ -19,8 +20,9 @@ public class ArtifactDownloadImplTest {
     public void testDownload() {
         // this is a small file
         String url = "https://sagebionetworks.jfrog.io/sagebionetworks/libs-releases-local/org/json/JSON-Java/maven-metadata.xml";
-        HttpClient client = new TemplateGuiceModule().provideHttpClient();
-        ArtifactDownload downloader = new ArtifactDownloadImpl(client);
+        HttpClient client = new TemplateGuiceModule().provideHttpClient(new ConfigurationImpl(),
+                new ClientLifecycleImpl(new LoggerFactoryImpl()));
+        ArtifactDownload downloader = new ArtifactDownloadImpl(client, new ThreadProviderImp());
         File temp = downloader.downloadFile(url);
         try {
             assertNotNull(temp);
@@ -0,0 +1,99 @@
+package org.sagebionetworks.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormationClient;
+import com.amazonaws.services.s3.AmazonS3Client;
+
+@ExtendWith(MockitoExtension.class)
+public class ClientLifecycleImplTest {
+
+	@Mock
+	LoggerFactory mockLoggerFactory;
+	@Mock
+	Logger mockLogger;
+	@Mock
+	AmazonS3Client mockS3Client;
+	@Mock
+	AmazonCloudFormationClient mockCloudFormationClient;
+	@Mock
+	CloseableHttpClient mockHttpClient;
+
+	ClientLifecycleImpl lifecycle;
+
+	@BeforeEach
+	public void before() {
+		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+		lifecycle = new ClientLifecycleImpl(mockLoggerFactory);
+	}
+
+	@Test
+	public void testRegister() {
+		// call under test
+		assertEquals(mockS3Client, lifecycle.register(mockS3Client));
+	}
+
+	@Test
+	public void testRegisterNull() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			// call under test
+			lifecycle.register(null);
+		});
+	}
+
+	@Test
+	public void testShutdown() throws IOException {
+		lifecycle.register(mockS3Client);
+		lifecycle.register(mockHttpClient);
+		lifecycle.register(mockCloudFormationClient);
+		lifecycle.register("not a client");
+		// call under test
+		lifecycle.shutdown();
+		InOrder inOrder = inOrder(mockCloudFormationClient, mockHttpClient, mockS3Client);
+		inOrder.verify(mockCloudFormationClient).shutdown();
+		inOrder.verify(mockHttpClient).close();
+		inOrder.verify(mockS3Client).shutdown();
+	}
+
+	@Test
+	public void testShutdownOnlyOnce() {
+		lifecycle.register(mockS3Client);
+		// call under test
+		lifecycle.shutdown();
+		lifecycle.shutdown();
+		verify(mockS3Client, times(1)).shutdown();
+		assertThrows(IllegalStateException.class, () -> {
+			lifecycle.register(mockCloudFormationClient);
+		});
+	}
+
+	@Test
+	public void testShutdownFailure() throws IOException {
+		lifecycle.register(mockS3Client);
+		lifecycle.register(mockHttpClient);
+		doThrow(new IOException("closed")).when(mockHttpClient).close();
+		// call under test
+		lifecycle.shutdown();
+		// the remaining clients are still shut down.
+		verify(mockS3Client).shutdown();
+		verify(mockLogger).warn(any(String.class));
+	}
+}
@@ -2,7 +2,6 @@ package org.sagebionetworks.template;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -13,8 +12,11 @@ import static org.mockito.Mockito.when;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -27,8 +29,6 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.sagebionetworks.template.config.Configuration;
-import org.sagebionetworks.template.repo.beanstalk.SourceBundle;
 
 import com.amazonaws.services.cloudformation.AmazonCloudFormation;
 import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
@@ -37,14 +37,22 @@ import com.amazonaws.services.cloudformation.model.CreateStackResult;
 import com.amazonaws.services.cloudformation.model.DeleteStackRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
 import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.GetTemplateRequest;
+import com.amazonaws.services.cloudformation.model.GetTemplateResult;
+import com.amazonaws.services.cloudformation.model.ListStackResourcesRequest;
+import com.amazonaws.services.cloudformation.model.ListStackResourcesResult;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
 import com.amazonaws.services.cloudformation.model.Output;
 import com.amazonaws.services.cloudformation.model.Parameter;
 import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackResourceSummary;
 import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+import com.amazonaws.services.cloudformation.model.Tag;
+import com.amazonaws.services.cloudformation.model.TemplateStage;
 import com.amazonaws.services.cloudformation.model.UpdateStackRequest;
 import com.amazonaws.services.cloudformation.model.UpdateStackResult;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.PutObjectRequest;
 
 @ExtendWith(MockitoExtension.class)
 public class CloudFormationClientImplTest {
@@ -57,9 +65,7 @@ public class CloudFormationClientImplTest {
 	@Mock
 	AmazonCloudFormation mockCloudFormationClient;
 	@Mock
-	AmazonS3 mockS3Client;
-	@Mock
-	Configuration mockConfig;
+	TemplateStore mockTemplateStore;
 	@Mock
 	Function<String, String> mockFunction;
 	@Mock
@@ -67,7 +73,7 @@ public class CloudFormationClientImplTest {
 	@Mock
 	Logger mockLogger;
 	@Mock
-	ThreadProvider mockThreadProvider;
+	StackWaiter mockStackWaiter;
 
 	@Captor
 	ArgumentCaptor<DescribeStacksRequest> describeStackRequestCapture;
@@ -82,6 +88,7 @@ public class CloudFormationClientImplTest {
 	String tempalteBody;
 	Parameter parameter;
 	Parameter[] parameters;
+	Tag tag;
 
 	String stackId;
 	DescribeStacksResult initDescribeResult, describeResult;
@@ -91,7 +98,7 @@ public class CloudFormationClientImplTest {
 
 	Stack initStack, stack;
 	
-	String bucket;
+	String templateUrl;
 	
 	String[] capabilities;
 
@@ -99,7 +106,7 @@ public class CloudFormationClientImplTest {
 	public void before() throws MalformedURLException {
 		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
 		
-		client = new CloudFormationClientImpl(mockCloudFormationClient, mockS3Client, mockConfig, mockLoggerFactory, mockThreadProvider);
+		client = new CloudFormationClientImpl(mockCloudFormationClient, mockTemplateStore, mockLoggerFactory, mockStackWaiter);
 
 		stackId = "theStackId";
 		Collection<Output> outputs = new ArrayList<>();
@@ -124,13 +131,14 @@ public class CloudFormationClientImplTest {
 		tempalteBody = "body";
 		parameter = new Parameter().withParameterKey("paramKey").withParameterValue("paramValue");
 		parameters = new Parameter[] { parameter };
+		tag = new Tag().withKey("tagKey").withValue("tagValue");
 		inputReqequest = new CreateOrUpdateStackRequest()
 				.withStackName(stackName)
 				.withTemplateBody(tempalteBody)
 				.withParameters(parameters)
 				.withCapabilities(capabilities);
 		
-		bucket = "theBucket";
+		templateUrl = "https://s3.amazonaws.com/theBucket/templates/content/hash.json";
 
 	}
 
@@ -172,43 +180,16 @@ public class CloudFormationClientImplTest {
 		Assertions.assertFalse(exists);
 	}
 
-	@Test
-	public void testIsStartedInUpdateRollbackCompleteFalse() {
-		stack.setStackStatus(StackStatus.CREATE_COMPLETE);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(describeResult);
-		// call under test
-		boolean isStartedInUpdateRollbackComplete = client.isStartedInUpdateRollbackComplete(stackName);
-		Assertions.assertFalse(isStartedInUpdateRollbackComplete);
-	}
-
-	@Test
-	public void testIsStartedInUpdateRollbackCompleteTrue() {
-		stack.setStackStatus(StackStatus.UPDATE_ROLLBACK_COMPLETE);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(describeResult);
-		// call under test
-		boolean isStartedInUpdateRollbackComplete = client.isStartedInUpdateRollbackComplete(stackName);
-		Assertions.assertTrue(isStartedInUpdateRollbackComplete);
-	}
-
-	@Test
-	public void testIsStartedInUpdateRollbackCompleteNoStack() {
-		AmazonCloudFormationException exception = new AmazonCloudFormationException("Does not exist");
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenThrow(exception);
-		// call under test
-		boolean isStartedInUpdateRollbackComplete = client.isStartedInUpdateRollbackComplete(stackName);
-		Assertions.assertFalse(isStartedInUpdateRollbackComplete);
-	}
-
-
 	@Test
 	public void testCreateStack() {
+		when(mockTemplateStore.saveTemplate(tempalteBody)).thenReturn(templateUrl);
 		when(mockCloudFormationClient.createStack(any(CreateStackRequest.class))).thenReturn(createResult);
 		// call under test
 		client.createStack(inputReqequest);
 		verify(mockCloudFormationClient).createStack(createStackRequestCapture.capture());
 		CreateStackRequest captureRequest = createStackRequestCapture.getValue();
 		Assertions.assertEquals(stackName, captureRequest.getStackName());
-		Assertions.assertNotNull(captureRequest.getTemplateURL());
+		Assertions.assertEquals(templateUrl, captureRequest.getTemplateURL());
 		Assertions.assertNotNull(captureRequest.getParameters());
 		Assertions.assertEquals(1, captureRequest.getParameters().size());
 		Assertions.assertEquals(parameter, captureRequest.getParameters().get(0));
@@ -221,13 +202,14 @@ public class CloudFormationClientImplTest {
 	
 	@Test
 	public void testUpdateStack() {
+		when(mockTemplateStore.saveTemplate(tempalteBody)).thenReturn(templateUrl);
 		when(mockCloudFormationClient.updateStack(any(UpdateStackRequest.class))).thenReturn(updateResult);
 		// call under test
 		client.updateStack(inputReqequest);
 		verify(mockCloudFormationClient).updateStack(updateStackRequestCapture.capture());
 		UpdateStackRequest request = updateStackRequestCapture.getValue();
 		Assertions.assertEquals(stackName, request.getStackName());
-		Assertions.assertNotNull(request.getTemplateURL());
+		Assertions.assertEquals(templateUrl, request.getTemplateURL());
 		Assertions.assertNotNull(request.getParameters());
 		Assertions.assertEquals(1, request.getParameters().size());
 		Assertions.assertEquals(parameter, request.getParameters().get(0));
@@ -259,221 +241,194 @@ public class CloudFormationClientImplTest {
 		verify(mockCloudFormationClient, never()).updateStack(any(UpdateStackRequest.class));
 		verify(mockCloudFormationClient).createStack(any(CreateStackRequest.class));
 	}
-	
+
 	@Test
-	public void testSaveTempalteToS3() {
-		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
+	public void testCreateOrUpdateUnchanged() {
+		stack.withStackStatus(StackStatus.UPDATE_COMPLETE).withParameters(parameter).withTags(tag);
+		inputReqequest.withTags(List.of(tag));
+		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(describeResult);
+		when(mockCloudFormationClient.getTemplate(any(GetTemplateRequest.class)))
+				.thenReturn(new GetTemplateResult().withTemplateBody(tempalteBody));
 		// call under test
-		SourceBundle bundle = client.saveTempalteToS3(stackName, tempalteBody);
-		Assertions.assertNotNull(bundle);
-		Assertions.assertEquals(bucket, bundle.getBucket());
-		Assertions.assertNotNull(bundle.getKey());
-		Assertions.assertTrue(bundle.getKey().startsWith("templates/someStackName"));
-		Assertions.assertTrue(bundle.getKey().endsWith(".json"));
-		ArgumentCaptor<PutObjectRequest> requestCapture = ArgumentCaptor.forClass(PutObjectRequest.class);
-		verify(mockS3Client).putObject(requestCapture.capture());
-		PutObjectRequest request = requestCapture.getValue();
-		Assertions.assertNotNull(request);
-		Assertions.assertEquals(bucket, request.getBucketName());
-		Assertions.assertEquals(bundle.getKey(), request.getKey());
-		Assertions.assertNotNull(request.getMetadata());
-		Assertions.assertEquals(4L, request.getMetadata().getContentLength());
+		client.createOrUpdateStack(inputReqequest);
+		verify(mockCloudFormationClient).getTemplate(new GetTemplateRequest().withStackName(stackName)
+				.withTemplateStage(TemplateStage.Original));
+		verify(mockCloudFormationClient, never()).updateStack(any(UpdateStackRequest.class));
+		verify(mockCloudFormationClient, never()).createStack(any(CreateStackRequest.class));
+		verify(mockTemplateStore, never()).saveTemplate(any());
 	}
-	
+
 	@Test
-	public void testDeleteTemplate() {
-		String key = "someKey";
-		SourceBundle bundle = new SourceBundle(bucket, key);
+	public void testCreateOrUpdateTemplateChanged() {
+		stack.withStackStatus(StackStatus.UPDATE_COMPLETE).withParameters(parameter);
+		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(describeResult);
+		when(mockCloudFormationClient.getTemplate(any(GetTemplateRequest.class)))
+				.thenReturn(new GetTemplateResult().withTemplateBody("old body"));
+		when(mockCloudFormationClient.updateStack(any(UpdateStackRequest.class))).thenReturn(updateResult);
 		// call under test
-		client.deleteTemplate(bundle);
-		verify(mockS3Client).deleteObject(bucket, key);
+		client.createOrUpdateStack(inputReqequest);
+		verify(mockCloudFormationClient).updateStack(any(UpdateStackRequest.class));
 	}
-	
+
 	@Test
-	public void testExecuteWithS3Template() {
-		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
-		when(mockFunction.apply(anyString())).thenReturn(stackId);
+	public void testIsUnchangedParameterChanged() {
+		stack.withStackStatus(StackStatus.CREATE_COMPLETE)
+				.withParameters(new Parameter().withParameterKey("paramKey").withParameterValue("oldValue"));
+		when(mockCloudFormationClient.getTemplate(any(GetTemplateRequest.class)))
+				.thenReturn(new GetTemplateResult().withTemplateBody(tempalteBody));
 		// call under test
-		client.executeWithS3Template(inputReqequest, mockFunction);
-		verify(mockS3Client).putObject(any(PutObjectRequest.class));
-		verify(mockFunction).apply(anyString());
-		verify(mockS3Client).deleteObject(anyString(), anyString());
+		Assertions.assertFalse(client.isUnchanged(stack, inputReqequest));
 	}
-	
-	
+
 	@Test
-	public void testExecuteWithS3TemplateNoUpdates() {
-		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
-		AmazonCloudFormationException exception = new AmazonCloudFormationException(CloudFormationClientImpl.NO_UPDATES_ARE_TO_BE_PERFORMED);
-		
-		when(mockFunction.apply(anyString())).thenThrow(exception);
+	public void testIsUnchangedTagChanged() {
+		stack.withStackStatus(StackStatus.CREATE_COMPLETE).withParameters(parameter);
+		inputReqequest.withTags(List.of(tag));
+		when(mockCloudFormationClient.getTemplate(any(GetTemplateRequest.class)))
+				.thenReturn(new GetTemplateResult().withTemplateBody(tempalteBody));
 		// call under test
-		client.executeWithS3Template(inputReqequest, mockFunction);
-		verify(mockS3Client).putObject(any(PutObjectRequest.class));
-		verify(mockFunction).apply(anyString());
-		verify(mockS3Client).deleteObject(anyString(), anyString());
-		verify(mockLogger).info(any(String.class));
+		Assertions.assertFalse(client.isUnchanged(stack, inputReqequest));
 	}
 
 	@Test
-	public void testExecuteWithS3TemplateWithError() {
-		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
-		AmazonCloudFormationException exception = new AmazonCloudFormationException("some other error");
-		when(mockFunction.apply(anyString())).thenThrow(exception);
-		RuntimeException expectedEx = Assertions.assertThrows(RuntimeException.class, () -> {
-			// call under test
-			client.executeWithS3Template(inputReqequest, mockFunction);
-		});
+	public void testIsUnchangedNotStable() {
+		stack.withStackStatus(StackStatus.UPDATE_ROLLBACK_FAILED);
+		// call under test
+		Assertions.assertFalse(client.isUnchanged(stack, inputReqequest));
+		verify(mockCloudFormationClient, never()).getTemplate(any(GetTemplateRequest.class));
 	}
-	
+
 	@Test
-	public void testWaitForStackToCompleteCreateComplete() throws InterruptedException {
-		initStack.setStackStatus(StackStatus.CREATE_IN_PROGRESS);
-		stack.setStackStatus(StackStatus.CREATE_COMPLETE);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(initDescribeResult, describeResult);
+	public void testIsUnchangedGetTemplateFailure() {
+		stack.withStackStatus(StackStatus.UPDATE_COMPLETE);
+		when(mockCloudFormationClient.getTemplate(any(GetTemplateRequest.class)))
+				.thenThrow(new AmazonCloudFormationException("denied"));
 		// call under test
-		Stack result = client.waitForStackToComplete(stackName).get();
-		Assertions.assertNotNull(result);
-		verify(mockCloudFormationClient, times(2)).describeStacks(any(DescribeStacksRequest.class));
+		Assertions.assertFalse(client.isUnchanged(stack, inputReqequest));
+	}
+
+	@Test
+	public void testFingerprintOrderIndependent() {
+		Parameter other = new Parameter().withParameterKey("another").withParameterValue("value");
+		Tag otherTag = new Tag().withKey("another").withValue("value");
+		String one = CloudFormationClientImpl.fingerprint(tempalteBody, List.of(parameter, other), List.of(tag, otherTag));
+		String two = CloudFormationClientImpl.fingerprint(tempalteBody, List.of(other, parameter), List.of(otherTag, tag));
+		assertEquals(one, two);
+		assertEquals(64, one.length());
+		Assertions.assertNotEquals(one, CloudFormationClientImpl.fingerprint(tempalteBody + " ", List.of(parameter, other),
+				List.of(tag, otherTag)));
 	}
 	
+	static final String NO_ECHO_TEMPLATE = "{\"Parameters\": {\"Password\": {\"Type\": \"String\", \"NoEcho\": true}, "
+			+ "\"paramKey\": {\"Type\": \"String\"}}, \"Resources\": {}}";
+
 	@Test
-	public void testWaitForStackToCompleteUpdateComplete() throws InterruptedException {
-		initStack.setStackStatus(StackStatus.UPDATE_IN_PROGRESS);
-		stack.setStackStatus(StackStatus.UPDATE_COMPLETE);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(initDescribeResult, describeResult);
+	public void testIsUnchangedWithNoEcho() {
+		stack.withStackStatus(StackStatus.UPDATE_COMPLETE)
+				.withParameters(new Parameter().withParameterKey("Password").withParameterValue("****"), parameter)
+				.withTags(tag);
+		inputReqequest.withTemplateBody(NO_ECHO_TEMPLATE).withTags(List.of(tag))
+				.withParameters(new Parameter().withParameterKey("Password").withParameterValue("secret"), parameter);
 		// call under test
-		Stack result = client.waitForStackToComplete(stackName).get();
-		Assertions.assertNotNull(result);
-		verify(mockCloudFormationClient, times(2)).describeStacks(any(DescribeStacksRequest.class));
+		Assertions.assertFalse(client.isUnchanged(stack, inputReqequest));
+		verify(mockCloudFormationClient, never()).getTemplate(any(GetTemplateRequest.class));
 	}
-	
-	
+
 	@Test
-	public void testWaitForStackToCompleteTimeout() throws InterruptedException {
-		initStack.setStackStatus(StackStatus.CREATE_IN_PROGRESS);
-		stack.setStackStatus(StackStatus.CREATE_IN_PROGRESS);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(initDescribeResult, describeResult);
-		when(mockThreadProvider.currentTimeMillis()).thenReturn(1L, 2L,3L,4L,Long.MAX_VALUE);
+	public void testCreateStackWithNoEchoAddsNoTags() {
+		inputReqequest.withTemplateBody(NO_ECHO_TEMPLATE).withTags(List.of(tag))
+				.withParameters(new Parameter().withParameterKey("Password").withParameterValue("secret"), parameter);
+		when(mockTemplateStore.saveTemplate(any())).thenReturn(templateUrl);
+		when(mockCloudFormationClient.createStack(any(CreateStackRequest.class))).thenReturn(createResult);
 		// call under test
-		try {
-			client.waitForStackToComplete(stackName);
-			Assertions.fail();
-		} catch (RuntimeException e) {
-			Assertions.assertTrue(e.getMessage().contains("Timed out"));
-			
-		}
-		verify(mockCloudFormationClient, times(4)).describeStacks(any(DescribeStacksRequest.class));
-		verify(mockLogger, times(3)).info(any(String.class));
-		verify(mockThreadProvider, times(3)).sleep(any(Long.class));
+		client.createStack(inputReqequest);
+		verify(mockCloudFormationClient).createStack(createStackRequestCapture.capture());
+		assertEquals(List.of(tag), createStackRequestCapture.getValue().getTags());
 	}
-	
+
 	@Test
-	public void testWaitForStackToCompleteTimeoutUpdate() throws InterruptedException {
-		initStack.setStackStatus(StackStatus.UPDATE_IN_PROGRESS);
-		stack.setStackStatus(StackStatus.UPDATE_IN_PROGRESS);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(initDescribeResult, describeResult);
-		when(mockThreadProvider.currentTimeMillis()).thenReturn(1L, 2L,3L,4L,Long.MAX_VALUE);		// call under test
-		try {
-			client.waitForStackToComplete(stackName);
-			Assertions.fail();
-		} catch (RuntimeException e) {
-			Assertions.assertTrue(e.getMessage().contains("Timed out"));
-			
-		}
-		verify(mockCloudFormationClient, times(4)).describeStacks(any(DescribeStacksRequest.class));
-		verify(mockLogger, times(3)).info(any(String.class));
-		verify(mockThreadProvider, times(3)).sleep(any(Long.class));
+	public void testNoEchoParameterNames() {
+		assertEquals(Set.of("Password"), CloudFormationClientImpl.noEchoParameterNames(NO_ECHO_TEMPLATE));
+		assertEquals(Set.of(), CloudFormationClientImpl.noEchoParameterNames("not json"));
+		assertEquals(Set.of(), CloudFormationClientImpl.noEchoParameterNames("{\"Resources\": {}}"));
 	}
-	
+
 	@Test
-	public void testWaitForStackToCompleteTimeoutUpdateCleanup() throws InterruptedException {
-		initStack.setStackStatus(StackStatus.UPDATE_IN_PROGRESS);
-		stack.setStackStatus(StackStatus.UPDATE_COMPLETE_CLEANUP_IN_PROGRESS);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(initDescribeResult, describeResult);
-		when(mockThreadProvider.currentTimeMillis()).thenReturn(1L, 2L,3L,4L,Long.MAX_VALUE);
+	public void testExecuteWithS3Template() {
+		when(mockTemplateStore.saveTemplate(tempalteBody)).thenReturn(templateUrl);
+		when(mockFunction.apply(anyString())).thenReturn(stackId);
 		// call under test
-		try {
-			client.waitForStackToComplete(stackName);
-			Assertions.fail();
-		} catch (RuntimeException e) {
-			Assertions.assertTrue(e.getMessage().contains("Timed out"));
-			
-		}
-		verify(mockCloudFormationClient, times(4)).describeStacks(any(DescribeStacksRequest.class));
-		verify(mockLogger, times(3)).info(any(String.class));
-		verify(mockThreadProvider, times(3)).sleep(any(Long.class));
+		client.executeWithS3Template(inputReqequest, mockFunction);
+		verify(mockTemplateStore).saveTemplate(tempalteBody);
+		verify(mockFunction).apply(templateUrl);
 	}
 	
+	
 	@Test
-	public void testWaitForStackToCompleteCreateFailed() {
-		stack.setStackStatus(StackStatus.CREATE_FAILED);
-		RuntimeException expectedEx = Assertions.assertThrows(RuntimeException.class, () -> {
-			// call under test
-			client.waitForStackToComplete(stackName);
-		});
+	public void testExecuteWithS3TemplateNoUpdates() {
+		when(mockTemplateStore.saveTemplate(tempalteBody)).thenReturn(templateUrl);
+		AmazonCloudFormationException exception = new AmazonCloudFormationException(CloudFormationClientImpl.NO_UPDATES_ARE_TO_BE_PERFORMED);
+		
+		when(mockFunction.apply(anyString())).thenThrow(exception);
+		// call under test
+		client.executeWithS3Template(inputReqequest, mockFunction);
+		verify(mockFunction).apply(templateUrl);
+		verify(mockLogger).info(any(String.class));
 	}
-	
+
 	@Test
-	public void testWaitForStackToCompleteRollbackComplete() throws InterruptedException {
-		stack.setStackStatus(StackStatus.ROLLBACK_COMPLETE);
+	public void testExecuteWithS3TemplateWithError() {
+		when(mockTemplateStore.saveTemplate(tempalteBody)).thenReturn(templateUrl);
+		AmazonCloudFormationException exception = new AmazonCloudFormationException("some other error");
+		when(mockFunction.apply(anyString())).thenThrow(exception);
 		RuntimeException expectedEx = Assertions.assertThrows(RuntimeException.class, () -> {
 			// call under test
-			client.waitForStackToComplete(stackName);
+			client.executeWithS3Template(inputReqequest, mockFunction);
 		});
 	}
 	
 	@Test
-	public void testWaitForStackToCompleteRollbackFailed() throws InterruptedException {
-		stack.setStackStatus(StackStatus.ROLLBACK_FAILED);
-		RuntimeException expectedEx = Assertions.assertThrows(RuntimeException.class, () -> {
-			// call under test
-			client.waitForStackToComplete(stackName);
-		});
+	public void testWaitForStackToComplete() throws InterruptedException {
+		when(mockStackWaiter.waitForCompletion(stackName))
+				.thenReturn(CompletableFuture.completedFuture(Optional.of(stack)));
+		// call under test
+		Optional<Stack> result = client.waitForStackToComplete(stackName);
+		assertEquals(Optional.of(stack), result);
 	}
-	
+
 	@Test
-	public void testWaitForStackToCompleteRollbackProgress() throws InterruptedException {
-		stack.setStackStatus(StackStatus.ROLLBACK_IN_PROGRESS);
-		RuntimeException expectedEx = Assertions.assertThrows(RuntimeException.class, () -> {
-			// call under test
-			client.waitForStackToComplete(stackName);
-		});
+	public void testWaitForStackToCompleteDoesNotExist() throws InterruptedException {
+		when(mockStackWaiter.waitForCompletion(stackName))
+				.thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+		// call under test
+		Optional<Stack> result = client.waitForStackToComplete(stackName);
+		assertEquals(Optional.empty(), result);
 	}
-	
+
 	@Test
-	public void testWaitForStackToCompleteUpdateFailed() throws InterruptedException {
-		stack.setStackStatus(StackStatus.UPDATE_ROLLBACK_FAILED);
-		RuntimeException expectedEx = Assertions.assertThrows(RuntimeException.class, () -> {
+	public void testWaitForStackToCompleteFailed() throws InterruptedException {
+		RuntimeException failure = new RuntimeException("Stack did not complete");
+		CompletableFuture<Optional<Stack>> future = new CompletableFuture<>();
+		future.completeExceptionally(failure);
+		when(mockStackWaiter.waitForCompletion(stackName)).thenReturn(future);
+		RuntimeException result = Assertions.assertThrows(RuntimeException.class, () -> {
 			// call under test
 			client.waitForStackToComplete(stackName);
 		});
+		assertEquals(failure, result);
 	}
 
 	@Test
-	public void testWaitForStackToCompleteUpdateCompleteToUpdateRollBackComplete() throws InterruptedException {
-		initStack.setStackStatus(StackStatus.UPDATE_COMPLETE);
-		stack.setStackStatus(StackStatus.UPDATE_ROLLBACK_COMPLETE);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(initDescribeResult, describeResult);
-		RuntimeException expectedEx = Assertions.assertThrows(RuntimeException.class, () -> {
+	public void testWaitForStackToCompleteCheckedFailure() throws InterruptedException {
+		Exception failure = new Exception("checked");
+		CompletableFuture<Optional<Stack>> future = new CompletableFuture<>();
+		future.completeExceptionally(failure);
+		when(mockStackWaiter.waitForCompletion(stackName)).thenReturn(future);
+		RuntimeException result = Assertions.assertThrows(RuntimeException.class, () -> {
 			// call under test
 			client.waitForStackToComplete(stackName);
 		});
-	}
-
-	@Test
-	public void testWaitForStackToCompleteUpdateRollbackCompleteToUpdateRollBackComplete() throws InterruptedException {
-		initStack.setStackStatus(StackStatus.UPDATE_ROLLBACK_COMPLETE);
-		stack.setStackStatus(StackStatus.UPDATE_ROLLBACK_COMPLETE);
-		when(mockCloudFormationClient.describeStacks(any(DescribeStacksRequest.class))).thenReturn(initDescribeResult, describeResult);
-		// call under test
-		Stack resultStack = client.waitForStackToComplete(stackName).get();
-		verify(mockCloudFormationClient, times(2)).describeStacks(any(DescribeStacksRequest.class));
-		verify(mockThreadProvider, times(2)).currentTimeMillis();
-		verify(mockThreadProvider, never()).sleep(anyLong());
-		Assertions.assertNotNull(resultStack);
-		Assertions.assertNotNull(resultStack.getStackStatus());
-		Assertions.assertEquals(StackStatus.UPDATE_ROLLBACK_COMPLETE, StackStatus.fromValue(resultStack.getStackStatus()));
+		assertEquals(failure, result.getCause());
 	}
 
 	@Test
@@ -513,6 +468,29 @@ public class CloudFormationClientImplTest {
 		verifyNoMoreInteractions(mockCloudFormationClient);
 	}
 	
+	@Test
+	public void testStreamOverStackSummaries() {
+
+		ListStacksResult one = new ListStacksResult()
+				.withStackSummaries(new StackSummary().withStackName("a"), new StackSummary().withStackName("b")).withNextToken("next a");
+		ListStacksResult empty = new ListStacksResult().withNextToken("next b");
+		ListStacksResult two = new ListStacksResult()
+				.withStackSummaries(new StackSummary().withStackName("c")).withNextToken(null);
+
+		when(mockCloudFormationClient.listStacks(any())).thenReturn(one, empty, two);
+
+		// call under test
+		List<String> stackNames = client.streamOverStackSummaries(EnumSet.of(StackStatus.UPDATE_COMPLETE, StackStatus.CREATE_COMPLETE))
+				.map(StackSummary::getStackName).collect(Collectors.toList());
+		assertEquals(List.of("a", "b", "c"), stackNames);
+
+		List<String> filters = List.of("CREATE_COMPLETE", "UPDATE_COMPLETE");
+		verify(mockCloudFormationClient).listStacks(new ListStacksRequest().withStackStatusFilters(filters).withNextToken(null));
+		verify(mockCloudFormationClient).listStacks(new ListStacksRequest().withStackStatusFilters(filters).withNextToken("next a"));
+		verify(mockCloudFormationClient).listStacks(new ListStacksRequest().withStackStatusFilters(filters).withNextToken("next b"));
+		verifyNoMoreInteractions(mockCloudFormationClient);
+	}
+
 	@Test
 	public void testDeleteStack() {
 		// call under test
@@ -520,4 +498,27 @@ public class CloudFormationClientImplTest {
 		verify(mockCloudFormationClient).deleteStack(new DeleteStackRequest().withStackName("delete-me"));
 	}
 
+	@Test
+	public void testDeleteStackWithRetainResources() {
+		// call under test
+		client.deleteStack("delete-me", List.of("bucket", "table"));
+		verify(mockCloudFormationClient).deleteStack(new DeleteStackRequest().withStackName("delete-me").withRetainResources("bucket", "table"));
+	}
+
+	@Test
+	public void testListStackResources() {
+		ListStackResourcesResult one = new ListStackResourcesResult()
+				.withStackResourceSummaries(new StackResourceSummary().withLogicalResourceId("a")).withNextToken("next a");
+		ListStackResourcesResult two = new ListStackResourcesResult()
+				.withStackResourceSummaries(new StackResourceSummary().withLogicalResourceId("b")).withNextToken(null);
+		when(mockCloudFormationClient.listStackResources(any())).thenReturn(one, two);
+
+		// call under test
+		List<StackResourceSummary> summaries = client.listStackResources("some-stack");
+		assertEquals(List.of("a", "b"), summaries.stream().map(StackResourceSummary::getLogicalResourceId).collect(Collectors.toList()));
+
+		verify(mockCloudFormationClient).listStackResources(new ListStackResourcesRequest().withStackName("some-stack").withNextToken(null));
+		verify(mockCloudFormationClient).listStackResources(new ListStackResourcesRequest().withStackName("some-stack").withNextToken("next a"));
+	}
+
 }
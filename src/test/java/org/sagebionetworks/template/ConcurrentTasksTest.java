@@ -0,0 +1,116 @@
+package org.sagebionetworks.template;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class ConcurrentTasksTest {
+
+	@Mock
+	ThreadProvider mockThreadProvider;
+
+	@BeforeEach
+	public void before() {
+		lenient().when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
+	}
+
+	@Test
+	public void testRunAll() {
+		// the first task completes last.
+		CountDownLatch latch = new CountDownLatch(1);
+		Map<String, Callable<Integer>> tasks = new LinkedHashMap<>();
+		tasks.put("one", () -> {
+			latch.await(5, TimeUnit.SECONDS);
+			return 1;
+		});
+		tasks.put("two", () -> {
+			latch.countDown();
+			return 2;
+		});
+
+		// call under test
+		Map<String, Integer> results = ConcurrentTasks.runAll(mockThreadProvider, 4, tasks, "count");
+
+		assertEquals(List.of("one", "two"), List.copyOf(results.keySet()));
+		assertEquals(List.of(1, 2), List.copyOf(results.values()));
+		// the pool is no larger than the number of tasks.
+		verify(mockThreadProvider).newFixedThreadPool(2);
+	}
+
+	@Test
+	public void testRunAllWithMaxConcurrency() {
+		Map<String, Callable<Integer>> tasks = new LinkedHashMap<>();
+		tasks.put("one", () -> 1);
+		tasks.put("two", () -> 2);
+		tasks.put("three", () -> 3);
+
+		// call under test
+		ConcurrentTasks.runAll(mockThreadProvider, 2, tasks, "count");
+
+		verify(mockThreadProvider).newFixedThreadPool(2);
+	}
+
+	@Test
+	public void testRunAllWithMaxConcurrencyBelowOne() {
+		Map<String, Callable<Integer>> tasks = new LinkedHashMap<>();
+		tasks.put("one", () -> 1);
+		tasks.put("two", () -> 2);
+
+		// call under test
+		ConcurrentTasks.runAll(mockThreadProvider, 0, tasks, "count");
+
+		verify(mockThreadProvider).newFixedThreadPool(1);
+	}
+
+	@Test
+	public void testRunAllWithFailures() {
+		RuntimeException oneFailure = new RuntimeException("one");
+		RuntimeException threeFailure = new RuntimeException("three");
+		Map<String, Callable<Integer>> tasks = new LinkedHashMap<>();
+		tasks.put("one", () -> {
+			throw oneFailure;
+		});
+		tasks.put("two", () -> 2);
+		tasks.put("three", () -> {
+			throw threeFailure;
+		});
+
+		IllegalStateException exception = assertThrows(IllegalStateException.class, () -> {
+			// call under test
+			ConcurrentTasks.runAll(mockThreadProvider, 3, tasks, "count");
+		});
+
+		assertEquals("Failed to count: [one, three]", exception.getMessage());
+		assertArrayEquals(new Throwable[] { oneFailure, threeFailure }, exception.getSuppressed());
+	}
+
+	@Test
+	public void testRunAllWithNoTasks() {
+		// call under test
+		Map<String, Integer> results = ConcurrentTasks.runAll(mockThreadProvider, 3, Collections.emptyMap(), "count");
+
+		assertTrue(results.isEmpty());
+		verify(mockThreadProvider, never()).newFixedThreadPool(anyInt());
+	}
+}
@@ -0,0 +1,136 @@
+package org.sagebionetworks.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LookupCacheImplTest {
+
+	LookupCacheImpl cache;
+	AtomicInteger loadCount;
+
+	@BeforeEach
+	public void before() {
+		cache = new LookupCacheImpl();
+		loadCount = new AtomicInteger(0);
+	}
+
+	String load(String key) {
+		return key + "-" + loadCount.incrementAndGet();
+	}
+
+	@Test
+	public void testGetMemoizes() {
+		// call under test
+		assertEquals("one-1", cache.get("namespace", "one", this::load));
+		assertEquals("one-1", cache.get("namespace", "one", this::load));
+		assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	public void testGetDifferentKeys() {
+		// call under test
+		assertEquals("one-1", cache.get("namespace", "one", this::load));
+		assertEquals("two-2", cache.get("namespace", "two", this::load));
+		assertEquals("one-3", cache.get("other", "one", this::load));
+		assertEquals(3, loadCount.get());
+	}
+
+	@Test
+	public void testGetNullKey() {
+		// call under test
+		assertEquals("null-1", cache.get("namespace", null, this::load));
+		assertEquals("null-1", cache.get("namespace", null, this::load));
+	}
+
+	@Test
+	public void testGetCoalescesConcurrentLoads() throws Exception {
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			results.add(executor.submit(() -> cache.get("namespace", "one", k -> {
+				loading.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return load(k);
+			})));
+			loading.await();
+			for (int i = 0; i < 3; i++) {
+				results.add(executor.submit(() -> cache.get("namespace", "one", this::load)));
+			}
+			release.countDown();
+			for (Future<String> result : results) {
+				assertEquals("one-1", result.get(10, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loadCount.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testGetFailureNotCached() {
+		IllegalStateException failure = new IllegalStateException("throttled");
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+			// call under test
+			cache.get("namespace", "one", k -> {
+				throw failure;
+			});
+		});
+		assertEquals(failure, e);
+		// the next request loads again.
+		assertEquals("one-1", cache.get("namespace", "one", this::load));
+	}
+
+	@Test
+	public void testInvalidate() {
+		cache.get("namespace", "one", this::load);
+		cache.get("other", "one", this::load);
+		// call under test
+		cache.invalidate("namespace");
+		assertEquals("one-3", cache.get("namespace", "one", this::load));
+		assertEquals("one-2", cache.get("other", "one", this::load));
+	}
+
+	@Test
+	public void testInvalidateAll() {
+		cache.get("namespace", "one", this::load);
+		cache.get("other", "one", this::load);
+		// call under test
+		cache.invalidateAll();
+		assertEquals("one-3", cache.get("namespace", "one", this::load));
+		assertEquals("one-4", cache.get("other", "one", this::load));
+	}
+
+	@Test
+	public void testGetNullNamespace() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			// call under test
+			cache.get(null, "one", this::load);
+		});
+	}
+
+	@Test
+	public void testGetNullLoader() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			// call under test
+			cache.get("namespace", "one", null);
+		});
+	}
+}
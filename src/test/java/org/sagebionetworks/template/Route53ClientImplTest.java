@@ -4,14 +4,25 @@ import com.amazonaws.services.route53.AmazonRoute53;
 import com.amazonaws.services.route53.model.AliasTarget;
 import com.amazonaws.services.route53.model.Change;
 import com.amazonaws.services.route53.model.ChangeAction;
+import com.amazonaws.services.route53.model.ChangeInfo;
 import com.amazonaws.services.route53.model.ChangeResourceRecordSetsRequest;
+import com.amazonaws.services.route53.model.ChangeResourceRecordSetsResult;
+import com.amazonaws.services.route53.model.ChangeStatus;
+import com.amazonaws.services.route53.model.GetChangeRequest;
+import com.amazonaws.services.route53.model.GetChangeResult;
+import com.amazonaws.services.route53.model.InvalidChangeBatchException;
+import com.amazonaws.services.route53.model.ListResourceRecordSetsRequest;
+import com.amazonaws.services.route53.model.ListResourceRecordSetsResult;
+import com.amazonaws.services.route53.model.PriorRequestNotCompleteException;
+import com.amazonaws.services.route53.model.ResourceRecord;
 import com.amazonaws.services.route53.model.ResourceRecordSet;
+import com.amazonaws.services.route53.model.ThrottlingException;
+import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.sagebionetworks.template.config.Configuration;
@@ -20,13 +31,25 @@ import org.sagebionetworks.template.dns.RecordSetDescriptor;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.sagebionetworks.template.Constants.DEFAULT_ROUTE53_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_ROUTE53_MAX_CONCURRENCY;
 
 @ExtendWith(MockitoExtension.class)
 class Route53ClientImplTest {
@@ -40,7 +63,12 @@ class Route53ClientImplTest {
 	@Mock
 	private Configuration mockConfig;
 
-	@InjectMocks
+	@Mock
+	private ThreadProvider mockThreadProvider;
+
+	@Mock
+	private Logger mockLogger;
+
 	private Route53ClientImpl route53Client;
 
 	@Mock
@@ -59,6 +87,24 @@ class Route53ClientImplTest {
 
 	@BeforeEach
 	void setup() {
+		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+		route53Client = new Route53ClientImpl(mockR53Client, mockConfig, mockThreadProvider, mockLoggerFactory);
+		lenient().when(mockConfig.getIntegerProperty(PROPERTY_KEY_ROUTE53_MAX_CONCURRENCY, DEFAULT_ROUTE53_MAX_CONCURRENCY)).thenReturn(DEFAULT_ROUTE53_MAX_CONCURRENCY);
+		lenient().when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
+		lenient().when(mockR53Client.changeResourceRecordSets(any())).thenReturn(pending("changeId"));
+		lenient().when(mockR53Client.getChange(any())).thenReturn(inSync("changeId"));
+	}
+
+	static ChangeResourceRecordSetsResult pending(String id) {
+		return new ChangeResourceRecordSetsResult().withChangeInfo(new ChangeInfo().withId(id).withStatus(ChangeStatus.PENDING));
+	}
+
+	static GetChangeResult inSync(String id) {
+		return new GetChangeResult().withChangeInfo(new ChangeInfo().withId(id).withStatus(ChangeStatus.INSYNC));
+	}
+
+	static RecordSetDescriptor cname(String name, String target) {
+		return new RecordSetDescriptor(name, "CNAME", "600", Collections.singletonList(target), null);
 	}
 
 	@Test
@@ -126,6 +172,7 @@ class Route53ClientImplTest {
 
 	@Test
 	void testBatchingLessThanBatchSizeChangeResourceRecordSets() {
+		when(mockRecordSetDescriptor.toResourceRecordSet()).thenReturn(mockResourceRecordSet);
 		// 1 record, batches of 2
 		List<RecordSetDescriptor> descriptors = new ArrayList<>();
 		descriptors.add(mockRecordSetDescriptor);
@@ -138,4 +185,235 @@ class Route53ClientImplTest {
 		assertEquals(1, req.getChangeBatch().getChanges().size());
 	}
 
-}
\ No newline at end of file
+	@Test
+	void testChangeResourceRecordSetsReport() throws Exception {
+		when(mockR53Client.changeResourceRecordSets(any())).thenReturn(pending("one"), pending("two"));
+		when(mockR53Client.getChange(any())).thenAnswer(i -> inSync(((GetChangeRequest) i.getArgument(0)).getId()));
+		when(mockThreadProvider.currentTimeMillis()).thenReturn(1000L, 1000L, 1000L, 1000L, 1000L, 5000L);
+		List<RecordSetDescriptor> descriptors = new ArrayList<>();
+		descriptors.add(cname("one", "target1"));
+		descriptors.add(cname("two", "target2"));
+		// call under test
+		Route53ChangeReport report = route53Client.changeResourceRecordSets("hostedZoneId", descriptors, 1);
+		assertEquals("hostedZoneId", report.getHostedZoneId());
+		assertEquals(2, report.getNumberOfChanges());
+		assertEquals(2, report.getBatches().size());
+		for (ChangeInfo info : report.getBatches()) {
+			assertEquals(ChangeStatus.INSYNC.toString(), info.getStatus());
+		}
+		assertEquals(4000L, report.getElapsedMS());
+		verify(mockR53Client, times(2)).getChange(any());
+		verify(mockThreadProvider).newFixedThreadPool(2);
+		verify(mockLogger).info(report.toString());
+	}
+
+	@Test
+	void testChangeResourceRecordSetsEmpty() {
+		// call under test
+		Route53ChangeReport report = route53Client.changeResourceRecordSets("hostedZoneId", Collections.emptyList(), 1);
+		assertEquals(0, report.getNumberOfChanges());
+		assertTrue(report.getBatches().isEmpty());
+		verify(mockR53Client, never()).changeResourceRecordSets(any());
+		verify(mockThreadProvider, never()).newFixedThreadPool(anyInt());
+	}
+
+	@Test
+	void testChangeResourceRecordSetsConcurrently() throws Exception {
+		CountDownLatch submitted = new CountDownLatch(2);
+		when(mockR53Client.changeResourceRecordSets(any())).thenAnswer(i -> {
+			submitted.countDown();
+			// both batches must be in flight at the same time.
+			assertTrue(submitted.await(10, TimeUnit.SECONDS));
+			return pending("changeId");
+		});
+		List<RecordSetDescriptor> descriptors = new ArrayList<>();
+		descriptors.add(cname("one", "target1"));
+		descriptors.add(cname("two", "target2"));
+		// call under test
+		Route53ChangeReport report = route53Client.changeResourceRecordSets("hostedZoneId", descriptors, 1);
+		assertEquals(2, report.getBatches().size());
+	}
+
+	@Test
+	void testChangeResourceRecordSetsWaitsForInSync() throws Exception {
+		when(mockR53Client.getChange(any())).thenReturn(
+				new GetChangeResult().withChangeInfo(new ChangeInfo().withId("changeId").withStatus(ChangeStatus.PENDING)),
+				inSync("changeId"));
+		// call under test
+		route53Client.changeResourceRecordSets("hostedZoneId", Collections.singletonList(cname("one", "target1")), 1);
+		verify(mockR53Client, times(2)).getChange(new GetChangeRequest("changeId"));
+		verify(mockThreadProvider).sleep(Route53ClientImpl.INITIAL_DELAY_MS);
+		verify(mockThreadProvider).sleep(Route53ClientImpl.INITIAL_DELAY_MS * 2);
+	}
+
+	@Test
+	void testChangeResourceRecordSetsWaitTimeout() throws Exception {
+		when(mockR53Client.getChange(any())).thenReturn(
+				new GetChangeResult().withChangeInfo(new ChangeInfo().withId("changeId").withStatus(ChangeStatus.PENDING)));
+		when(mockThreadProvider.currentTimeMillis()).thenReturn(0L, 0L, 0L, Route53ClientImpl.MAX_WAIT_FOR_INSYNC_MS + 1);
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+			// call under test
+			route53Client.changeResourceRecordSets("hostedZoneId", Collections.singletonList(cname("one", "target1")), 1);
+		});
+		assertEquals("Timed out waiting for change changeId to be INSYNC", e.getSuppressed()[0].getMessage());
+	}
+
+	@Test
+	void testChangeResourceRecordSetsRetriesThrottled() throws Exception {
+		ThrottlingException throttled = new ThrottlingException("Rate exceeded");
+		throttled.setErrorCode("Throttling");
+		when(mockR53Client.changeResourceRecordSets(any())).thenThrow(throttled)
+				.thenThrow(new PriorRequestNotCompleteException("pending")).thenReturn(pending("changeId"));
+		// call under test
+		Route53ChangeReport report = route53Client.changeResourceRecordSets("hostedZoneId", Collections.singletonList(cname("one", "target1")), 1);
+		assertEquals(1, report.getBatches().size());
+		verify(mockR53Client, times(3)).changeResourceRecordSets(any());
+		// two backoffs and one poll of the change
+		verify(mockThreadProvider, times(3)).sleep(anyLong());
+	}
+
+	@Test
+	void testChangeResourceRecordSetsThrottledTooManyTimes() throws Exception {
+		when(mockR53Client.changeResourceRecordSets(any())).thenThrow(new PriorRequestNotCompleteException("pending"));
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+			// call under test
+			route53Client.changeResourceRecordSets("hostedZoneId", Collections.singletonList(cname("one", "target1")), 1);
+		});
+		assertTrue(e.getSuppressed()[0] instanceof PriorRequestNotCompleteException);
+		verify(mockR53Client, times(Route53ClientImpl.MAX_SUBMIT_ATTEMPTS)).changeResourceRecordSets(any());
+		verify(mockThreadProvider, times(Route53ClientImpl.MAX_SUBMIT_ATTEMPTS - 1)).sleep(anyLong());
+	}
+
+	@Test
+	void testChangeResourceRecordSetsWithFailure() throws Exception {
+		InvalidChangeBatchException invalid = new InvalidChangeBatchException("invalid");
+		when(mockR53Client.changeResourceRecordSets(any())).thenThrow(invalid).thenReturn(pending("changeId"));
+		List<RecordSetDescriptor> descriptors = new ArrayList<>();
+		descriptors.add(cname("one", "target1"));
+		descriptors.add(cname("two", "target2"));
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_ROUTE53_MAX_CONCURRENCY, DEFAULT_ROUTE53_MAX_CONCURRENCY)).thenReturn(1);
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+			// call under test
+			route53Client.changeResourceRecordSets("hostedZoneId", descriptors, 1);
+		});
+		assertEquals("Failed to apply batches to hosted zone hostedZoneId: [0]", e.getMessage());
+		assertEquals(invalid, e.getSuppressed()[0]);
+		// the other batch is still applied and tracked.
+		verify(mockR53Client, times(2)).changeResourceRecordSets(any());
+		verify(mockR53Client).getChange(any());
+		// not retried, only the poll of the other batch.
+		verify(mockThreadProvider).sleep(anyLong());
+	}
+
+	@Test
+	void testBuildBatchesRecordLimit() {
+		List<Change> changes = new ArrayList<>();
+		for (int i = 0; i < 1200; i++) {
+			changes.add(new Change(ChangeAction.UPSERT, cname("name" + i, "t").toResourceRecordSet()));
+		}
+		// call under test
+		List<List<Change>> batches = Route53ClientImpl.buildBatches(changes, Integer.MAX_VALUE);
+		assertEquals(3, batches.size());
+		assertEquals(500, batches.get(0).size());
+		assertEquals(500, batches.get(1).size());
+		assertEquals(200, batches.get(2).size());
+	}
+
+	@Test
+	void testBuildBatchesMultipleRecords() {
+		ResourceRecordSet rrs = new ResourceRecordSet("name", "A").withResourceRecords(
+				new ResourceRecord("1.1.1.1"), new ResourceRecord("2.2.2.2"));
+		List<Change> changes = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			changes.add(new Change(ChangeAction.UPSERT, rrs));
+		}
+		// call under test
+		List<List<Change>> batches = Route53ClientImpl.buildBatches(changes, Integer.MAX_VALUE);
+		assertEquals(2, batches.size());
+		assertEquals(250, batches.get(0).size());
+		assertEquals(50, batches.get(1).size());
+	}
+
+	@Test
+	void testBuildBatchesCharacterLimit() {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			value.append('a');
+		}
+		List<Change> changes = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			changes.add(new Change(ChangeAction.UPSERT, cname("name" + i, value.toString()).toResourceRecordSet()));
+		}
+		// call under test
+		List<List<Change>> batches = Route53ClientImpl.buildBatches(changes, Integer.MAX_VALUE);
+		// each upsert counts 2000 characters
+		assertEquals(2, batches.size());
+		assertEquals(16, batches.get(0).size());
+		assertEquals(4, batches.get(1).size());
+	}
+
+	@Test
+	void testBuildBatchesBatchSize() {
+		List<Change> changes = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			changes.add(new Change(ChangeAction.UPSERT, cname("name" + i, "t").toResourceRecordSet()));
+		}
+		// call under test
+		List<List<Change>> batches = Route53ClientImpl.buildBatches(changes, 2);
+		assertEquals(3, batches.size());
+		assertEquals(1, batches.get(2).size());
+	}
+
+	@Captor
+	private ArgumentCaptor<ListResourceRecordSetsRequest> listRequestCaptor;
+
+	@Test
+	void testListResourceRecordSetsPaged() {
+		ResourceRecordSet one = new ResourceRecordSet("one", "A");
+		ResourceRecordSet two = new ResourceRecordSet("two", "CNAME");
+		ResourceRecordSet three = new ResourceRecordSet("three", "A");
+		when(mockR53Client.listResourceRecordSets(any())).thenReturn(
+				new ListResourceRecordSetsResult().withResourceRecordSets(one, two).withIsTruncated(true)
+						.withNextRecordName("three").withNextRecordType("A").withNextRecordIdentifier("id"),
+				new ListResourceRecordSetsResult().withResourceRecordSets(three).withIsTruncated(false));
+		// call under test
+		List<ResourceRecordSet> results = route53Client.listResourceRecordSets("hostedZoneId", Collections.emptySet()).collect(Collectors.toList());
+		assertEquals(List.of(one, two, three), results);
+		verify(mockR53Client, times(2)).listResourceRecordSets(listRequestCaptor.capture());
+		ListResourceRecordSetsRequest first = listRequestCaptor.getAllValues().get(0);
+		assertEquals("hostedZoneId", first.getHostedZoneId());
+		assertEquals(Route53ClientImpl.MAX_ITEMS_PER_PAGE, first.getMaxItems());
+		assertNull(first.getStartRecordName());
+		ListResourceRecordSetsRequest second = listRequestCaptor.getAllValues().get(1);
+		assertEquals("hostedZoneId", second.getHostedZoneId());
+		assertEquals("three", second.getStartRecordName());
+		assertEquals("A", second.getStartRecordType());
+		assertEquals("id", second.getStartRecordIdentifier());
+	}
+
+	@Test
+	void testListResourceRecordSetsLazy() {
+		ResourceRecordSet one = new ResourceRecordSet("one", "A");
+		when(mockR53Client.listResourceRecordSets(any())).thenReturn(
+				new ListResourceRecordSetsResult().withResourceRecordSets(one).withIsTruncated(true).withNextRecordName("two").withNextRecordType("A"));
+		// call under test
+		Iterator<ResourceRecordSet> iterator = route53Client.listResourceRecordSets("hostedZoneId", Collections.emptySet()).iterator();
+		assertEquals(one, iterator.next());
+		// the second page is not fetched until it is needed.
+		verify(mockR53Client, times(1)).listResourceRecordSets(any());
+	}
+
+	@Test
+	void testListResourceRecordSetsFilterTypes() {
+		ResourceRecordSet a = new ResourceRecordSet("one", "A");
+		ResourceRecordSet txt = new ResourceRecordSet("two", "TXT");
+		ResourceRecordSet cname = new ResourceRecordSet("three", "CNAME");
+		when(mockR53Client.listResourceRecordSets(any())).thenReturn(
+				new ListResourceRecordSetsResult().withResourceRecordSets(a, txt, cname));
+		Set<String> types = Set.of("A", "CNAME");
+		// call under test
+		List<ResourceRecordSet> results = route53Client.listResourceRecordSets("hostedZoneId", types).collect(Collectors.toList());
+		assertEquals(List.of(a, cname), results);
+	}
+
+}
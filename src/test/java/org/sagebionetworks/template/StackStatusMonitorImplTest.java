@@ -0,0 +1,314 @@
+package org.sagebionetworks.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.DescribeStacksRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStacksResult;
+import com.amazonaws.services.cloudformation.model.ListStacksRequest;
+import com.amazonaws.services.cloudformation.model.ListStacksResult;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.StackSummary;
+
+@ExtendWith(MockitoExtension.class)
+public class StackStatusMonitorImplTest {
+
+	@Mock
+	AmazonCloudFormation mockCloudFormationClient;
+	@Mock
+	ThreadProvider mockThreadProvider;
+	@Mock
+	LoggerFactory mockLoggerFactory;
+	@Mock
+	Logger mockLogger;
+	@Mock
+	ScheduledExecutorService mockScheduler;
+	@Mock
+	ScheduledFuture<?> mockScheduledFuture;
+
+	@Captor
+	ArgumentCaptor<Runnable> runnableCaptor;
+	@Captor
+	ArgumentCaptor<DescribeStacksRequest> requestCaptor;
+
+	StackStatusMonitorImpl monitor;
+
+	Stack one;
+	Stack two;
+	Stack three;
+
+	@BeforeEach
+	public void before() {
+		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+		monitor = new StackStatusMonitorImpl(mockCloudFormationClient, mockThreadProvider, mockLoggerFactory);
+		one = new Stack().withStackName("one").withStackStatus(StackStatus.CREATE_IN_PROGRESS);
+		two = new Stack().withStackName("two").withStackStatus(StackStatus.UPDATE_IN_PROGRESS);
+		three = new Stack().withStackName("three").withStackStatus(StackStatus.UPDATE_COMPLETE);
+	}
+
+	void setupScheduler() {
+		when(mockThreadProvider.newSingleThreadScheduledExecutor()).thenReturn(mockScheduler);
+		doReturn(mockScheduledFuture).when(mockScheduler).schedule(any(Runnable.class), anyLong(), any());
+	}
+
+	@Test
+	public void testNextStatusSingleStack() throws Exception {
+		setupScheduler();
+		when(mockCloudFormationClient.describeStacks(any())).thenReturn(new DescribeStacksResult().withStacks(one));
+
+		// call under test
+		CompletableFuture<Optional<Stack>> future = monitor.nextStatus("one");
+
+		verify(mockScheduler).schedule(runnableCaptor.capture(), eq(0L), eq(TimeUnit.MILLISECONDS));
+		assertFalse(future.isDone());
+		runnableCaptor.getValue().run();
+		assertEquals(Optional.of(one), future.get());
+		verify(mockCloudFormationClient).describeStacks(new DescribeStacksRequest().withStackName("one"));
+		// nothing pending so no further sweep.
+		verify(mockScheduler, times(1)).schedule(any(Runnable.class), anyLong(), any());
+	}
+
+	@Test
+	public void testNextStatusNullName() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			monitor.nextStatus(null);
+		});
+	}
+
+	@Test
+	public void testSweepSharedAcrossStacks() throws Exception {
+		setupScheduler();
+		stubDescribeStacks();
+
+		CompletableFuture<Optional<Stack>> futureOne = monitor.nextStatus("one");
+		CompletableFuture<Optional<Stack>> futureTwo = monitor.nextStatus("two");
+		CompletableFuture<Optional<Stack>> futureThree = monitor.nextStatus("three");
+		// a single sweep is scheduled for all stacks.
+		verify(mockScheduler, times(1)).schedule(runnableCaptor.capture(), anyLong(), any());
+
+		// call under test
+		runnableCaptor.getValue().run();
+
+		assertEquals(Optional.of(one), futureOne.get());
+		assertEquals(Optional.of(two), futureTwo.get());
+		assertEquals(Optional.of(three), futureThree.get());
+		// nothing is known yet so the stacks are not listed.
+		verify(mockCloudFormationClient, never()).listStacks(any());
+		verify(mockCloudFormationClient, times(3)).describeStacks(any());
+	}
+
+	@Test
+	public void testSweepListsStacksInProgress() throws Exception {
+		setupScheduler();
+		stubDescribeStacks();
+		trackAndSweep();
+		Stack twoCleanup = new Stack().withStackName("two").withStackStatus(StackStatus.UPDATE_COMPLETE_CLEANUP_IN_PROGRESS);
+		when(mockCloudFormationClient.describeStacks(new DescribeStacksRequest().withStackName("two")))
+				.thenReturn(new DescribeStacksResult().withStacks(twoCleanup));
+		when(mockCloudFormationClient.describeStacks(new DescribeStacksRequest().withStackName("three")))
+				.thenThrow(new AmazonCloudFormationException("Stack with id three does not exist"));
+		// one is unchanged, two changed status and three is no longer in progress.
+		when(mockCloudFormationClient.listStacks(any())).thenReturn(new ListStacksResult().withStackSummaries(
+				new StackSummary().withStackName("other").withStackStatus(StackStatus.CREATE_IN_PROGRESS),
+				new StackSummary().withStackName("one").withStackStatus(StackStatus.CREATE_IN_PROGRESS),
+				new StackSummary().withStackName("two").withStackStatus(StackStatus.UPDATE_COMPLETE_CLEANUP_IN_PROGRESS)));
+
+		// call under test
+		Map<String, Optional<Stack>> results = monitor.describeStacks(new LinkedHashSet<>(List.of("one", "two", "three")));
+
+		assertEquals(Optional.of(one), results.get("one"));
+		assertEquals(Optional.of(twoCleanup), results.get("two"));
+		assertEquals(Optional.empty(), results.get("three"));
+		verify(mockCloudFormationClient).listStacks(new ListStacksRequest()
+				.withStackStatusFilters(StackStatusMonitorImpl.IN_PROGRESS_STATUSES).withNextToken(null));
+		// one was only described by the first sweep.
+		verify(mockCloudFormationClient, times(1)).describeStacks(new DescribeStacksRequest().withStackName("one"));
+		verify(mockCloudFormationClient, times(2)).describeStacks(new DescribeStacksRequest().withStackName("two"));
+		verify(mockCloudFormationClient, times(2)).describeStacks(new DescribeStacksRequest().withStackName("three"));
+	}
+
+	@Test
+	public void testSweepStopsListingOnceAllStacksListed() throws Exception {
+		setupScheduler();
+		Stack threeInProgress = new Stack().withStackName("three").withStackStatus(StackStatus.DELETE_IN_PROGRESS);
+		three = threeInProgress;
+		stubDescribeStacks();
+		trackAndSweep();
+		when(mockCloudFormationClient.listStacks(any())).thenReturn(new ListStacksResult().withStackSummaries(
+				new StackSummary().withStackName("one").withStackStatus(StackStatus.CREATE_IN_PROGRESS),
+				new StackSummary().withStackName("two").withStackStatus(StackStatus.UPDATE_IN_PROGRESS),
+				new StackSummary().withStackName("three").withStackStatus(StackStatus.DELETE_IN_PROGRESS))
+				.withNextToken("page2"));
+
+		// call under test
+		Map<String, Optional<Stack>> results = monitor.describeStacks(new LinkedHashSet<>(List.of("one", "two", "three")));
+
+		assertEquals(Optional.of(one), results.get("one"));
+		assertEquals(Optional.of(two), results.get("two"));
+		assertEquals(Optional.of(threeInProgress), results.get("three"));
+		verify(mockCloudFormationClient, times(1)).listStacks(any());
+		// only the first sweep described the stacks.
+		verify(mockCloudFormationClient, times(3)).describeStacks(any());
+	}
+
+	void stubDescribeStacks() {
+		for (Stack stack : List.of(one, two, three)) {
+			lenient().when(mockCloudFormationClient.describeStacks(new DescribeStacksRequest().withStackName(stack.getStackName())))
+					.thenReturn(new DescribeStacksResult().withStacks(stack));
+		}
+	}
+
+	/**
+	 * Track the three stacks and run a first sweep. Each stack requests its next
+	 * status from the callback, as a waiter does.
+	 */
+	void trackAndSweep() {
+		for (String name : List.of("one", "two", "three")) {
+			monitor.nextStatus(name).thenAccept(s -> monitor.nextStatus(name));
+		}
+		verify(mockScheduler).schedule(runnableCaptor.capture(), anyLong(), any());
+		runnableCaptor.getValue().run();
+	}
+
+	@Test
+	public void testDescribeStacksBelowThreshold() {
+		when(mockCloudFormationClient.describeStacks(any())).thenReturn(new DescribeStacksResult().withStacks(one),
+				new DescribeStacksResult().withStacks(two));
+
+		// call under test
+		Map<String, Optional<Stack>> results = monitor.describeStacks(new LinkedHashSet<>(List.of("one", "two")));
+
+		assertEquals(Optional.of(one), results.get("one"));
+		assertEquals(Optional.of(two), results.get("two"));
+		verify(mockCloudFormationClient, never()).describeStacks(new DescribeStacksRequest());
+	}
+
+	@Test
+	public void testSweepRequestedFromCallback() throws Exception {
+		setupScheduler();
+		when(mockCloudFormationClient.describeStacks(any())).thenReturn(new DescribeStacksResult().withStacks(one));
+
+		CompletableFuture<Optional<Stack>> future = monitor.nextStatus("one");
+		future.thenAccept(s -> monitor.nextStatus("one"));
+		verify(mockScheduler).schedule(runnableCaptor.capture(), eq(0L), any());
+
+		// call under test
+		runnableCaptor.getValue().run();
+
+		// the next sweep is scheduled with the current delay.
+		verify(mockScheduler).schedule(any(Runnable.class), eq(StackStatusMonitorImpl.INITIAL_DELAY_MS),
+				eq(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testSweepBacksOffWhenUnchanged() throws Exception {
+		setupScheduler();
+		when(mockCloudFormationClient.describeStacks(any())).thenReturn(new DescribeStacksResult().withStacks(one));
+
+		monitor.nextStatus("one").thenAccept(s -> monitor.nextStatus("one"));
+		verify(mockScheduler).schedule(runnableCaptor.capture(), anyLong(), any());
+		runnableCaptor.getValue().run();
+		assertEquals(StackStatusMonitorImpl.INITIAL_DELAY_MS, monitor.getDelayMS());
+
+		// call under test
+		runnableCaptor.getAllValues().get(0).run();
+		assertEquals(3000L, monitor.getDelayMS());
+	}
+
+	@Test
+	public void testNewStackDoesNotWaitForBackedOffSweep() throws Exception {
+		setupScheduler();
+		when(mockScheduledFuture.getDelay(TimeUnit.MILLISECONDS)).thenReturn(StackStatusMonitorImpl.MAX_DELAY_MS);
+		when(mockScheduledFuture.cancel(false)).thenReturn(true);
+		monitor.nextStatus("one");
+
+		// call under test
+		monitor.nextStatus("two");
+
+		verify(mockScheduledFuture).cancel(false);
+		verify(mockScheduler, times(2)).schedule(any(Runnable.class), eq(0L), eq(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testSweepThrottled() throws Exception {
+		setupScheduler();
+		AmazonCloudFormationException throttled = new AmazonCloudFormationException("Rate exceeded");
+		throttled.setErrorCode(StackStatusMonitorImpl.THROTTLING_ERROR_CODE);
+		when(mockCloudFormationClient.describeStacks(any())).thenThrow(throttled);
+
+		CompletableFuture<Optional<Stack>> future = monitor.nextStatus("one");
+		verify(mockScheduler).schedule(runnableCaptor.capture(), anyLong(), any());
+
+		// call under test
+		runnableCaptor.getValue().run();
+
+		assertFalse(future.isDone());
+		verify(mockScheduler).schedule(any(Runnable.class), eq(StackStatusMonitorImpl.MAX_DELAY_MS),
+				eq(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testSweepFailure() throws Exception {
+		setupScheduler();
+		AmazonCloudFormationException denied = new AmazonCloudFormationException("Access denied");
+		when(mockCloudFormationClient.describeStacks(any())).thenThrow(denied);
+
+		CompletableFuture<Optional<Stack>> future = monitor.nextStatus("one");
+		verify(mockScheduler).schedule(runnableCaptor.capture(), anyLong(), any());
+
+		// call under test
+		runnableCaptor.getValue().run();
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> {
+			future.get();
+		});
+		assertEquals(denied, e.getCause());
+		assertTrue(future.isCompletedExceptionally());
+	}
+
+	@Test
+	public void testNextDelay() {
+		long delay = StackStatusMonitorImpl.INITIAL_DELAY_MS;
+		delay = StackStatusMonitorImpl.nextDelay(delay, false);
+		assertEquals(3000L, delay);
+		delay = StackStatusMonitorImpl.nextDelay(delay, false);
+		assertEquals(4500L, delay);
+		assertEquals(StackStatusMonitorImpl.MAX_DELAY_MS,
+				StackStatusMonitorImpl.nextDelay(StackStatusMonitorImpl.MAX_DELAY_MS, false));
+		assertEquals(StackStatusMonitorImpl.INITIAL_DELAY_MS, StackStatusMonitorImpl.nextDelay(3000L, true));
+		assertEquals(10000L, StackStatusMonitorImpl.nextDelay(20000L, true));
+	}
+}
@@ -0,0 +1,304 @@
+package org.sagebionetworks.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sagebionetworks.template.StackWaiterImpl.StackWait;
+
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.cloudformation.model.AmazonCloudFormationException;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsRequest;
+import com.amazonaws.services.cloudformation.model.DescribeStackEventsResult;
+import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackEvent;
+import com.amazonaws.services.cloudformation.model.StackStatus;
+
+@ExtendWith(MockitoExtension.class)
+public class StackWaiterImplTest {
+
+	@Mock
+	AmazonCloudFormation mockCloudFormationClient;
+	@Mock
+	StackStatusMonitor mockStatusMonitor;
+	@Mock
+	ThreadProvider mockThreadProvider;
+	@Mock
+	LoggerFactory mockLoggerFactory;
+	@Mock
+	Logger mockLogger;
+
+	@Captor
+	ArgumentCaptor<DescribeStackEventsRequest> eventsRequestCaptor;
+
+	StackWaiterImpl waiter;
+
+	String stackName;
+	int eventCount;
+
+	@BeforeEach
+	public void before() {
+		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+		waiter = new StackWaiterImpl(mockCloudFormationClient, mockStatusMonitor, mockThreadProvider,
+				mockLoggerFactory);
+		stackName = "someStack";
+		eventCount = 0;
+	}
+
+	Stack stack(StackStatus status) {
+		return new Stack().withStackName(stackName).withStackStatus(status).withStackStatusReason("some reason");
+	}
+
+	CompletableFuture<Optional<Stack>> status(StackStatus status) {
+		return CompletableFuture.completedFuture(Optional.of(stack(status)));
+	}
+
+	StackEvent resourceEvent(String status) {
+		return new StackEvent().withEventId("event-" + (eventCount++)).withLogicalResourceId("someBucket")
+				.withResourceType("AWS::S3::Bucket").withResourceStatus(status);
+	}
+
+	/**
+	 * @param events newest first.
+	 * @return
+	 */
+	DescribeStackEventsResult eventsResult(StackEvent... events) {
+		return new DescribeStackEventsResult().withStackEvents(events);
+	}
+
+	@Test
+	public void testWaitForCompletionCreate() throws Exception {
+		StackEvent old = resourceEvent("DELETE_COMPLETE");
+		StackEvent bucketInProgress = resourceEvent("CREATE_IN_PROGRESS");
+		StackEvent bucketComplete = resourceEvent("CREATE_COMPLETE");
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(status(StackStatus.CREATE_IN_PROGRESS),
+				status(StackStatus.CREATE_IN_PROGRESS), status(StackStatus.UPDATE_IN_PROGRESS),
+				status(StackStatus.UPDATE_COMPLETE));
+		when(mockCloudFormationClient.describeStackEvents(any())).thenReturn(eventsResult(old),
+				eventsResult(bucketComplete, bucketInProgress, old));
+
+		// call under test
+		Optional<Stack> result = waiter.waitForCompletion(stackName).get();
+
+		assertEquals(Optional.of(stack(StackStatus.UPDATE_COMPLETE)), result);
+		verify(mockStatusMonitor, times(4)).nextStatus(stackName);
+		// events are only read when the status changes.
+		verify(mockCloudFormationClient, times(2)).describeStackEvents(eventsRequestCaptor.capture());
+		eventsRequestCaptor.getAllValues().forEach(r -> assertEquals(stackName, r.getStackName()));
+		// only the new events are logged.
+		verify(mockLogger, times(2)).info(any(String.class));
+	}
+
+	@Test
+	public void testWaitForCompletionAlreadyComplete() throws Exception {
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(status(StackStatus.UPDATE_COMPLETE));
+
+		// call under test
+		Optional<Stack> result = waiter.waitForCompletion(stackName).get();
+
+		assertEquals(Optional.of(stack(StackStatus.UPDATE_COMPLETE)), result);
+		verify(mockStatusMonitor, times(1)).nextStatus(stackName);
+		verify(mockCloudFormationClient, never()).describeStackEvents(any());
+	}
+
+	@Test
+	public void testWaitForCompletionStartedInUpdateRollbackComplete() throws Exception {
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(status(StackStatus.UPDATE_ROLLBACK_COMPLETE));
+
+		// call under test
+		Optional<Stack> result = waiter.waitForCompletion(stackName).get();
+
+		assertEquals(Optional.of(stack(StackStatus.UPDATE_ROLLBACK_COMPLETE)), result);
+	}
+
+	@Test
+	public void testWaitForCompletionUpdateToUpdateRollbackComplete() throws Exception {
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(status(StackStatus.UPDATE_IN_PROGRESS),
+				status(StackStatus.UPDATE_ROLLBACK_COMPLETE));
+		when(mockCloudFormationClient.describeStackEvents(any())).thenReturn(eventsResult());
+
+		CompletableFuture<Optional<Stack>> future = waiter.waitForCompletion(stackName);
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> {
+			future.get();
+		});
+		assertEquals("Stack 'someStack' did not complete.  Status: UPDATE_ROLLBACK_COMPLETE with reason: some reason",
+				e.getCause().getMessage());
+	}
+
+	@Test
+	public void testWaitForCompletionFailedStatus() throws Exception {
+		for (StackStatus status : new StackStatus[] { StackStatus.CREATE_FAILED, StackStatus.ROLLBACK_COMPLETE,
+				StackStatus.ROLLBACK_FAILED, StackStatus.ROLLBACK_IN_PROGRESS, StackStatus.UPDATE_ROLLBACK_FAILED }) {
+			StackWait wait = new StackWait(stackName, 0L, null);
+			// call under test
+			waiter.onStatus(wait, Optional.of(stack(status)));
+			assertTrue(wait.getFuture().isCompletedExceptionally(), status.toString());
+		}
+	}
+
+	@Test
+	public void testWaitForCompletionDoesNotExist() throws Exception {
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+		// call under test
+		Optional<Stack> result = waiter.waitForCompletion(stackName).get();
+
+		assertEquals(Optional.empty(), result);
+	}
+
+	@Test
+	public void testWaitForCompletionMonitorFailure() throws Exception {
+		RuntimeException failure = new RuntimeException("access denied");
+		CompletableFuture<Optional<Stack>> failed = new CompletableFuture<>();
+		failed.completeExceptionally(failure);
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(failed);
+
+		CompletableFuture<Optional<Stack>> future = waiter.waitForCompletion(stackName);
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> {
+			future.get();
+		});
+		assertEquals(failure, e.getCause());
+	}
+
+	@Test
+	public void testWaitForCompletionEventsFailure() throws Exception {
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(status(StackStatus.CREATE_IN_PROGRESS),
+				status(StackStatus.CREATE_COMPLETE));
+		when(mockCloudFormationClient.describeStackEvents(any()))
+				.thenThrow(new AmazonCloudFormationException("Rate exceeded"));
+
+		// call under test
+		Optional<Stack> result = waiter.waitForCompletion(stackName).get();
+
+		assertEquals(Optional.of(stack(StackStatus.CREATE_COMPLETE)), result);
+		verify(mockLogger).warn(any(String.class));
+	}
+
+	@Test
+	public void testWaitForCompletionTimeout() throws Exception {
+		when(mockThreadProvider.currentTimeMillis()).thenReturn(1L, StackWaiterImpl.TIMEOUT_MS + 2);
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(status(StackStatus.CREATE_IN_PROGRESS));
+
+		CompletableFuture<Optional<Stack>> future = waiter.waitForCompletion(stackName);
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> {
+			future.get();
+		});
+		assertTrue(e.getCause().getMessage().contains("Timed out"));
+	}
+
+	@Test
+	public void testWaitForCompletionSharedFuture() {
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(new CompletableFuture<>());
+		// call under test
+		CompletableFuture<Optional<Stack>> one = waiter.waitForCompletion(stackName);
+		CompletableFuture<Optional<Stack>> two = waiter.waitForCompletion(stackName);
+		assertSame(one, two);
+		assertFalse(one.isDone());
+		verify(mockStatusMonitor, times(1)).nextStatus(stackName);
+	}
+
+	@Test
+	public void testWaitForDeletion() throws Exception {
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(status(StackStatus.DELETE_IN_PROGRESS),
+				CompletableFuture.completedFuture(Optional.empty()));
+		when(mockCloudFormationClient.describeStackEvents(any())).thenReturn(eventsResult());
+
+		// call under test
+		Optional<Stack> result = waiter.waitForDeletion(stack(StackStatus.CREATE_COMPLETE)).get();
+
+		assertEquals(Optional.empty(), result);
+	}
+
+	@Test
+	public void testWaitForDeletionIgnoresStatusBeforeDelete() throws Exception {
+		// the first sweep still shows the stack as it was before the delete.
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(status(StackStatus.UPDATE_ROLLBACK_COMPLETE),
+				status(StackStatus.DELETE_IN_PROGRESS), status(StackStatus.DELETE_COMPLETE));
+		when(mockCloudFormationClient.describeStackEvents(any())).thenReturn(eventsResult());
+
+		// call under test
+		Optional<Stack> result = waiter.waitForDeletion(stack(StackStatus.UPDATE_ROLLBACK_COMPLETE)).get();
+
+		assertEquals(Optional.of(stack(StackStatus.DELETE_COMPLETE)), result);
+		verify(mockStatusMonitor, times(3)).nextStatus(stackName);
+	}
+
+	@Test
+	public void testWaitForDeletionIgnoresDeleteFailedBeforeDelete() throws Exception {
+		Date firstDelete = new Date(1000L);
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(
+				CompletableFuture.completedFuture(Optional.of(stack(StackStatus.DELETE_FAILED).withDeletionTime(firstDelete))),
+				status(StackStatus.DELETE_IN_PROGRESS), status(StackStatus.DELETE_FAILED));
+		when(mockCloudFormationClient.describeStackEvents(any())).thenReturn(eventsResult());
+
+		// call under test
+		Optional<Stack> result = waiter.waitForDeletion(stack(StackStatus.DELETE_FAILED).withDeletionTime(firstDelete)).get();
+
+		// the delete failed again.
+		assertEquals(Optional.of(stack(StackStatus.DELETE_FAILED)), result);
+		verify(mockStatusMonitor, times(3)).nextStatus(stackName);
+	}
+
+	@Test
+	public void testWaitForDeletionFailedBetweenSweeps() throws Exception {
+		Stack failed = stack(StackStatus.DELETE_FAILED).withDeletionTime(new Date(2000L));
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(CompletableFuture.completedFuture(Optional.of(failed)));
+
+		// call under test
+		Optional<Stack> result = waiter.waitForDeletion(stack(StackStatus.DELETE_FAILED).withDeletionTime(new Date(1000L))).get();
+
+		// a new deletion time shows the delete started and failed.
+		assertEquals(Optional.of(failed), result);
+	}
+
+	@Test
+	public void testWaitForDeletionSeparateFromCompletion() {
+		when(mockStatusMonitor.nextStatus(stackName)).thenReturn(new CompletableFuture<>());
+		// call under test
+		CompletableFuture<Optional<Stack>> completion = waiter.waitForCompletion(stackName);
+		CompletableFuture<Optional<Stack>> deletion = waiter.waitForDeletion(stack(StackStatus.CREATE_COMPLETE));
+		assertFalse(completion == deletion);
+		assertSame(deletion, waiter.waitForDeletion(stack(StackStatus.CREATE_COMPLETE)));
+	}
+
+	@Test
+	public void testFetchNewEventsPagesToCursor() {
+		StackEvent first = resourceEvent("UPDATE_IN_PROGRESS");
+		StackEvent second = resourceEvent("UPDATE_IN_PROGRESS");
+		StackEvent third = resourceEvent("UPDATE_COMPLETE");
+		StackEvent fourth = resourceEvent("UPDATE_IN_PROGRESS");
+		StackWait wait = new StackWait(stackName, 0L, null);
+		when(mockCloudFormationClient.describeStackEvents(any())).thenReturn(eventsResult(first),
+				eventsResult(fourth, third).withNextToken("page2"), eventsResult(second, first).withNextToken("page3"));
+
+		assertEquals(List.of(first), waiter.fetchNewEvents(wait));
+		// call under test
+		assertEquals(List.of(second, third, fourth), waiter.fetchNewEvents(wait));
+		verify(mockCloudFormationClient, times(3)).describeStackEvents(eventsRequestCaptor.capture());
+		assertEquals("page2", eventsRequestCaptor.getAllValues().get(2).getNextToken());
+	}
+}
@@ -1,10 +1,25 @@
 package org.sagebionetworks.template;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sagebionetworks.template.Constants.DEFAULT_AWS_MAX_CONNECTIONS;
+import static org.sagebionetworks.template.Constants.DEFAULT_AWS_MAX_ERROR_RETRY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_AWS_MAX_CONNECTIONS;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_AWS_MAX_ERROR_RETRY;
 
+import org.apache.http.client.HttpClient;
+import org.apache.velocity.app.VelocityEngine;
 import org.junit.Test;
+import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.vpc.VpcTemplateBuilder;
 
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.cloudformation.AmazonCloudFormation;
+import com.amazonaws.services.s3.AmazonS3;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 
@@ -16,4 +31,28 @@ public class TemplateGuiceModuleTest {
 		VpcTemplateBuilder builder = injector.getInstance(VpcTemplateBuilder.class);
 		assertNotNull(builder);
 	}
+
+	@Test
+	public void testSharedClients() {
+		Injector injector = Guice.createInjector(new TemplateGuiceModule());
+		assertSame(injector.getInstance(AmazonS3.class), injector.getInstance(AmazonS3.class));
+		assertSame(injector.getInstance(AmazonCloudFormation.class), injector.getInstance(AmazonCloudFormation.class));
+		assertSame(injector.getInstance(HttpClient.class), injector.getInstance(HttpClient.class));
+		assertSame(injector.getInstance(VelocityEngine.class), injector.getInstance(VelocityEngine.class));
+		assertSame(injector.getInstance(ClientLifecycle.class), injector.getInstance(ClientLifecycle.class));
+		injector.getInstance(ClientLifecycle.class).shutdown();
+	}
+
+	@Test
+	public void testProvideClientConfiguration() {
+		Configuration mockConfig = mock(Configuration.class);
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_AWS_MAX_CONNECTIONS, DEFAULT_AWS_MAX_CONNECTIONS)).thenReturn(250);
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_AWS_MAX_ERROR_RETRY, DEFAULT_AWS_MAX_ERROR_RETRY)).thenReturn(7);
+		// call under test
+		ClientConfiguration clientConfig = new TemplateGuiceModule().provideClientConfiguration(mockConfig);
+		assertEquals(250, clientConfig.getMaxConnections());
+		assertEquals(7, clientConfig.getRetryPolicy().getMaxErrorRetry());
+		assertTrue(clientConfig.useTcpKeepAlive());
+		assertEquals(TemplateGuiceModule.CONNECTION_TTL_MS, clientConfig.getConnectionTTL());
+	}
 }
@@ -0,0 +1,128 @@
+package org.sagebionetworks.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class TemplateRendererImplTest {
+
+	@Mock
+	VelocityEngine mockVelocityEngine;
+	@Mock
+	Template mockTemplate;
+
+	TemplateRendererImpl renderer;
+	VelocityContext context;
+	String templatePath;
+
+	@BeforeEach
+	public void before() {
+		renderer = new TemplateRendererImpl(mockVelocityEngine);
+		context = new VelocityContext();
+		templatePath = "templates/some-template.json.vpt";
+	}
+
+	void setupMerge(String result) {
+		when(mockVelocityEngine.getTemplate(any())).thenReturn(mockTemplate);
+		doAnswer(invocation -> {
+			((StringWriter) invocation.getArgument(1)).append(result);
+			return null;
+		}).when(mockTemplate).merge(any(), any());
+	}
+
+	@Test
+	public void testRender() {
+		setupMerge("some: yaml");
+		// call under test
+		assertEquals("some: yaml", renderer.render(templatePath, context));
+		assertEquals("some: yaml", renderer.render(templatePath, context));
+		// the template is only loaded once.
+		verify(mockVelocityEngine, times(1)).getTemplate(templatePath);
+		verify(mockTemplate, times(2)).merge(any(), any());
+	}
+
+	@Test
+	public void testRenderJson() {
+		setupMerge("{\"a\":[1,],}");
+		// call under test
+		String result = renderer.renderJson(templatePath, context);
+		assertEquals("{\n     \"a\": [\n          1\n     ]\n}", result);
+	}
+
+	@Test
+	public void testRenderJsonEmptyContainers() {
+		setupMerge("{\"a\":{},\"b\":[],\"c\":\"d\\u0065\"}");
+		// call under test
+		String result = renderer.renderJson(templatePath, context);
+		assertEquals("{\n     \"a\": {},\n     \"b\": [],\n     \"c\": \"de\"\n}", result);
+	}
+
+	@Test
+	public void testRenderJsonDuplicateKey() {
+		setupMerge("{\"a\":1,\"a\":2}");
+		// org.json also rejects the duplicate key.
+		assertThrows(JSONException.class, () -> {
+			// call under test
+			renderer.renderJson(templatePath, context);
+		});
+	}
+
+	@Test
+	public void testRenderJsonLenient() {
+		setupMerge("{\"a\":[b]}");
+		// call under test
+		String result = renderer.renderJson(templatePath, context);
+		assertTrue(new JSONObject("{\"a\":[\"b\"]}").similar(new JSONObject(result)));
+	}
+
+	@Test
+	public void testRenderJsonInvalid() {
+		setupMerge("{\"a\":");
+		assertThrows(JSONException.class, () -> {
+			// call under test
+			renderer.renderJson(templatePath, context);
+		});
+		// the buffer is cleared for the next render.
+		doAnswer(invocation -> {
+			((StringWriter) invocation.getArgument(1)).append("{}");
+			return null;
+		}).when(mockTemplate).merge(any(), any());
+		assertEquals("{}", renderer.renderJson(templatePath, context));
+	}
+
+	@Test
+	public void testRenderNullPath() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			// call under test
+			renderer.render(null, context);
+		});
+	}
+
+	@Test
+	public void testRenderJsonWithEngine() {
+		renderer = new TemplateRendererImpl(new TemplateGuiceModule().velocityEngineProvider());
+		context.put(Constants.STACK, "dev");
+		// call under test
+		String result = renderer.renderJson(Constants.TEMPLATE_S3_BUCKET_POLICY, context);
+		assertTrue(new JSONObject(result).has("Resources"));
+	}
+}
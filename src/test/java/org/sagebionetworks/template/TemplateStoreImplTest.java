@@ -0,0 +1,211 @@
+package org.sagebionetworks.template;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sagebionetworks.template.config.Configuration;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration;
+import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Rule;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.lifecycle.LifecyclePrefixPredicate;
+
+@ExtendWith(MockitoExtension.class)
+public class TemplateStoreImplTest {
+
+	@Mock
+	AmazonS3 mockS3Client;
+	@Mock
+	Configuration mockConfig;
+	@Mock
+	LoggerFactory mockLoggerFactory;
+	@Mock
+	Logger mockLogger;
+	@Mock
+	ThreadProvider mockThreadProvider;
+	@Mock
+	ObjectMetadata mockMetadata;
+
+	@Captor
+	ArgumentCaptor<PutObjectRequest> putCaptor;
+	@Captor
+	ArgumentCaptor<BucketLifecycleConfiguration> lifecycleCaptor;
+
+	TemplateStoreImpl store;
+
+	String bucket;
+	String templateBody;
+	String expectedKey;
+	long now;
+
+	@BeforeEach
+	public void before() {
+		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+		store = new TemplateStoreImpl(mockS3Client, mockConfig, mockThreadProvider, mockLoggerFactory);
+		bucket = "theBucket";
+		templateBody = "body";
+		expectedKey = "templates/content/" + DigestUtils.sha256Hex(templateBody) + ".json";
+		now = 1_000_000_000_000L;
+	}
+
+	AmazonS3Exception notFound() {
+		AmazonS3Exception notFound = new AmazonS3Exception("Not Found");
+		notFound.setStatusCode(404);
+		return notFound;
+	}
+
+	@Test
+	public void testSaveTemplateMissing() {
+		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
+		when(mockS3Client.getObjectMetadata(bucket, expectedKey)).thenThrow(notFound());
+		// call under test
+		String url = store.saveTemplate(templateBody);
+		assertEquals("https://s3.amazonaws.com/theBucket/" + expectedKey, url);
+		verify(mockS3Client).putObject(putCaptor.capture());
+		PutObjectRequest request = putCaptor.getValue();
+		assertEquals(bucket, request.getBucketName());
+		assertEquals(expectedKey, request.getKey());
+		assertEquals(4L, request.getMetadata().getContentLength());
+		verify(mockS3Client, never()).deleteObject(anyString(), anyString());
+	}
+
+	@Test
+	public void testSaveTemplateExists() {
+		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
+		when(mockS3Client.getObjectMetadata(bucket, expectedKey)).thenReturn(mockMetadata);
+		when(mockThreadProvider.currentTimeMillis()).thenReturn(now);
+		when(mockMetadata.getLastModified())
+				.thenReturn(new Date(now - TimeUnit.DAYS.toMillis(TemplateStoreImpl.TEMPLATE_REFRESH_DAYS)));
+		// call under test
+		String url = store.saveTemplate(templateBody);
+		assertEquals("https://s3.amazonaws.com/theBucket/" + expectedKey, url);
+		verify(mockS3Client, never()).putObject(any(PutObjectRequest.class));
+	}
+
+	@Test
+	public void testSaveTemplateExistsCloseToExpiring() {
+		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
+		when(mockS3Client.getObjectMetadata(bucket, expectedKey)).thenReturn(mockMetadata);
+		when(mockThreadProvider.currentTimeMillis()).thenReturn(now);
+		when(mockMetadata.getLastModified())
+				.thenReturn(new Date(now - TimeUnit.DAYS.toMillis(TemplateStoreImpl.TEMPLATE_REFRESH_DAYS) - 1));
+		// call under test
+		String url = store.saveTemplate(templateBody);
+		assertEquals("https://s3.amazonaws.com/theBucket/" + expectedKey, url);
+		// written again so the expiration restarts.
+		verify(mockS3Client).putObject(putCaptor.capture());
+		assertEquals(expectedKey, putCaptor.getValue().getKey());
+	}
+
+	@Test
+	public void testSaveTemplateMetadataFailure() {
+		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
+		AmazonS3Exception denied = new AmazonS3Exception("denied");
+		denied.setStatusCode(403);
+		when(mockS3Client.getObjectMetadata(bucket, expectedKey)).thenThrow(denied);
+		AmazonS3Exception thrown = assertThrows(AmazonS3Exception.class, () -> {
+			// call under test
+			store.saveTemplate(templateBody);
+		});
+		assertEquals(denied, thrown);
+		verify(mockS3Client, never()).putObject(any(PutObjectRequest.class));
+	}
+
+	@Test
+	public void testSaveTemplateKnownInRun() {
+		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
+		when(mockS3Client.getObjectMetadata(bucket, expectedKey)).thenThrow(notFound());
+		store.saveTemplate(templateBody);
+		// call under test
+		String url = store.saveTemplate(templateBody);
+		assertEquals("https://s3.amazonaws.com/theBucket/" + expectedKey, url);
+		verify(mockS3Client, times(1)).getObjectMetadata(bucket, expectedKey);
+		verify(mockS3Client, times(1)).putObject(any(PutObjectRequest.class));
+		// the lifecycle is only checked once per bucket.
+		verify(mockS3Client, times(1)).getBucketLifecycleConfiguration(bucket);
+	}
+
+	@Test
+	public void testSaveTemplateDifferentContent() {
+		when(mockConfig.getConfigurationBucket()).thenReturn(bucket);
+		when(mockS3Client.getObjectMetadata(any(String.class), any(String.class))).thenThrow(notFound());
+		// call under test
+		String one = store.saveTemplate(templateBody);
+		String two = store.saveTemplate(templateBody + "changed");
+		assertEquals(false, one.equals(two));
+		verify(mockS3Client, times(2)).putObject(any(PutObjectRequest.class));
+	}
+
+	@Test
+	public void testSaveTemplateNull() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			store.saveTemplate(null);
+		});
+	}
+
+	@Test
+	public void testConfigureExpirationAddsRule() {
+		Rule existing = new Rule().withId("other");
+		when(mockS3Client.getBucketLifecycleConfiguration(bucket))
+				.thenReturn(new BucketLifecycleConfiguration().withRules(existing));
+		// call under test
+		store.configureExpiration(bucket);
+		verify(mockS3Client).setBucketLifecycleConfiguration(any(String.class), lifecycleCaptor.capture());
+		List<Rule> rules = lifecycleCaptor.getValue().getRules();
+		assertEquals(2, rules.size());
+		assertEquals(existing, rules.get(0));
+		Rule rule = rules.get(1);
+		assertEquals(TemplateStoreImpl.RULE_ID_TEMPLATE_EXPIRATION, rule.getId());
+		assertEquals(TemplateStoreImpl.TEMPLATE_EXPIRATION_DAYS, rule.getExpirationInDays());
+		assertEquals(TemplateStoreImpl.TEMPLATE_PREFIX,
+				((LifecyclePrefixPredicate) rule.getFilter().getPredicate()).getPrefix());
+	}
+
+	@Test
+	public void testConfigureExpirationNoConfiguration() {
+		when(mockS3Client.getBucketLifecycleConfiguration(bucket)).thenReturn(null);
+		// call under test
+		store.configureExpiration(bucket);
+		verify(mockS3Client).setBucketLifecycleConfiguration(any(String.class), lifecycleCaptor.capture());
+		assertEquals(1, lifecycleCaptor.getValue().getRules().size());
+	}
+
+	@Test
+	public void testConfigureExpirationExists() {
+		when(mockS3Client.getBucketLifecycleConfiguration(bucket)).thenReturn(new BucketLifecycleConfiguration()
+				.withRules(new Rule().withId(TemplateStoreImpl.RULE_ID_TEMPLATE_EXPIRATION)));
+		// call under test
+		store.configureExpiration(bucket);
+		verify(mockS3Client, never()).setBucketLifecycleConfiguration(any(String.class), any());
+	}
+
+	@Test
+	public void testConfigureExpirationFailure() {
+		when(mockS3Client.getBucketLifecycleConfiguration(bucket)).thenThrow(new AmazonS3Exception("denied"));
+		// call under test
+		store.configureExpiration(bucket);
+		verify(mockLogger).warn(any(String.class));
+	}
+}
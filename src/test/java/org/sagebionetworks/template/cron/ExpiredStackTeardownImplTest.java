@@ -1,9 +1,16 @@
 package org.sagebionetworks.template.cron;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -11,6 +18,13 @@ import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,12 +33,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.sagebionetworks.template.CloudFormationClient;
+import org.sagebionetworks.template.Constants;
 import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.StackWaiter;
+import org.sagebionetworks.template.ThreadProvider;
+import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.config.TimeToLive;
 
 import com.amazonaws.services.cloudformation.model.Parameter;
+import com.amazonaws.services.cloudformation.model.ResourceStatus;
 import com.amazonaws.services.cloudformation.model.Stack;
+import com.amazonaws.services.cloudformation.model.StackResourceSummary;
 import com.amazonaws.services.cloudformation.model.StackStatus;
+import com.amazonaws.services.cloudformation.model.StackSummary;
 
 @ExtendWith(MockitoExtension.class)
 public class ExpiredStackTeardownImplTest {
@@ -32,8 +53,14 @@ public class ExpiredStackTeardownImplTest {
 	@Mock
 	private CloudFormationClient mockCloudFormationClient;
 	@Mock
+	private StackWaiter mockStackWaiter;
+	@Mock
 	private TimeToLive mockTimeToLive;
 	@Mock
+	private Configuration mockConfig;
+	@Mock
+	private ThreadProvider mockThreadProvider;
+	@Mock
 	private LoggerFactory mockLoggerFactory;
 	@Mock
 	private Logger mockLogger;
@@ -43,7 +70,15 @@ public class ExpiredStackTeardownImplTest {
 	@BeforeEach
 	public void before() {
 		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
-		down = new ExpiredStackTeardownImpl(mockCloudFormationClient, mockTimeToLive, mockLoggerFactory);
+		lenient().when(mockConfig.getIntegerProperty(eq(Constants.PROPERTY_KEY_TEARDOWN_MAX_CONCURRENCY), anyInt()))
+				.thenReturn(10);
+		lenient().when(mockConfig.getIntegerProperty(eq(Constants.PROPERTY_KEY_TEARDOWN_DELETES_PER_SECOND), anyInt()))
+				.thenReturn(1000);
+		lenient().when(mockStackWaiter.waitForDeletion(any()))
+				.thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+		lenient().when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
+		down = new ExpiredStackTeardownImpl(mockCloudFormationClient, mockStackWaiter, mockTimeToLive, mockConfig,
+				mockThreadProvider, mockLoggerFactory);
 	}
 
 	@Test
@@ -52,7 +87,7 @@ public class ExpiredStackTeardownImplTest {
 		Stack stack = new Stack().withStackName("deleteMe").withStackStatus(StackStatus.CREATE_COMPLETE)
 				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(false);
 
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(List.of(stack).stream());
+		stubStacks(stack);
 		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
 		
 		// call under test
@@ -61,6 +96,8 @@ public class ExpiredStackTeardownImplTest {
 		verify(mockCloudFormationClient).deleteStack(stack.getStackName());
 		verify(mockTimeToLive).isTimeToLiveExpired(stack.getParameters());
 		verify(mockLogger).info("Deleting stack: 'deleteMe'...");
+		verify(mockStackWaiter).waitForDeletion(stack);
+		verify(mockLogger).info("Deleted 1 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: []");
 		
 		verifyNoMoreInteractions(mockCloudFormationClient);
 		verifyNoMoreInteractions(mockTimeToLive);
@@ -74,7 +111,7 @@ public class ExpiredStackTeardownImplTest {
 		Stack stack = new Stack().withStackName("deleteMe").withStackStatus(StackStatus.UPDATE_COMPLETE)
 				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(false);
 
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(List.of(stack).stream());
+		stubStacks(stack);
 		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
 		
 		// call under test
@@ -83,6 +120,8 @@ public class ExpiredStackTeardownImplTest {
 		verify(mockCloudFormationClient).deleteStack(stack.getStackName());
 		verify(mockTimeToLive).isTimeToLiveExpired(stack.getParameters());
 		verify(mockLogger).info("Deleting stack: 'deleteMe'...");
+		verify(mockStackWaiter).waitForDeletion(stack);
+		verify(mockLogger).info("Deleted 1 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: []");
 		
 		verifyNoMoreInteractions(mockCloudFormationClient);
 		verifyNoMoreInteractions(mockTimeToLive);
@@ -96,7 +135,7 @@ public class ExpiredStackTeardownImplTest {
 		Stack stack = new Stack().withStackName("deleteMe").withStackStatus(StackStatus.UPDATE_ROLLBACK_COMPLETE)
 				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(false);
 
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(List.of(stack).stream());
+		stubStacks(stack);
 		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
 		
 		// call under test
@@ -105,6 +144,8 @@ public class ExpiredStackTeardownImplTest {
 		verify(mockCloudFormationClient).deleteStack(stack.getStackName());
 		verify(mockTimeToLive).isTimeToLiveExpired(stack.getParameters());
 		verify(mockLogger).info("Deleting stack: 'deleteMe'...");
+		verify(mockStackWaiter).waitForDeletion(stack);
+		verify(mockLogger).info("Deleted 1 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: []");
 		
 		verifyNoMoreInteractions(mockCloudFormationClient);
 		verifyNoMoreInteractions(mockTimeToLive);
@@ -118,7 +159,7 @@ public class ExpiredStackTeardownImplTest {
 		Stack stack = new Stack().withStackName("deleteMe").withStackStatus(StackStatus.DELETE_FAILED)
 				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(false);
 
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(List.of(stack).stream());
+		stubStacks(stack);
 		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
 		
 		// call under test
@@ -127,6 +168,8 @@ public class ExpiredStackTeardownImplTest {
 		verify(mockCloudFormationClient).deleteStack(stack.getStackName());
 		verify(mockTimeToLive).isTimeToLiveExpired(stack.getParameters());
 		verify(mockLogger).info("Deleting stack: 'deleteMe'...");
+		verify(mockStackWaiter).waitForDeletion(stack);
+		verify(mockLogger).info("Deleted 1 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: []");
 		
 		verifyNoMoreInteractions(mockCloudFormationClient);
 		verifyNoMoreInteractions(mockTimeToLive);
@@ -140,7 +183,7 @@ public class ExpiredStackTeardownImplTest {
 		Stack stack = new Stack().withStackName("deleteMe").withStackStatus(StackStatus.CREATE_COMPLETE)
 				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(false);
 
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(List.of(stack).stream());
+		stubStacks(stack);
 		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(false);
 		
 		// call under test
@@ -160,7 +203,7 @@ public class ExpiredStackTeardownImplTest {
 		Stack stack = new Stack().withStackName("deleteMe").withStackStatus(StackStatus.CREATE_COMPLETE)
 				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(true);
 
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(List.of(stack).stream());
+		stubStacks(stack);
 		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
 		
 		// call under test
@@ -180,7 +223,7 @@ public class ExpiredStackTeardownImplTest {
 		Stack stack = new Stack().withStackName("deleteMe").withStackStatus(StackStatus.CREATE_COMPLETE)
 				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(null);
 
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(List.of(stack).stream());
+		stubStacks(stack);
 		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
 		
 		// call under test
@@ -189,6 +232,8 @@ public class ExpiredStackTeardownImplTest {
 		verify(mockCloudFormationClient).deleteStack(stack.getStackName());
 		verify(mockTimeToLive).isTimeToLiveExpired(stack.getParameters());
 		verify(mockLogger).info("Deleting stack: 'deleteMe'...");
+		verify(mockStackWaiter).waitForDeletion(stack);
+		verify(mockLogger).info("Deleted 1 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: []");
 		
 		verifyNoMoreInteractions(mockCloudFormationClient);
 		verifyNoMoreInteractions(mockTimeToLive);
@@ -198,7 +243,7 @@ public class ExpiredStackTeardownImplTest {
 
 	@Test
 	public void testFindAndDeleteExpiredStacksWithNoWork() {
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(new ArrayList<Stack>().stream());
+		stubStacks();
 		// call under test
 		down.findAndDeleteExpiredStacks();
 
@@ -217,7 +262,7 @@ public class ExpiredStackTeardownImplTest {
 		Stack two = new Stack().withStackName("two").withStackStatus(StackStatus.CREATE_COMPLETE)
 				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(false);
 
-		when(mockCloudFormationClient.streamOverAllStacks()).thenReturn(List.of(one, two).stream());
+		stubStacks(one, two);
 		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
 		
 		doThrow(new IllegalArgumentException("nope")).when(mockCloudFormationClient).deleteStack("one");;
@@ -229,12 +274,211 @@ public class ExpiredStackTeardownImplTest {
 		verify(mockCloudFormationClient).deleteStack(one.getStackName());
 		verify(mockCloudFormationClient).deleteStack(two.getStackName());
 		verify(mockTimeToLive, times(2)).isTimeToLiveExpired(any());
-		verify(mockLogger, times(2)).info(any(String.class));
+		verify(mockStackWaiter, never()).waitForDeletion(one);
+		verify(mockStackWaiter).waitForDeletion(two);
+		verify(mockLogger, times(3)).info(anyString());
 		verify(mockLogger, times(1)).error(any(String.class), any(Throwable.class));
+		verify(mockLogger).info("Deleted 1 of 2 expired stacks in 0 ms. Retained resources: {}. Failed: [one]");
 		
 		verifyNoMoreInteractions(mockCloudFormationClient);
 		verifyNoMoreInteractions(mockTimeToLive);
 		verifyNoMoreInteractions(mockLogger);
 
 	}
+
+	void stubStacks(Stack... stacks) {
+		List<StackSummary> summaries = new ArrayList<>();
+		for (Stack stack : stacks) {
+			summaries.add(new StackSummary().withStackName(stack.getStackName()).withStackStatus(stack.getStackStatus()));
+			when(mockCloudFormationClient.describeStack(stack.getStackName())).thenReturn(Optional.of(stack));
+		}
+		when(mockCloudFormationClient.streamOverStackSummaries(ExpiredStackTeardownImpl.DELETABLE_STATUSES)).thenReturn(summaries.stream());
+	}
+
+	Stack expiredStack(String name) {
+		return new Stack().withStackName(name).withStackStatus(StackStatus.CREATE_COMPLETE)
+				.withParameters(new Parameter().withParameterKey("key")).withEnableTerminationProtection(false);
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithRateLimit() throws InterruptedException {
+		when(mockConfig.getIntegerProperty(eq(Constants.PROPERTY_KEY_TEARDOWN_DELETES_PER_SECOND), anyInt())).thenReturn(2);
+		stubStacks(expiredStack("one"), expiredStack("two"), expiredStack("three"));
+		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
+		when(mockThreadProvider.currentTimeMillis()).thenReturn(0L);
+
+		// call under test
+		down.findAndDeleteExpiredStacks();
+
+		verify(mockCloudFormationClient).deleteStack("one");
+		verify(mockCloudFormationClient).deleteStack("two");
+		verify(mockCloudFormationClient).deleteStack("three");
+		// the second delete waits for 500 ms and the third for 1000 ms.
+		verify(mockThreadProvider).sleep(500L);
+		verify(mockThreadProvider).sleep(1000L);
+		verify(mockThreadProvider, times(2)).sleep(anyLong());
+		verify(mockLogger).info("Deleted 3 of 3 expired stacks in 0 ms. Retained resources: {}. Failed: []");
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithMaxConcurrency() throws Exception {
+		when(mockConfig.getIntegerProperty(eq(Constants.PROPERTY_KEY_TEARDOWN_MAX_CONCURRENCY), anyInt())).thenReturn(1);
+		Stack one = expiredStack("one");
+		stubStacks(one, expiredStack("two"));
+		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
+		CompletableFuture<Optional<Stack>> oneDeleted = new CompletableFuture<>();
+		when(mockStackWaiter.waitForDeletion(one)).thenReturn(oneDeleted);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// call under test
+			Future<?> run = executor.submit(() -> down.findAndDeleteExpiredStacks());
+
+			verify(mockCloudFormationClient, timeout(5000)).deleteStack("one");
+			// the second delete must wait for the first to complete.
+			verify(mockCloudFormationClient, after(200).never()).deleteStack("two");
+			oneDeleted.complete(Optional.empty());
+			run.get(5, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		verify(mockCloudFormationClient).deleteStack("two");
+		verify(mockLogger).info("Deleted 2 of 2 expired stacks in 0 ms. Retained resources: {}. Failed: []");
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithDeleteFailedRetainResources() {
+		Stack one = expiredStack("one");
+		stubStacks(one);
+		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
+		Stack failed = new Stack().withStackName("one").withStackStatus(StackStatus.DELETE_FAILED);
+		when(mockStackWaiter.waitForDeletion(one)).thenReturn(CompletableFuture.completedFuture(Optional.of(failed)));
+		when(mockStackWaiter.waitForDeletion(failed)).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+		when(mockCloudFormationClient.listStackResources("one")).thenReturn(List.of(
+				new StackResourceSummary().withLogicalResourceId("bucket").withResourceStatus(ResourceStatus.DELETE_FAILED),
+				new StackResourceSummary().withLogicalResourceId("role").withResourceStatus(ResourceStatus.DELETE_COMPLETE)));
+
+		// call under test
+		down.findAndDeleteExpiredStacks();
+
+		verify(mockCloudFormationClient).deleteStack("one");
+		verify(mockCloudFormationClient).listStackResources("one");
+		verify(mockCloudFormationClient).deleteStack("one", List.of("bucket"));
+		// the retry waits from the failed state, not from the state before the first delete.
+		verify(mockStackWaiter).waitForDeletion(one);
+		verify(mockStackWaiter).waitForDeletion(failed);
+		verify(mockLogger).info("Deleting stack: 'one'...");
+		verify(mockLogger).info("Deleting stack: 'one' retaining resources: [bucket]...");
+		verify(mockLogger).error("Failed to delete stack: 'one' status: DELETE_FAILED");
+		verify(mockLogger).info("Deleted 1 of 1 expired stacks in 0 ms. Retained resources: {one=[bucket]}. Failed: []");
+		verify(mockCloudFormationClient).streamOverStackSummaries(ExpiredStackTeardownImpl.DELETABLE_STATUSES);
+		verify(mockCloudFormationClient).describeStack("one");
+		verify(mockTimeToLive).isTimeToLiveExpired(any());
+		verifyNoMoreInteractions(mockCloudFormationClient);
+		verifyNoMoreInteractions(mockLogger);
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithRetryFailure() {
+		stubStacks(expiredStack("one"));
+		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
+		Stack failed = new Stack().withStackName("one").withStackStatus(StackStatus.DELETE_FAILED);
+		when(mockStackWaiter.waitForDeletion(any())).thenReturn(CompletableFuture.completedFuture(Optional.of(failed)));
+		when(mockCloudFormationClient.listStackResources("one")).thenReturn(List.of(
+				new StackResourceSummary().withLogicalResourceId("bucket").withResourceStatus(ResourceStatus.DELETE_FAILED)));
+
+		// call under test
+		down.findAndDeleteExpiredStacks();
+
+		verify(mockCloudFormationClient).deleteStack("one");
+		verify(mockCloudFormationClient).deleteStack("one", List.of("bucket"));
+		verify(mockCloudFormationClient, times(1)).listStackResources("one");
+		verify(mockLogger, times(2)).error("Failed to delete stack: 'one' status: DELETE_FAILED");
+		verify(mockLogger).info("Deleted 0 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: [one]");
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithWaitFailure() {
+		stubStacks(expiredStack("one"));
+		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
+		RuntimeException failure = new RuntimeException("Timed out waiting for stack: 'one' status to complete");
+		when(mockStackWaiter.waitForDeletion(any())).thenReturn(CompletableFuture.failedFuture(failure));
+		when(mockCloudFormationClient.listStackResources("one")).thenReturn(List.of());
+
+		// call under test
+		down.findAndDeleteExpiredStacks();
+
+		verify(mockCloudFormationClient).deleteStack("one");
+		verify(mockCloudFormationClient, never()).deleteStack(eq("one"), any());
+		verify(mockLogger).error("Failed to delete stack: 'one'", failure);
+		verify(mockLogger).info("Deleted 0 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: [one]");
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithFailureAndNoFailedResources() {
+		stubStacks(expiredStack("one"));
+		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
+		when(mockStackWaiter.waitForDeletion(any())).thenReturn(
+				CompletableFuture.completedFuture(Optional.of(new Stack().withStackName("one").withStackStatus(StackStatus.DELETE_FAILED))));
+		when(mockCloudFormationClient.listStackResources("one")).thenReturn(List.of(
+				new StackResourceSummary().withLogicalResourceId("role").withResourceStatus(ResourceStatus.DELETE_COMPLETE)));
+
+		// call under test
+		down.findAndDeleteExpiredStacks();
+
+		verify(mockCloudFormationClient).deleteStack("one");
+		verify(mockCloudFormationClient, never()).deleteStack(eq("one"), any());
+		verify(mockLogger).error("Failed to delete stack: 'one' status: DELETE_FAILED");
+		verify(mockLogger).info("Deleted 0 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: [one]");
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithDescribeInParallel() {
+		when(mockConfig.getIntegerProperty(eq(Constants.PROPERTY_KEY_TEARDOWN_MAX_CONCURRENCY), anyInt())).thenReturn(2);
+		stubStacks(expiredStack("one"), expiredStack("two"), expiredStack("three"));
+		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
+
+		// call under test
+		down.findAndDeleteExpiredStacks();
+
+		verify(mockThreadProvider).newFixedThreadPool(2);
+		verify(mockCloudFormationClient).describeStack("one");
+		verify(mockCloudFormationClient).describeStack("two");
+		verify(mockCloudFormationClient).describeStack("three");
+		verify(mockLogger).info("Deleted 3 of 3 expired stacks in 0 ms. Retained resources: {}. Failed: []");
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithDescribeFailures() {
+		when(mockCloudFormationClient.streamOverStackSummaries(ExpiredStackTeardownImpl.DELETABLE_STATUSES)).thenReturn(Stream.of(
+				new StackSummary().withStackName("one"), new StackSummary().withStackName("two"), new StackSummary().withStackName("three")));
+		RuntimeException failure = new RuntimeException("throttled");
+		when(mockCloudFormationClient.describeStack("one")).thenThrow(failure);
+		// deleted since it was listed.
+		when(mockCloudFormationClient.describeStack("two")).thenReturn(Optional.empty());
+		when(mockCloudFormationClient.describeStack("three")).thenReturn(Optional.of(expiredStack("three")));
+		when(mockTimeToLive.isTimeToLiveExpired(any())).thenReturn(true);
+
+		// call under test
+		down.findAndDeleteExpiredStacks();
+
+		verify(mockLogger).error("Failed to describe stack: 'one'", failure);
+		verify(mockCloudFormationClient, never()).deleteStack("one");
+		verify(mockCloudFormationClient, never()).deleteStack("two");
+		verify(mockCloudFormationClient).deleteStack("three");
+		verify(mockTimeToLive, times(1)).isTimeToLiveExpired(any());
+		verify(mockLogger).info("Deleted 1 of 1 expired stacks in 0 ms. Retained resources: {}. Failed: []");
+	}
+
+	@Test
+	public void testFindAndDeleteExpiredStacksWithNoCandidates() {
+		stubStacks();
+
+		// call under test
+		down.findAndDeleteExpiredStacks();
+
+		verify(mockThreadProvider, never()).newFixedThreadPool(anyInt());
+		verify(mockCloudFormationClient, never()).describeStack(any());
+		verifyNoMoreInteractions(mockLogger);
+	}
 }
@@ -18,10 +18,11 @@ import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
 import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.TemplateRendererImpl;
 import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.repo.glue.GlueColumn;
 import org.sagebionetworks.template.repo.glue.GlueTableDescriptor;
-import org.sagebionetworks.template.utils.ArtifactDownload;
+import org.sagebionetworks.template.utils.ArtifactCache;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -66,7 +67,7 @@ public class DataWarehouseBuilderImplTest {
 	@Mock
 	private LoggerFactory loggerFactory;
 	@Mock
-	private ArtifactDownload mockDownloader;
+	private ArtifactCache mockArtifactCache;
 	@Mock
 	private AmazonS3 mockS3Client;
 
@@ -77,8 +78,8 @@ public class DataWarehouseBuilderImplTest {
 	@BeforeEach
 	public void before() {
 		when(loggerFactory.getLogger(any())).thenReturn(logger);
-		builder = new DataWarehouseBuilderImpl(cloudFormationClient, velocityEngine, mockConfig, loggerFactory, tagsProvider,
-				dataWarehouseConfig, mockDownloader, mockS3Client);
+		builder = new DataWarehouseBuilderImpl(cloudFormationClient, new TemplateRendererImpl(velocityEngine), mockConfig, loggerFactory, tagsProvider,
+				dataWarehouseConfig, mockArtifactCache, mockS3Client);
 	}
 
 	@AfterEach
@@ -101,7 +102,7 @@ public class DataWarehouseBuilderImplTest {
 			out.putNextEntry(new ZipEntry("repo-1.0.0/src/scripts/glue_jobs/utilities/utils.py"));
 		}
 
-		when(mockDownloader.downloadFile(any())).thenReturn(zipFile);
+		when(mockArtifactCache.get(any())).thenReturn(zipFile);
 		when(dataWarehouseConfig.getGithubRepo()).thenReturn("repo");
 		when(dataWarehouseConfig.getVersion()).thenReturn("1.0.0");
 		when(dataWarehouseConfig.getExtraScripts()).thenReturn(List.of("utilities/utils.py"));
@@ -145,7 +146,7 @@ public class DataWarehouseBuilderImplTest {
 		// call under test
 		builder.buildAndDeploy();
 
-		verify(mockDownloader).downloadFile("https://codeload.github.com/Sage-Bionetworks/repo/zip/refs/tags/v1.0.0");
+		verify(mockArtifactCache).get("https://codeload.github.com/Sage-Bionetworks/repo/zip/refs/tags/v1.0.0");
 		verify(mockS3Client).putObject(eq("dev.aws-glue.sagebase.org"), eq("scripts/v1.0.0/testjob.py"), any(), any());
 		verify(mockS3Client).putObject(eq("dev.aws-glue.sagebase.org"), eq("scripts/v1.0.0/utilities/utils.py"), any(), any());
 		verifyNoMoreInteractions(mockS3Client);
@@ -0,0 +1,214 @@
+package org.sagebionetworks.template.deployment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.sagebionetworks.template.Constants.DEFAULT_DEPLOYMENT_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.ThreadProvider;
+import org.sagebionetworks.template.config.Configuration;
+
+@ExtendWith(MockitoExtension.class)
+public class DeploymentOrchestratorImplTest {
+
+	@Mock
+	ThreadProvider mockThreadProvider;
+	@Mock
+	Configuration mockConfig;
+	@Mock
+	LoggerFactory mockLoggerFactory;
+	@Mock
+	Logger mockLogger;
+	@Mock
+	DeploymentStep mockStep;
+
+	DeploymentOrchestratorImpl orchestrator;
+
+	List<String> executionOrder;
+
+	@BeforeEach
+	public void before() {
+		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+		orchestrator = new DeploymentOrchestratorImpl(mockThreadProvider, mockConfig, mockLoggerFactory);
+		executionOrder = new CopyOnWriteArrayList<>();
+	}
+
+	void setupExecutor() {
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY, DEFAULT_DEPLOYMENT_MAX_CONCURRENCY))
+				.thenReturn(DEFAULT_DEPLOYMENT_MAX_CONCURRENCY);
+		when(mockThreadProvider.newFixedThreadPool(anyInt()))
+				.thenAnswer(invocation -> Executors.newFixedThreadPool(invocation.getArgument(0)));
+	}
+
+	DeploymentNode recordingNode(String name, String... dependencies) {
+		return new DeploymentNode().withName(name).withDependsOn(dependencies).withStep(() -> executionOrder.add(name));
+	}
+
+	@Test
+	public void testDeployRespectsDependencies() throws InterruptedException {
+		setupExecutor();
+		List<DeploymentNode> nodes = Arrays.asList(
+				recordingNode("repo", "subnets", "global"),
+				recordingNode("vpc"),
+				recordingNode("subnets", "vpc"),
+				recordingNode("global"));
+		// call under test
+		orchestrator.deploy(nodes);
+		assertEquals(4, executionOrder.size());
+		assertTrue(executionOrder.indexOf("vpc") < executionOrder.indexOf("subnets"));
+		assertTrue(executionOrder.indexOf("subnets") < executionOrder.indexOf("repo"));
+		assertTrue(executionOrder.indexOf("global") < executionOrder.indexOf("repo"));
+		verify(mockThreadProvider).newFixedThreadPool(DEFAULT_DEPLOYMENT_MAX_CONCURRENCY);
+	}
+
+	@Test
+	public void testDeployRunsIndependentNodesConcurrently() throws InterruptedException {
+		setupExecutor();
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		DeploymentStep waitForOther = () -> {
+			bothStarted.countDown();
+			if (!bothStarted.await(10, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Nodes were not started concurrently");
+			}
+		};
+		List<DeploymentNode> nodes = Arrays.asList(
+				new DeploymentNode().withName("one").withStep(waitForOther),
+				new DeploymentNode().withName("two").withStep(waitForOther));
+		// call under test
+		orchestrator.deploy(nodes);
+		assertEquals(0, bothStarted.getCount());
+	}
+
+	@Test
+	public void testDeployWithMaxConcurrencyBelowOne() throws InterruptedException {
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY, DEFAULT_DEPLOYMENT_MAX_CONCURRENCY))
+				.thenReturn(0);
+		when(mockThreadProvider.newFixedThreadPool(anyInt()))
+				.thenAnswer(invocation -> Executors.newFixedThreadPool(invocation.getArgument(0)));
+		// call under test
+		orchestrator.deploy(Arrays.asList(recordingNode("one"), recordingNode("two")));
+		verify(mockThreadProvider).newFixedThreadPool(1);
+		assertEquals(2, executionOrder.size());
+	}
+
+	@Test
+	public void testDeployWithFailure() throws Exception {
+		setupExecutor();
+		RuntimeException error = new RuntimeException("boom");
+		List<DeploymentNode> nodes = Arrays.asList(
+				new DeploymentNode().withName("vpc").withStep(() -> {
+					throw error;
+				}),
+				recordingNode("subnets", "vpc"),
+				recordingNode("repo", "subnets"),
+				recordingNode("global"));
+		IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> {
+			// call under test
+			orchestrator.deploy(nodes);
+		});
+		assertEquals("Failed to deploy: [vpc] skipped: [subnets, repo]", thrown.getMessage());
+		assertEquals(error, thrown.getSuppressed()[0]);
+		// independent nodes still run
+		assertEquals(Collections.singletonList("global"), executionOrder);
+	}
+
+	@Test
+	public void testDeployWithFailFast() throws Exception {
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY, DEFAULT_DEPLOYMENT_MAX_CONCURRENCY))
+				.thenReturn(1);
+		when(mockThreadProvider.newFixedThreadPool(anyInt()))
+				.thenAnswer(invocation -> Executors.newFixedThreadPool(invocation.getArgument(0)));
+		RuntimeException error = new RuntimeException("boom");
+		List<DeploymentNode> nodes = Arrays.asList(
+				recordingNode("first"),
+				new DeploymentNode().withName("vpc").withStep(() -> {
+					throw error;
+				}),
+				recordingNode("subnets", "vpc"),
+				recordingNode("global"),
+				recordingNode("repo", "first"));
+		IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> {
+			// call under test
+			orchestrator.deploy(nodes, true);
+		});
+		assertEquals("Failed to deploy: [vpc] skipped: [subnets, global, repo]", thrown.getMessage());
+		assertEquals(error, thrown.getSuppressed()[0]);
+		// nothing starts after the failure
+		assertEquals(Collections.singletonList("first"), executionOrder);
+	}
+
+	@Test
+	public void testDeployWithEmpty() throws InterruptedException {
+		// call under test
+		orchestrator.deploy(Collections.emptyList());
+		verifyZeroInteractions(mockThreadProvider);
+	}
+
+	@Test
+	public void testDeployWithCycle() {
+		List<DeploymentNode> nodes = Arrays.asList(
+				new DeploymentNode().withName("root").withStep(mockStep),
+				new DeploymentNode().withName("one").withDependsOn("root", "two").withStep(mockStep),
+				new DeploymentNode().withName("two").withDependsOn("one").withStep(mockStep));
+		IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> {
+			// call under test
+			orchestrator.deploy(nodes);
+		});
+		assertEquals("The deployment graph contains a cycle between: [one, two]", thrown.getMessage());
+		verifyZeroInteractions(mockThreadProvider, mockStep);
+	}
+
+	@Test
+	public void testDeployWithUnknownDependency() {
+		List<DeploymentNode> nodes = Arrays.asList(
+				new DeploymentNode().withName("one").withDependsOn("missing").withStep(mockStep));
+		IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> {
+			// call under test
+			orchestrator.deploy(nodes);
+		});
+		assertEquals("Node: 'one' depends on an unknown node: 'missing'", thrown.getMessage());
+	}
+
+	@Test
+	public void testDeployWithDuplicateName() {
+		List<DeploymentNode> nodes = Arrays.asList(
+				new DeploymentNode().withName("one").withStep(mockStep),
+				new DeploymentNode().withName("one").withStep(mockStep));
+		IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> {
+			// call under test
+			orchestrator.deploy(nodes);
+		});
+		assertEquals("Duplicate node name: 'one'", thrown.getMessage());
+	}
+
+	@Test
+	public void testDeployWithNoStep() {
+		List<DeploymentNode> nodes = Arrays.asList(new DeploymentNode().withName("one"));
+		IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class, () -> {
+			// call under test
+			orchestrator.deploy(nodes);
+		});
+		assertEquals("Node: 'one' does not have a step", thrown.getMessage());
+	}
+}
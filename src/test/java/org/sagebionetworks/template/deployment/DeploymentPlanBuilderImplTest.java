@@ -0,0 +1,121 @@
+package org.sagebionetworks.template.deployment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl.NODE_DATA_CDN;
+import static org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl.NODE_GLOBAL_RESOURCES;
+import static org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl.NODE_ID_GENERATOR;
+import static org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl.NODE_IP_ADDRESS_POOL;
+import static org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl.NODE_NETWORK_LOAD_BALANCERS;
+import static org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl.NODE_PRIVATE_SUBNETS;
+import static org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl.NODE_PUBLIC_SUBNETS;
+import static org.sagebionetworks.template.deployment.DeploymentPlanBuilderImpl.NODE_REPOSITORY;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sagebionetworks.template.cdn.CdnBuilder;
+import org.sagebionetworks.template.datawarehouse.DataWarehouseBuilder;
+import org.sagebionetworks.template.docs.SynapseDocsBuilder;
+import org.sagebionetworks.template.global.GlobalResourcesBuilder;
+import org.sagebionetworks.template.ip.address.IpAddressPoolBuilder;
+import org.sagebionetworks.template.nlb.NetworkLoadBalancerBuilder;
+import org.sagebionetworks.template.repo.IdGeneratorBuilder;
+import org.sagebionetworks.template.repo.RepositoryTemplateBuilder;
+import org.sagebionetworks.template.s3.S3BucketBuilder;
+import org.sagebionetworks.template.vpc.SubnetTemplateBuilder;
+import org.sagebionetworks.template.vpc.VpcTemplateBuilder;
+
+@ExtendWith(MockitoExtension.class)
+public class DeploymentPlanBuilderImplTest {
+
+	@Mock
+	VpcTemplateBuilder mockVpcBuilder;
+	@Mock
+	SubnetTemplateBuilder mockSubnetBuilder;
+	@Mock
+	GlobalResourcesBuilder mockGlobalResourcesBuilder;
+	@Mock
+	S3BucketBuilder mockS3BucketBuilder;
+	@Mock
+	DataWarehouseBuilder mockDataWarehouseBuilder;
+	@Mock
+	SynapseDocsBuilder mockDocsBuilder;
+	@Mock
+	RepositoryTemplateBuilder mockRepositoryBuilder;
+	@Mock
+	CdnBuilder mockCdnBuilder;
+	@Mock
+	IdGeneratorBuilder mockIdGeneratorBuilder;
+	@Mock
+	IpAddressPoolBuilder mockIpAddressPoolBuilder;
+	@Mock
+	NetworkLoadBalancerBuilder mockNetworkLoadBalancerBuilder;
+
+	DeploymentPlanBuilderImpl planBuilder;
+
+	Map<String, DeploymentNode> plan;
+
+	@BeforeEach
+	public void before() {
+		planBuilder = new DeploymentPlanBuilderImpl(mockVpcBuilder, mockSubnetBuilder, mockGlobalResourcesBuilder,
+				mockS3BucketBuilder, mockDataWarehouseBuilder, mockDocsBuilder, mockRepositoryBuilder, mockCdnBuilder,
+				mockIdGeneratorBuilder, mockIpAddressPoolBuilder, mockNetworkLoadBalancerBuilder);
+		// call under test
+		List<DeploymentNode> nodes = planBuilder.buildFullStackPlan();
+		plan = nodes.stream().collect(Collectors.toMap(DeploymentNode::getName, Function.identity()));
+	}
+
+	@Test
+	public void testBuildFullStackPlanIsValid() {
+		// should not throw
+		new DeploymentOrchestratorImpl(null, null, clazz -> null).validateGraph(planBuilder.buildFullStackPlan());
+		assertEquals(13, plan.size());
+	}
+
+	@Test
+	public void testRepositoryDependencies() throws Exception {
+		DeploymentNode repo = plan.get(NODE_REPOSITORY);
+		assertEquals(new HashSet<>(Arrays.asList(NODE_PRIVATE_SUBNETS, DeploymentPlanBuilderImpl.NODE_GLOBAL_RESOURCES,
+				DeploymentPlanBuilderImpl.NODE_S3_BUCKETS)), repo.getDependencies());
+		repo.getStep().deploy();
+		verify(mockRepositoryBuilder).buildAndDeploy();
+	}
+
+	@Test
+	public void testPrivateSubnetsStep() throws Exception {
+		plan.get(NODE_PRIVATE_SUBNETS).getStep().deploy();
+		verify(mockSubnetBuilder).buildAndDeployPrivateSubnets();
+	}
+
+	@Test
+	public void testDataCdnStep() throws Exception {
+		plan.get(NODE_DATA_CDN).getStep().deploy();
+		verify(mockCdnBuilder).buildCdn(CdnBuilder.Type.DATA);
+	}
+
+	@Test
+	public void testIdGeneratorDependencies() throws Exception {
+		DeploymentNode idGenerator = plan.get(NODE_ID_GENERATOR);
+		assertEquals(new HashSet<>(Arrays.asList(NODE_PRIVATE_SUBNETS, NODE_GLOBAL_RESOURCES)), idGenerator.getDependencies());
+		idGenerator.getStep().deploy();
+		verify(mockIdGeneratorBuilder).buildAndDeploy();
+	}
+
+	@Test
+	public void testNetworkLoadBalancersDependencies() throws Exception {
+		DeploymentNode nlbs = plan.get(NODE_NETWORK_LOAD_BALANCERS);
+		assertEquals(new HashSet<>(Arrays.asList(NODE_IP_ADDRESS_POOL, NODE_PUBLIC_SUBNETS)), nlbs.getDependencies());
+		nlbs.getStep().deploy();
+		verify(mockNetworkLoadBalancerBuilder).buildAndDeploy();
+	}
+}
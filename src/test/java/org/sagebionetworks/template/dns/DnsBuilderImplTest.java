@@ -6,8 +6,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.sagebionetworks.template.Route53Client;
+import org.sagebionetworks.template.TemplateUtils;
 
+import com.amazonaws.services.route53.model.AliasTarget;
+import com.amazonaws.services.route53.model.ResourceRecord;
+import com.amazonaws.services.route53.model.ResourceRecordSet;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.eq;
@@ -35,7 +44,30 @@ class DnsBuilderImplTest {
 		when(mockConfig.getRecordSetDescriptorList()).thenReturn(mockRecordSetDescriptors);
 		// call under test
 		dnsBuilder.buildDns(mockConfig);
-		verify(mockRoute53Client).changeResourceRecordSets(eq("hostedZoneId"), eq(mockRecordSetDescriptors), eq(10));
+		verify(mockRoute53Client).changeResourceRecordSets(eq("hostedZoneId"), eq(mockRecordSetDescriptors), eq(500));
+	}
+
+	@Test
+	void testListDns() throws Exception {
+		ResourceRecordSet cname = new ResourceRecordSet("www.synapse.org", "CNAME").withTTL(600L)
+				.withResourceRecords(new ResourceRecord("prod.synapse.org"));
+		ResourceRecordSet alias = new ResourceRecordSet("synapse.org", "A")
+				.withAliasTarget(new AliasTarget("Z2FDTNDATAQYW2", "d1.cloudfront.net").withEvaluateTargetHealth(false));
+		when(mockRoute53Client.listResourceRecordSets("hostedZoneId", DnsBuilderImpl.LISTED_TYPES)).thenReturn(Stream.of(cname, alias));
+		StringWriter writer = new StringWriter();
+		// call under test
+		dnsBuilder.listDns("hostedZoneId", writer);
+		DnsConfig expected = new DnsConfig("hostedZoneId", Arrays.asList(new RecordSetDescriptor(cname), new RecordSetDescriptor(alias)));
+		assertEquals(TemplateUtils.prettyPrint(expected), writer.toString());
+	}
+
+	@Test
+	void testListDnsEmpty() throws Exception {
+		when(mockRoute53Client.listResourceRecordSets("hostedZoneId", DnsBuilderImpl.LISTED_TYPES)).thenReturn(Stream.empty());
+		StringWriter writer = new StringWriter();
+		// call under test
+		dnsBuilder.listDns("hostedZoneId", writer);
+		assertEquals(TemplateUtils.prettyPrint(new DnsConfig("hostedZoneId", Collections.emptyList())), writer.toString());
 	}
 
-}
\ No newline at end of file
+}
@@ -2,31 +2,55 @@ package org.sagebionetworks.template.docs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
 
 import org.json.JSONObject;
 
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_INSTANCE;
+import static org.sagebionetworks.template.Constants.DEFAULT_DOCS_SYNC_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DOCS_SYNC_MAX_CONCURRENCY;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DOCS_SOURCE_BUCKET;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DOCS_DESTINATION_BUCKET;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_DOCS_DEPLOYMENT_FLAG;
 import static org.sagebionetworks.template.Constants.DOCS_STACK_INSTANCE_JSON_FILE;
+import static org.sagebionetworks.template.Constants.DOCS_STACK_MANIFEST_FILE;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -35,9 +59,15 @@ import org.sagebionetworks.template.config.RepoConfiguration;
 import org.sagebionetworks.template.s3.S3TransferManager;
 import org.sagebionetworks.template.s3.S3TransferManagerFactory;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.model.ListObjectsRequest;
-import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest;
+import com.amazonaws.services.s3.model.DeleteObjectsRequest.KeyVersion;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.Copy;
 
@@ -57,19 +87,20 @@ public class SynapseDocsBuilderImplTest {
 	private RepoConfiguration mockConfig;
 	
 	@Mock
-	private ObjectListing mockSourceListing;
-
-	@Mock
-	private ObjectListing mockDestinationListing;
+	private Copy mockCopy;
 	
-	@Mock
-	private ListObjectsRequest mockSourceListRequest;
+	@Captor
+	private ArgumentCaptor<ListObjectsV2Request> listRequestCaptor;
 	
-	@Mock
-	private ListObjectsRequest mockDestinationListRequest;
+	@Captor
+	private ArgumentCaptor<DeleteObjectsRequest> deleteRequestCaptor;
 	
-	@Mock
-	private Copy mockCopy;
+	@Captor
+	private ArgumentCaptor<PutObjectRequest> putRequestCaptor;
+	
+	private static final int PAGE_SIZE = 2;
+	
+	private Map<String, List<S3ObjectSummary>> bucketObjects;
 	
 	private String prodInstance;
 	private String sourceBucket;
@@ -105,6 +136,7 @@ public class SynapseDocsBuilderImplTest {
 		object.setKey("objectKey");
 		object.setETag("etag");
 		objects = Arrays.asList(object);
+		bucketObjects = new HashMap<>();
 		builder = new SynapseDocsBuilderImpl(mockS3Client, mockConfig, mockS3TransferManagerFactory);
 		builderSpy = spy(builder);
 	}
@@ -193,40 +225,77 @@ public class SynapseDocsBuilderImplTest {
 	
 	@Test
 	public void testSyncWithDestinationEmpty() throws Exception {
-		doAnswer(invocation -> mockDestinationListRequest)
-			.when(builderSpy).createListObjectsRequest(destinationBucket, prefix);
-		doAnswer(invocation -> mockSourceListRequest)
-			.when(builderSpy).createListObjectsRequest(sourceBucket, prefix);
-		doAnswer(invocation -> new ArrayList<S3ObjectSummary>())
-			.when(builderSpy).getAllS3Objects(mockDestinationListRequest);
-		doAnswer(invocation -> objects)
-			.when(builderSpy).getAllS3Objects(mockSourceListRequest);
-		when(mockS3TransferManagerFactory.createNewS3TransferManager()).thenReturn(mockS3TransferManager);
+		setupSync();
+		bucketObjects.put(sourceBucket, objects);
 		when(mockS3TransferManager.copy(any(), any(), any(), any())).thenReturn(mockCopy);
-		when(mockConfig.getProperty(PROPERTY_KEY_INSTANCE)).thenReturn(prodInstance);
 		// call under test
-		builderSpy.sync(sourceBucket, destinationBucket);
+		builder.sync(sourceBucket, destinationBucket);
+		verify(mockS3TransferManagerFactory).createNewS3TransferManager(16L * 1024 * 1024, DEFAULT_DOCS_SYNC_MAX_CONCURRENCY);
 		verify(mockS3TransferManager).close();
 		verify(mockS3TransferManager).copy(sourceBucket, object.getKey(), destinationBucket, object.getKey());
-		verify(mockS3Client, never()).deleteObject(any(), any());
+		verify(mockCopy).waitForCompletion();
+		verify(mockS3Client, never()).deleteObjects(any());
+		verify(mockS3Client).deleteObject(destinationBucket, DOCS_STACK_MANIFEST_FILE);
+		assertEquals("{\"objects\":{\"objectKey\":\"etag\"}}", getWrittenManifest().toString());
 		verify(mockS3Client).putObject(destinationBucket, DOCS_STACK_INSTANCE_JSON_FILE, jsonUpToDate);
 	}
 	
+	@Test
+	public void testSyncWithManifest() throws Exception {
+		setupSync();
+		bucketObjects.put(sourceBucket, objects);
+		// the manifest is used instead of listing the destination
+		bucketObjects.put(destinationBucket, Arrays.asList(new S3ObjectSummary()));
+		doReturn(manifestObject(gzip("{\"objects\":{\"objectKey\":\"etag\",\"staleKey\":\"etag\",\"instance.json\":\"etag\"}}")))
+			.when(mockS3Client).getObject(destinationBucket, DOCS_STACK_MANIFEST_FILE);
+		// call under test
+		builder.sync(sourceBucket, destinationBucket);
+		verify(mockS3Client).listObjectsV2(listRequestCaptor.capture());
+		assertEquals(sourceBucket, listRequestCaptor.getValue().getBucketName());
+		verify(mockS3TransferManager, never()).copy(any(), any(), any(), any());
+		verify(mockS3Client).deleteObjects(deleteRequestCaptor.capture());
+		assertEquals(Arrays.asList("staleKey"), getKeys(deleteRequestCaptor.getValue()));
+		assertEquals("{\"objects\":{\"objectKey\":\"etag\"}}", getWrittenManifest().toString());
+		verify(mockS3Client).putObject(destinationBucket, DOCS_STACK_INSTANCE_JSON_FILE, jsonUpToDate);
+	}
+	
+	@Test
+	public void testSyncWithCorruptManifest() throws Exception {
+		setupSync();
+		bucketObjects.put(sourceBucket, objects);
+		bucketObjects.put(destinationBucket, objects);
+		doReturn(manifestObject("not gzip".getBytes(StandardCharsets.UTF_8)))
+			.when(mockS3Client).getObject(destinationBucket, DOCS_STACK_MANIFEST_FILE);
+		// call under test
+		builder.sync(sourceBucket, destinationBucket);
+		// falls back to listing the destination
+		verify(mockS3Client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+		verify(mockS3TransferManager, never()).copy(any(), any(), any(), any());
+		verify(mockS3Client, never()).deleteObjects(any());
+	}
+	
+	@Test
+	public void testReadManifestWithFailure() {
+		AmazonS3Exception forbidden = new AmazonS3Exception("Forbidden");
+		forbidden.setStatusCode(403);
+		when(mockS3Client.getObject(destinationBucket, DOCS_STACK_MANIFEST_FILE)).thenThrow(forbidden);
+		AmazonS3Exception e = assertThrows(AmazonS3Exception.class, () -> {
+			// call under test
+			builder.readManifest(destinationBucket);
+		});
+		assertEquals(forbidden, e);
+	}
+	
 	@Test
 	public void testSyncWithDestinationSameKeyWithSameETag() throws Exception {
-		doAnswer(invocation -> mockDestinationListRequest)
-			.when(builderSpy).createListObjectsRequest(destinationBucket, prefix);
-		doAnswer(invocation -> mockSourceListRequest)
-			.when(builderSpy).createListObjectsRequest(sourceBucket, prefix);
-		doAnswer(invocation -> objects).when(builderSpy).getAllS3Objects(mockDestinationListRequest);
-		doAnswer(invocation -> objects).when(builderSpy).getAllS3Objects(mockSourceListRequest);
-		when(mockS3TransferManagerFactory.createNewS3TransferManager()).thenReturn(mockS3TransferManager);
-		when(mockConfig.getProperty(PROPERTY_KEY_INSTANCE)).thenReturn(prodInstance);
+		setupSync();
+		bucketObjects.put(destinationBucket, objects);
+		bucketObjects.put(sourceBucket, objects);
 		// call under test
-		builderSpy.sync(sourceBucket, destinationBucket);
+		builder.sync(sourceBucket, destinationBucket);
 		verify(mockS3TransferManager).close();
 		verify(mockS3TransferManager, never()).copy(any(), any(), any(), any());
-		verify(mockS3Client, never()).deleteObject(any(), any());
+		verify(mockS3Client, never()).deleteObjects(any());
 		verify(mockS3Client).putObject(destinationBucket, DOCS_STACK_INSTANCE_JSON_FILE, jsonUpToDate);
 	}
 	
@@ -235,21 +304,15 @@ public class SynapseDocsBuilderImplTest {
 		S3ObjectSummary newObject = new S3ObjectSummary();
 		newObject.setETag("different-etag");
 		newObject.setKey(object.getKey());
-		List<S3ObjectSummary> newObjects = Arrays.asList(newObject);
-		doAnswer(invocation -> mockDestinationListRequest)
-			.when(builderSpy).createListObjectsRequest(destinationBucket, prefix);
-		doAnswer(invocation -> mockSourceListRequest)
-			.when(builderSpy).createListObjectsRequest(sourceBucket, prefix);
-		doAnswer(invocation -> newObjects).when(builderSpy).getAllS3Objects(mockDestinationListRequest);
-		doAnswer(invocation -> objects).when(builderSpy).getAllS3Objects(mockSourceListRequest);
-		when(mockS3TransferManagerFactory.createNewS3TransferManager()).thenReturn(mockS3TransferManager);
-		when(mockConfig.getProperty(PROPERTY_KEY_INSTANCE)).thenReturn(prodInstance);
+		setupSync();
+		bucketObjects.put(destinationBucket, Arrays.asList(newObject));
+		bucketObjects.put(sourceBucket, objects);
 		when(mockS3TransferManager.copy(any(), any(), any(), any())).thenReturn(mockCopy);
 		// call under test
-		builderSpy.sync(sourceBucket, destinationBucket);
+		builder.sync(sourceBucket, destinationBucket);
 		verify(mockS3TransferManager).close();
 		verify(mockS3TransferManager).copy(sourceBucket, object.getKey(), destinationBucket, object.getKey());
-		verify(mockS3Client, never()).deleteObject(any(), any());
+		verify(mockS3Client, never()).deleteObjects(any());
 		verify(mockS3Client).putObject(destinationBucket, DOCS_STACK_INSTANCE_JSON_FILE, jsonUpToDate);
 	}
 	
@@ -257,54 +320,164 @@ public class SynapseDocsBuilderImplTest {
 	public void testSyncWithDestinationDeleteExistingFile() throws Exception {
 		S3ObjectSummary newObject = new S3ObjectSummary();
 		newObject.setKey("someKeyNotInSource");
-		List<S3ObjectSummary> newObjects = Arrays.asList(newObject);
-		doAnswer(invocation -> mockDestinationListRequest)
-			.when(builderSpy).createListObjectsRequest(destinationBucket, prefix);
-		doAnswer(invocation -> mockSourceListRequest)
-			.when(builderSpy).createListObjectsRequest(sourceBucket, prefix);
-		doAnswer(invocation -> newObjects).when(builderSpy).getAllS3Objects(mockDestinationListRequest);
-		doAnswer(invocation -> objects).when(builderSpy).getAllS3Objects(mockSourceListRequest);
-		when(mockS3TransferManagerFactory.createNewS3TransferManager()).thenReturn(mockS3TransferManager);
-		when(mockConfig.getProperty(PROPERTY_KEY_INSTANCE)).thenReturn(prodInstance);
+		setupSync();
+		bucketObjects.put(destinationBucket, Arrays.asList(newObject));
+		bucketObjects.put(sourceBucket, objects);
 		when(mockS3TransferManager.copy(any(), any(), any(), any())).thenReturn(mockCopy);
 		// call under test
-		builderSpy.sync(sourceBucket, destinationBucket);
+		builder.sync(sourceBucket, destinationBucket);
 		verify(mockS3TransferManager).close();
 		verify(mockS3TransferManager).copy(sourceBucket, object.getKey(), destinationBucket, object.getKey());
-		verify(mockS3Client).deleteObject(destinationBucket, newObject.getKey());
+		verify(mockS3Client).deleteObjects(deleteRequestCaptor.capture());
+		DeleteObjectsRequest request = deleteRequestCaptor.getValue();
+		assertEquals(destinationBucket, request.getBucketName());
+		assertEquals(Arrays.asList(newObject.getKey()), getKeys(request));
 		verify(mockS3Client).putObject(destinationBucket, DOCS_STACK_INSTANCE_JSON_FILE, jsonUpToDate);
 	}
 	
 	@Test
-	public void testGetAllS3Objects() {
-		when(mockS3Client.listObjects(any(ListObjectsRequest.class))).thenReturn(mockSourceListing);
-		when(mockSourceListing.getObjectSummaries()).thenReturn(objects);
-		when(mockSourceListing.isTruncated()).thenReturn(false);
+	public void testSyncWithManyPages() throws Exception {
+		setupSync();
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_DOCS_SYNC_MAX_CONCURRENCY, DEFAULT_DOCS_SYNC_MAX_CONCURRENCY)).thenReturn(2);
+		List<S3ObjectSummary> sourceObjects = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			S3ObjectSummary sourceObject = new S3ObjectSummary();
+			sourceObject.setKey("key" + i);
+			sourceObject.setETag("etag" + i);
+			sourceObjects.add(sourceObject);
+		}
+		bucketObjects.put(sourceBucket, sourceObjects);
+		List<String> copied = new ArrayList<>();
+		when(mockS3TransferManager.copy(any(), any(), any(), any())).thenAnswer(invocation -> {
+			copied.add(invocation.getArgument(1));
+			return mockCopy;
+		});
+		// call under test
+		builder.sync(sourceBucket, destinationBucket);
+		verify(mockS3TransferManagerFactory).createNewS3TransferManager(16L * 1024 * 1024, 2);
+		// three pages
+		verify(mockS3Client, times(4)).listObjectsV2(any(ListObjectsV2Request.class));
+		assertEquals(Arrays.asList("key0", "key1", "key2", "key3", "key4"), copied);
+		verify(mockCopy, times(5)).waitForCompletion();
+		verify(mockS3TransferManager).close();
+	}
+	
+	@Test
+	public void testSyncWithCopyFailure() throws Exception {
+		setupSync();
+		bucketObjects.put(sourceBucket, objects);
+		when(mockS3TransferManager.copy(any(), any(), any(), any())).thenReturn(mockCopy);
+		AmazonClientException failure = new AmazonClientException("failed");
+		doThrow(failure).when(mockCopy).waitForCompletion();
+		RuntimeException e = assertThrows(RuntimeException.class, () -> {
+			// call under test
+			builder.sync(sourceBucket, destinationBucket);
+		});
+		assertEquals(failure, e.getCause());
+		verify(mockS3TransferManager).close();
+		verify(mockS3Client, never()).deleteObjects(any());
+		verify(mockS3Client, never()).putObject(any(), any(), any(String.class));
+	}
+	
+	@Test
+	public void testForEachS3Object() {
+		when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> listPage(invocation.getArgument(0)));
+		bucketObjects.put(sourceBucket, objects);
+		List<S3ObjectSummary> allObjects = new ArrayList<>();
 		// call under test
-		List<S3ObjectSummary> allObjects = builder.getAllS3Objects(mockSourceListRequest);
-		verify(mockSourceListRequest).setMarker(mockSourceListing.getNextMarker());
-		assertEquals(allObjects, objects);
+		builder.forEachS3Object(sourceBucket, prefix, allObjects::add);
+		assertEquals(objects, allObjects);
+		verify(mockS3Client).listObjectsV2(listRequestCaptor.capture());
+		assertEquals(sourceBucket, listRequestCaptor.getValue().getBucketName());
+		assertEquals(prefix, listRequestCaptor.getValue().getPrefix());
 	}
 	
 	@Test
-	public void testGetAllS3ObjectsWithTruncatedList() {
+	public void testForEachS3ObjectWithTruncatedList() {
+		when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> listPage(invocation.getArgument(0)));
 		S3ObjectSummary nextObject = new S3ObjectSummary();
-		List<S3ObjectSummary> nextPageObjects = Arrays.asList(nextObject);
-		when(mockS3Client.listObjects(any(ListObjectsRequest.class))).thenReturn(mockSourceListing);
-		when(mockSourceListing.getObjectSummaries()).thenReturn(objects,nextPageObjects);
-		when(mockSourceListing.isTruncated()).thenReturn(true, false);
+		List<S3ObjectSummary> expected = Arrays.asList(object, object, nextObject);
+		bucketObjects.put(sourceBucket, expected);
+		List<S3ObjectSummary> allObjects = new ArrayList<>();
 		// call under test
-		List<S3ObjectSummary> allObjects = builder.getAllS3Objects(mockSourceListRequest);
-		List<S3ObjectSummary> expected = Arrays.asList(object, nextObject);
-		verify(mockSourceListRequest, times(2)).setMarker(mockSourceListing.getNextMarker());
-		assertEquals(allObjects, expected);
+		builder.forEachS3Object(sourceBucket, prefix, allObjects::add);
+		verify(mockS3Client, times(2)).listObjectsV2(any(ListObjectsV2Request.class));
+		assertEquals(expected, allObjects);
 	}
 	
 	@Test
-	public void testCreateListObjectsRequest() {
+	public void testDeleteObjectsInBatches() {
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < 2500; i++) {
+			keys.add("key" + i);
+		}
 		// call under test
-		ListObjectsRequest request = builder.createListObjectsRequest(sourceBucket, prefix);
-		assertEquals(request.getBucketName(), sourceBucket);
-		assertEquals(request.getPrefix(), prefix);
+		builder.deleteObjects(destinationBucket, keys);
+		verify(mockS3Client, times(3)).deleteObjects(deleteRequestCaptor.capture());
+		List<DeleteObjectsRequest> requests = deleteRequestCaptor.getAllValues();
+		assertEquals(keys.subList(0, 1000), getKeys(requests.get(0)));
+		assertEquals(keys.subList(1000, 2000), getKeys(requests.get(1)));
+		assertEquals(keys.subList(2000, 2500), getKeys(requests.get(2)));
+		assertTrue(requests.get(0).getQuiet());
+	}
+	
+	@Test
+	public void testDeleteObjectsWithNoKeys() {
+		// call under test
+		builder.deleteObjects(destinationBucket, Collections.emptyList());
+		verify(mockS3Client, never()).deleteObjects(any());
+	}
+	
+	void setupSync() {
+		when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> listPage(invocation.getArgument(0)));
+		when(mockS3TransferManagerFactory.createNewS3TransferManager(anyLong(), anyInt())).thenReturn(mockS3TransferManager);
+		lenient().when(mockConfig.getIntegerProperty(PROPERTY_KEY_DOCS_SYNC_MAX_CONCURRENCY, DEFAULT_DOCS_SYNC_MAX_CONCURRENCY))
+				.thenReturn(DEFAULT_DOCS_SYNC_MAX_CONCURRENCY);
+		lenient().when(mockConfig.getProperty(PROPERTY_KEY_INSTANCE)).thenReturn(prodInstance);
+		AmazonS3Exception notFound = new AmazonS3Exception("Not Found");
+		notFound.setStatusCode(404);
+		lenient().when(mockS3Client.getObject(destinationBucket, DOCS_STACK_MANIFEST_FILE)).thenThrow(notFound);
+	}
+	
+	static S3Object manifestObject(byte[] content) {
+		S3Object object = new S3Object();
+		object.setObjectContent(new ByteArrayInputStream(content));
+		return object;
+	}
+	
+	static byte[] gzip(String content) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		return bytes.toByteArray();
+	}
+	
+	JSONObject getWrittenManifest() throws IOException {
+		verify(mockS3Client).putObject(putRequestCaptor.capture());
+		PutObjectRequest request = putRequestCaptor.getValue();
+		assertEquals(destinationBucket, request.getBucketName());
+		assertEquals(DOCS_STACK_MANIFEST_FILE, request.getKey());
+		try (InputStream in = new GZIPInputStream(request.getInputStream())) {
+			return new JSONObject(IOUtils.toString(in, StandardCharsets.UTF_8));
+		}
+	}
+	
+	/**
+	 * Lists the objects of the request's bucket in pages of {@link #PAGE_SIZE}.
+	 */
+	ListObjectsV2Result listPage(ListObjectsV2Request request) {
+		List<S3ObjectSummary> all = bucketObjects.getOrDefault(request.getBucketName(), Collections.emptyList());
+		int start = request.getContinuationToken() == null ? 0 : Integer.parseInt(request.getContinuationToken());
+		int end = Math.min(all.size(), start + PAGE_SIZE);
+		ListObjectsV2Result result = new ListObjectsV2Result();
+		result.getObjectSummaries().addAll(all.subList(start, end));
+		result.setTruncated(end < all.size());
+		result.setNextContinuationToken(result.isTruncated() ? String.valueOf(end) : null);
+		return result;
+	}
+	
+	static List<String> getKeys(DeleteObjectsRequest request) {
+		return request.getKeys().stream().map(KeyVersion::getKey).collect(Collectors.toList());
 	}
 }
@@ -19,6 +19,7 @@ import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.SesClientImpl;
 import org.sagebionetworks.template.StackTagsProvider;
 import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.TemplateRendererImpl;
 import org.sagebionetworks.template.config.Configuration;
 
 import java.util.LinkedList;
@@ -71,7 +72,7 @@ public class GlobalResourcesBuilderImplTest {
         Tag t = new Tag().withKey("aKey").withValue("aValue");
         expectedTags.add(t);
 
-        builder = new GlobalResourcesBuilderImpl(mockCloudFormationClient, velocityEngine, mockConfig, mockLoggerFactory, mockStackTagsProvider, mockSesClient);
+        builder = new GlobalResourcesBuilderImpl(mockCloudFormationClient, new TemplateRendererImpl(velocityEngine), mockConfig, mockLoggerFactory, mockStackTagsProvider, mockSesClient);
 
     }
 
@@ -28,6 +28,7 @@ import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
 import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.TemplateRendererImpl;
 import org.sagebionetworks.template.config.Configuration;
 
 @ExtendWith(MockitoExtension.class)
@@ -54,12 +55,12 @@ public class IpAddressPoolBuilderImplTest {
 	@BeforeEach
 	public void before() {
 		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
-		builder = new IpAddressPoolBuilderImpl(mockCloudFormationClient, velocityEngine, mockConfig, mockLoggerFactory,
+		builder = new IpAddressPoolBuilderImpl(mockCloudFormationClient, new TemplateRendererImpl(velocityEngine), mockConfig, mockLoggerFactory,
 				mockStackTagsProvider);
 	}
 
 	@Test
-	public void testBuildAndDeploy() {
+	public void testBuildAndDeploy() throws InterruptedException {
 		when(mockConfig.getComaSeparatedProperty(PROPERTY_KEY_NLB_RECORDS_CSV))
 				.thenReturn(new String[] { "one", "two" });
 		when(mockConfig.getIntegerProperty(PROPERTY_KEY_IP_ADDRESS_POOL_NUMBER_AZ_PER_NLB)).thenReturn(6);
@@ -68,6 +69,7 @@ public class IpAddressPoolBuilderImplTest {
 		builder.buildAndDeploy();
 
 		verify(mockCloudFormationClient).createOrUpdateStack(requestCaptor.capture());
+		verify(mockCloudFormationClient).waitForStackToComplete("dev-ip-address-pool");
 		CreateOrUpdateStackRequest request = requestCaptor.getValue();
 		assertNotNull(request);
 		assertEquals("dev-ip-address-pool", request.getStackName());
@@ -28,6 +28,7 @@ import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
 import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.TemplateRendererImpl;
 import org.sagebionetworks.template.config.Configuration;
 
 @ExtendWith(MockitoExtension.class)
@@ -55,12 +56,12 @@ public class NetworkLoadBalancerBuilderImplTest {
 	@BeforeEach
 	public void before() {
 		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
-		builder = new NetworkLoadBalancerBuilderImpl(mockCloudFormationClient, velocityEngine, mockConfig,
+		builder = new NetworkLoadBalancerBuilderImpl(mockCloudFormationClient, new TemplateRendererImpl(velocityEngine), mockConfig,
 				mockLoggerFactory, mockStackTagsProvider);
 	}
 
 	@Test
-	public void testBuildAndDeploy() {
+	public void testBuildAndDeploy() throws InterruptedException {
 		when(mockConfig.getComaSeparatedProperty(PROPERTY_KEY_NLB_RECORDS_CSV))
 				.thenReturn(new String[] { "www.synapse.org", "staging.synapse.org" });
 		when(mockConfig.getProperty(PROPERTY_KEY_STACK)).thenReturn("dev");
@@ -70,6 +71,7 @@ public class NetworkLoadBalancerBuilderImplTest {
 		builder.buildAndDeploy();
 
 		verify(mockCloudFormationClient).createOrUpdateStack(requestCaptor.capture());
+		verify(mockCloudFormationClient).waitForStackToComplete("dev-nlbs");
 		CreateOrUpdateStackRequest request = requestCaptor.getValue();
 		assertNotNull(request);
 		assertEquals("dev-nlbs", request.getStackName());
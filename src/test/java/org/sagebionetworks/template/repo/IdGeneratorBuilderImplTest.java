@@ -25,6 +25,7 @@ import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.TemplateRendererImpl;
 import org.sagebionetworks.template.repo.beanstalk.SecretBuilder;
 
 import com.amazonaws.services.cloudformation.model.Parameter;
@@ -62,19 +63,20 @@ public class IdGeneratorBuilderImplTest {
 		when(config.getProperty(PROPERTY_KEY_ID_GENERATOR_HOSTED_ZONE_ID)).thenReturn("hostedZoneId");
 		when(config.getProperty(PROPERTY_KEY_OLD_VPC_CIDR)).thenReturn("1.2.3.4/16");
 
-		builder = new IdGeneratorBuilderImpl(mockCloudFormationClient, velocityEngine, config, mockLoggerFactory, mockSecretBuilder);
+		builder = new IdGeneratorBuilderImpl(mockCloudFormationClient, new TemplateRendererImpl(velocityEngine), config, mockLoggerFactory, mockSecretBuilder);
 	}
 
 	@Test
-	public void testBuildProd() {
+	public void testBuildProd() throws InterruptedException {
 		when(config.getProperty(PROPERTY_KEY_STACK)).thenReturn("prod");
 		when(config.getProperty(PROPERTY_KEY_VPC_SUBNET_COLOR)).thenReturn("Green");
 		when(mockSecretBuilder.getIdGeneratorPassword()).thenReturn("somePassword");
-		builder = new IdGeneratorBuilderImpl(mockCloudFormationClient, velocityEngine, config, mockLoggerFactory, mockSecretBuilder);
+		builder = new IdGeneratorBuilderImpl(mockCloudFormationClient, new TemplateRendererImpl(velocityEngine), config, mockLoggerFactory, mockSecretBuilder);
 
 		// call under test
 		builder.buildAndDeploy();
 		verify(mockCloudFormationClient).createOrUpdateStack(requestCaptor.capture());
+		verify(mockCloudFormationClient).waitForStackToComplete("prod-id-generator-green");
 		CreateOrUpdateStackRequest request = requestCaptor.getValue();
 		assertEquals("prod-id-generator-green", request.getStackName());
 		JSONObject template = new JSONObject(request.getTemplateBody());
@@ -8,8 +8,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -29,6 +31,7 @@ import static org.sagebionetworks.template.Constants.NOSNAPSHOT;
 import static org.sagebionetworks.template.Constants.OUTPUT_NAME_SUFFIX_REPOSITORY_DB_ENDPOINT;
 import static org.sagebionetworks.template.Constants.PARAMETER_MYSQL_PASSWORD;
 import static org.sagebionetworks.template.Constants.PARAM_KEY_TIME_TO_LIVE;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BEANSTALK_CONCURRENT_DEPLOYMENT;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BEANSTALK_HEALTH_CHECK_URL;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BEANSTALK_MAX_INSTANCES;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_BEANSTALK_MIN_INSTANCES;
@@ -95,15 +98,20 @@ import org.sagebionetworks.template.Constants;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.Ec2Client;
 import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.LookupCacheImpl;
 import org.sagebionetworks.template.StackTagsProvider;
 import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.TemplateRendererImpl;
 import org.sagebionetworks.template.config.RepoConfiguration;
 import org.sagebionetworks.template.config.TimeToLive;
+import org.sagebionetworks.template.deployment.DeploymentNode;
+import org.sagebionetworks.template.deployment.DeploymentOrchestrator;
 import org.sagebionetworks.template.repo.beanstalk.ArtifactCopy;
 import org.sagebionetworks.template.repo.beanstalk.ElasticBeanstalkSolutionStackNameProvider;
 import org.sagebionetworks.template.repo.beanstalk.EnvironmentDescriptor;
 import org.sagebionetworks.template.repo.beanstalk.EnvironmentType;
 import org.sagebionetworks.template.repo.beanstalk.SecretBuilder;
+import org.sagebionetworks.template.repo.beanstalk.SecretBuilderImpl;
 import org.sagebionetworks.template.repo.beanstalk.SourceBundle;
 import org.sagebionetworks.template.repo.cloudwatchlogs.CloudwatchLogsVelocityContextProvider;
 import org.sagebionetworks.template.repo.cloudwatchlogs.LogDescriptor;
@@ -153,10 +161,15 @@ public class RepositoryTemplateBuilderImplTest {
 	private CloudwatchLogsVelocityContextProvider mockCwlContextProvider;
 	@Mock
 	private TimeToLive mockTimeToLive;
+	@Mock
+	private DeploymentOrchestrator mockDeploymentOrchestrator;
+	@Captor
+	private ArgumentCaptor<List<DeploymentNode>> nodesCaptor;
 	@Captor
 	private ArgumentCaptor<CreateOrUpdateStackRequest> requestCaptor;
 
 	private VelocityEngine velocityEngine;
+	private LookupCacheImpl lookupCache;
 	private RepositoryTemplateBuilderImpl builder;
 	private RepositoryTemplateBuilderImpl builderSpy;
 
@@ -184,10 +197,11 @@ public class RepositoryTemplateBuilderImplTest {
 		expectedTags.add(t);
 
 		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
-		builder = new RepositoryTemplateBuilderImpl(mockCloudFormationClient, velocityEngine, config, mockLoggerFactory,
+		lookupCache = new LookupCacheImpl();
+		builder = new RepositoryTemplateBuilderImpl(mockCloudFormationClient, new TemplateRendererImpl(velocityEngine), config, mockLoggerFactory,
 				mockArtifactCopy, mockSecretBuilder, Sets.newHashSet(mockContextProvider1, mockContextProvider2),
 				mockElasticBeanstalkSolutionStackNameProvider, mockStackTagsProvider, mockCwlContextProvider,
-				mockEc2Client, mockBeanstalkClient, mockTimeToLive);
+				mockEc2Client, mockBeanstalkClient, mockTimeToLive, mockDeploymentOrchestrator, lookupCache);
 		builderSpy = Mockito.spy(builder);
 
 		stack = "dev";
@@ -1361,6 +1375,21 @@ public class RepositoryTemplateBuilderImplTest {
 		verify(builderSpy).buildAndDeployStack(mockContext, e2.getName(), TEMPALTE_BEAN_STALK_ENVIRONMENT, null);
 	}
 	
+	@Test
+	public void testBuildEnvironmentsDropsSecretValues() {
+
+		when(mockSecretBuilder.createSecrets()).thenReturn(secretsSouce);
+		when(mockTimeToLive.createTimeToLiveParameter()).thenReturn(Optional.empty());
+		doReturn(List.of()).when(builderSpy).createEnvironments(any());
+		lookupCache.get(SecretBuilderImpl.LOOKUP_SECRET_VALUE, "dev.password", k -> "plaintext");
+
+		// call under test
+		builderSpy.buildEnvironments(sharedResouces);
+
+		// the plaintext value is no longer held once the bundle is uploaded.
+		assertEquals("reloaded", lookupCache.get(SecretBuilderImpl.LOOKUP_SECRET_VALUE, "dev.password", k -> "reloaded"));
+	}
+	
 	@Test
 	public void testBuildEnvironmentsWithTTL() {
 
@@ -1389,6 +1418,95 @@ public class RepositoryTemplateBuilderImplTest {
 	}
 	
 
+	@Test
+	public void testBuildEnvironmentsConcurrently() throws Exception {
+		when(config.getBooleanProperty(PROPERTY_KEY_BEANSTALK_CONCURRENT_DEPLOYMENT, false)).thenReturn(true);
+		when(mockSecretBuilder.createSecrets()).thenReturn(secretsSouce);
+		Parameter ttl = new Parameter().withParameterKey("ttl").withParameterValue("value");
+		when(mockTimeToLive.createTimeToLiveParameter()).thenReturn(Optional.of(ttl));
+
+		EnvironmentDescriptor e1 = new EnvironmentDescriptor().withName("repo");
+		EnvironmentDescriptor e2 = new EnvironmentDescriptor().withName("portal");
+		doReturn(List.of(e1, e2)).when(builderSpy).createEnvironments(any());
+
+		VelocityContext mockContext = Mockito.mock(VelocityContext.class);
+		doReturn(mockContext).when(builderSpy).createEnvironmentContext(any(), any());
+
+		doNothing().when(builderSpy).buildAndDeployStack(any(), any(), any(), any());
+		doAnswer(invocation -> {
+			for (DeploymentNode node : invocation.<List<DeploymentNode>>getArgument(0)) {
+				node.getStep().deploy();
+			}
+			return null;
+		}).when(mockDeploymentOrchestrator).deploy(any());
+
+		// call under test
+		List<String> names = builderSpy.buildEnvironments(sharedResouces);
+
+		assertEquals(List.of("repo", "portal"), names);
+		verify(mockDeploymentOrchestrator).deploy(nodesCaptor.capture());
+		assertEquals(List.of("repo", "portal"),
+				nodesCaptor.getValue().stream().map(DeploymentNode::getName).collect(Collectors.toList()));
+		verify(builderSpy).createEnvironmentContext(sharedResouces, e1);
+		verify(builderSpy).createEnvironmentContext(sharedResouces, e2);
+		verify(builderSpy).buildAndDeployStack(mockContext, e1.getName(), TEMPALTE_BEAN_STALK_ENVIRONMENT, ttl);
+		verify(builderSpy).buildAndDeployStack(mockContext, e2.getName(), TEMPALTE_BEAN_STALK_ENVIRONMENT, ttl);
+		verify(mockCloudFormationClient).waitForStackToComplete("repo");
+		verify(mockCloudFormationClient).waitForStackToComplete("portal");
+	}
+
+	@Test
+	public void testBuildEnvironmentsConcurrentlyWithFailure() throws Exception {
+		when(config.getBooleanProperty(PROPERTY_KEY_BEANSTALK_CONCURRENT_DEPLOYMENT, false)).thenReturn(true);
+		when(mockSecretBuilder.createSecrets()).thenReturn(secretsSouce);
+		when(mockTimeToLive.createTimeToLiveParameter()).thenReturn(Optional.empty());
+		doReturn(List.of(new EnvironmentDescriptor().withName("repo"))).when(builderSpy).createEnvironments(any());
+		IllegalStateException error = new IllegalStateException("Failed to deploy: [repo] skipped: []");
+		doThrow(error).when(mockDeploymentOrchestrator).deploy(any());
+
+		IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> {
+			// call under test
+			builderSpy.buildEnvironments(sharedResouces);
+		});
+		assertEquals(error, thrown);
+	}
+
+	@Test
+	public void testCreateEnvironmentsConcurrently() throws Exception {
+		when(config.getBooleanProperty(PROPERTY_KEY_BEANSTALK_CONCURRENT_DEPLOYMENT, false)).thenReturn(true);
+		when(config.getProperty(PROPERTY_KEY_STACK)).thenReturn(stack);
+		when(config.getProperty(PROPERTY_KEY_INSTANCE)).thenReturn(instance);
+
+		for (EnvironmentType type : EnvironmentType.values()) {
+			when(config.getIntegerProperty(PROPERTY_KEY_BEANSTALK_NUMBER + type.getShortName())).thenReturn(0);
+			when(config.getProperty(PROPERTY_KEY_BEANSTALK_VERSION + type.getShortName())).thenReturn("version-" + type.getShortName());
+			when(config.getProperty(PROPERTY_KEY_BEANSTALK_HEALTH_CHECK_URL + type.getShortName())).thenReturn("url");
+			when(config.getIntegerProperty(PROPERTY_KEY_BEANSTALK_MIN_INSTANCES + type.getShortName())).thenReturn(1);
+			when(config.getIntegerProperty(PROPERTY_KEY_BEANSTALK_MAX_INSTANCES + type.getShortName())).thenReturn(2);
+			when(config.getProperty(PROPERTY_KEY_BEANSTALK_SSL_ARN + type.getShortName())).thenReturn("the:ssl:arn");
+			when(config.getProperty(PROPERTY_KEY_ROUTE_53_HOSTED_ZONE + type.getShortName())).thenReturn("synapes.org");
+			when(mockArtifactCopy.copyArtifactIfNeeded(type, "version-" + type.getShortName(), 0))
+					.thenReturn(new SourceBundle("bucket", "key-" + type.getShortName()));
+		}
+		doAnswer(invocation -> {
+			for (DeploymentNode node : invocation.<List<DeploymentNode>>getArgument(0)) {
+				node.getStep().deploy();
+			}
+			return null;
+		}).when(mockDeploymentOrchestrator).deploy(any());
+
+		// call under test
+		List<EnvironmentDescriptor> descriptors = builder.createEnvironments(secretsSouce);
+
+		verify(mockDeploymentOrchestrator).deploy(nodesCaptor.capture());
+		assertEquals(List.of("artifact-repo-dev-101-0", "artifact-workers-dev-101-0", "artifact-portal-dev-101-0"),
+				nodesCaptor.getValue().stream().map(DeploymentNode::getName).collect(Collectors.toList()));
+		assertEquals(3, descriptors.size());
+		for (EnvironmentDescriptor descriptor : descriptors) {
+			assertEquals(new SourceBundle("bucket", "key-" + descriptor.getType()), descriptor.getSourceBundle());
+		}
+	}
+
 	private void setupValidBeanstalkConfig() {
 		when(config.getProperty(PROPERTY_KEY_ELASTICBEANSTALK_IMAGE_VERSION_JAVA)).thenReturn("11");
 		when(config.getProperty(PROPERTY_KEY_ELASTICBEANSTALK_IMAGE_VERSION_TOMCAT)).thenReturn("9.0");
@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -22,7 +23,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.config.Configuration;
 import org.sagebionetworks.template.repo.beanstalk.ssl.ElasticBeanstalkExtentionBuilder;
-import org.sagebionetworks.template.utils.ArtifactDownload;
+import org.sagebionetworks.template.s3.S3FileUploader;
+import org.sagebionetworks.template.utils.ArtifactCache;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
@@ -35,7 +37,7 @@ public class ArtifactCopyImplTest {
 	@Mock
 	Configuration mockPropertyProvider;
 	@Mock
-	ArtifactDownload mockDownloader;
+	ArtifactCache mockArtifactCache;
 	@Mock
 	File mockFile;
 	@Mock 
@@ -46,6 +48,8 @@ public class ArtifactCopyImplTest {
 	Logger mockLogger;
 	@Mock
 	ElasticBeanstalkExtentionBuilder mockEbBuilder;
+	@Mock
+	S3FileUploader mockUploader;
 	
 	ArtifactCopyImpl copier;
 	
@@ -69,12 +73,12 @@ public class ArtifactCopyImplTest {
 		s3Key = environment.createS3Key(version, beanstalkNumber);
 		artifactoryUrl = environment.createArtifactoryUrl(version);
 		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
-		copier = new ArtifactCopyImpl(mockS3Client, mockPropertyProvider, mockDownloader, mockLoggerFactory, mockEbBuilder);
+		copier = new ArtifactCopyImpl(mockS3Client, mockPropertyProvider, mockArtifactCache, mockLoggerFactory, mockEbBuilder, mockUploader);
 	}
 	
 	@Test
 	public void testCopyArtifactIfNeededDoesNotExist() {
-		when(mockDownloader.downloadFile(any(String.class))).thenReturn(mockFile);
+		when(mockArtifactCache.get(any(String.class))).thenReturn(mockFile);
 		when(mockEbBuilder.copyWarWithExtensions(eq(mockFile), any(EnvironmentType.class))).thenReturn(mockCopy);
 		when(mockPropertyProvider.getConfigurationBucket()).thenReturn(bucket);
 		// setup object does not exist
@@ -87,23 +91,23 @@ public class ArtifactCopyImplTest {
 		assertEquals(s3Key, result.getKey());
 		
 		verify(mockS3Client).doesObjectExist(bucket, s3Key);
-		verify(mockDownloader).downloadFile(artifactoryUrl);
+		verify(mockArtifactCache).get(artifactoryUrl);
 		verify(mockEbBuilder).copyWarWithExtensions(eq(mockFile), any(EnvironmentType.class));
-		verify(mockS3Client).putObject(bucket, s3Key, mockCopy);
+		verify(mockUploader).uploadFile(bucket, s3Key, mockCopy);
 		verify(mockLogger, times(3)).info(any(String.class));
-		// the temp file should get deleted.
-		verify(mockFile).delete();
+		// the temp copy should get deleted but not the cached artifact.
+		verify(mockFile, never()).delete();
 		verify(mockCopy).delete();
 	}
 	
 	@Test
 	public void testCopyArtifactIfNeededUplodFails() {
-		when(mockDownloader.downloadFile(any(String.class))).thenReturn(mockFile);
+		when(mockArtifactCache.get(any(String.class))).thenReturn(mockFile);
 		when(mockEbBuilder.copyWarWithExtensions(eq(mockFile), any(EnvironmentType.class))).thenReturn(mockCopy);
 		when(mockPropertyProvider.getConfigurationBucket()).thenReturn(bucket);
 		
 		AmazonServiceException exception = new AmazonServiceException("something");
-		when(mockS3Client.putObject(any(), any(), any(File.class))).thenThrow(exception);
+		doThrow(exception).when(mockUploader).uploadFile(any(), any(), any(File.class));
 		
 		// setup object does not exist
 		when(mockS3Client.doesObjectExist(any(), any())).thenReturn(false);
@@ -112,8 +116,9 @@ public class ArtifactCopyImplTest {
 		assertThrows(AmazonServiceException.class, ()->{
 			copier.copyArtifactIfNeeded(environment, version, beanstalkNumber);
 		});
-		// file should be deleted even for a failure.
-		verify(mockFile).delete();
+		// the temp copy should be deleted even for a failure.
+		verify(mockCopy).delete();
+		verify(mockFile, never()).delete();
 	}
 	
 	@Test
@@ -129,9 +134,9 @@ public class ArtifactCopyImplTest {
 		assertEquals(s3Key, result.getKey());
 		
 		verify(mockS3Client).doesObjectExist(bucket, s3Key);
-		verify(mockDownloader, never()).downloadFile(artifactoryUrl);
+		verify(mockArtifactCache, never()).get(artifactoryUrl);
 		verify(mockEbBuilder, never()).copyWarWithExtensions(eq(mockFile), any(EnvironmentType.class));
-		verify(mockS3Client, never()).putObject(bucket, s3Key, mockFile);
+		verify(mockUploader, never()).uploadFile(any(), any(), any());
 		verify(mockFile, never()).delete();
 		verify(mockLogger, never()).info(any(String.class));
 	}
@@ -1,18 +1,44 @@
 package org.sagebionetworks.template.repo.beanstalk;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.sagebionetworks.template.Constants.DEFAULT_SECRETS_MAX_CONCURRENCY;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_INSTANCE;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_REPOSITORY_DATABASE_PASSWORD;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_SECRETS_ENVELOPE_ENCRYPTION;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_SECRETS_MAX_CONCURRENCY;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_SECRET_KEYS_CSV;
 import static org.sagebionetworks.template.Constants.PROPERTY_KEY_STACK;
 
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -21,14 +47,20 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.sagebionetworks.template.LookupCacheImpl;
+import org.sagebionetworks.template.ThreadProvider;
 import org.sagebionetworks.template.config.Configuration;
 
 import com.amazonaws.services.kms.AWSKMS;
 import com.amazonaws.services.kms.model.EncryptRequest;
+import com.amazonaws.services.kms.model.AWSKMSException;
 import com.amazonaws.services.kms.model.EncryptResult;
+import com.amazonaws.services.kms.model.GenerateDataKeyRequest;
+import com.amazonaws.services.kms.model.GenerateDataKeyResult;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.secretsmanager.AWSSecretsManager;
+import com.amazonaws.services.secretsmanager.model.AWSSecretsManagerException;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueRequest;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueResult;
 import org.sagebionetworks.template.config.RepoConfiguration;
@@ -44,6 +76,8 @@ public class SecretBuilderImplTest {
 	AWSKMS mockKeyManager;
 	@Mock
 	AmazonS3 mockS3Client;
+	@Mock
+	ThreadProvider mockThreadProvider;
 	
 	@Captor
 	ArgumentCaptor<GetSecretValueRequest> secretRequestCaptor;
@@ -51,6 +85,8 @@ public class SecretBuilderImplTest {
 	ArgumentCaptor<EncryptRequest> encryptRequestCaptor;
 	@Captor
 	ArgumentCaptor<PutObjectRequest> putObjectRequsetCaptor;
+	@Captor
+	ArgumentCaptor<GenerateDataKeyRequest> dataKeyRequestCaptor;
 	
 	String stack;
 	String instance;
@@ -75,7 +111,7 @@ public class SecretBuilderImplTest {
 		when(mockConfig.getComaSeparatedProperty(PROPERTY_KEY_SECRET_KEYS_CSV)).thenReturn(new String[] {key});
 		
 		
-		builder = new SecretBuilderImpl(mockConfig, mockSecretManager, mockKeyManager, mockS3Client);
+		builder = new SecretBuilderImpl(mockConfig, mockSecretManager, mockKeyManager, mockS3Client, mockThreadProvider, new LookupCacheImpl());
 		
 		secretString = "super secret";
 		when(mockSecretManager.getSecretValue(any(GetSecretValueRequest.class))).thenReturn(new GetSecretValueResult().withSecretString(secretString));
@@ -168,6 +204,7 @@ public class SecretBuilderImplTest {
 	
 	@Test
 	public void testCreateSecrets() {
+		when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
 		// Call under test
 		SourceBundle bundle = builder.createSecrets();
 		assertNotNull(bundle);
@@ -175,6 +212,186 @@ public class SecretBuilderImplTest {
 		assertEquals(expectedS3Key, bundle.getKey());
 	}
 	
+	@Test
+	public void testCreateSecretsConcurrently() throws Exception {
+		when(mockConfig.getComaSeparatedProperty(PROPERTY_KEY_SECRET_KEYS_CSV)).thenReturn(new String[] {"one", "two", "three", "two"});
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_SECRETS_MAX_CONCURRENCY, DEFAULT_SECRETS_MAX_CONCURRENCY)).thenReturn(DEFAULT_SECRETS_MAX_CONCURRENCY);
+		when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
+		CountDownLatch fetching = new CountDownLatch(3);
+		when(mockSecretManager.getSecretValue(any(GetSecretValueRequest.class))).thenAnswer(i -> {
+			fetching.countDown();
+			// all of the secrets must be fetched at the same time.
+			assertTrue(fetching.await(10, TimeUnit.SECONDS));
+			return new GetSecretValueResult().withSecretString(secretString);
+		});
+		when(mockKeyManager.encrypt(any(EncryptRequest.class))).thenAnswer(i -> new EncryptResult().withCiphertextBlob(SecretBuilderImpl.stringToByteBuffer(encryptedSecretValue)));
+		// Call under test
+		builder.createSecrets();
+		verify(mockThreadProvider).newFixedThreadPool(3);
+		verify(mockSecretManager, times(3)).getSecretValue(any(GetSecretValueRequest.class));
+		verify(mockS3Client).putObject(putObjectRequsetCaptor.capture());
+		Properties uploaded = new Properties();
+		uploaded.load(new InputStreamReader(putObjectRequsetCaptor.getValue().getInputStream(), StandardCharsets.UTF_8));
+		assertEquals(3, uploaded.size());
+		assertEquals(encryptedSecretValue, base64Decode(uploaded.getProperty("two")));
+	}
+
+	@Test
+	public void testCreateSecretsWithFailure() {
+		when(mockConfig.getComaSeparatedProperty(PROPERTY_KEY_SECRET_KEYS_CSV)).thenReturn(new String[] {"one", "two"});
+		when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
+		when(mockSecretManager.getSecretValue(any(GetSecretValueRequest.class))).thenAnswer(i -> {
+			GetSecretValueRequest request = i.getArgument(0);
+			return new GetSecretValueResult().withSecretString(request.getSecretId().endsWith("two") ? null : secretString);
+		});
+		try {
+			// Call under test
+			builder.createSecrets();
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("Failed to create secrets: [two]", e.getMessage());
+			assertEquals("Secret string is null for: dev.two", e.getSuppressed()[0].getMessage());
+		}
+		verify(mockS3Client, never()).putObject(any(PutObjectRequest.class));
+	}
+
+	@Test
+	public void testGetSecretValueReadOnce() {
+		when(mockConfig.getComaSeparatedProperty(PROPERTY_KEY_SECRET_KEYS_CSV)).thenReturn(new String[] {PROPERTY_KEY_REPOSITORY_DATABASE_PASSWORD});
+		when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
+		builder.createSecrets();
+		// Call under test
+		assertEquals(secretString, builder.getRepositoryDatabasePassword());
+		assertEquals(secretString, builder.getRepositoryDatabasePassword());
+		verify(mockSecretManager).getSecretValue(any(GetSecretValueRequest.class));
+	}
+
+	@Test
+	public void testCreateSecretsReusesPasswordValue() {
+		when(mockConfig.getComaSeparatedProperty(PROPERTY_KEY_SECRET_KEYS_CSV)).thenReturn(new String[] {PROPERTY_KEY_REPOSITORY_DATABASE_PASSWORD});
+		when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
+		assertEquals(secretString, builder.getRepositoryDatabasePassword());
+		// Call under test
+		builder.createSecrets();
+		// the value read for the shared stack is reused for the bundle.
+		verify(mockSecretManager).getSecretValue(any(GetSecretValueRequest.class));
+	}
+
+	@Test
+	public void testGetSecretValueThrottled() throws Exception {
+		AWSSecretsManagerException throttled = new AWSSecretsManagerException("Rate exceeded");
+		throttled.setErrorCode("ThrottlingException");
+		when(mockSecretManager.getSecretValue(any(GetSecretValueRequest.class))).thenThrow(throttled)
+				.thenReturn(new GetSecretValueResult().withSecretString(secretString));
+		// call under test
+		assertEquals(secretString, builder.getSecretValue(key));
+		verify(mockSecretManager, times(2)).getSecretValue(any(GetSecretValueRequest.class));
+		verify(mockThreadProvider).sleep(anyLong());
+	}
+
+	@Test
+	public void testCreateSecretThrottledTooManyTimes() throws Exception {
+		AWSKMSException throttled = new AWSKMSException("Rate exceeded");
+		throttled.setErrorCode("ThrottlingException");
+		when(mockKeyManager.encrypt(any(EncryptRequest.class))).thenThrow(throttled);
+		try {
+			// call under test
+			builder.createSecret(key);
+			fail();
+		} catch (AWSKMSException e) {
+			assertSame(throttled, e);
+		}
+		verify(mockKeyManager, times(SecretBuilderImpl.MAX_THROTTLED_ATTEMPTS)).encrypt(any(EncryptRequest.class));
+		verify(mockThreadProvider, times(SecretBuilderImpl.MAX_THROTTLED_ATTEMPTS - 1)).sleep(anyLong());
+	}
+
+	@Test
+	public void testCreateSecretNotThrottled() throws Exception {
+		AWSKMSException disabled = new AWSKMSException("Key is disabled");
+		disabled.setErrorCode("DisabledException");
+		when(mockKeyManager.encrypt(any(EncryptRequest.class))).thenThrow(disabled);
+		try {
+			// call under test
+			builder.createSecret(key);
+			fail();
+		} catch (AWSKMSException e) {
+			assertSame(disabled, e);
+		}
+		verify(mockKeyManager).encrypt(any(EncryptRequest.class));
+		verify(mockThreadProvider, never()).sleep(anyLong());
+	}
+
+	@Test
+	public void testCreateSecretsWithEnvelopeEncryption() throws Exception {
+		when(mockConfig.getComaSeparatedProperty(PROPERTY_KEY_SECRET_KEYS_CSV)).thenReturn(new String[] {"one", "two"});
+		when(mockConfig.getBooleanProperty(PROPERTY_KEY_SECRETS_ENVELOPE_ENCRYPTION, false)).thenReturn(true);
+		when(mockThreadProvider.newFixedThreadPool(anyInt())).thenAnswer(i -> Executors.newFixedThreadPool(i.getArgument(0)));
+		byte[] dataKey = new byte[32];
+		Arrays.fill(dataKey, (byte) 7);
+		byte[] plaintextKey = dataKey.clone();
+		when(mockKeyManager.generateDataKey(any(GenerateDataKeyRequest.class))).thenReturn(new GenerateDataKeyResult()
+				.withPlaintext(ByteBuffer.wrap(plaintextKey)).withCiphertextBlob(SecretBuilderImpl.stringToByteBuffer("wrapped key")));
+		// Call under test
+		builder.createSecrets();
+		// the plaintext key returned by KMS is cleared.
+		assertArrayEquals(new byte[32], plaintextKey);
+		// one call to KMS for all of the secrets.
+		verify(mockKeyManager).generateDataKey(dataKeyRequestCaptor.capture());
+		assertEquals("alias/synapse/dev/299/cmk", dataKeyRequestCaptor.getValue().getKeyId());
+		assertEquals("AES_256", dataKeyRequestCaptor.getValue().getKeySpec());
+		verify(mockKeyManager, never()).encrypt(any(EncryptRequest.class));
+		verify(mockS3Client).putObject(putObjectRequsetCaptor.capture());
+		Properties uploaded = new Properties();
+		uploaded.load(new InputStreamReader(putObjectRequsetCaptor.getValue().getInputStream(), StandardCharsets.UTF_8));
+		assertEquals(4, uploaded.size());
+		assertEquals("wrapped key", base64Decode(uploaded.getProperty(SecretBuilderImpl.ENVELOPE_DATA_KEY)));
+		assertEquals(SecretBuilderImpl.AES_GCM, uploaded.getProperty(SecretBuilderImpl.ENVELOPE_CIPHER));
+		SecretKey key = new SecretKeySpec(dataKey, SecretBuilderImpl.AES);
+		assertEquals(secretString, decryptWithDataKey(key, "one", uploaded.getProperty("one")));
+		assertEquals(secretString, decryptWithDataKey(key, "two", uploaded.getProperty("two")));
+	}
+
+	@Test
+	public void testZero() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(4).put(new byte[] {1, 2, 3, 4});
+		// Call under test
+		SecretBuilderImpl.zero(buffer);
+		// the whole content is cleared regardless of the position.
+		assertEquals(4, buffer.position());
+		buffer.flip();
+		assertArrayEquals(new byte[4], SecretBuilderImpl.toBytes(buffer));
+	}
+
+	@Test
+	public void testEncryptWithDataKey() throws Exception {
+		SecretKey key = new SecretKeySpec(new byte[32], SecretBuilderImpl.AES);
+		// call under test
+		String one = SecretBuilderImpl.encryptWithDataKey(key, "one", secretString);
+		String two = SecretBuilderImpl.encryptWithDataKey(key, "one", secretString);
+		// a random IV for each value.
+		assertNotEquals(one, two);
+		assertEquals(secretString, decryptWithDataKey(key, "one", one));
+		try {
+			// the value is bound to its key.
+			decryptWithDataKey(key, "two", one);
+			fail();
+		} catch (AEADBadTagException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Decrypt a value the way the repo servers do for an envelope encrypted bundle.
+	 */
+	static String decryptWithDataKey(SecretKey key, String secretKey, String value) throws GeneralSecurityException {
+		byte[] bytes = Base64.getDecoder().decode(value);
+		Cipher cipher = Cipher.getInstance(SecretBuilderImpl.AES_GCM);
+		cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(SecretBuilderImpl.GCM_TAG_BITS, bytes, 0, SecretBuilderImpl.GCM_IV_BYTES));
+		cipher.updateAAD(secretKey.getBytes(StandardCharsets.UTF_8));
+		byte[] plaintext = cipher.doFinal(bytes, SecretBuilderImpl.GCM_IV_BYTES, bytes.length - SecretBuilderImpl.GCM_IV_BYTES);
+		return new String(plaintext, StandardCharsets.UTF_8);
+	}
+
 	/**
 	 * Convert a byte buffer to a string.
 	 * @param byteBuffer
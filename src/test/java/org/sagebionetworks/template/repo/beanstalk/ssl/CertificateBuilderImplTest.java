@@ -10,6 +10,7 @@ import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
@@ -96,4 +97,36 @@ public class CertificateBuilderImplTest {
 		assertNotNull(pair.getX509CertificatePEM());
 		assertTrue(pair.getX509CertificatePEM().contains(CertificateBuilderImpl.CERTIFICATE));
 	}
+
+	@Test
+	public void testCreateNewKeyPairEC() throws NoSuchAlgorithmException {
+		// call under test
+		KeyPair pair = CertificateBuilderImpl.createNewKeyPair(KeyAlgorithm.EC);
+		assertNotNull(pair);
+		assertEquals("EC", pair.getPrivate().getAlgorithm());
+		assertEquals("PKCS#8", pair.getPrivate().getFormat());
+		assertEquals("EC", pair.getPublic().getAlgorithm());
+		assertEquals(256, ((ECPublicKey) pair.getPublic()).getParams().getCurve().getField().getFieldSize());
+	}
+
+	@Test
+	public void testGenerateX509CertificateEC() throws Exception {
+		KeyPair pair = CertificateBuilderImpl.createNewKeyPair(KeyAlgorithm.EC);
+		// call under test
+		X509Certificate certificate = CertificateBuilderImpl.generateX509Certificate(pair);
+		assertEquals(CertificateBuilderImpl.CERTIFICATE_DISTINGUISHED_NAME, certificate.getSubjectDN().getName());
+		assertEquals("EC", certificate.getPublicKey().getAlgorithm());
+		assertEquals("SHA256WITHECDSA", certificate.getSigAlgName());
+		// self-signed
+		certificate.verify(pair.getPublic());
+	}
+
+	@Test
+	public void testBuildNewX509CertificatePairEC() {
+		CertificateBuilderImpl builder = new CertificateBuilderImpl(KeyAlgorithm.EC);
+		// call under test
+		CertificatePair pair = builder.buildNewX509CertificatePair();
+		assertTrue(pair.getPrivateKeyPEM().contains("-----BEGIN " + CertificateBuilderImpl.PRIVATE_KEY + "-----"));
+		assertTrue(pair.getX509CertificatePEM().contains(CertificateBuilderImpl.CERTIFICATE));
+	}
 }
@@ -0,0 +1,134 @@
+package org.sagebionetworks.template.repo.beanstalk.ssl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sagebionetworks.template.Constants.DEFAULT_CERTIFICATE_POOL_SIZE;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_CERTIFICATE_EC_KEYS;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_CERTIFICATE_POOL_SIZE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.ThreadProvider;
+import org.sagebionetworks.template.config.Configuration;
+
+@ExtendWith(MockitoExtension.class)
+public class PooledCertificateBuilderImplTest {
+
+	@Mock
+	CertificateBuilder mockGenerator;
+	@Mock
+	LoggerFactory mockLoggerFactory;
+	@Mock
+	Logger mockLogger;
+	@Mock
+	Configuration mockConfig;
+	@Mock
+	ThreadProvider mockThreadProvider;
+	@Mock
+	ScheduledExecutorService mockScheduler;
+
+	CertificatePair pairOne;
+	CertificatePair pairTwo;
+	CertificatePair pairThree;
+	List<Runnable> tasks;
+	Executor queuedExecutor;
+
+	@BeforeEach
+	public void before() {
+		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+		pairOne = new CertificatePair("cert1", "key1");
+		pairTwo = new CertificatePair("cert2", "key2");
+		pairThree = new CertificatePair("cert3", "key3");
+		tasks = new ArrayList<>();
+		// tasks only run when the test says so.
+		queuedExecutor = tasks::add;
+	}
+
+	void runTasks() {
+		List<Runnable> toRun = new ArrayList<>(tasks);
+		tasks.clear();
+		toRun.forEach(Runnable::run);
+	}
+
+	@Test
+	public void testPoolFilledOnCreation() {
+		when(mockGenerator.buildNewX509CertificatePair()).thenReturn(pairOne, pairTwo);
+		// call under test
+		PooledCertificateBuilderImpl builder = new PooledCertificateBuilderImpl(mockGenerator, 2, queuedExecutor, mockLoggerFactory);
+		assertEquals(0, builder.getPoolSize());
+		runTasks();
+		assertEquals(2, builder.getPoolSize());
+		verify(mockGenerator, times(2)).buildNewX509CertificatePair();
+	}
+
+	@Test
+	public void testBuildFromPool() {
+		when(mockGenerator.buildNewX509CertificatePair()).thenReturn(pairOne, pairTwo, pairThree);
+		PooledCertificateBuilderImpl builder = new PooledCertificateBuilderImpl(mockGenerator, 2, queuedExecutor, mockLoggerFactory);
+		runTasks();
+		// call under test
+		assertEquals(pairOne, builder.buildNewX509CertificatePair());
+		assertEquals(pairTwo, builder.buildNewX509CertificatePair());
+		// a single refill was started for both.
+		assertEquals(1, tasks.size());
+		runTasks();
+		assertEquals(2, builder.getPoolSize());
+		assertEquals(pairThree, builder.buildNewX509CertificatePair());
+	}
+
+	@Test
+	public void testBuildWithEmptyPool() {
+		when(mockGenerator.buildNewX509CertificatePair()).thenReturn(pairOne);
+		PooledCertificateBuilderImpl builder = new PooledCertificateBuilderImpl(mockGenerator, 2, queuedExecutor, mockLoggerFactory);
+		// call under test
+		assertEquals(pairOne, builder.buildNewX509CertificatePair());
+		// built on the calling thread while the pool is still being filled.
+		verify(mockGenerator).buildNewX509CertificatePair();
+		assertEquals(1, tasks.size());
+		verify(mockLogger).info("No pre-generated certificate pair available, generating one");
+	}
+
+	@Test
+	public void testFillFailure() {
+		when(mockGenerator.buildNewX509CertificatePair()).thenThrow(new RuntimeException("no entropy")).thenReturn(pairOne, pairTwo);
+		PooledCertificateBuilderImpl builder = new PooledCertificateBuilderImpl(mockGenerator, 1, queuedExecutor, mockLoggerFactory);
+		runTasks();
+		verify(mockLogger).warn("Failed to pre-generate a certificate pair: no entropy");
+		assertEquals(0, builder.getPoolSize());
+		// call under test
+		assertEquals(pairOne, builder.buildNewX509CertificatePair());
+		// the pool is filled again.
+		runTasks();
+		assertEquals(1, builder.getPoolSize());
+	}
+
+	@Test
+	public void testInjectedConstructor() {
+		when(mockConfig.getBooleanProperty(PROPERTY_KEY_CERTIFICATE_EC_KEYS, false)).thenReturn(true);
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_CERTIFICATE_POOL_SIZE, DEFAULT_CERTIFICATE_POOL_SIZE)).thenReturn(1);
+		when(mockThreadProvider.newSingleThreadScheduledExecutor()).thenReturn(mockScheduler);
+		// call under test
+		PooledCertificateBuilderImpl builder = new PooledCertificateBuilderImpl(mockConfig, mockThreadProvider, mockLoggerFactory);
+		verify(mockScheduler).execute(any());
+		// the scheduler did not run so the EC pair is built on this thread.
+		CertificatePair pair = builder.buildNewX509CertificatePair();
+		assertNotNull(pair);
+		assertTrue(pair.getPrivateKeyPEM().contains("-----BEGIN " + CertificateBuilderImpl.PRIVATE_KEY + "-----"));
+	}
+
+}
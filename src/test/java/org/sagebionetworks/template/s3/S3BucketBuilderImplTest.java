@@ -9,7 +9,9 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -20,6 +22,7 @@ import static org.sagebionetworks.template.Constants.PROPERTY_KEY_STACK;
 
 import java.io.File;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -27,6 +30,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
@@ -36,15 +41,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.sagebionetworks.template.CloudFormationClient;
 import org.sagebionetworks.template.Constants;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.StackTagsProvider;
+import org.sagebionetworks.template.TemplateRendererImpl;
+import org.sagebionetworks.template.ThreadProviderImp;
 import org.sagebionetworks.template.config.RepoConfiguration;
-import org.sagebionetworks.template.utils.ArtifactDownload;
+import org.sagebionetworks.template.utils.ArtifactCache;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.cloudformation.model.Output;
@@ -61,6 +67,8 @@ import com.amazonaws.services.s3.model.BucketLifecycleConfiguration.Transition;
 import com.amazonaws.services.s3.model.BucketNotificationConfiguration;
 import com.amazonaws.services.s3.model.GetBucketIntelligentTieringConfigurationResult;
 import com.amazonaws.services.s3.model.GetBucketInventoryConfigurationResult;
+import com.amazonaws.services.s3.model.HeadBucketRequest;
+import com.amazonaws.services.s3.model.HeadBucketResult;
 import com.amazonaws.services.s3.model.QueueConfiguration;
 import com.amazonaws.services.s3.model.S3Event;
 import com.amazonaws.services.s3.model.SSEAlgorithm;
@@ -74,8 +82,11 @@ import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringConf
 import com.amazonaws.services.s3.model.intelligenttiering.IntelligentTieringTagPredicate;
 import com.amazonaws.services.s3.model.intelligenttiering.Tiering;
 import com.amazonaws.services.s3.model.inventory.InventoryConfiguration;
+import com.amazonaws.services.s3.model.inventory.InventoryDestination;
 import com.amazonaws.services.s3.model.inventory.InventoryFrequency;
+import com.amazonaws.services.s3.model.inventory.InventoryIncludedObjectVersions;
 import com.amazonaws.services.s3.model.inventory.InventoryS3BucketDestination;
+import com.amazonaws.services.s3.model.inventory.InventorySchedule;
 import com.amazonaws.services.s3.model.lifecycle.LifecycleFilter;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
 import com.amazonaws.services.securitytoken.model.GetCallerIdentityResult;
@@ -108,9 +119,11 @@ public class S3BucketBuilderImplTest {
 	private StackTagsProvider mockTagsProvider;
 
 	@Mock
-	private ArtifactDownload mockDownloader;
+	private ArtifactCache mockArtifactCache;
+
+	@Mock
+	private S3FileUploader mockUploader;
 	
-	@InjectMocks
 	private S3BucketBuilderImpl builder;
 
 	@Mock
@@ -136,6 +149,9 @@ public class S3BucketBuilderImplTest {
 	
 	@Captor
 	private ArgumentCaptor<IntelligentTieringConfiguration> intConfigurationCaptor;
+	
+	@Captor
+	private ArgumentCaptor<HeadBucketRequest> headBucketRequestCaptor;
 
 	private String stack;
 	private String accountId;
@@ -148,6 +164,15 @@ public class S3BucketBuilderImplTest {
 		when(mockConfig.getProperty(PROPERTY_KEY_STACK)).thenReturn(stack);
 		when(mockStsClient.getCallerIdentity(any())).thenReturn(mockGetCallerIdentityResult);
 		when(mockGetCallerIdentityResult.getAccount()).thenReturn(accountId);
+		
+		builder = new S3BucketBuilderImpl(mockS3Client, mockStsClient, mockLambdaClient, mockConfig, mockS3Config,
+				new TemplateRendererImpl(mockVelocity), mockCloudFormationClient, mockTagsProvider, mockArtifactCache,
+				mockUploader, new ThreadProviderImp());
+		
+		// By default the buckets do not exist yet
+		AmazonServiceException notFound = new AmazonServiceException("Not Found");
+		notFound.setStatusCode(404);
+		lenient().doThrow(notFound).when(mockS3Client).headBucket(any());
 	}
 
 	@Test
@@ -1503,12 +1528,13 @@ public class S3BucketBuilderImplTest {
 		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
 		doThrow(anotherEx).when(mockS3Client).getBucketIntelligentTieringConfiguration(any(), any());
 				
-		AmazonS3Exception ex = assertThrows(AmazonS3Exception.class, () -> {			
+		IllegalStateException ex = assertThrows(IllegalStateException.class, () -> {			
 			// Call under test
 			builder.buildAllBuckets();
 		});
 		
-		assertEquals(anotherEx, ex);
+		assertEquals("Failed to configure buckets: [" + expectedBucketName + "]", ex.getMessage());
+		assertEquals(anotherEx, ex.getSuppressed()[0]);
 		
 		verify(mockS3Client).getBucketIntelligentTieringConfiguration(expectedBucketName, S3BucketBuilderImpl.INT_ARCHIVE_ID);
 		verify(mockS3Client, never()).setBucketIntelligentTieringConfiguration(any(), any());
@@ -1535,12 +1561,13 @@ public class S3BucketBuilderImplTest {
 		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
 		doThrow(anotherEx).when(mockS3Client).getBucketIntelligentTieringConfiguration(any(), any());
 				
-		AmazonS3Exception ex = assertThrows(AmazonS3Exception.class, () -> {			
+		IllegalStateException ex = assertThrows(IllegalStateException.class, () -> {			
 			// Call under test
 			builder.buildAllBuckets();
 		});
 		
-		assertEquals(anotherEx, ex);
+		assertEquals("Failed to configure buckets: [" + expectedBucketName + "]", ex.getMessage());
+		assertEquals(anotherEx, ex.getSuppressed()[0]);
 		
 		verify(mockS3Client).getBucketIntelligentTieringConfiguration(expectedBucketName, S3BucketBuilderImpl.INT_ARCHIVE_ID);
 		verify(mockS3Client, never()).setBucketIntelligentTieringConfiguration(any(), any());
@@ -2177,7 +2204,7 @@ public class S3BucketBuilderImplTest {
 			builder.buildAllBuckets();
 		});
 		
-		assertEquals("The notification configuration " + expectedConfigName + " was found but was not a TopicConfiguration", ex.getMessage());
+		assertEquals("The notification configuration " + expectedConfigName + " was found but was not a TopicConfiguration", ex.getSuppressed()[0].getMessage());
 
 		verify(mockCloudFormationClient).getOutput(expectedGlobalStackName, topic);
 		verify(mockS3Client).getBucketNotificationConfiguration(expectedBucketName);
@@ -2200,7 +2227,7 @@ public class S3BucketBuilderImplTest {
 		virusScannerConfig.setNotificationEmail("notification@sagebase.org");
 		
 		when(mockS3Config.getVirusScannerConfig()).thenReturn(virusScannerConfig);
-		when(mockDownloader.downloadFile(any())).thenReturn(mockFile);
+		when(mockArtifactCache.get(any())).thenReturn(mockFile);
 		when(mockVelocity.getTemplate(any())).thenReturn(mockTemplate);
 		
 		doAnswer(invocation -> {
@@ -2222,9 +2249,10 @@ public class S3BucketBuilderImplTest {
 		// Call under test
 		builder.buildAllBuckets();
 		
-		verify(mockDownloader).downloadFile("https://some-url/lambda-name.zip");
-		verify(mockS3Client).putObject(expectedBucket, expectedKey, mockFile);
-		verify(mockFile).delete();
+		verify(mockArtifactCache).get("https://some-url/lambda-name.zip");
+		verify(mockUploader).uploadFile(expectedBucket, expectedKey, mockFile);
+		// the artifact belongs to the cache.
+		verify(mockFile, never()).delete();
 		verify(mockTemplate, times(2)).merge(velocityContextCaptor.capture(), any());
 		
 		List<VelocityContext> contexts = velocityContextCaptor.getAllValues();
@@ -2306,7 +2334,7 @@ public class S3BucketBuilderImplTest {
 		virusScannerConfig.setNotificationEmail("notification@sagebase.org");
 		
 		when(mockS3Config.getVirusScannerConfig()).thenReturn(virusScannerConfig);
-		when(mockDownloader.downloadFile(any())).thenReturn(new File("tmpFile"));
+		when(mockArtifactCache.get(any())).thenReturn(new File("tmpFile"));
 		when(mockVelocity.getTemplate(any())).thenReturn(mockTemplate);
 		
 		doAnswer(invocation -> {
@@ -2439,6 +2467,341 @@ public class S3BucketBuilderImplTest {
 
 	}
 	
+	@Test
+	public void testBuildAllBucketsConcurrently() throws InterruptedException {
+		S3BucketDescriptor one = new S3BucketDescriptor();
+		one.setName("${stack}.one");
+		
+		S3BucketDescriptor two = new S3BucketDescriptor();
+		two.setName("${stack}.two");
+		
+		when(mockConfig.getIntegerProperty(Constants.PROPERTY_KEY_S3_BUCKET_MAX_CONCURRENCY, Constants.DEFAULT_S3_BUCKET_MAX_CONCURRENCY)).thenReturn(2);
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(one, two));
+		when(mockVelocity.getTemplate(any())).thenReturn(mockTemplate);
+
+		doAnswer(invocation -> {
+			((StringWriter) invocation.getArgument(1)).append("{}");
+			return null;
+		}).when(mockTemplate).merge(any(), any());
+
+		when(mockCloudFormationClient.describeStack(any())).thenReturn(Optional.of(new Stack()));
+		when(mockTagsProvider.getStackTags()).thenReturn(Collections.emptyList());
+		
+		// Each bucket waits for the other one to start, so this only completes if they are configured at the same time
+		CountDownLatch started = new CountDownLatch(2);
+		
+		when(mockS3Client.createBucket(anyString())).thenAnswer(invocation -> {
+			started.countDown();
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			return null;
+		});
+
+		// Call under test
+		builder.buildAllBuckets();
+		
+		verify(mockS3Client).setBucketLifecycleConfiguration(eq(stack + ".one"), any());
+		verify(mockS3Client).setBucketLifecycleConfiguration(eq(stack + ".two"), any());
+		verify(mockCloudFormationClient).createOrUpdateStack(any());
+	}
+	
+	@Test
+	public void testBuildAllBucketsWithFailure() throws InterruptedException {
+		S3BucketDescriptor one = new S3BucketDescriptor();
+		one.setName("${stack}.one");
+		
+		S3BucketDescriptor two = new S3BucketDescriptor();
+		two.setName("${stack}.two");
+		
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(one, two));
+		
+		AmazonServiceException failure = new AmazonServiceException("Something went wrong");
+		failure.setStatusCode(500);
+		
+		doThrow(failure).when(mockS3Client).getBucketEncryption(stack + ".one");
+
+		IllegalStateException ex = assertThrows(IllegalStateException.class, () -> {
+			// Call under test
+			builder.buildAllBuckets();
+		});
+		
+		assertEquals("Failed to configure buckets: [" + stack + ".one]", ex.getMessage());
+		assertEquals(1, ex.getSuppressed().length);
+		assertEquals(failure, ex.getSuppressed()[0]);
+		
+		// The other bucket is still configured
+		verify(mockS3Client, never()).setBucketLifecycleConfiguration(eq(stack + ".one"), any());
+		verify(mockS3Client).setBucketLifecycleConfiguration(eq(stack + ".two"), any());
+		verify(mockCloudFormationClient, never()).createOrUpdateStack(any());
+	}
+	
+	@Test
+	public void testBuildAllBucketsWithInventoryUpToDate() throws InterruptedException {
+		S3InventoryConfig inventoryConfig = new S3InventoryConfig();
+		inventoryConfig.setBucket("${stack}.inventory");
+		inventoryConfig.setPrefix("prefix");
+		
+		S3BucketDescriptor bucket = new S3BucketDescriptor();
+		bucket.setName("${stack}.bucket");
+		bucket.setInventoryEnabled(true);
+		
+		String expectedBucketName = stack + ".bucket";
+		
+		when(mockS3Config.getInventoryConfig()).thenReturn(inventoryConfig);
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
+		
+		// Mimics an existing configuration matching the desired one, with the fields in a different order
+		List<String> fields = new ArrayList<>(S3BucketBuilderImpl.INVENTORY_FIELDS);
+		Collections.reverse(fields);
+		
+		when(mockS3Client.getBucketInventoryConfiguration(anyString(), anyString())).thenReturn(
+				new GetBucketInventoryConfigurationResult().withInventoryConfiguration(
+						new InventoryConfiguration()
+						.withId(S3BucketBuilderImpl.INVENTORY_ID)
+						.withDestination(new InventoryDestination().withS3BucketDestination(new InventoryS3BucketDestination()
+								.withBucketArn("arn:aws:s3:::" + stack + ".inventory")
+								.withAccountId(accountId)
+								.withPrefix("prefix")
+								.withFormat(S3BucketBuilderImpl.INVENTORY_FORMAT)))
+						.withOptionalFields(fields)
+						.withSchedule(new InventorySchedule().withFrequency(InventoryFrequency.Weekly))
+						.withEnabled(true)
+						.withIncludedObjectVersions(InventoryIncludedObjectVersions.All))
+		);
+		
+		when(mockVelocity.getTemplate(any())).thenReturn(mockTemplate);
+
+		doAnswer(invocation -> {
+			((StringWriter) invocation.getArgument(1)).append("{}");
+			return null;
+		}).when(mockTemplate).merge(any(), any());
+
+		when(mockCloudFormationClient.describeStack(any())).thenReturn(Optional.of(new Stack()));
+		when(mockTagsProvider.getStackTags()).thenReturn(Collections.emptyList());
+		
+		// Call under test
+		builder.buildAllBuckets();
+		
+		verify(mockS3Client).getBucketInventoryConfiguration(expectedBucketName, S3BucketBuilderImpl.INVENTORY_ID);
+		verify(mockS3Client, never()).setBucketInventoryConfiguration(any(), any());
+		verify(mockS3Client, never()).deleteBucketInventoryConfiguration(any(), any());
+	}
+	
+	@Test
+	public void testBuildAllBucketsWithNotificationsAndVirusScannerReadsOnce() throws InterruptedException {
+		S3BucketDescriptor bucket = new S3BucketDescriptor();
+		String topic = "GlobalTopic";
+		Set<String> events = new HashSet<>(Arrays.asList("s3:ObjectRestore:Completed", "s3:ObjectRestore:Post"));
+		
+		bucket.setName("bucket");
+		bucket.setVirusScanEnabled(true);
+		bucket.setNotificationsConfiguration(new S3NotificationsConfiguration()
+				.withTopic(topic)
+				.WithEvents(events)
+		);
+		
+		S3VirusScannerConfig virusScannerConfig = new S3VirusScannerConfig();
+		
+		virusScannerConfig.setLambdaArtifactBucket("${stack}-lambda-bucket");
+		virusScannerConfig.setNotificationEmail("notification@sagebase.org");
+		
+		when(mockConfig.getProperty(Constants.PROPERTY_KEY_LAMBDA_VIRUS_SCANNER_ARTIFACT_URL)).thenReturn("https://some-url/lambda-name.zip");
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
+		when(mockS3Config.getVirusScannerConfig()).thenReturn(virusScannerConfig);
+		when(mockArtifactCache.get(any())).thenReturn(mockFile);
+		when(mockCloudFormationClient.getOutput(any(), any())).thenReturn("topicArn");
+		when(mockVelocity.getTemplate(any())).thenReturn(mockTemplate);
+		
+		doAnswer(invocation -> {
+			((StringWriter) invocation.getArgument(1)).append("{}");
+			return null;
+		}).when(mockTemplate).merge(any(), any());
+		
+		Stack virusScannerStack = new Stack().withOutputs(
+			new Output().withOutputKey(S3BucketBuilderImpl.CF_OUTPUT_VIRUS_TRIGGER_TOPIC).withOutputValue("snsTopicArn"),
+			new Output().withOutputKey(S3BucketBuilderImpl.CF_OUTPUT_VIRUS_UPDATER_LAMBDA).withOutputValue("updaterLambdaArn")
+		);
+		
+		when(mockCloudFormationClient.describeStack(any())).thenReturn(Optional.of(virusScannerStack));
+		when(mockTagsProvider.getStackTags()).thenReturn(Collections.emptyList());
+		
+		// Call under test
+		builder.buildAllBuckets();
+		
+		// The configuration written by the first step is used by the second one
+		verify(mockS3Client).getBucketNotificationConfiguration("bucket");
+		
+		ArgumentCaptor<BucketNotificationConfiguration> argCaptor = ArgumentCaptor.forClass(BucketNotificationConfiguration.class);
+		
+		verify(mockS3Client, times(2)).setBucketNotificationConfiguration(eq("bucket"), argCaptor.capture());
+		
+		BucketNotificationConfiguration bucketConfig = argCaptor.getAllValues().get(1);
+		
+		assertEquals(2, bucketConfig.getConfigurations().size());
+		assertEquals("topicArn", ((TopicConfiguration) bucketConfig.getConfigurationByName(topic + "Configuration")).getTopicARN());
+		assertEquals("snsTopicArn", ((TopicConfiguration) bucketConfig.getConfigurationByName(S3BucketBuilderImpl.VIRUS_SCANNER_NOTIFICATION_CONFIG_NAME)).getTopicARN());
+	}
+	
+	@Test
+	public void testBuildAllBucketsWithExistingBucket() throws InterruptedException {
+		S3BucketDescriptor bucket = new S3BucketDescriptor();
+		bucket.setName("${stack}.bucket");
+
+		String expectedBucketName = stack + ".bucket";
+		
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
+		doReturn(new HeadBucketResult()).when(mockS3Client).headBucket(any());
+		when(mockVelocity.getTemplate(any())).thenReturn(mockTemplate);
+
+		doAnswer(invocation -> {
+			((StringWriter) invocation.getArgument(1)).append("{}");
+			return null;
+		}).when(mockTemplate).merge(any(), any());
+
+		when(mockCloudFormationClient.describeStack(any())).thenReturn(Optional.of(new Stack()));
+		when(mockTagsProvider.getStackTags()).thenReturn(Collections.emptyList());
+
+		// Call under test
+		builder.buildAllBuckets();
+		
+		verify(mockS3Client).headBucket(headBucketRequestCaptor.capture());
+		assertEquals(expectedBucketName, headBucketRequestCaptor.getValue().getBucketName());
+		verify(mockS3Client, never()).createBucket(anyString());
+		verify(mockS3Client).getBucketEncryption(expectedBucketName);
+		verify(mockS3Client).setBucketLifecycleConfiguration(eq(expectedBucketName), any());
+	}
+	
+	@Test
+	public void testBuildAllBucketsWithBucketOwnedByOtherAccount() throws InterruptedException {
+		S3BucketDescriptor bucket = new S3BucketDescriptor();
+		bucket.setName("${stack}.bucket");
+
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
+		
+		AmazonServiceException forbidden = new AmazonServiceException("Forbidden");
+		forbidden.setStatusCode(403);
+		
+		doThrow(forbidden).when(mockS3Client).headBucket(any());
+
+		IllegalStateException ex = assertThrows(IllegalStateException.class, () -> {
+			// Call under test
+			builder.buildAllBuckets();
+		});
+		
+		assertEquals("Failed to configure buckets: [dev.bucket]", ex.getMessage());
+		assertEquals("The bucket dev.bucket already exists and is not owned by this account", ex.getSuppressed()[0].getMessage());
+		assertEquals(forbidden, ex.getSuppressed()[0].getCause());
+		verify(mockS3Client, never()).createBucket(anyString());
+		verify(mockS3Client, never()).getBucketEncryption(anyString());
+	}
+	
+	@Test
+	public void testBuildAllBucketsWithDisabledRule() throws InterruptedException {
+		S3BucketDescriptor bucket = new S3BucketDescriptor();
+		bucket.setName("${stack}.bucket");
+
+		String expectedBucketName = stack + ".bucket";
+		
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
+		when(mockVelocity.getTemplate(any())).thenReturn(mockTemplate);
+
+		doAnswer(invocation -> {
+			((StringWriter) invocation.getArgument(1)).append("{}");
+			return null;
+		}).when(mockTemplate).merge(any(), any());
+
+		when(mockCloudFormationClient.describeStack(any())).thenReturn(Optional.of(new Stack()));
+		when(mockTagsProvider.getStackTags()).thenReturn(Collections.emptyList());
+		
+		// Mimics an existing abort rule that was disabled
+		when(mockS3Client.getBucketLifecycleConfiguration(anyString())).thenReturn(new BucketLifecycleConfiguration()
+			.withRules(
+					allBucketRule(S3BucketBuilderImpl.RULE_ID_ABORT_MULTIPART_UPLOADS)
+						.withStatus(BucketLifecycleConfiguration.DISABLED)
+						.withAbortIncompleteMultipartUpload(new AbortIncompleteMultipartUpload().withDaysAfterInitiation(S3BucketBuilderImpl.ABORT_MULTIPART_UPLOAD_DAYS))
+			));
+
+		// Call under test
+		builder.buildAllBuckets();
+		
+		verify(mockS3Client).setBucketLifecycleConfiguration(eq(expectedBucketName), bucketLifeCycleConfigurationCaptor.capture());
+		
+		BucketLifecycleConfiguration config = bucketLifeCycleConfigurationCaptor.getValue();
+		
+		assertEquals(1, config.getRules().size());
+		assertEquals(BucketLifecycleConfiguration.ENABLED, config.getRules().get(0).getStatus());
+	}
+	
+	@Test
+	public void testBuildAllBucketsDryRun() throws InterruptedException {
+		S3BucketDescriptor bucket = new S3BucketDescriptor();
+		bucket.setName("${stack}.bucket");
+		bucket.setRetentionDays(30);
+
+		String expectedBucketName = stack + ".bucket";
+		
+		when(mockConfig.getBooleanProperty(Constants.PROPERTY_KEY_S3_BUCKET_DRY_RUN, false)).thenReturn(true);
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
+		doReturn(new HeadBucketResult()).when(mockS3Client).headBucket(any());
+		
+		AmazonServiceException notFound = new AmazonServiceException("NotFound");
+		notFound.setStatusCode(404);
+		
+		doThrow(notFound).when(mockS3Client).getBucketEncryption(anyString());
+
+		// Call under test
+		builder.buildAllBuckets();
+		
+		// The state is read
+		verify(mockS3Client).headBucket(any());
+		verify(mockS3Client).getBucketEncryption(expectedBucketName);
+		verify(mockS3Client).getBucketLifecycleConfiguration(expectedBucketName);
+		
+		// But nothing is written
+		verify(mockS3Client, never()).createBucket(anyString());
+		verify(mockS3Client, never()).setBucketEncryption(any());
+		verify(mockS3Client, never()).setBucketLifecycleConfiguration(any(), any());
+		verify(mockCloudFormationClient, never()).createOrUpdateStack(any());
+		verifyNoMoreInteractions(mockS3Client);
+	}
+	
+	@Test
+	public void testBuildAllBucketsDryRunWithNewBucket() throws InterruptedException {
+		S3BucketDescriptor bucket = new S3BucketDescriptor();
+		bucket.setName("${stack}.bucket");
+		bucket.setVirusScanEnabled(true);
+
+		String expectedBucketName = stack + ".bucket";
+		
+		S3VirusScannerConfig virusScannerConfig = new S3VirusScannerConfig();
+		
+		virusScannerConfig.setLambdaArtifactBucket("${stack}-lambda-bucket");
+		virusScannerConfig.setNotificationEmail("notification@sagebase.org");
+		
+		when(mockConfig.getBooleanProperty(Constants.PROPERTY_KEY_S3_BUCKET_DRY_RUN, false)).thenReturn(true);
+		when(mockS3Config.getBuckets()).thenReturn(Arrays.asList(bucket));
+		when(mockS3Config.getVirusScannerConfig()).thenReturn(virusScannerConfig);
+		
+		Stack virusScannerStack = new Stack().withOutputs(
+			new Output().withOutputKey(S3BucketBuilderImpl.CF_OUTPUT_VIRUS_TRIGGER_TOPIC).withOutputValue("snsTopicArn"),
+			new Output().withOutputKey(S3BucketBuilderImpl.CF_OUTPUT_VIRUS_UPDATER_LAMBDA).withOutputValue("updaterLambdaArn")
+		);
+		
+		when(mockCloudFormationClient.describeStack(any())).thenReturn(Optional.of(virusScannerStack));
+
+		// Call under test
+		builder.buildAllBuckets();
+		
+		// The bucket does not exist so nothing else is read
+		verify(mockS3Client).headBucket(headBucketRequestCaptor.capture());
+		assertEquals(expectedBucketName, headBucketRequestCaptor.getValue().getBucketName());
+		verifyNoMoreInteractions(mockS3Client);
+		
+		verify(mockCloudFormationClient).describeStack(stack + "-synapse-virus-scanner");
+		verify(mockCloudFormationClient, never()).createOrUpdateStack(any());
+		verify(mockUploader, never()).uploadFile(any(), any(), any());
+		verify(mockLambdaClient, never()).invoke(any());
+	}
+	
 	private Rule allBucketRule(String ruleName) {
 		return new Rule().withId(ruleName).withFilter(new LifecycleFilter(null)).withStatus(BucketLifecycleConfiguration.ENABLED);
 	}
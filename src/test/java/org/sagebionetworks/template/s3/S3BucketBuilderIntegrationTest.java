@@ -1,5 +1,7 @@
 package org.sagebionetworks.template.s3;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,14 +17,18 @@ import org.json.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.sagebionetworks.template.CloudFormationClient;
 import org.sagebionetworks.template.StackTagsProvider;
 import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.TemplateRendererImpl;
+import org.sagebionetworks.template.ThreadProviderImp;
 import org.sagebionetworks.template.TemplateUtils;
 import org.sagebionetworks.template.config.RepoConfiguration;
-import org.sagebionetworks.template.utils.ArtifactDownload;
+import org.sagebionetworks.template.utils.ArtifactCache;
 import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 
 import com.amazonaws.services.lambda.AWSLambda;
@@ -60,7 +66,13 @@ public class S3BucketBuilderIntegrationTest {
     private StackTagsProvider mockTagsProvider;
 
     @Mock
-    private ArtifactDownload mockDownloader;
+    private ArtifactCache mockArtifactCache;
+
+    @Mock
+    private S3FileUploader mockUploader;
+
+    @Captor
+    private ArgumentCaptor<CreateOrUpdateStackRequest> requestCaptor;
 
     private S3BucketBuilderImpl builder;
     private String stack;
@@ -74,7 +86,7 @@ public class S3BucketBuilderIntegrationTest {
         // Validate the real S3Config
         injector.getInstance(S3Config.class);
 
-        builder = new S3BucketBuilderImpl(mockS3Client, mockStsClient, mockLambdaClient, mockConfig, mockS3Config, velocityEngine, mockCloudFormationClient, mockTagsProvider, mockDownloader);
+        builder = new S3BucketBuilderImpl(mockS3Client, mockStsClient, mockLambdaClient, mockConfig, mockS3Config, new TemplateRendererImpl(velocityEngine), mockCloudFormationClient, mockTagsProvider, mockArtifactCache, mockUploader, new ThreadProviderImp());
 
         stack = "dev";
         accountId = "12345";
@@ -100,12 +112,13 @@ public class S3BucketBuilderIntegrationTest {
         builder.buildAllBuckets();
 
         String expectedStackName = stack + "-synapse-bucket-policies";
-        String expectedBucketPolicyTemplate = new JSONObject(TemplateUtils.loadContentFromFile("s3/s3-bucket-policy-test.json")).toString(5);
+        JSONObject expectedBucketPolicyTemplate = new JSONObject(TemplateUtils.loadContentFromFile("s3/s3-bucket-policy-test.json"));
 
-        verify(mockCloudFormationClient).createOrUpdateStack(new CreateOrUpdateStackRequest()
-                .withStackName("dev-synapse-bucket-policies")
-                .withTemplateBody(expectedBucketPolicyTemplate)
-                .withTags(Collections.emptyList()));
+        verify(mockCloudFormationClient).createOrUpdateStack(requestCaptor.capture());
+        CreateOrUpdateStackRequest request = requestCaptor.getValue();
+        assertEquals("dev-synapse-bucket-policies", request.getStackName());
+        assertEquals(Collections.emptyList(), request.getTags());
+        assertTrue(expectedBucketPolicyTemplate.similar(new JSONObject(request.getTemplateBody())));
 
         verify(mockCloudFormationClient).waitForStackToComplete(expectedStackName);
         verify(mockCloudFormationClient).describeStack(expectedStackName);
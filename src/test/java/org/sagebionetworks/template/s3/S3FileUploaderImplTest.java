@@ -0,0 +1,189 @@
+package org.sagebionetworks.template.s3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sagebionetworks.template.Constants.DEFAULT_S3_UPLOAD_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.DEFAULT_S3_UPLOAD_PART_SIZE_MB;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_S3_UPLOAD_MAX_CONCURRENCY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_S3_UPLOAD_PART_SIZE_MB;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.config.Configuration;
+import org.sagebionetworks.template.s3.S3FileUploaderImpl.ProgressLogger;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.Upload;
+
+@ExtendWith(MockitoExtension.class)
+public class S3FileUploaderImplTest {
+
+	@Mock
+	S3TransferManagerFactory mockTransferManagerFactory;
+	@Mock
+	S3TransferManager mockTransferManager;
+	@Mock
+	Upload mockUpload;
+	@Mock
+	Configuration mockConfig;
+	@Mock
+	LoggerFactory mockLoggerFactory;
+	@Mock
+	Logger mockLogger;
+
+	@Captor
+	ArgumentCaptor<PutObjectRequest> requestCaptor;
+
+	S3FileUploaderImpl uploader;
+
+	String bucket;
+	String key;
+	File file;
+
+	@BeforeEach
+	public void before() {
+		when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_S3_UPLOAD_PART_SIZE_MB, DEFAULT_S3_UPLOAD_PART_SIZE_MB))
+				.thenReturn(DEFAULT_S3_UPLOAD_PART_SIZE_MB);
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_S3_UPLOAD_MAX_CONCURRENCY, DEFAULT_S3_UPLOAD_MAX_CONCURRENCY))
+				.thenReturn(DEFAULT_S3_UPLOAD_MAX_CONCURRENCY);
+		uploader = new S3FileUploaderImpl(mockTransferManagerFactory, mockConfig, mockLoggerFactory);
+		bucket = "dev-configuration.sage.bionetworks";
+		key = "versions/repo/repo-123.war";
+		file = new File("repo-123.war");
+	}
+
+	void setupUpload() {
+		when(mockTransferManagerFactory.createNewS3TransferManager(anyLong(), anyInt())).thenReturn(mockTransferManager);
+		when(mockTransferManager.upload(any())).thenReturn(mockUpload);
+	}
+
+	@Test
+	public void testUploadFile() throws Exception {
+		setupUpload();
+		// call under test
+		uploader.uploadFile(bucket, key, file);
+
+		verify(mockTransferManagerFactory).createNewS3TransferManager(16L * 1024 * 1024, 8);
+		verify(mockTransferManager).upload(requestCaptor.capture());
+		PutObjectRequest request = requestCaptor.getValue();
+		assertEquals(bucket, request.getBucketName());
+		assertEquals(key, request.getKey());
+		assertEquals(file, request.getFile());
+		assertNotNull(request.getGeneralProgressListener());
+		verify(mockUpload).waitForUploadResult();
+		verify(mockUpload, never()).abort();
+		verify(mockTransferManager).close();
+	}
+
+	@Test
+	public void testUploadFileConfigured() throws Exception {
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_S3_UPLOAD_PART_SIZE_MB, DEFAULT_S3_UPLOAD_PART_SIZE_MB))
+				.thenReturn(64);
+		when(mockConfig.getIntegerProperty(PROPERTY_KEY_S3_UPLOAD_MAX_CONCURRENCY, DEFAULT_S3_UPLOAD_MAX_CONCURRENCY))
+				.thenReturn(2);
+		uploader = new S3FileUploaderImpl(mockTransferManagerFactory, mockConfig, mockLoggerFactory);
+		setupUpload();
+		// call under test
+		uploader.uploadFile(bucket, key, file);
+
+		verify(mockTransferManagerFactory).createNewS3TransferManager(64L * 1024 * 1024, 2);
+	}
+
+	@Test
+	public void testUploadFileFailureAborts() throws Exception {
+		setupUpload();
+		AmazonClientException failure = new AmazonClientException("connection reset");
+		when(mockUpload.waitForUploadResult()).thenThrow(failure);
+
+		AmazonClientException e = assertThrows(AmazonClientException.class, () -> {
+			// call under test
+			uploader.uploadFile(bucket, key, file);
+		});
+		assertEquals(failure, e);
+		verify(mockUpload).abort();
+		verify(mockTransferManager).close();
+	}
+
+	@Test
+	public void testUploadFileAbortFailure() throws Exception {
+		setupUpload();
+		AmazonClientException failure = new AmazonClientException("connection reset");
+		when(mockUpload.waitForUploadResult()).thenThrow(failure);
+		doThrow(new AmazonClientException("already aborted")).when(mockUpload).abort();
+
+		AmazonClientException e = assertThrows(AmazonClientException.class, () -> {
+			// call under test
+			uploader.uploadFile(bucket, key, file);
+		});
+		// the original failure is reported.
+		assertEquals(failure, e);
+		verify(mockLogger).warn(any(String.class));
+	}
+
+	@Test
+	public void testUploadFileInterrupted() throws Exception {
+		setupUpload();
+		when(mockUpload.waitForUploadResult()).thenThrow(new InterruptedException());
+
+		assertThrows(RuntimeException.class, () -> {
+			// call under test
+			uploader.uploadFile(bucket, key, file);
+		});
+		// clears the flag.
+		assertTrue(Thread.interrupted());
+		verify(mockUpload).abort();
+	}
+
+	@Test
+	public void testUploadFileCloseFailure() throws Exception {
+		setupUpload();
+		doThrow(new IOException("closed")).when(mockTransferManager).close();
+
+		assertThrows(RuntimeException.class, () -> {
+			// call under test
+			uploader.uploadFile(bucket, key, file);
+		});
+	}
+
+	@Test
+	public void testProgressLogger() {
+		ProgressLogger progressLogger = new ProgressLogger(mockLogger, key, 100);
+		progressLogger.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_STARTED_EVENT));
+		// 30% then 60% then 100%
+		progressLogger.progressChanged(new ProgressEvent(ProgressEventType.REQUEST_BYTE_TRANSFER_EVENT, 30));
+		progressLogger.progressChanged(new ProgressEvent(ProgressEventType.REQUEST_BYTE_TRANSFER_EVENT, 30));
+		progressLogger.progressChanged(new ProgressEvent(ProgressEventType.REQUEST_BYTE_TRANSFER_EVENT, 40));
+		progressLogger.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+
+		verify(mockLogger).info("Uploading: " + key + " (100 bytes)...");
+		verify(mockLogger).info("Uploaded 25% of: " + key);
+		verify(mockLogger).info("Uploaded 50% of: " + key);
+		verify(mockLogger, never()).info("Uploaded 75% of: " + key);
+		verify(mockLogger).info("Finished uploading: " + key);
+		verify(mockLogger, times(4)).info(any(String.class));
+	}
+}
@@ -0,0 +1,220 @@
+package org.sagebionetworks.template.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sagebionetworks.template.Constants.DEFAULT_ARTIFACT_CACHE_MAX_SIZE_MB;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_ARTIFACT_CACHE_DIRECTORY;
+import static org.sagebionetworks.template.Constants.PROPERTY_KEY_ARTIFACT_CACHE_MAX_SIZE_MB;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.sagebionetworks.template.ConfigurationPropertyNotFound;
+import org.sagebionetworks.template.LoggerFactory;
+import org.sagebionetworks.template.ThreadProvider;
+import org.sagebionetworks.template.config.Configuration;
+
+@ExtendWith(MockitoExtension.class)
+public class ArtifactCacheImplTest {
+
+    @Mock
+    HttpClient mockHttpClient;
+    @Mock
+    ArtifactDownload mockDownloader;
+    @Mock
+    Configuration mockConfig;
+    @Mock
+    ThreadProvider mockThreadProvider;
+    @Mock
+    LoggerFactory mockLoggerFactory;
+    @Mock
+    Logger mockLogger;
+    @Mock
+    HttpResponse mockResponse;
+    @Mock
+    StatusLine mockStatusLine;
+
+    @Captor
+    ArgumentCaptor<HttpUriRequest> requestCaptor;
+
+    @TempDir
+    Path cacheDirectory;
+
+    ArtifactCacheImpl cache;
+
+    String url;
+    long now;
+
+    @BeforeEach
+    public void before() throws IOException {
+        when(mockLoggerFactory.getLogger(any())).thenReturn(mockLogger);
+        when(mockConfig.getProperty(PROPERTY_KEY_ARTIFACT_CACHE_DIRECTORY)).thenReturn(cacheDirectory.toString());
+        when(mockConfig.getIntegerProperty(PROPERTY_KEY_ARTIFACT_CACHE_MAX_SIZE_MB, DEFAULT_ARTIFACT_CACHE_MAX_SIZE_MB))
+                .thenReturn(DEFAULT_ARTIFACT_CACHE_MAX_SIZE_MB);
+        url = "https://sagebionetworks.jfrog.io/services-repository-1.0.war";
+        now = 1_600_000_000_000L;
+        lenient().when(mockThreadProvider.currentTimeMillis()).thenAnswer(i -> now);
+        lenient().when(mockResponse.getStatusLine()).thenReturn(mockStatusLine);
+        lenient().when(mockDownloader.downloadFile(any())).thenAnswer(i -> {
+            File temp = File.createTempFile("artifact", ".tmp");
+            Files.write(temp.toPath(), ("content of " + i.getArgument(0)).getBytes(StandardCharsets.UTF_8));
+            return temp;
+        });
+        cache = new ArtifactCacheImpl(mockHttpClient, mockDownloader, mockConfig, mockThreadProvider,
+                mockLoggerFactory);
+    }
+
+    void setupHead(int statusCode, String etag) throws IOException {
+        when(mockHttpClient.execute(any())).thenReturn(mockResponse);
+        when(mockStatusLine.getStatusCode()).thenReturn(statusCode);
+        lenient().when(mockResponse.getFirstHeader(ArtifactCacheImpl.HEADER_ETAG))
+                .thenReturn(etag == null ? null : new BasicHeader(ArtifactCacheImpl.HEADER_ETAG, etag));
+    }
+
+    String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testGetMiss() throws IOException {
+        setupHead(200, "\"v1\"");
+        // call under test
+        File file = cache.get(url);
+        assertEquals(cacheDirectory.toFile(), file.getParentFile());
+        assertEquals("content of " + url, read(file));
+        verify(mockDownloader).downloadFile(url);
+        verify(mockHttpClient).execute(requestCaptor.capture());
+        HttpHead head = (HttpHead) requestCaptor.getValue();
+        assertNull(head.getFirstHeader(ArtifactCacheImpl.HEADER_IF_NONE_MATCH));
+    }
+
+    @Test
+    public void testGetNotModified() throws IOException {
+        setupHead(200, "\"v1\"");
+        File first = cache.get(url);
+        when(mockStatusLine.getStatusCode()).thenReturn(304);
+        // call under test
+        File second = cache.get(url);
+        assertEquals(first, second);
+        assertEquals("content of " + url, read(second));
+        verify(mockDownloader, times(1)).downloadFile(url);
+        verify(mockHttpClient, times(2)).execute(requestCaptor.capture());
+        HttpHead head = (HttpHead) requestCaptor.getAllValues().get(1);
+        assertEquals("\"v1\"", head.getFirstHeader(ArtifactCacheImpl.HEADER_IF_NONE_MATCH).getValue());
+    }
+
+    @Test
+    public void testGetConditionalIgnoredSameEtag() throws IOException {
+        setupHead(200, "\"v1\"");
+        cache.get(url);
+        // call under test
+        cache.get(url);
+        verify(mockDownloader, times(1)).downloadFile(url);
+    }
+
+    @Test
+    public void testGetChanged() throws IOException {
+        setupHead(200, "\"v1\"");
+        cache.get(url);
+        when(mockResponse.getFirstHeader(ArtifactCacheImpl.HEADER_ETAG))
+                .thenReturn(new BasicHeader(ArtifactCacheImpl.HEADER_ETAG, "\"v2\""));
+        // call under test
+        cache.get(url);
+        verify(mockDownloader, times(2)).downloadFile(url);
+    }
+
+    @Test
+    public void testGetWithoutValidators() throws IOException {
+        setupHead(200, null);
+        cache.get(url);
+        // call under test
+        cache.get(url);
+        // nothing to revalidate with so the artifact is downloaded again.
+        verify(mockDownloader, times(2)).downloadFile(url);
+    }
+
+    @Test
+    public void testGetRevalidationFailureUsesCache() throws IOException {
+        setupHead(200, "\"v1\"");
+        cache.get(url);
+        when(mockHttpClient.execute(any())).thenThrow(new IOException("connection refused"));
+        // call under test
+        File file = cache.get(url);
+        assertEquals("content of " + url, read(file));
+        verify(mockDownloader, times(1)).downloadFile(url);
+        verify(mockLogger).warn(any(String.class));
+    }
+
+    @Test
+    public void testGetDownloadFailure() throws IOException {
+        setupHead(404, null);
+        RuntimeException failure = new RuntimeException("Failed to download file");
+        when(mockDownloader.downloadFile(any())).thenThrow(failure);
+        // call under test
+        RuntimeException e = assertThrows(RuntimeException.class, () -> {
+            cache.get(url);
+        });
+        assertEquals(failure, e);
+        assertFalse(Files.list(cacheDirectory).anyMatch(p -> p.toString().endsWith(ArtifactCacheImpl.DATA_SUFFIX)));
+    }
+
+    @Test
+    public void testGetNullUrl() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            cache.get(null);
+        });
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws IOException {
+        when(mockConfig.getIntegerProperty(PROPERTY_KEY_ARTIFACT_CACHE_MAX_SIZE_MB, DEFAULT_ARTIFACT_CACHE_MAX_SIZE_MB))
+                .thenReturn(0);
+        cache = new ArtifactCacheImpl(mockHttpClient, mockDownloader, mockConfig, mockThreadProvider,
+                mockLoggerFactory);
+        setupHead(200, "\"v1\"");
+        File old = cache.get(url);
+        // still within the grace period.
+        assertTrue(old.exists());
+        now += ArtifactCacheImpl.EVICTION_GRACE_MS * 2;
+        // call under test
+        File recent = cache.get(url + ".other");
+        assertFalse(old.exists());
+        assertTrue(recent.exists());
+    }
+
+    @Test
+    public void testGetDirectoryDefault() {
+        when(mockConfig.getProperty(PROPERTY_KEY_ARTIFACT_CACHE_DIRECTORY))
+                .thenThrow(new ConfigurationPropertyNotFound(PROPERTY_KEY_ARTIFACT_CACHE_DIRECTORY));
+        // call under test
+        File directory = ArtifactCacheImpl.getDirectory(mockConfig);
+        assertEquals(new File(System.getProperty("java.io.tmpdir"), ArtifactCacheImpl.DEFAULT_DIRECTORY_NAME),
+                directory);
+    }
+}
@@ -0,0 +1,211 @@
+package org.sagebionetworks.template.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.client.HttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sagebionetworks.template.ClientLifecycleImpl;
+import org.sagebionetworks.template.LoggerFactoryImpl;
+import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.ThreadProviderImp;
+import org.sagebionetworks.template.config.ConfigurationImpl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Exercises the download against a local HTTP server that stands in for the
+ * artifact repository.
+ */
+public class ArtifactDownloadImplStandInServerTest {
+
+    HttpServer server;
+    String url;
+    byte[] content;
+    boolean acceptRanges;
+    String sha256Header;
+    /**
+     * The number of GET requests that should be cut off half way.
+     */
+    AtomicInteger failuresToInject;
+    List<String> ranges;
+
+    ArtifactDownloadImpl downloader;
+
+    @BeforeEach
+    public void before() throws IOException {
+        content = new byte[10 * 1024 + 7];
+        new Random(123).nextBytes(content);
+        acceptRanges = true;
+        sha256Header = DigestUtils.sha256Hex(content);
+        failuresToInject = new AtomicInteger(0);
+        ranges = new CopyOnWriteArrayList<>();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/artifact.war", this::handle);
+        // the default handler sends a body with HEAD responses.
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/artifact.war";
+
+        HttpClient client = new TemplateGuiceModule().provideHttpClient(new ConfigurationImpl(),
+                new ClientLifecycleImpl(new LoggerFactoryImpl()));
+        downloader = new ArtifactDownloadImpl(client, new ThreadProviderImp());
+        downloader.setPartSize(1024);
+    }
+
+    @AfterEach
+    public void after() {
+        server.stop(0);
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (acceptRanges) {
+                exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            }
+            if (sha256Header != null) {
+                exchange.getResponseHeaders().add(ArtifactDownloadImpl.HEADER_SHA256, sha256Header);
+            }
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Content-Length", Integer.toString(content.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            int start = 0;
+            int end = content.length - 1;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int status = 200;
+            if (range != null && acceptRanges) {
+                ranges.add(range);
+                String[] split = range.substring("bytes=".length()).split("-", -1);
+                start = Integer.parseInt(split[0]);
+                if (!split[1].isEmpty()) {
+                    end = Integer.parseInt(split[1]);
+                }
+                status = 206;
+            }
+            int length = end - start + 1;
+            exchange.sendResponseHeaders(status, length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (failuresToInject.getAndDecrement() > 0) {
+                    // send half of the bytes then drop the connection.
+                    out.write(content, start, length / 2);
+                    out.flush();
+                    throw new IOException("injected failure");
+                }
+                out.write(content, start, length);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    File download() throws IOException {
+        File file = downloader.downloadFile(url);
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testDownloadInParts() throws IOException {
+        // call under test
+        File file = download();
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        // 11 parts of 1 KB each.
+        assertEquals(11, ranges.size());
+        assertTrue(ranges.contains("bytes=0-1023"));
+        assertTrue(ranges.contains("bytes=10240-10246"));
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadWithoutRanges() throws IOException {
+        acceptRanges = false;
+        // call under test
+        File file = download();
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertTrue(ranges.isEmpty());
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadSmallFileSingleStream() throws IOException {
+        downloader.setPartSize(content.length);
+        // call under test
+        File file = download();
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertTrue(ranges.isEmpty());
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadResume() throws IOException {
+        downloader.setPartSize(content.length);
+        failuresToInject.set(1);
+        // call under test
+        File file = download();
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        // the second request resumes where the first stopped.
+        assertEquals(List.of("bytes=" + (content.length / 2) + "-" + (content.length - 1)), ranges);
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadInPartsResume() throws IOException {
+        failuresToInject.set(2);
+        // call under test
+        File file = download();
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(13, ranges.size());
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadChecksumMismatch() {
+        sha256Header = DigestUtils.sha256Hex("something else");
+        RuntimeException e = assertThrows(RuntimeException.class, () -> {
+            // call under test
+            downloader.downloadFile(url);
+        });
+        assertTrue(e.getMessage().startsWith("Checksum of: " + url + " does not match."));
+    }
+
+    @Test
+    public void testDownloadNoChecksum() throws IOException {
+        sha256Header = null;
+        // call under test
+        File file = download();
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        file.delete();
+    }
+
+    @Test
+    public void testDownloadNotFound() {
+        String missing = url.replace("artifact.war", "missing.war");
+        RuntimeException e = assertThrows(RuntimeException.class, () -> {
+            // call under test
+            downloader.downloadFile(missing);
+        });
+        assertTrue(e.getMessage().contains("Status code:404"), e.getMessage());
+    }
+}
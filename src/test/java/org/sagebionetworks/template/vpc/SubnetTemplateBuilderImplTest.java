@@ -17,13 +17,22 @@ import org.sagebionetworks.template.CreateOrUpdateStackRequest;
 import org.sagebionetworks.template.LoggerFactory;
 import org.sagebionetworks.template.StackTagsProvider;
 import org.sagebionetworks.template.TemplateGuiceModule;
+import org.sagebionetworks.template.TemplateRenderer;
+import org.sagebionetworks.template.TemplateRendererImpl;
+import org.sagebionetworks.template.ThreadProviderImp;
 import org.sagebionetworks.template.config.Configuration;
+import org.sagebionetworks.template.deployment.DeploymentOrchestratorImpl;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -73,7 +82,7 @@ public class SubnetTemplateBuilderImplTest {
         Tag t = new Tag().withKey("aKey").withValue("aValue");
         when(mockStackTagsProvider.getStackTags()).thenReturn(expectedTags);
 
-        builder = new SubnetTemplateBuilderImpl(mockCloudFormationClient, velocityEngine, mockConfig, mockLoggerFactory, mockStackTagsProvider);
+        builder = new SubnetTemplateBuilderImpl(mockCloudFormationClient, new TemplateRendererImpl(velocityEngine), mockConfig, mockLoggerFactory, mockStackTagsProvider, new DeploymentOrchestratorImpl(new ThreadProviderImp(), mockConfig, mockLoggerFactory));
 
         colors = new String[] {"Red", "Green"};
         subnetPrefix = "10.24";
@@ -152,6 +161,94 @@ public class SubnetTemplateBuilderImplTest {
 
         JSONObject templateJson = new JSONObject(requests.get(0).getTemplateBody());
         System.out.println(templateJson.toString(JSON_INDENT));
+        verify(mockCloudFormationClient).waitForStackToComplete("synapse-dev-vpc-2-private-subnets-Red");
+        verify(mockCloudFormationClient).waitForStackToComplete("synapse-dev-vpc-2-private-subnets-Green");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testBuildAndDeployPrivateSubnetsWaitsTogether() throws Exception {
+        when(mockConfig.getIntegerProperty(PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY, DEFAULT_DEPLOYMENT_MAX_CONCURRENCY)).thenReturn(4);
+        // each wait only completes once both stacks are being waited on.
+        CountDownLatch waiting = new CountDownLatch(2);
+        when(mockCloudFormationClient.waitForStackToComplete(anyString())).thenAnswer(invocation -> {
+            waiting.countDown();
+            assertTrue(waiting.await(10, TimeUnit.SECONDS));
+            return null;
+        });
+        // call under test
+        builder.buildAndDeployPrivateSubnets();
+
+        verify(mockCloudFormationClient, times(2)).createOrUpdateStack(any());
+        verify(mockCloudFormationClient, times(2)).waitForStackToComplete(anyString());
+    }
+
+    @Test
+    public void testBuildAndDeployPrivateSubnetsMaxConcurrency() throws Exception {
+        when(mockConfig.getIntegerProperty(PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY, DEFAULT_DEPLOYMENT_MAX_CONCURRENCY)).thenReturn(1);
+        when(mockCloudFormationClient.waitForStackToComplete("synapse-dev-vpc-2-private-subnets-Red")).thenAnswer(invocation -> {
+            // the next color is not submitted until this one completes.
+            verify(mockCloudFormationClient, times(1)).createOrUpdateStack(any());
+            return null;
+        });
+        // call under test
+        builder.buildAndDeployPrivateSubnets();
+
+        verify(mockCloudFormationClient, times(2)).createOrUpdateStack(any());
+        verify(mockCloudFormationClient, times(2)).waitForStackToComplete(anyString());
+    }
+
+    @Test
+    public void testBuildAndDeployPrivateSubnetsWithFailure() throws Exception {
+        when(mockConfig.getIntegerProperty(PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY, DEFAULT_DEPLOYMENT_MAX_CONCURRENCY)).thenReturn(4);
+        when(mockConfig.getBooleanProperty(PROPERTY_KEY_VPC_PRIVATE_SUBNETS_FAIL_FAST, DEFAULT_VPC_PRIVATE_SUBNETS_FAIL_FAST)).thenReturn(false);
+        IllegalStateException failure = new IllegalStateException("Red failed");
+        when(mockCloudFormationClient.waitForStackToComplete("synapse-dev-vpc-2-private-subnets-Red")).thenThrow(failure);
+        try {
+            // call under test
+            builder.buildAndDeployPrivateSubnets();
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("synapse-dev-vpc-2-private-subnets-Red"));
+            assertEquals(failure, e.getSuppressed()[0]);
+        }
+        // the other color is not affected by the failure.
+        verify(mockCloudFormationClient).waitForStackToComplete("synapse-dev-vpc-2-private-subnets-Green");
+    }
+
+    @Test
+    public void testBuildAndDeployPrivateSubnetsWithFailFast() throws Exception {
+        when(mockConfig.getIntegerProperty(PROPERTY_KEY_DEPLOYMENT_MAX_CONCURRENCY, DEFAULT_DEPLOYMENT_MAX_CONCURRENCY)).thenReturn(1);
+        when(mockConfig.getBooleanProperty(PROPERTY_KEY_VPC_PRIVATE_SUBNETS_FAIL_FAST, DEFAULT_VPC_PRIVATE_SUBNETS_FAIL_FAST)).thenReturn(true);
+        IllegalStateException failure = new IllegalStateException("Red failed");
+        when(mockCloudFormationClient.waitForStackToComplete("synapse-dev-vpc-2-private-subnets-Red")).thenThrow(failure);
+        try {
+            // call under test
+            builder.buildAndDeployPrivateSubnets();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Failed to deploy: [synapse-dev-vpc-2-private-subnets-Red] skipped: [synapse-dev-vpc-2-private-subnets-Green]", e.getMessage());
+            assertEquals(failure, e.getSuppressed()[0]);
+        }
+        // the other color is not started after the failure.
+        verify(mockCloudFormationClient, times(1)).createOrUpdateStack(any());
+        verify(mockCloudFormationClient, never()).waitForStackToComplete("synapse-dev-vpc-2-private-subnets-Green");
+    }
+
+    @Test
+    public void testBuildAndDeployPrivateSubnetsRenderFailure() throws Exception {
+        TemplateRenderer mockRenderer = mock(TemplateRenderer.class);
+        IllegalStateException failure = new IllegalStateException("Green failed");
+        when(mockRenderer.renderJson(any(), any())).thenReturn("{}").thenThrow(failure);
+        builder = new SubnetTemplateBuilderImpl(mockCloudFormationClient, mockRenderer, mockConfig, mockLoggerFactory, mockStackTagsProvider, new DeploymentOrchestratorImpl(new ThreadProviderImp(), mockConfig, mockLoggerFactory));
+        try {
+            // call under test
+            builder.buildAndDeployPrivateSubnets();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+        // no stack is changed when a template cannot be rendered.
+        verify(mockCloudFormationClient, never()).createOrUpdateStack(any());
+    }
+
+}
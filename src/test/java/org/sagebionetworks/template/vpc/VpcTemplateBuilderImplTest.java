@@ -34,6 +34,7 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.sagebionetworks.template.*;
+import org.sagebionetworks.template.TemplateRendererImpl;
 import org.sagebionetworks.template.config.Configuration;
 
 import com.amazonaws.services.cloudformation.model.Parameter;
@@ -88,7 +89,7 @@ public class VpcTemplateBuilderImplTest {
 		Tag t = new Tag().withKey("aKey").withValue("aValue");
 		when(mockStackTagsProvider.getStackTags()).thenReturn(expectedTags);
 
-		builder = new VpcTemplateBuilderImpl(mockCloudFormationClient, velocityEngine, mockConfig, mockLoggerFactory, mockStackTagsProvider);
+		builder = new VpcTemplateBuilderImpl(mockCloudFormationClient, new TemplateRendererImpl(velocityEngine), mockConfig, mockLoggerFactory, mockStackTagsProvider);
 		subnetPrefix = "10.21";
 		avialabilityZones = new String[] {"us-east-1a","us-east-1b"};
 		vpnCider = "10.1.0.0/16";
@@ -1,19 +1,25 @@
 package org.sagebionetworks.war;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.function.Consumer;
+import java.util.zip.ZipFile;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.core.Logger;
 import org.junit.Before;
 import org.junit.Test;
@@ -73,4 +79,23 @@ public class WarAppenderImplTest {
 		}
 	}
 
+	@Test
+	public void testAppendFilesCopyOfWarContainsAppendedFiles() throws IOException {
+		doAnswer(invocation -> {
+			File directory = invocation.getArgument(0);
+			FileUtils.write(new File(directory, ".ebextensions/instance.config"), "instance", "UTF-8");
+			return null;
+		}).when(mockConsumer).accept(any(File.class));
+		// call under test
+		File copy = appender.appendFilesCopyOfWar(testWar, mockConsumer);
+		try (ZipFile zipFile = new ZipFile(copy)) {
+			assertEquals("instance", IOUtils.toString(
+					zipFile.getInputStream(zipFile.getEntry(".ebextensions/instance.config")), "UTF-8"));
+			// the original entries are kept.
+			assertNotNull(zipFile.getEntry("WEB-INF/web.xml"));
+		} finally {
+			copy.delete();
+		}
+	}
+
 }
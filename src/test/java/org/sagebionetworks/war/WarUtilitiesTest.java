@@ -1,13 +1,31 @@
 package org.sagebionetworks.war;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -68,4 +86,106 @@ public class WarUtilitiesTest {
 			FileUtils.write(file, fileName, "UTF-8");
 		}
 	}
+
+	@Test
+	public void testAppendDirectoryToWar() throws IOException, URISyntaxException {
+		File testWar = new File(WarUtilitiesTest.class.getClassLoader().getResource("test.war").toURI());
+		File appendDir = null;
+		File tempWar = null;
+		try {
+			appendDir = Files.createTempDirectory("append").toFile();
+			FileUtils.write(new File(appendDir, ".ebextensions/instance.config"), "instance", "UTF-8");
+			FileUtils.write(new File(appendDir, ".platform/httpd/conf.d/ssl.conf"), "ssl", "UTF-8");
+			FileUtils.write(new File(appendDir, "index.html"), "replaced", "UTF-8");
+			tempWar = File.createTempFile("TestWar", ".war");
+			// call under test
+			WarUtilities.appendDirectoryToWar(testWar, appendDir, tempWar);
+
+			Map<String, byte[]> expected = readEntries(testWar);
+			expected.put("index.html", "replaced".getBytes(StandardCharsets.UTF_8));
+			expected.put(".ebextensions/instance.config", "instance".getBytes(StandardCharsets.UTF_8));
+			expected.put(".platform/", new byte[0]);
+			expected.put(".platform/httpd/", new byte[0]);
+			expected.put(".platform/httpd/conf.d/", new byte[0]);
+			expected.put(".platform/httpd/conf.d/ssl.conf", "ssl".getBytes(StandardCharsets.UTF_8));
+			Map<String, byte[]> actual = readEntries(tempWar);
+			assertEquals(expected.keySet(), actual.keySet());
+			for (String name : expected.keySet()) {
+				assertArrayEquals(name, expected.get(name), actual.get(name));
+			}
+			// the local headers must also be readable as a stream.
+			int streamed = 0;
+			try (ZipInputStream in = new ZipInputStream(Files.newInputStream(tempWar.toPath()))) {
+				ZipEntry entry;
+				while ((entry = in.getNextEntry()) != null) {
+					assertArrayEquals(entry.getName(), expected.get(entry.getName()), IOUtils.toByteArray(in));
+					streamed++;
+				}
+			}
+			assertEquals(expected.size(), streamed);
+		} finally {
+			if (appendDir != null) {
+				FileUtils.deleteDirectory(appendDir);
+			}
+			if (tempWar != null) {
+				tempWar.delete();
+			}
+		}
+	}
+
+	@Test(expected = ZipException.class)
+	public void testAppendDirectoryToWarNotZip() throws IOException {
+		File notZip = File.createTempFile("NotZip", ".war");
+		File tempWar = File.createTempFile("TestWar", ".war");
+		try {
+			FileUtils.write(notZip, "not a zip", "UTF-8");
+			// call under test
+			WarUtilities.appendDirectoryToWar(notZip, notZip.getParentFile(), tempWar);
+		} finally {
+			notZip.delete();
+			tempWar.delete();
+		}
+	}
+
+	@Test(expected = ZipException.class)
+	public void testReadCentralDirectoryZip64UncompressedSize() throws IOException {
+		File war = File.createTempFile("Zip64", ".war");
+		try {
+			try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(war))) {
+				out.putNextEntry(new ZipEntry("index.html"));
+				out.write("index".getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+			// mark the uncompressed size of the only entry as stored in a ZIP64 extra field
+			byte[] bytes = Files.readAllBytes(war.toPath());
+			ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+			int centralHeader = -1;
+			for (int i = bytes.length - WarUtilities.CENTRAL_HEADER_SIZE; i >= 0; i--) {
+				if (buffer.getInt(i) == WarUtilities.CENTRAL_HEADER_SIGNATURE) {
+					centralHeader = i;
+					break;
+				}
+			}
+			assertTrue(centralHeader >= 0);
+			buffer.putInt(centralHeader + 24, 0xFFFFFFFF);
+			Files.write(war.toPath(), bytes);
+			try (FileChannel in = FileChannel.open(war.toPath(), StandardOpenOption.READ)) {
+				// call under test
+				WarUtilities.readCentralDirectory(war, in);
+			}
+		} finally {
+			war.delete();
+		}
+	}
+
+	Map<String, byte[]> readEntries(File war) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		try (ZipFile zipFile = new ZipFile(war)) {
+			for (ZipEntry entry : Collections.list(zipFile.entries())) {
+				assertNotNull(entry.getName());
+				entries.put(entry.getName(), IOUtils.toByteArray(zipFile.getInputStream(entry)));
+			}
+		}
+		return entries;
+	}
 }